@@ -0,0 +1,200 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.JSONReader.Collector;
+
+import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+/**
+ * Synthetic documents used by the benchmarks, of several shapes and sizes.
+ * The documents are generated from a fixed seed, so a benchmark always measures the same texts.
+ *
+ * The amounts have at most two decimals while the values of the series are signed doubles
+ * with all their digits, some of them written with an exponent.
+ */
+final class Documents {
+  private Documents() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The approximate size of the JSON text of a document.
+   */
+  enum Size {
+    SMALL(1 << 10), MEDIUM(64 << 10), LARGE(4 << 20);
+
+    private final int bytes;
+
+    Size(int bytes) {
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * The shape of a document, the class of the document and how to generate its elements.
+   */
+  enum Shape {
+    FLAT_BEANS(Customers.class, Documents::customers),
+    NESTED_RECORDS(Orders.class, Documents::orders),
+    NUMERIC_ARRAYS(Series.class, Documents::series),
+    STRING_HEAVY(Articles.class, Documents::articles);
+
+    private final Class<?> documentClass;
+    private final IntFunction<Object> generator;
+
+    Shape(Class<?> documentClass, IntFunction<Object> generator) {
+      this.documentClass = documentClass;
+      this.generator = generator;
+    }
+
+    Class<?> documentClass() {
+      return documentClass;
+    }
+
+    /**
+     * Creates a document which JSON text has approximately the size in bytes.
+     */
+    Object document(Size size) {
+      var sample = new JSONWriter().toJSON(generator.apply(1)).length();
+      return generator.apply(Math.max(1, size.bytes / sample));
+    }
+  }
+
+  public static class Customer {
+    private String name;
+    private int age;
+    private long id;
+    private double balance;
+    private boolean active;
+
+    public String getName() {
+      return name;
+    }
+    public void setName(String name) {
+      this.name = name;
+    }
+    public int getAge() {
+      return age;
+    }
+    public void setAge(int age) {
+      this.age = age;
+    }
+    public long getId() {
+      return id;
+    }
+    public void setId(long id) {
+      this.id = id;
+    }
+    public double getBalance() {
+      return balance;
+    }
+    public void setBalance(double balance) {
+      this.balance = balance;
+    }
+    public boolean isActive() {
+      return active;
+    }
+    public void setActive(boolean active) {
+      this.active = active;
+    }
+  }
+  public record Customers(List<Customer> customers) { }
+
+  public record Address(String street, String city, int zipCode) { }
+  public record Line(String product, int quantity, double price) { }
+  public record Order(long id, Address address, List<Line> lines, boolean shipped) { }
+  public record Orders(List<Order> orders) { }
+
+  public record Measure(String name, List<Integer> counts, List<Double> values) { }
+  public record Series(List<Measure> measures) { }
+
+  public record Article(String title, String author, String body, List<String> tags) { }
+  public record Articles(List<Article> articles) { }
+
+  private static double amount(Random random) {
+    return random.nextInt(1_000_000) / 100.0;
+  }
+
+  private static Object customers(int count) {
+    var random = new Random(0);
+    var customers = new ArrayList<Customer>();
+    for(var i = 0; i < count; i++) {
+      var customer = new Customer();
+      customer.setName("customer " + i);
+      customer.setAge(18 + random.nextInt(80));
+      customer.setId(10_000_000_000L + i);
+      customer.setBalance(amount(random));
+      customer.setActive(random.nextBoolean());
+      customers.add(customer);
+    }
+    return new Customers(customers);
+  }
+
+  private static Object orders(int count) {
+    var random = new Random(0);
+    var orders = new ArrayList<Order>();
+    for(var i = 0; i < count; i++) {
+      var lines = new ArrayList<Line>();
+      for(var j = 0; j < 1 + random.nextInt(5); j++) {
+        lines.add(new Line("product " + random.nextInt(1_000), 1 + random.nextInt(10), amount(random)));
+      }
+      var address = new Address(random.nextInt(200) + " main street", "city " + random.nextInt(100), 10_000 + random.nextInt(90_000));
+      orders.add(new Order(i, address, lines, random.nextBoolean()));
+    }
+    return new Orders(orders);
+  }
+
+  private static Object series(int count) {
+    var random = new Random(0);
+    var measures = new ArrayList<Measure>();
+    for(var i = 0; i < count; i++) {
+      var counts = new ArrayList<Integer>();
+      var values = new ArrayList<Double>();
+      for(var j = 0; j < 32; j++) {
+        counts.add(random.nextInt(200_000) - 100_000);
+        values.add(random.nextGaussian() * Math.pow(10, random.nextInt(20) - 10));
+      }
+      measures.add(new Measure("measure " + i, counts, values));
+    }
+    return new Series(measures);
+  }
+
+  private static final String[] WORDS = {
+      "lorem", "ipsum", "dolor", "sit", "amet", "consectetur", "adipiscing", "elit",
+      "sed", "do", "eiusmod", "tempor", "été", "naïve", "über", "日本語"
+  };
+
+  private static String text(Random random, int wordCount) {
+    var builder = new StringBuilder();
+    for(var i = 0; i < wordCount; i++) {
+      builder.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return builder.toString();
+  }
+
+  private static Object articles(int count) {
+    var random = new Random(0);
+    var articles = new ArrayList<Article>();
+    for(var i = 0; i < count; i++) {
+      var tags = List.of(text(random, 1), text(random, 1), text(random, 1));
+      articles.add(new Article(text(random, 6), text(random, 2), text(random, 200), tags));
+    }
+    return new Articles(articles);
+  }
+
+  /**
+   * Returns a reader that decodes all the documents.
+   */
+  static JSONReader newReader() {
+    var reader = new JSONReader();
+    reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(Collector::record));
+    reader.addTypeMatcher(type -> Optional.of(type)
+        .filter(t -> t instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == List.class)
+        .map(t -> Collector.list(((ParameterizedType) t).getActualTypeArguments()[0])));
+    return reader;
+  }
+}
@@ -0,0 +1,138 @@
+package com.github.forax.framework.mapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the escaping of the strings by {@link JSONWriter}, which looks up a table and copies
+ * the runs of characters that do not need to be escaped in bulk, with a naive escaping character
+ * by character, on ASCII, mixed (non-ASCII characters) and escape-heavy strings.
+ *
+ * <pre>
+ *   mvn package
+ *   java --enable-preview -jar benchmarks/target/benchmarks.jar EscapeBenchmark -prof gc
+ * </pre>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class EscapeBenchmark {
+  /**
+   * The kind of characters of the strings.
+   */
+  public enum Kind {
+    ASCII("abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ 0123456789"),
+    MIXED("abcdefghijklmnopqrstuvwxyz éèàçùü ÄÖß 日本語 ελληνικά"),
+    ESCAPE_HEAVY("ab\"cd\\ef\ngh\tij\"\"kl\rmn\u0001op/qr\\\\");
+
+    private final String alphabet;
+
+    Kind(String alphabet) {
+      this.alphabet = alphabet;
+    }
+  }
+
+  @Param
+  private Kind kind;
+
+  private List<String> strings;
+  private JSONWriter writer;
+
+  /**
+   * A channel that drops the bytes, so only the encoding is measured.
+   */
+  private static final class NullChannel implements WritableByteChannel {
+    @Override
+    public int write(ByteBuffer buffer) {
+      var remaining = buffer.remaining();
+      buffer.position(buffer.limit());
+      return remaining;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    @Override
+    public void close() {
+      // empty
+    }
+  }
+
+  private final NullChannel channel = new NullChannel();
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    var alphabet = kind.alphabet;
+    strings = new ArrayList<>();
+    for(var i = 0; i < 1_000; i++) {
+      var builder = new StringBuilder();
+      var length = 16 + random.nextInt(112);
+      for(var j = 0; j < length; j++) {
+        builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+      }
+      strings.add(builder.toString());
+    }
+    writer = new JSONWriter();
+
+    // check that the naive version and the writer agree
+    if (!naive().equals(writer.toJSON(strings))) {
+      throw new AssertionError("the escaping of " + kind + " differs");
+    }
+  }
+
+  @Benchmark
+  public String naive() {
+    var builder = new StringBuilder().append('[');
+    for(var i = 0; i < strings.size(); i++) {
+      if (i != 0) {
+        builder.append(", ");
+      }
+      var string = strings.get(i);
+      builder.append('"');
+      for(var j = 0; j < string.length(); j++) {
+        var c = string.charAt(j);
+        var escapeSequence = JSONOutput.escape(c);
+        if (escapeSequence != null) {
+          builder.append(escapeSequence);
+        } else {
+          builder.append(c);
+        }
+      }
+      builder.append('"');
+    }
+    return builder.append(']').toString();
+  }
+
+  @Benchmark
+  public String chars() {
+    return writer.toJSON(strings);
+  }
+
+  @Benchmark
+  public void bytes() throws IOException {
+    writer.toJSON(strings, channel);
+  }
+}
@@ -0,0 +1,185 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.Documents.Shape;
+import com.github.forax.framework.mapper.Documents.Size;
+import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the parser, the reader and the writer on synthetic documents of several shapes and sizes,
+ * see {@link Documents}.
+ *
+ * The number of bytes allocated per operation is reported by the GC profiler of JMH,
+ * to compare two versions of the lexer or of a codec, both ops/s and B/op ({@code gc.alloc.rate.norm})
+ * should be looked at.
+ *
+ * <pre>
+ *   mvn package
+ *   java --enable-preview -jar benchmarks/target/benchmarks.jar MapperBenchmark -prof gc
+ *   java --enable-preview -jar benchmarks/target/benchmarks.jar MapperBenchmark -p shape=NESTED_RECORDS -p size=LARGE -prof gc
+ * </pre>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class MapperBenchmark {
+  @Param
+  private Shape shape;
+
+  @Param
+  private Size size;
+
+  private Object document;
+  private String text;
+  private ByteBuffer buffer;
+  private byte[] cbor;
+  private JSONReader reader;
+  private JSONWriter writer;
+
+  /**
+   * A visitor that only counts the events, so the parser is measured alone.
+   */
+  private static final class CountingVisitor implements JSONVisitor {
+    private int count;
+
+    @Override
+    public void value(String key, Object value) {
+      count++;
+    }
+
+    @Override
+    public void valueInt(String key, int value) {
+      count++;
+    }
+
+    @Override
+    public void valueLong(String key, long value) {
+      count++;
+    }
+
+    @Override
+    public void valueDouble(String key, double value) {
+      count++;
+    }
+
+    @Override
+    public void valueBoolean(String key, boolean value) {
+      count++;
+    }
+
+    @Override
+    public void startObject(String key) {
+      count++;
+    }
+
+    @Override
+    public void endObject(String key) {
+      count++;
+    }
+
+    @Override
+    public void startArray(String key) {
+      count++;
+    }
+
+    @Override
+    public void endArray(String key) {
+      count++;
+    }
+  }
+
+  @Setup
+  public void setup() {
+    document = shape.document(size);
+    writer = new JSONWriter();
+    reader = Documents.newReader();
+    text = writer.toJSON(document);
+    var bytes = text.getBytes(UTF_8);
+    buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    cbor = writer.toCBOR(document);
+
+    // check that the text can be parsed back
+    var roundTrip = writer.toJSON(reader.parseJSON(text, shape.documentClass()));
+    if (!roundTrip.equals(text)) {
+      throw new AssertionError("the document " + shape + " can not be read back");
+    }
+    if (!writer.toJSON(reader.parseCBOR(cbor, shape.documentClass())).equals(text)) {
+      throw new AssertionError("the document " + shape + " can not be read back from CBOR");
+    }
+    if (!writer.toJSON(reader.parseJSON(JSONDocument.parse(buffer).root(), shape.documentClass())).equals(text)) {
+      throw new AssertionError("the document " + shape + " can not be read back from a JSONDocument");
+    }
+  }
+
+  @Benchmark
+  public int parseString() {
+    var visitor = new CountingVisitor();
+    ToyJSONParser.parse(text, visitor);
+    return visitor.count;
+  }
+
+  @Benchmark
+  public int parseByteBuffer() {
+    var visitor = new CountingVisitor();
+    ToyJSONParser.parse(buffer, visitor);
+    return visitor.count;
+  }
+
+  @Benchmark
+  public Object read() {
+    return reader.parseJSON(text, shape.documentClass());
+  }
+
+  @Benchmark
+  public Object readByteBuffer() {
+    return reader.parseJSON(buffer, shape.documentClass());
+  }
+
+  @Benchmark
+  public String write() {
+    return writer.toJSON(document);
+  }
+
+  @Benchmark
+  public Object roundTrip() {
+    return reader.parseJSON(writer.toJSON(document), shape.documentClass());
+  }
+
+  @Benchmark
+  public Object readCBOR() {
+    return reader.parseCBOR(cbor, shape.documentClass());
+  }
+
+  @Benchmark
+  public byte[] writeCBOR() {
+    return writer.toCBOR(document);
+  }
+
+  @Benchmark
+  public JSONDocument parseDocument() {
+    return JSONDocument.parse(buffer);
+  }
+
+  @Benchmark
+  public Object readDocument() {
+    return reader.parseJSON(JSONDocument.parse(buffer).root(), shape.documentClass());
+  }
+}
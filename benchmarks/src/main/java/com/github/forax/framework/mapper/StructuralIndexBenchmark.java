@@ -0,0 +1,135 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.JSONReader.Collector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares the throughput of the byte lexer with and without a structural index,
+ * and the throughput of the scalar and the vectorized structural indexers, on large JSON texts.
+ * Before Java 18, {@link JSONReader#enableStructuralIndex()} has no effect, so the two parse benchmarks
+ * measure the same code.
+ *
+ * <pre>
+ *   mvn package
+ *   java --enable-preview --add-modules jdk.incubator.vector -jar benchmarks/target/benchmarks.jar StructuralIndexBenchmark
+ * </pre>
+ */
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = { "--enable-preview", "--add-modules", "jdk.incubator.vector" })
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class StructuralIndexBenchmark {
+  public record Event(int id, String name, String description, double value, boolean flag, List<Integer> tags) { }
+
+  @Param({"1", "32"})
+  private int megabytes;
+
+  private ByteBuffer buffer;
+  private JSONReader scalarReader;
+  private JSONReader indexedReader;
+  private final StructuralIndex scalarIndex = new StructuralIndex(StructuralIndex.scalarIndexer());
+  private StructuralIndex vectorIndex;
+
+  /**
+   * A type that only stands for the document, its collector counts the events.
+   */
+  private static final Type EVENT_COUNT = new Type() {
+    @Override
+    public String getTypeName() {
+      return "event count";
+    }
+  };
+
+  private static final Collector<int[]> EVENT_COUNTER = new Collector<>(
+      key -> Event.class, () -> new int[1], (count, key, value) -> count[0]++, count -> count[0]);
+
+  private static JSONReader newReader() {
+    var reader = new JSONReader();
+    reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(Collector::record));
+    reader.addTypeMatcher(type -> Optional.of(type)
+        .filter(t -> t instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == List.class)
+        .map(__ -> Collector.list(Integer.class)));
+    reader.addTypeMatcher(type -> Optional.<Collector<?>>of(EVENT_COUNTER).filter(__ -> type == EVENT_COUNT));
+    return reader;
+  }
+
+  private static String event(Random random, int id) {
+    return """
+        { "id": %d, "name": "event %d", "description": "%s", "value": %d.%d, "flag": %b, "tags": [%d, %d, %d] }\
+        """.formatted(id, id, "lorem ipsum dolor sit amet ".repeat(random.nextInt(8)),
+        random.nextInt(1_000), random.nextInt(100), random.nextBoolean(),
+        random.nextInt(100), random.nextInt(100), random.nextInt(100));
+  }
+
+  @Setup
+  public void setup() {
+    var random = new Random(0);
+    var builder = new StringBuilder("[\n");
+    for(var id = 0; builder.length() < megabytes << 20; id++) {
+      builder.append(id == 0 ? "  " : ",\n  ").append(event(random, id));
+    }
+    builder.append("\n]\n");
+    var bytes = builder.toString().getBytes(UTF_8);
+    buffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+    scalarReader = newReader();
+    indexedReader = newReader();
+    indexedReader.enableStructuralIndex();
+    var vectorIndexer = StructuralIndex.loadVectorIndexer();
+    if (vectorIndexer == null) {
+      throw new IllegalStateException("the module jdk.incubator.vector is not available");
+    }
+    vectorIndex = new StructuralIndex(vectorIndexer);
+  }
+
+  @Benchmark
+  public Object parseWithoutIndex() {
+    return scalarReader.parseJSON(buffer, EVENT_COUNT);
+  }
+
+  @Benchmark
+  public Object parseWithIndex() {
+    return indexedReader.parseJSON(buffer, EVENT_COUNT);
+  }
+
+  private static int count(StructuralIndex index, ByteBuffer buffer) {
+    index.reset(buffer, 0, buffer.limit());
+    var count = 0;
+    while(index.next() != -1) {
+      count++;
+    }
+    return count;
+  }
+
+  @Benchmark
+  public int indexScalar() {
+    return count(scalarIndex, buffer);
+  }
+
+  @Benchmark
+  public int indexVector() {
+    return count(vectorIndex, buffer);
+  }
+}
@@ -0,0 +1,109 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.JSONReader.Collector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Type;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the parsing of a document when the values of the unknown keys are skipped
+ * by the parser ({@link JSONReader#ignoreUnknownKeys()}) and when they are fully decoded
+ * then dropped, for several ratios of unknown keys.
+ *
+ * <pre>
+ *   mvn package
+ *   java --enable-preview -jar benchmarks/target/benchmarks.jar UnknownKeysBenchmark
+ * </pre>
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "--enable-preview")
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class UnknownKeysBenchmark {
+  private static final int FIELD_COUNT = 40;
+
+  @Param({"0", "25", "50", "75", "95"})
+  private int ignoredPercent;
+
+  private String text;
+  private JSONReader skippingReader;
+  private JSONReader decodingReader;
+
+  /**
+   * A type that only stands for the document, its collector sums the mapped fields.
+   */
+  private static final Type SUM = new Type() {
+    @Override
+    public String getTypeName() {
+      return "sum";
+    }
+  };
+
+  private static Collector<int[]> sumCollector(boolean lenient) {
+    return new Collector<>(
+        key -> key.startsWith("m") ? int.class : lenient ? Object.class : null,
+        () -> new int[1],
+        new Collector.Populater<>() {
+          @Override
+          public void populate(int[] sum, String key, Object value) {
+            // unknown value, dropped
+          }
+
+          @Override
+          public void populateInt(int[] sum, String key, int value) {
+            sum[0] += value;
+          }
+        },
+        sum -> sum[0]);
+  }
+
+  /**
+   * Decodes any value then drops it.
+   */
+  private static final Collector<Object> DISCARD = new Collector<>(
+      key -> Object.class, Object::new, (builder, key, value) -> {}, builder -> null);
+
+  @Setup
+  public void setup() {
+    var ignoredCount = FIELD_COUNT * ignoredPercent / 100;
+    text = IntStream.range(0, FIELD_COUNT)
+        .mapToObj(i -> i < ignoredCount ?
+            "\"u" + i + "\": { \"id\": " + i + ", \"name\": \"name " + i + "\", \"values\": [1, 2, 3, 4], \"child\": { \"flag\": true } }" :
+            "\"m" + i + "\": " + i)
+        .collect(Collectors.joining(", ", "{ ", " }"));
+
+    skippingReader = new JSONReader();
+    skippingReader.addTypeMatcher(type -> Optional.<Collector<?>>of(sumCollector(false)).filter(__ -> type == SUM));
+    skippingReader.ignoreUnknownKeys();
+
+    decodingReader = new JSONReader();
+    decodingReader.addTypeMatcher(type -> Optional.<Collector<?>>of(sumCollector(true)).filter(__ -> type == SUM));
+    decodingReader.addTypeMatcher(type -> Optional.<Collector<?>>of(DISCARD).filter(__ -> type == Object.class));
+  }
+
+  @Benchmark
+  public Object skipUnknownKeys() {
+    return skippingReader.parseJSON(text, SUM);
+  }
+
+  @Benchmark
+  public Object decodeUnknownKeys() {
+    return decodingReader.parseJSON(text, SUM);
+  }
+}
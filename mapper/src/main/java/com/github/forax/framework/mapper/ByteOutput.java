@@ -0,0 +1,242 @@
+package com.github.forax.framework.mapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * An output that encodes the JSON text in UTF-8 directly into direct byte buffers.
+ *
+ * The buffers are taken from a pool shared by all the threads, when a buffer is full,
+ * another one is taken (the bytes already encoded are not copied), and when there are
+ * {@link #MAX_CHUNKS} buffers, they are all written to the channel with one gathering write
+ * then given back to the pool.
+ * The buffers are also given back to the pool by {@link #release()} when the encoding
+ * or the write fails, so a failure does not drain the pool.
+ */
+final class ByteOutput extends JSONOutput {
+  private static final int CHUNK_SIZE = 16_384;
+  private static final int MAX_CHUNKS = 16;
+  private static final ArrayBlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(64);
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer[] chunks = new ByteBuffer[MAX_CHUNKS];
+  private int count;
+  private ByteBuffer current;
+
+  ByteOutput(WritableByteChannel channel) {
+    this.channel = channel;
+  }
+
+  private static ByteBuffer acquire() {
+    var buffer = POOL.poll();
+    if (buffer == null) {
+      return ByteBuffer.allocateDirect(CHUNK_SIZE);
+    }
+    return buffer.clear();
+  }
+
+  private void nextChunk() {
+    if (count == MAX_CHUNKS) {
+      writeChunks();
+    }
+    current = chunks[count++] = acquire();
+  }
+
+  private void writeChunks() {
+    var chunks = this.chunks;
+    var count = this.count;
+    for(var i = 0; i < count; i++) {
+      chunks[i].flip();
+    }
+    try {
+      if (channel instanceof GatheringByteChannel gatheringChannel) {
+        while(chunks[count - 1].hasRemaining()) {
+          gatheringChannel.write(chunks, 0, count);
+        }
+      } else {
+        for(var i = 0; i < count; i++) {
+          var chunk = chunks[i];
+          while(chunk.hasRemaining()) {
+            channel.write(chunk);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      release();
+    }
+  }
+
+  /**
+   * Gives the buffers back to the pool, the bytes not yet written are lost.
+   * This method can be called several times.
+   */
+  void release() {
+    var chunks = this.chunks;
+    for(var i = 0; i < count; i++) {
+      POOL.offer(chunks[i]);
+      chunks[i] = null;
+    }
+    count = 0;
+    current = null;
+  }
+
+  /**
+   * Returns the number of buffers available in the pool.
+   */
+  static int pooledBuffers() {
+    return POOL.size();
+  }
+
+  private void put(byte b) {
+    var current = this.current;
+    if (current == null || !current.hasRemaining()) {
+      nextChunk();
+      current = this.current;
+    }
+    current.put(b);
+  }
+
+  private void put(byte[] bytes) {
+    put(bytes, bytes.length);
+  }
+
+  private void put(byte[] bytes, int end) {
+    var offset = 0;
+    while(offset < end) {
+      var current = this.current;
+      if (current == null || !current.hasRemaining()) {
+        nextChunk();
+        current = this.current;
+      }
+      var length = Math.min(current.remaining(), end - offset);
+      current.put(bytes, offset, length);
+      offset += length;
+    }
+  }
+
+  private void putASCII(String text) {
+    for(var i = 0; i < text.length(); i++) {
+      put((byte) text.charAt(i));
+    }
+  }
+
+  @Override
+  void append(char c) {
+    put((byte) c);
+  }
+
+  @Override
+  void append(String text) {
+    encode(text, false);
+  }
+
+  @Override
+  void appendASCII(byte[] bytes, int length) {
+    put(bytes, length);
+  }
+
+  @Override
+  void append(Fragment fragment) {
+    put(fragment.bytes());
+  }
+
+  @Override
+  void appendString(String text) {
+    put((byte) '"');
+    encode(text, true);
+    put((byte) '"');
+  }
+
+  /**
+   * Copies the ASCII characters of the text between start and end, chunk by chunk,
+   * without checking the remaining space for each byte.
+   */
+  private void putASCII(String text, int start, int end) {
+    while(start < end) {
+      var current = this.current;
+      if (current == null || !current.hasRemaining()) {
+        nextChunk();
+        current = this.current;
+      }
+      var position = current.position();
+      var length = Math.min(current.remaining(), end - start);
+      for(var i = 0; i < length; i++) {
+        current.put(position + i, (byte) text.charAt(start + i));
+      }
+      current.position(position + length);
+      start += length;
+    }
+  }
+
+  /**
+   * Returns the index of the first character of the text, starting at start,
+   * that is not ASCII or that needs to be escaped, or the length of the text.
+   */
+  private static int endOfASCIIRun(String text, int start, boolean escape) {
+    var length = text.length();
+    for(var i = start; i < length; i++) {
+      var c = text.charAt(i);
+      if (c >= 0x80 || (escape && escape(c) != null)) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  private void encode(String text, boolean escape) {
+    var length = text.length();
+    for(var i = 0; i < length; i++) {
+      var end = endOfASCIIRun(text, i, escape);
+      if (end != i) {
+        putASCII(text, i, end);
+        if (end == length) {
+          return;
+        }
+        i = end;
+      }
+      var c = text.charAt(i);
+      if (c < 0x80) {
+        String escapeSequence;
+        if (escape && (escapeSequence = escape(c)) != null) {
+          putASCII(escapeSequence);
+        } else {
+          put((byte) c);
+        }
+        continue;
+      }
+      if (c < 0x800) {
+        put((byte) (0xC0 | (c >> 6)));
+        put((byte) (0x80 | (c & 0x3F)));
+        continue;
+      }
+      if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(text.charAt(i + 1))) {
+          var codePoint = Character.toCodePoint(c, text.charAt(++i));
+          put((byte) (0xF0 | (codePoint >> 18)));
+          put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+          put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+          put((byte) (0x80 | (codePoint & 0x3F)));
+        } else {
+          put((byte) '?');  // malformed, same replacement as String.getBytes()
+        }
+        continue;
+      }
+      put((byte) (0xE0 | (c >> 12)));
+      put((byte) (0x80 | ((c >> 6) & 0x3F)));
+      put((byte) (0x80 | (c & 0x3F)));
+    }
+  }
+
+  @Override
+  void flush() {
+    if (count != 0) {
+      writeChunks();
+    }
+  }
+}
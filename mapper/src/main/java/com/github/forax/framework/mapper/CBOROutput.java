@@ -0,0 +1,248 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * An output that encodes values in CBOR (RFC 8949), a binary format with the same data model as JSON.
+ * The bytes are encoded in a buffer which is written to the output stream when it is full,
+ * or which grows if there is no output stream.
+ *
+ * The I/O errors of the output stream are wrapped into {@link UncheckedIOException}s.
+ */
+final class CBOROutput {
+  static final int UNSIGNED = 0;
+  static final int NEGATIVE = 1;
+  static final int TEXT = 3;
+  static final int ARRAY = 4;
+  static final int MAP = 5;
+
+  static final byte FALSE = (byte) 0xF4;
+  static final byte TRUE = (byte) 0xF5;
+  static final byte NULL = (byte) 0xF6;
+  static final byte FLOAT = (byte) 0xFA;
+  static final byte DOUBLE = (byte) 0xFB;
+  static final byte INDEFINITE_ARRAY = (byte) 0x9F;
+  static final byte INDEFINITE_MAP = (byte) 0xBF;
+  static final byte BREAK = (byte) 0xFF;
+
+  private static final int BUFFER_SIZE = 8_192;
+
+  private final OutputStream outputStream;
+  private byte[] buffer = new byte[BUFFER_SIZE];
+  private int length;
+
+  CBOROutput(OutputStream outputStream) {
+    this.outputStream = outputStream;
+  }
+
+  private void ensureCapacity(int size) {
+    if (length + size <= buffer.length) {
+      return;
+    }
+    if (outputStream != null) {
+      flush();
+      if (size <= buffer.length) {
+        return;
+      }
+    }
+    buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, length + size));
+  }
+
+  /**
+   * Writes the content of the buffer to the output stream.
+   */
+  void flush() {
+    try {
+      outputStream.write(buffer, 0, length);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    length = 0;
+  }
+
+  /**
+   * Returns the bytes written if there is no output stream.
+   */
+  byte[] toByteArray() {
+    return Arrays.copyOf(buffer, length);
+  }
+
+  void write(byte b) {
+    ensureCapacity(1);
+    buffer[length++] = b;
+  }
+
+  void write(byte[] bytes) {
+    ensureCapacity(bytes.length);
+    System.arraycopy(bytes, 0, buffer, length, bytes.length);
+    length += bytes.length;
+  }
+
+  /**
+   * Writes the first bytes of an item, its major type and its argument
+   * using the shortest encoding.
+   */
+  void writeHead(int majorType, long argument) {
+    ensureCapacity(9);
+    var buffer = this.buffer;
+    var major = majorType << 5;
+    if (argument < 24) {
+      buffer[length++] = (byte) (major | argument);
+      return;
+    }
+    int size;
+    if (argument < 0x100) {
+      buffer[length++] = (byte) (major | 24);
+      size = 1;
+    } else if (argument < 0x1_0000) {
+      buffer[length++] = (byte) (major | 25);
+      size = 2;
+    } else if (argument < 0x1_0000_0000L) {
+      buffer[length++] = (byte) (major | 26);
+      size = 4;
+    } else {
+      buffer[length++] = (byte) (major | 27);
+      size = 8;
+    }
+    for(var shift = (size - 1) << 3; shift >= 0; shift -= 8) {
+      buffer[length++] = (byte) (argument >>> shift);
+    }
+  }
+
+  void writeLong(long value) {
+    if (value >= 0) {
+      writeHead(UNSIGNED, value);
+    } else {
+      writeHead(NEGATIVE, -1 - value);
+    }
+  }
+
+  /**
+   * Writes a double as a float if there is no loss of precision.
+   */
+  void writeDouble(double value) {
+    var floatValue = (float) value;
+    if (floatValue == value) {
+      writeFloat(floatValue);
+      return;
+    }
+    ensureCapacity(9);
+    buffer[length++] = DOUBLE;
+    var bits = Double.doubleToLongBits(value);
+    for(var shift = 56; shift >= 0; shift -= 8) {
+      buffer[length++] = (byte) (bits >>> shift);
+    }
+  }
+
+  void writeFloat(float value) {
+    ensureCapacity(5);
+    buffer[length++] = FLOAT;
+    var bits = Float.floatToIntBits(value);
+    for(var shift = 24; shift >= 0; shift -= 8) {
+      buffer[length++] = (byte) (bits >>> shift);
+    }
+  }
+
+  void writeBoolean(boolean value) {
+    write(value ? TRUE : FALSE);
+  }
+
+  void writeString(String text) {
+    var textLength = text.length();
+    var ascii = true;
+    for(var i = 0; i < textLength; i++) {
+      if (text.charAt(i) >= 0x80) {
+        ascii = false;
+        break;
+      }
+    }
+    if (!ascii) {
+      var bytes = text.getBytes(UTF_8);
+      writeHead(TEXT, bytes.length);
+      write(bytes);
+      return;
+    }
+    writeHead(TEXT, textLength);
+    ensureCapacity(textLength);
+    var buffer = this.buffer;
+    for(var i = 0; i < textLength; i++) {
+      buffer[length + i] = (byte) text.charAt(i);
+    }
+    length += textLength;
+  }
+
+  /**
+   * Returns the encoding of a string, so it does not have to be encoded each time it is written.
+   */
+  static byte[] encodeString(String text) {
+    var output = new CBOROutput(null);
+    output.writeString(text);
+    return output.toByteArray();
+  }
+
+  /**
+   * Writes the value of a JSON text, the objects and the arrays are encoded with an indefinite length.
+   */
+  void writeJSON(String text) {
+    ToyJSONParser.parse("[" + text + "]", new JSONVisitor() {
+      private int depth;
+
+      private void key(String key) {
+        if (key != null) {
+          writeString(key);
+        }
+      }
+
+      @Override
+      public void value(String key, Object value) {
+        key(key);
+        if (value == null) {
+          write(NULL);
+        } else if (value instanceof String string) {
+          writeString(string);
+        } else if (value instanceof Double doubleValue) {
+          writeDouble(doubleValue);
+        } else if (value instanceof Boolean booleanValue) {
+          writeBoolean(booleanValue);
+        } else {
+          writeLong(((Number) value).longValue());
+        }
+      }
+
+      @Override
+      public void startObject(String key) {
+        key(key);
+        write(INDEFINITE_MAP);
+        depth++;
+      }
+
+      @Override
+      public void endObject(String key) {
+        write(BREAK);
+        depth--;
+      }
+
+      @Override
+      public void startArray(String key) {
+        if (depth++ != 0) {  // not the enclosing array
+          key(key);
+          write(INDEFINITE_ARRAY);
+        }
+      }
+
+      @Override
+      public void endArray(String key) {
+        if (--depth != 0) {
+          write(BREAK);
+        }
+      }
+    });
+  }
+}
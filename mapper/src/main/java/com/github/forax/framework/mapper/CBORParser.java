@@ -0,0 +1,306 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A parser of CBOR (RFC 8949) that calls a {@link JSONVisitor}, so a CBOR item is decoded
+ * by the same visitors and collectors as a JSON text.
+ *
+ * Only the subset of CBOR that has an equivalent in JSON is supported, the maps must have text keys,
+ * the byte strings are not supported, the tags are ignored and undefined is decoded as null.
+ * Like for JSON, the top level item must be a map or an array.
+ */
+final class CBORParser {
+  private static final int INDEFINITE = -1;
+
+  private final ByteBuffer input;
+  private final int end;
+  private final JSONVisitor visitor;
+  private final SymbolTable symbols;
+  private int index;
+
+  private CBORParser(ByteBuffer input, JSONVisitor visitor, SymbolTable symbols) {
+    this.input = input;
+    this.index = input.position();
+    this.end = input.limit();
+    this.visitor = visitor;
+    this.symbols = symbols;
+  }
+
+  /**
+   * Parses a CBOR item stored in a byte buffer between its position and its limit,
+   * the position of the buffer is not changed.
+   *
+   * @param input the encoded item.
+   * @param visitor the visitor called for each value.
+   * @param symbols the symbol table of the keys or null.
+   * @throws IllegalStateException if the item is not valid or not supported.
+   */
+  static void parse(ByteBuffer input, JSONVisitor visitor, SymbolTable symbols) {
+    var parser = new CBORParser(input, visitor, symbols);
+    var majorType = (parser.peek() & 0xFF) >>> 5;
+    if (majorType != CBOROutput.ARRAY && majorType != CBOROutput.MAP) {
+      throw new IllegalStateException("expect a map or an array at " + parser.index);
+    }
+    parser.parseItem(null);
+    if (parser.index != parser.end) {
+      throw new IllegalStateException("no data expected after the end of the item at " + parser.index);
+    }
+  }
+
+  private byte peek() {
+    if (index == end) {
+      throw new IllegalStateException("unexpected end of input at " + index);
+    }
+    return input.get(index);
+  }
+
+  private int readByte() {
+    var b = peek();
+    index++;
+    return b & 0xFF;
+  }
+
+  /**
+   * Reads the argument of an item encoded by its additional information,
+   * returns {@link #INDEFINITE} for an indefinite length.
+   */
+  private long argument(int info) {
+    if (info < 24) {
+      return info;
+    }
+    var size = switch(info) {
+      case 24 -> 1;
+      case 25 -> 2;
+      case 26 -> 4;
+      case 27 -> 8;
+      case 31 -> 0;
+      default -> throw new IllegalStateException("invalid additional information " + info + " at " + (index - 1));
+    };
+    if (size == 0) {
+      return INDEFINITE;
+    }
+    if (end - index < size) {
+      throw new IllegalStateException("unexpected end of input at " + end);
+    }
+    var argument = 0L;
+    for(var i = 0; i < size; i++) {
+      argument = argument << 8 | (input.get(index++) & 0xFF);
+    }
+    return argument;
+  }
+
+  /**
+   * Reads the length of a string, an array or a map, or {@link #INDEFINITE},
+   * the length is checked against the remaining bytes, each element is at least one byte.
+   */
+  private int length(int info) {
+    var length = argument(info);
+    if (length == INDEFINITE) {
+      return INDEFINITE;
+    }
+    if (length < 0 || length > end - index) {
+      throw new IllegalStateException("invalid length " + Long.toUnsignedString(length) + " at " + index);
+    }
+    return (int) length;
+  }
+
+  private boolean isBreak() {
+    if (peek() == CBOROutput.BREAK) {
+      index++;
+      return true;
+    }
+    return false;
+  }
+
+  private void parseItem(String key) {
+    var initialByte = readByte();
+    var info = initialByte & 0x1F;
+    switch(initialByte >>> 5) {
+      case CBOROutput.UNSIGNED -> {
+        var value = argument(info);
+        if (value < 0) {
+          throw new IllegalStateException("integer too large at " + index);
+        }
+        if (value <= Integer.MAX_VALUE) {
+          visitor.valueInt(key, (int) value);
+        } else {
+          visitor.valueLong(key, value);
+        }
+      }
+      case CBOROutput.NEGATIVE -> {
+        var argument = argument(info);
+        if (argument < 0) {
+          throw new IllegalStateException("integer too small at " + index);
+        }
+        var value = -1 - argument;
+        if (value >= Integer.MIN_VALUE) {
+          visitor.valueInt(key, (int) value);
+        } else {
+          visitor.valueLong(key, value);
+        }
+      }
+      case CBOROutput.TEXT -> visitor.value(key, text(info, false));
+      case CBOROutput.ARRAY -> {
+        visitor.startArray(key);
+        var length = length(info);
+        if (length == INDEFINITE) {
+          while(!isBreak()) {
+            parseItem(null);
+          }
+        } else {
+          for(var i = 0; i < length; i++) {
+            parseItem(null);
+          }
+        }
+        visitor.endArray(key);
+      }
+      case CBOROutput.MAP -> {
+        visitor.startObject(key);
+        var length = length(info);
+        for(var i = 0; length == INDEFINITE ? !isBreak() : i < length; i++) {
+          var memberKey = key();
+          if (visitor.skipValue(memberKey)) {
+            skipItem();
+          } else {
+            parseItem(memberKey);
+          }
+        }
+        visitor.endObject(key);
+      }
+      case 6 -> {  // tag
+        argument(info);
+        parseItem(key);
+      }
+      case 7 -> simple(key, info);
+      default -> throw new IllegalStateException("byte strings are not supported at " + (index - 1));
+    }
+  }
+
+  private String key() {
+    var initialByte = readByte();
+    if (initialByte >>> 5 != CBOROutput.TEXT) {
+      throw new IllegalStateException("expect a text key at " + (index - 1));
+    }
+    return text(initialByte & 0x1F, true);
+  }
+
+  private String text(int info, boolean isKey) {
+    var length = length(info);
+    if (length == INDEFINITE) {  // a sequence of definite length chunks
+      var bytes = new ByteArrayOutputStream();
+      while(!isBreak()) {
+        var initialByte = readByte();
+        var chunkLength = length(initialByte & 0x1F);
+        if (initialByte >>> 5 != CBOROutput.TEXT || chunkLength == INDEFINITE) {
+          throw new IllegalStateException("invalid chunk of text at " + (index - 1));
+        }
+        for(var i = 0; i < chunkLength; i++) {
+          bytes.write(input.get(index++));
+        }
+      }
+      var text = bytes.toString(UTF_8);
+      return isKey && symbols != null ? symbols.symbol(text) : text;
+    }
+    var start = index;
+    index += length;
+    if (isKey && symbols != null) {
+      var symbol = symbols.symbol(input, start, index);
+      if (symbol != null) {
+        return symbol;
+      }
+      return symbols.symbol(decode(start, length));
+    }
+    return decode(start, length);
+  }
+
+  private String decode(int start, int length) {
+    if (input.hasArray()) {
+      return new String(input.array(), input.arrayOffset() + start, length, UTF_8);
+    }
+    var bytes = new byte[length];
+    input.get(start, bytes);
+    return new String(bytes, UTF_8);
+  }
+
+  private void simple(String key, int info) {
+    switch(info) {
+      case 20 -> visitor.valueBoolean(key, false);
+      case 21 -> visitor.valueBoolean(key, true);
+      case 22, 23 -> visitor.value(key, null);
+      case 25 -> visitor.valueDouble(key, halfToDouble((int) argument(info)));
+      case 26 -> visitor.valueDouble(key, Float.intBitsToFloat((int) argument(info)));
+      case 27 -> visitor.valueDouble(key, Double.longBitsToDouble(argument(info)));
+      default -> throw new IllegalStateException("unsupported simple value " + info + " at " + (index - 1));
+    }
+  }
+
+  /**
+   * Decodes a half-precision float (RFC 8949 appendix D).
+   */
+  private static double halfToDouble(int half) {
+    var exponent = (half >> 10) & 0x1F;
+    var mantissa = half & 0x3FF;
+    double value;
+    if (exponent == 0) {
+      value = Math.scalb((double) mantissa, -24);
+    } else if (exponent != 31) {
+      value = Math.scalb((double) (mantissa + 1_024), exponent - 25);
+    } else {
+      value = mantissa == 0 ? Double.POSITIVE_INFINITY : Double.NaN;
+    }
+    return (half & 0x8000) != 0 ? -value : value;
+  }
+
+  /**
+   * Skips an item without decoding it.
+   */
+  private void skipItem() {
+    var initialByte = readByte();
+    var majorType = initialByte >>> 5;
+    var info = initialByte & 0x1F;
+    switch(majorType) {
+      case CBOROutput.UNSIGNED, CBOROutput.NEGATIVE, 7 -> {
+        if (info == 31) {
+          throw new IllegalStateException("unexpected break at " + (index - 1));
+        }
+        argument(info);
+      }
+      case 2, CBOROutput.TEXT -> {
+        var length = length(info);
+        if (length == INDEFINITE) {
+          while(!isBreak()) {
+            skipItem();
+          }
+        } else {
+          index += length;
+        }
+      }
+      case CBOROutput.ARRAY, CBOROutput.MAP -> {
+        var length = length(info);
+        var itemsPerEntry = majorType == CBOROutput.MAP ? 2 : 1;
+        if (length == INDEFINITE) {
+          while(!isBreak()) {
+            for(var i = 0; i < itemsPerEntry; i++) {
+              skipItem();
+            }
+          }
+        } else {
+          for(var i = 0L; i < (long) length * itemsPerEntry; i++) {
+            skipItem();
+          }
+        }
+      }
+      case 6 -> {
+        argument(info);
+        skipItem();
+      }
+      default -> throw new AssertionError();
+    }
+  }
+}
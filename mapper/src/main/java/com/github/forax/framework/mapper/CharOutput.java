@@ -0,0 +1,148 @@
+package com.github.forax.framework.mapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * An output that writes characters, the fragments of the JSON text are written in a buffer
+ * which is flushed to a sink when full, so the size of the buffer does not depend on the size
+ * of the JSON text. If there is no sink, the buffer grows and contains the whole JSON text.
+ */
+final class CharOutput extends JSONOutput {
+  private static final int BUFFER_SIZE = 8_192;
+
+  private final Appendable sink;
+  private char[] buffer;
+  private int size;
+
+  /**
+   * Creates an output.
+   * @param sink the sink or {@code null} if the text is kept in the buffer.
+   */
+  CharOutput(Appendable sink) {
+    this.sink = sink;
+    this.buffer = new char[sink == null ? 256 : BUFFER_SIZE];
+  }
+
+  /**
+   * Makes room for length characters.
+   * @return false if the characters can not fit in the buffer and should be written directly to the sink.
+   */
+  private boolean ensure(int length) {
+    if (size + length <= buffer.length) {
+      return true;
+    }
+    if (sink != null) {
+      flushBuffer();
+      return length <= buffer.length;
+    }
+    buffer = Arrays.copyOf(buffer, Math.max(buffer.length << 1, size + length));
+    return true;
+  }
+
+  private void flushBuffer() {
+    try {
+      if (sink instanceof Writer writer) {
+        writer.write(buffer, 0, size);
+      } else if (sink instanceof StringBuilder builder) {
+        builder.append(buffer, 0, size);
+      } else {
+        sink.append(CharBuffer.wrap(buffer, 0, size));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    size = 0;
+  }
+
+  @Override
+  void append(char c) {
+    if (size == buffer.length) {
+      ensure(1);
+    }
+    buffer[size++] = c;
+  }
+
+  @Override
+  void append(String text) {
+    var length = text.length();
+    if (!ensure(length)) {
+      try {
+        sink.append(text);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return;
+    }
+    text.getChars(0, length, buffer, size);
+    size += length;
+  }
+
+  /**
+   * Appends the characters of the text between start and end.
+   */
+  private void append(String text, int start, int end) {
+    var length = end - start;
+    if (!ensure(length)) {
+      try {
+        sink.append(text, start, end);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return;
+    }
+    text.getChars(start, end, buffer, size);
+    size += length;
+  }
+
+  @Override
+  void appendASCII(byte[] bytes, int length) {
+    ensure(length);  // always fits, the buffer is bigger than a number
+    var buffer = this.buffer;
+    var size = this.size;
+    for(var i = 0; i < length; i++) {
+      buffer[size + i] = (char) bytes[i];
+    }
+    this.size = size + length;
+  }
+
+  @Override
+  void append(Fragment fragment) {
+    append(fragment.text());
+  }
+
+  @Override
+  void appendString(String text) {
+    append('"');
+    var length = text.length();
+    var start = 0;
+    for(var index = nextEscape(text, 0); index != length; index = nextEscape(text, start)) {
+      if (start != index) {
+        append(text, start, index);
+      }
+      append(escape(text.charAt(index)));
+      start = index + 1;
+    }
+    if (start == 0) {
+      append(text);
+    } else {
+      append(text, start, length);
+    }
+    append('"');
+  }
+
+  @Override
+  void flush() {
+    if (size != 0) {
+      flushBuffer();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return new String(buffer, 0, size);
+  }
+}
@@ -0,0 +1,16 @@
+package com.github.forax.framework.mapper;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Asks {@link JSONCodecProcessor} to generate the {@link JSONCodec} of a record or a bean at compile time,
+ * so {@link JSONWriter} and {@link JSONReader} do not have to introspect the class at runtime.
+ */
+@Retention(SOURCE)
+@Target(TYPE)
+public @interface GenerateJSONCodec {
+}
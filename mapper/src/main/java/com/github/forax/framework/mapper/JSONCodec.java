@@ -0,0 +1,148 @@
+package com.github.forax.framework.mapper;
+
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A codec of a record or a bean generated at compile time by {@link JSONCodecProcessor}
+ * for the classes annotated with {@link GenerateJSONCodec}.
+ *
+ * The generated codecs are registered as services, {@link JSONWriter} and {@link JSONReader}
+ * find them using a {@link java.util.ServiceLoader} and use them instead of introspecting
+ * the class with {@link java.beans.Introspector} and the reflection.
+ *
+ * To write a value, a codec calls {@link Output} with the index of each key in {@link #keys()}.
+ * To read a value, a codec creates a builder, populates it with the values of each key,
+ * the names of the properties or the record components, and creates the value from the builder.
+ *
+ * @param <T> the type of the values.
+ */
+public interface JSONCodec<T> {
+  /**
+   * The output of a codec, each value is written after its key referenced by its index in {@link #keys()}.
+   */
+  interface Output {
+    void property(int index, String value);
+    void property(int index, int value);
+    void property(int index, long value);
+    void property(int index, float value);
+    void property(int index, double value);
+    void property(int index, boolean value);
+
+    /**
+     * Writes a value using its runtime class, if the value is not a String or a primitive.
+     */
+    void property(int index, Object value);
+  }
+
+  /**
+   * Returns the class of the values.
+   */
+  Class<T> type();
+
+  /**
+   * Returns the keys of the JSON objects written by this codec, in order.
+   */
+  List<String> keys();
+
+  /**
+   * Writes the properties of a value.
+   */
+  void write(T value, Output output);
+
+  /**
+   * Returns the type of the value of a key or {@code null} if the key is unknown.
+   */
+  Type keyType(String key);
+
+  /**
+   * Creates the builder used to decode a value.
+   */
+  Object newBuilder();
+
+  /**
+   * Inserts the value of a key in the builder.
+   */
+  void populate(Object builder, String key, Object value);
+
+  /**
+   * Creates the value from the builder.
+   */
+  T build(Object builder);
+
+  /**
+   * Returns the type of a generic class parameterized by some type arguments,
+   * equal to the type returned by the reflection.
+   * Called by the generated codecs.
+   */
+  static Type parameterized(Class<?> rawType, Type... typeArguments) {
+    Objects.requireNonNull(rawType);
+    Objects.requireNonNull(typeArguments);
+    return Utils.parameterizedType(rawType, typeArguments);
+  }
+
+  /**
+   * Converts a decoded value to an int, {@code null} (the key is absent) is converted to 0.
+   * Called by the generated codecs.
+   */
+  static int asInt(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof Integer integer) {
+      return integer;
+    }
+    throw new IllegalStateException("invalid value " + value + " for an int");
+  }
+
+  /**
+   * Converts a decoded value to a long, {@code null} (the key is absent) is converted to 0.
+   * Called by the generated codecs.
+   */
+  static long asLong(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof Integer || value instanceof Long) {
+      return ((Number) value).longValue();
+    }
+    throw new IllegalStateException("invalid value " + value + " for a long");
+  }
+
+  /**
+   * Converts a decoded value to a float, {@code null} (the key is absent) is converted to 0.
+   * Called by the generated codecs.
+   */
+  static float asFloat(Object value) {
+    return (float) asDouble(value);
+  }
+
+  /**
+   * Converts a decoded value to a double, {@code null} (the key is absent) is converted to 0.
+   * Called by the generated codecs.
+   */
+  static double asDouble(Object value) {
+    if (value == null) {
+      return 0;
+    }
+    if (value instanceof Integer || value instanceof Long || value instanceof Double) {
+      return ((Number) value).doubleValue();
+    }
+    throw new IllegalStateException("invalid value " + value + " for a double");
+  }
+
+  /**
+   * Converts a decoded value to a boolean, {@code null} (the key is absent) is converted to false.
+   * Called by the generated codecs.
+   */
+  static boolean asBoolean(Object value) {
+    if (value == null) {
+      return false;
+    }
+    if (value instanceof Boolean booleanValue) {
+      return booleanValue;
+    }
+    throw new IllegalStateException("invalid value " + value + " for a boolean");
+  }
+}
@@ -0,0 +1,376 @@
+package com.github.forax.framework.mapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Serial;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static java.util.stream.Collectors.joining;
+
+/**
+ * An annotation processor that generates the {@link JSONCodec} of the records and the beans
+ * annotated with {@link GenerateJSONCodec}. The codec of a class {@code Foo} is the class
+ * {@code Foo_JSONCodec} of the same package, the codecs are registered in the service file
+ * {@code META-INF/services/com.github.forax.framework.mapper.JSONCodec}.
+ *
+ * A generated codec writes the same JSON text as the reflective serializer: the components of a record
+ * in order, the properties of a bean sorted by name (like {@link java.beans.Introspector}), each key renamed
+ * by {@link JSONProperty}; and it decodes the same keys as the reflective collectors, the names of
+ * the record components or of the setters of the bean.
+ *
+ * The service file is written when all the sources are processed, so a build that only recompiles
+ * some of the annotated classes has to be a full build.
+ */
+@SupportedAnnotationTypes("com.github.forax.framework.mapper.GenerateJSONCodec")
+public final class JSONCodecProcessor extends AbstractProcessor {
+  private static final String CODEC = JSONCodec.class.getName();
+
+  /**
+   * A property written by the codec, its JSON key and the Java expression that reads it.
+   */
+  private record WriteProperty(String key, String getter, TypeMirror type) {}
+
+  /**
+   * A property read by the codec, its name, its type and the name of its setter or {@code null} for a record component.
+   */
+  private record ReadProperty(String name, TypeMirror type, String setter) {}
+
+  private static final class UnsupportedTypeException extends Exception {
+    @Serial
+    private static final long serialVersionUID = 1;
+
+    private final transient Element element;  // never serialized, the exception does not escape the processor
+
+    private UnsupportedTypeException(String message, Element element) {
+      super(message, null, false, false);
+      this.element = element;
+    }
+  }
+
+  private final ArrayList<String> codecNames = new ArrayList<>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+    for(var element: roundEnv.getElementsAnnotatedWith(GenerateJSONCodec.class)) {
+      try {
+        generate((TypeElement) element);
+      } catch (UnsupportedTypeException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+      } catch (IOException e) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not write the codec " + e.getMessage(), element);
+      }
+    }
+    if (roundEnv.processingOver() && !codecNames.isEmpty()) {
+      writeServiceFile();
+    }
+    return true;
+  }
+
+  private void writeServiceFile() {
+    var filer = processingEnv.getFiler();
+    try(var writer = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/services/" + CODEC).openWriter()) {
+      for(var codecName: codecNames) {
+        writer.write(codecName + "\n");
+      }
+    } catch (IOException e) {
+      processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "can not write the service file " + e.getMessage());
+    }
+  }
+
+  private static void checkAccessible(TypeElement type) throws UnsupportedTypeException {
+    if (type.getKind() != ElementKind.RECORD && type.getKind() != ElementKind.CLASS) {
+      throw new UnsupportedTypeException("only a record or a class can have a generated codec", type);
+    }
+    if (!type.getTypeParameters().isEmpty()) {
+      throw new UnsupportedTypeException("a generic class can not have a generated codec", type);
+    }
+    if (type.getKind() == ElementKind.CLASS && type.getModifiers().contains(Modifier.ABSTRACT)) {
+      throw new UnsupportedTypeException("an abstract class can not have a generated codec", type);
+    }
+    var nesting = type.getNestingKind();
+    if (nesting != NestingKind.TOP_LEVEL && !(nesting == NestingKind.MEMBER && type.getModifiers().contains(Modifier.STATIC))) {
+      throw new UnsupportedTypeException("the class should be a top level class or a static member class", type);
+    }
+    for(Element element = type; element instanceof TypeElement typeElement; element = element.getEnclosingElement()) {
+      if (typeElement.getModifiers().contains(Modifier.PRIVATE)) {
+        throw new UnsupportedTypeException("the class should be accessible from its package", type);
+      }
+    }
+  }
+
+  private void generate(TypeElement type) throws UnsupportedTypeException, IOException {
+    checkAccessible(type);
+    List<WriteProperty> writeProperties;
+    List<ReadProperty> readProperties;
+    if (type.getKind() == ElementKind.RECORD) {
+      writeProperties = new ArrayList<>();
+      readProperties = new ArrayList<>();
+      for(var component: type.getRecordComponents()) {
+        var name = component.getSimpleName().toString();
+        var annotation = component.getAccessor().getAnnotation(JSONProperty.class);
+        if (annotation == null) {
+          annotation = component.getAnnotation(JSONProperty.class);
+        }
+        writeProperties.add(new WriteProperty(annotation == null ? name : annotation.value(), name + "()", component.asType()));
+        readProperties.add(new ReadProperty(name, component.asType(), null));
+      }
+    } else {
+      var hasDefaultConstructor = ElementFilter.constructorsIn(type.getEnclosedElements()).stream()
+          .anyMatch(constructor -> constructor.getParameters().isEmpty() && !constructor.getModifiers().contains(Modifier.PRIVATE));
+      if (!hasDefaultConstructor) {
+        throw new UnsupportedTypeException("a bean should have a default constructor", type);
+      }
+      var getters = new TreeMap<String, WriteProperty>();
+      var setters = new TreeMap<String, ReadProperty>();
+      for(var method: ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type))) {
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || method.getModifiers().contains(Modifier.STATIC)) {
+          continue;
+        }
+        var methodName = method.getSimpleName().toString();
+        var parameterCount = method.getParameters().size();
+        var returnType = method.getReturnType();
+        if (parameterCount == 0 && returnType.getKind() != TypeKind.VOID) {
+          var propertyName = methodName.startsWith("get") ? propertyName(methodName, 3)
+              : methodName.startsWith("is") && returnType.getKind() == TypeKind.BOOLEAN ? propertyName(methodName, 2)
+              : null;
+          if (propertyName != null && !propertyName.equals("class")) {
+            var annotation = method.getAnnotation(JSONProperty.class);
+            getters.putIfAbsent(propertyName,
+                new WriteProperty(annotation == null ? propertyName : annotation.value(), methodName + "()", returnType));
+          }
+        } else if (parameterCount == 1 && returnType.getKind() == TypeKind.VOID && methodName.startsWith("set")) {
+          var propertyName = propertyName(methodName, 3);
+          if (propertyName != null) {
+            setters.putIfAbsent(propertyName, new ReadProperty(propertyName, method.getParameters().get(0).asType(), methodName));
+          }
+        }
+      }
+      writeProperties = List.copyOf(getters.values());
+      readProperties = List.copyOf(setters.values());
+    }
+
+    var elements = processingEnv.getElementUtils();
+    var packageName = elements.getPackageOf(type).getQualifiedName().toString();
+    var binaryName = elements.getBinaryName(type).toString();
+    var simpleName = (packageName.isEmpty() ? binaryName : binaryName.substring(packageName.length() + 1)).replace('$', '_') + "_JSONCodec";
+    var codecName = packageName.isEmpty() ? simpleName : packageName + '.' + simpleName;
+    var source = codecSource(type, packageName, simpleName, writeProperties, readProperties);
+    try(var writer = processingEnv.getFiler().createSourceFile(codecName, type).openWriter()) {
+      writer.write(source);
+    }
+    codecNames.add(codecName);
+  }
+
+  /**
+   * Returns the name of a property from the name of its getter or its setter,
+   * decapitalized like {@link java.beans.Introspector#decapitalize(String)}, or {@code null}.
+   */
+  private static String propertyName(String methodName, int prefixLength) {
+    if (methodName.length() == prefixLength) {
+      return null;
+    }
+    var name = methodName.substring(prefixLength);
+    if (name.length() > 1 && Character.isUpperCase(name.charAt(0)) && Character.isUpperCase(name.charAt(1))) {
+      return name;
+    }
+    return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+  }
+
+  private String codecSource(TypeElement type, String packageName, String simpleName,
+                             List<WriteProperty> writeProperties, List<ReadProperty> readProperties) throws UnsupportedTypeException {
+    var elements = processingEnv.getElementUtils();
+    var typeName = type.getQualifiedName().toString();
+    var isRecord = type.getKind() == ElementKind.RECORD;
+    var builder = new StringBuilder();
+    if (!packageName.isEmpty()) {
+      builder.append("package ").append(packageName).append(";\n\n");
+    }
+    builder.append("""
+        @javax.annotation.processing.Generated("%s")
+        @SuppressWarnings("unchecked")
+        public final class %s implements %s<%s> {
+        """.formatted(JSONCodecProcessor.class.getName(), simpleName, CODEC, typeName));
+    for(var i = 0; i < readProperties.size(); i++) {
+      var property = readProperties.get(i);
+      builder.append("  private static final java.lang.reflect.Type TYPE_").append(i).append(" = ")
+          .append(typeLiteral(property.type, type)).append(";\n");
+    }
+    builder.append("  private static final java.util.List<java.lang.String> KEYS = java.util.List.of(")
+        .append(writeProperties.stream().map(property -> elements.getConstantExpression(property.key)).collect(joining(", ")))
+        .append(");\n\n");
+
+    builder.append("""
+          public %1$s() {}
+
+          @Override
+          public java.lang.Class<%2$s> type() {
+            return %2$s.class;
+          }
+
+          @Override
+          public java.util.List<java.lang.String> keys() {
+            return KEYS;
+          }
+
+          @Override
+          public void write(%2$s value, %3$s.Output output) {
+        """.formatted(simpleName, typeName, CODEC));
+    for(var i = 0; i < writeProperties.size(); i++) {
+      var property = writeProperties.get(i);
+      var getter = "value." + property.getter;
+      builder.append("    output.property(").append(i).append(", ")
+          .append(property.type.getKind() == TypeKind.CHAR ? "(java.lang.Object) " + getter : getter)  // written as a Character
+          .append(");\n");
+    }
+    builder.append("""
+          }
+
+          @Override
+          public java.lang.reflect.Type keyType(java.lang.String key) {
+            return switch(key) {
+        """);
+    for(var i = 0; i < readProperties.size(); i++) {
+      builder.append("      case ").append(elements.getConstantExpression(readProperties.get(i).name))
+          .append(" -> TYPE_").append(i).append(";\n");
+    }
+    builder.append("""
+              default -> null;
+            };
+          }
+
+          @Override
+          public java.lang.Object newBuilder() {
+            return %s;
+          }
+
+          @Override
+          public void populate(java.lang.Object builder, java.lang.String key, java.lang.Object value) {
+            var %s = (%s) builder;
+            switch(key) {
+        """.formatted(isRecord ? "new java.lang.Object[" + readProperties.size() + "]" : "new " + typeName + "()",
+            isRecord ? "values" : "bean", isRecord ? "java.lang.Object[]" : typeName));
+    for(var i = 0; i < readProperties.size(); i++) {
+      var property = readProperties.get(i);
+      builder.append("      case ").append(elements.getConstantExpression(property.name)).append(" -> ")
+          .append(isRecord ? "values[" + i + "] = value" : "bean." + property.setter + "(" + conversion(property.type, "value") + ")")
+          .append(";\n");
+    }
+    builder.append("""
+              default -> throw new java.lang.IllegalStateException("unknown key " + key + " for %s %s");
+            }
+          }
+
+          @Override
+          public %s build(java.lang.Object builder) {
+        """.formatted(isRecord ? "record" : "bean", typeName, typeName));
+    if (isRecord) {
+      builder.append("    var values = (java.lang.Object[]) builder;\n")
+          .append("    return new ").append(typeName).append("(");
+      for(var i = 0; i < readProperties.size(); i++) {
+        builder.append(i == 0 ? "" : ", ").append(conversion(readProperties.get(i).type, "values[" + i + "]"));
+      }
+      builder.append(");\n");
+    } else {
+      builder.append("    return (").append(typeName).append(") builder;\n");
+    }
+    builder.append("""
+          }
+        }
+        """);
+    return builder.toString();
+  }
+
+  /**
+   * Returns the expression that converts a decoded value to a type.
+   */
+  private static String conversion(TypeMirror type, String value) {
+    return switch(type.getKind()) {
+      case INT -> "com.github.forax.framework.mapper.JSONCodec.asInt(" + value + ")";
+      case LONG -> "com.github.forax.framework.mapper.JSONCodec.asLong(" + value + ")";
+      case FLOAT -> "com.github.forax.framework.mapper.JSONCodec.asFloat(" + value + ")";
+      case DOUBLE -> "com.github.forax.framework.mapper.JSONCodec.asDouble(" + value + ")";
+      case BOOLEAN -> "com.github.forax.framework.mapper.JSONCodec.asBoolean(" + value + ")";
+      case SHORT, BYTE, CHAR -> "(" + type.getKind().name().toLowerCase() + ") com.github.forax.framework.mapper.JSONCodec.asInt(" + value + ")";
+      default -> "(" + sourceType(type) + ") " + value;
+    };
+  }
+
+  /**
+   * Returns the source code of a type, without its type annotations.
+   */
+  private static String sourceType(TypeMirror type) {
+    return switch(type.getKind()) {
+      case DECLARED -> {
+        var declaredType = (DeclaredType) type;
+        var name = ((TypeElement) declaredType.asElement()).getQualifiedName().toString();
+        var typeArguments = declaredType.getTypeArguments();
+        yield typeArguments.isEmpty() ? name
+            : name + typeArguments.stream().map(JSONCodecProcessor::sourceType).collect(joining(", ", "<", ">"));
+      }
+      case ARRAY -> sourceType(((ArrayType) type).getComponentType()) + "[]";
+      case WILDCARD -> {
+        var wildcardType = (WildcardType) type;
+        yield wildcardType.getExtendsBound() != null ? "? extends " + sourceType(wildcardType.getExtendsBound())
+            : wildcardType.getSuperBound() != null ? "? super " + sourceType(wildcardType.getSuperBound())
+            : "?";
+      }
+      default -> type.getKind().name().toLowerCase();  // primitive types
+    };
+  }
+
+  /**
+   * Returns the expression of the {@link java.lang.reflect.Type} of a property.
+   */
+  private static String typeLiteral(TypeMirror type, TypeElement element) throws UnsupportedTypeException {
+    switch(type.getKind()) {
+      case BOOLEAN, BYTE, SHORT, INT, LONG, CHAR, FLOAT, DOUBLE -> {
+        return type.getKind().name().toLowerCase() + ".class";
+      }
+      case ARRAY -> {
+        var componentType = ((ArrayType) type).getComponentType();
+        var literal = typeLiteral(componentType, element);
+        if (literal.endsWith(".class")) {  // not a generic array
+          return sourceType(type) + ".class";
+        }
+      }
+      case DECLARED -> {
+        var declaredType = (DeclaredType) type;
+        var rawType = ((TypeElement) declaredType.asElement()).getQualifiedName() + ".class";
+        if (declaredType.getTypeArguments().isEmpty()) {
+          return rawType;
+        }
+        var builder = new StringBuilder("com.github.forax.framework.mapper.JSONCodec.parameterized(").append(rawType);
+        for(var typeArgument: declaredType.getTypeArguments()) {
+          builder.append(", ").append(typeLiteral(typeArgument, element));
+        }
+        return builder.append(")").toString();
+      }
+      default -> {}
+    }
+    throw new UnsupportedTypeException("the type " + type + " of a property is not supported by the generated codecs", element);
+  }
+}
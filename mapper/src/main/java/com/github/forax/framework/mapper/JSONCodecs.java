@@ -0,0 +1,37 @@
+package com.github.forax.framework.mapper;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.ServiceLoader;
+
+/**
+ * The codecs generated at compile time, registered as services of {@link JSONCodec}.
+ * The services are loaded once, the first time a codec is requested.
+ */
+final class JSONCodecs {
+  private JSONCodecs() {
+    throw new AssertionError();
+  }
+
+  private static final class Holder {
+    private static final Map<Class<?>, JSONCodec<?>> CODECS = load();
+  }
+
+  private static Map<Class<?>, JSONCodec<?>> load() {
+    @SuppressWarnings("unchecked")  // a class literal can not be parameterized
+    var service = (Class<JSONCodec<?>>) (Class<?>) JSONCodec.class;
+    var codecs = new HashMap<Class<?>, JSONCodec<?>>();
+    for(var codec: ServiceLoader.load(service)) {
+      codecs.putIfAbsent(codec.type(), codec);
+    }
+    return Map.copyOf(codecs);
+  }
+
+  /**
+   * Returns the generated codec of a class or {@code null}.
+   */
+  @SuppressWarnings("unchecked")
+  static JSONCodec<Object> codec(Class<?> type) {
+    return (JSONCodec<Object>) Holder.CODECS.get(type);
+  }
+}
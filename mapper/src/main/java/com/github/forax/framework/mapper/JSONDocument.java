@@ -0,0 +1,495 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor.Token;
+import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+import com.github.forax.framework.mapper.ToyJSONParser.Kind;
+import com.github.forax.framework.mapper.ToyJSONParser.TokenDecoder;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A JSON text parsed once into a tape, so its values can be looked up several times
+ * without parsing the text again and without creating a tree of maps and lists.
+ *
+ * The tape is an array of longs, one word per value or key in the order of the text, the word of
+ * an object or an array stores the index of the word that ends it, so a value is skipped in one step.
+ * The strings and the numbers are not decoded when the text is parsed, their word stores their position
+ * in the text, which is kept, and a value is only decoded when it is asked for.
+ *
+ * The values are navigated with {@link Node}s, by key, by index or by JSON Pointer, and a node
+ * can be decoded to an object by {@link JSONReader#parseJSON(Node, java.lang.reflect.Type)}
+ * by replaying its words, without lexing the text again.
+ *
+ * A document is not thread safe, the values are decoded with a decoder shared by all the nodes.
+ */
+public final class JSONDocument {
+  /*
+   * The 4 upper bits of a word are the ordinal of the kind of the token.
+   * LEFT_CURLY, LEFT_BRACKET: the number of members or elements (28 bits, saturated)
+   *                           then the index of the ending word (32 bits).
+   * RIGHT_CURLY, RIGHT_BRACKET: the index of the starting word (32 bits).
+   * NULL, TRUE, FALSE, INTEGER, DOUBLE, STRING: 1 bit set if the token is a key with an escape sequence,
+   *                                             the length of the token (28 bits)
+   *                                             then its position in the text (31 bits).
+   */
+  private static final int KIND_SHIFT = 60;
+  private static final int COUNT_SHIFT = 32;
+  private static final int MAX_COUNT = (1 << 28) - 1;
+  private static final int LENGTH_SHIFT = 31;
+  private static final int MAX_LENGTH = (1 << 28) - 1;
+  private static final long ESCAPED_KEY = 1L << 59;
+
+  private static final Kind[] KINDS = Kind.values();
+
+  static long startWord(Kind kind, int endIndex, int count) {
+    return (long) kind.ordinal() << KIND_SHIFT | (long) Math.min(count, MAX_COUNT) << COUNT_SHIFT | endIndex;
+  }
+
+  static long endWord(Kind kind, int startIndex) {
+    return (long) kind.ordinal() << KIND_SHIFT | startIndex;
+  }
+
+  static long scalarWord(Kind kind, int start, int end) {
+    var length = end - start;
+    if (length > MAX_LENGTH) {
+      throw new IllegalStateException("value too long at " + start);
+    }
+    return (long) kind.ordinal() << KIND_SHIFT | (long) length << LENGTH_SHIFT | start;
+  }
+
+  static long keyWord(int start, int end, boolean escaped) {
+    return scalarWord(Kind.STRING, start, end) | (escaped ? ESCAPED_KEY : 0);
+  }
+
+  private static Kind kind(long word) {
+    return KINDS[(int) (word >>> KIND_SHIFT)];
+  }
+
+  private static int endIndex(long word) {
+    return (int) word;
+  }
+
+  private static int count(long word) {
+    return (int) (word >>> COUNT_SHIFT) & MAX_COUNT;
+  }
+
+  private static int start(long word) {
+    return (int) word & Integer.MAX_VALUE;
+  }
+
+  private static int end(long word) {
+    return start(word) + ((int) (word >>> LENGTH_SHIFT) & MAX_LENGTH);
+  }
+
+  private final ByteBuffer input;
+  private final long[] tape;
+  private final TokenDecoder decoder;
+
+  private JSONDocument(ByteBuffer input, long[] tape) {
+    this.input = input;
+    this.tape = tape;
+    this.decoder = new TokenDecoder(input, null);
+  }
+
+  /**
+   * Parses a JSON text into a document.
+   *
+   * @param text a JSON text
+   * @return a new document
+   * @throws IllegalStateException if the text is not a valid JSON text
+   */
+  public static JSONDocument parse(String text) {
+    Objects.requireNonNull(text);
+    return parse(ByteBuffer.wrap(text.getBytes(UTF_8)));
+  }
+
+  /**
+   * Parses a JSON text encoded in UTF-8 stored in a byte buffer, between its position and its limit,
+   * into a document. The values are decoded from the buffer when they are asked for,
+   * so the content of the buffer should not be modified while the document is used.
+   *
+   * @param input a byte buffer containing a JSON text
+   * @return a new document
+   * @throws IllegalStateException if the text is not a valid JSON text
+   */
+  public static JSONDocument parse(ByteBuffer input) {
+    Objects.requireNonNull(input);
+    return new JSONDocument(input, ToyJSONParser.tape(input));
+  }
+
+  /**
+   * Returns the node of the top level object or array.
+   */
+  public Node root() {
+    return new Node(0);
+  }
+
+  /**
+   * Returns the index of the word that follows the value starting at index.
+   */
+  private int next(int index) {
+    var word = tape[index];
+    var kind = kind(word);
+    if (kind == Kind.LEFT_CURLY || kind == Kind.LEFT_BRACKET) {
+      return endIndex(word) + 1;
+    }
+    return index + 1;
+  }
+
+  /**
+   * Returns true if the key recorded by the word is the key, the key is compared to the bytes
+   * of the text, so the keys of the text are not decoded unless they contain an escape sequence.
+   */
+  private boolean isKey(long word, String key, byte[] keyBytes) {
+    if ((word & ESCAPED_KEY) != 0) {
+      return decoder.text(start(word), end(word)).equals(key);
+    }
+    var start = start(word);
+    var length = end(word) - start;
+    var input = this.input;
+    if (keyBytes == null) {  // ASCII key
+      if (length != key.length()) {
+        return false;
+      }
+      for(var i = 0; i < length; i++) {
+        if (input.get(start + i) != key.charAt(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    if (length != keyBytes.length) {
+      return false;
+    }
+    for(var i = 0; i < length; i++) {
+      if (input.get(start + i) != keyBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean isASCII(String key) {
+    for(var i = 0; i < key.length(); i++) {
+      if (key.charAt(i) >= 0x80) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Replays the words of the value starting at index to a visitor, the keys are decoded by the decoder.
+   * @return the index of the word that follows the value.
+   */
+  private int replay(int index, String key, JSONVisitor visitor, TokenDecoder decoder) {
+    var word = tape[index];
+    var kind = kind(word);
+    switch(kind) {
+      case LEFT_CURLY -> {
+        var endIndex = endIndex(word);
+        visitor.startObject(key);
+        for(var i = index + 1; i < endIndex;) {
+          var keyWord = tape[i];
+          var memberKey = decoder.key(start(keyWord), end(keyWord));
+          i = visitor.skipValue(memberKey) ? next(i + 1) : replay(i + 1, memberKey, visitor, decoder);
+        }
+        visitor.endObject(key);
+        return endIndex + 1;
+      }
+      case LEFT_BRACKET -> {
+        var endIndex = endIndex(word);
+        visitor.startArray(key);
+        for(var i = index + 1; i < endIndex;) {
+          i = replay(i, null, visitor, decoder);
+        }
+        visitor.endArray(key);
+        return endIndex + 1;
+      }
+      default -> {
+        decoder.value(kind, start(word), end(word), key, visitor);
+        return index + 1;
+      }
+    }
+  }
+
+  /**
+   * A value of a document, an object, an array or a scalar value.
+   * A node is only an index in the tape of the document, the values are decoded
+   * each time an accessor is called.
+   */
+  public final class Node {
+    private final int index;
+
+    private Node(int index) {
+      this.index = index;
+    }
+
+    /**
+     * Returns the token that starts the value, {@link Token#START_OBJECT} for an object
+     * and {@link Token#START_ARRAY} for an array.
+     */
+    public Token token() {
+      return switch(kind(tape[index])) {
+        case NULL -> Token.NULL;
+        case TRUE -> Token.TRUE;
+        case FALSE -> Token.FALSE;
+        case INTEGER -> Token.INTEGER;
+        case DOUBLE -> Token.DOUBLE;
+        case STRING -> Token.STRING;
+        case LEFT_CURLY -> Token.START_OBJECT;
+        case LEFT_BRACKET -> Token.START_ARRAY;
+        default -> throw new AssertionError();
+      };
+    }
+
+    private IllegalStateException invalidToken(Token... expectedTokens) {
+      return new IllegalStateException("value " + token() + " is not a " + Arrays.toString(expectedTokens));
+    }
+
+    private long check(Kind kind, Token token) {
+      var word = tape[index];
+      if (kind(word) != kind) {
+        throw invalidToken(token);
+      }
+      return word;
+    }
+
+    /**
+     * Returns the number of members of an object or the number of elements of an array.
+     *
+     * @throws IllegalStateException if the value is not an object or an array.
+     */
+    public int size() {
+      var word = tape[index];
+      var kind = kind(word);
+      if (kind != Kind.LEFT_CURLY && kind != Kind.LEFT_BRACKET) {
+        throw invalidToken(Token.START_OBJECT, Token.START_ARRAY);
+      }
+      var count = count(word);
+      if (count != MAX_COUNT) {
+        return count;
+      }
+      // too many values to be recorded, they are counted
+      var step = kind == Kind.LEFT_CURLY ? 1 : 0;
+      var endIndex = endIndex(word);
+      count = 0;
+      for(var i = index + 1; i < endIndex; i = next(i + step)) {
+        count++;
+      }
+      return count;
+    }
+
+    /**
+     * Returns the value of a key of an object.
+     * The keys of the document are compared to the key without being decoded.
+     *
+     * @param key the key
+     * @return the value of the key or an empty optional if the object has no such key.
+     * @throws IllegalStateException if the value is not an object.
+     */
+    public Optional<Node> get(String key) {
+      Objects.requireNonNull(key);
+      var valueIndex = member(check(Kind.LEFT_CURLY, Token.START_OBJECT), key);
+      return valueIndex == -1 ? Optional.empty() : Optional.of(new Node(valueIndex));
+    }
+
+    private int member(long word, String key) {
+      var keyBytes = isASCII(key) ? null : key.getBytes(UTF_8);
+      var endIndex = endIndex(word);
+      for(var i = index + 1; i < endIndex; i = next(i + 1)) {
+        if (isKey(tape[i], key, keyBytes)) {
+          return i + 1;
+        }
+      }
+      return -1;
+    }
+
+    /**
+     * Returns an element of an array, the elements before are skipped without being decoded.
+     *
+     * @param index the index of the element
+     * @return the element at the index
+     * @throws IllegalStateException if the value is not an array.
+     * @throws IndexOutOfBoundsException if the index is not a valid index.
+     */
+    public Node get(int index) {
+      var elementIndex = element(check(Kind.LEFT_BRACKET, Token.START_ARRAY), index);
+      if (elementIndex == -1) {
+        throw new IndexOutOfBoundsException("index " + index + " out of bounds for length " + size());
+      }
+      return new Node(elementIndex);
+    }
+
+    private int element(long word, int index) {
+      if (index < 0) {
+        return -1;
+      }
+      var endIndex = endIndex(word);
+      var i = this.index + 1;
+      for(var n = 0; n < index && i < endIndex; n++) {
+        i = next(i);
+      }
+      return i < endIndex ? i : -1;
+    }
+
+    /**
+     * Returns the value selected by a JSON Pointer (RFC 6901) relative to this node.
+     *
+     * @param jsonPointer a JSON Pointer, the empty string selects this node.
+     * @return the selected value or an empty optional if there is no such value.
+     * @throws IllegalArgumentException if the JSON Pointer is not valid.
+     */
+    public Optional<Node> at(String jsonPointer) {
+      var tokens = PointerTrie.parse(jsonPointer);
+      var nodeIndex = index;
+      for(var token: tokens) {
+        var word = tape[nodeIndex];
+        nodeIndex = switch(kind(word)) {
+          case LEFT_CURLY -> new Node(nodeIndex).member(word, token);
+          case LEFT_BRACKET -> {
+            var elementIndex = arrayIndex(token);
+            yield elementIndex == -1 ? -1 : new Node(nodeIndex).element(word, elementIndex);
+          }
+          default -> -1;
+        };
+        if (nodeIndex == -1) {
+          return Optional.empty();
+        }
+      }
+      return Optional.of(nodeIndex == index ? this : new Node(nodeIndex));
+    }
+
+    /**
+     * Returns the index of the reference token of a JSON Pointer, "0" or digits not starting with '0',
+     * or -1 if the token is not an index.
+     */
+    private static int arrayIndex(String token) {
+      var length = token.length();
+      if (length == 0 || length > 9 || (length > 1 && token.charAt(0) == '0')) {
+        return -1;
+      }
+      var value = 0;
+      for(var i = 0; i < length; i++) {
+        var c = token.charAt(i);
+        if (c < '0' || c > '9') {
+          return -1;
+        }
+        value = value * 10 + (c - '0');
+      }
+      return value;
+    }
+
+    /**
+     * Returns the keys of an object in the order of the text, each key is decoded.
+     *
+     * @throws IllegalStateException if the value is not an object.
+     */
+    public List<String> keys() {
+      var endIndex = endIndex(check(Kind.LEFT_CURLY, Token.START_OBJECT));
+      var keys = new ArrayList<String>();
+      for(var i = index + 1; i < endIndex; i = next(i + 1)) {
+        var word = tape[i];
+        keys.add(decoder.text(start(word), end(word)));
+      }
+      return List.copyOf(keys);
+    }
+
+    /**
+     * Returns the elements of an array, the elements are not decoded.
+     *
+     * @throws IllegalStateException if the value is not an array.
+     */
+    public List<Node> elements() {
+      var endIndex = endIndex(check(Kind.LEFT_BRACKET, Token.START_ARRAY));
+      var elements = new ArrayList<Node>();
+      for(var i = index + 1; i < endIndex; i = next(i)) {
+        elements.add(new Node(i));
+      }
+      return List.copyOf(elements);
+    }
+
+    /**
+     * Returns the value if it is an {@link Token#INTEGER} that fits in an {@code int}.
+     */
+    public int intValue() {
+      var value = longValue();
+      if (value != (int) value) {
+        throw new IllegalStateException("value " + value + " does not fit in an int");
+      }
+      return (int) value;
+    }
+
+    /**
+     * Returns the value if it is an {@link Token#INTEGER}.
+     */
+    public long longValue() {
+      var word = check(Kind.INTEGER, Token.INTEGER);
+      return decoder.longValue(start(word), end(word));
+    }
+
+    /**
+     * Returns the value if it is a {@link Token#DOUBLE} or an {@link Token#INTEGER}.
+     */
+    public double doubleValue() {
+      var word = tape[index];
+      var kind = kind(word);
+      if (kind != Kind.DOUBLE && kind != Kind.INTEGER) {
+        throw invalidToken(Token.DOUBLE, Token.INTEGER);
+      }
+      return decoder.doubleValue(start(word), end(word));
+    }
+
+    /**
+     * Returns the value if it is {@link Token#TRUE} or {@link Token#FALSE}.
+     */
+    public boolean booleanValue() {
+      var kind = kind(tape[index]);
+      if (kind != Kind.TRUE && kind != Kind.FALSE) {
+        throw invalidToken(Token.TRUE, Token.FALSE);
+      }
+      return kind == Kind.TRUE;
+    }
+
+    /**
+     * Returns the value if it is a {@link Token#STRING}.
+     */
+    public String stringValue() {
+      var word = check(Kind.STRING, Token.STRING);
+      return decoder.text(start(word), end(word));
+    }
+
+    /**
+     * Replays the value to a visitor, the keys are symbols of the symbol table if there is one.
+     */
+    void accept(JSONVisitor visitor, SymbolTable symbols) {
+      replay(index, null, visitor, new TokenDecoder(input, symbols));
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Node node && index == node.index && document() == node.document();
+    }
+
+    @Override
+    public int hashCode() {
+      return index;
+    }
+
+    private JSONDocument document() {
+      return JSONDocument.this;
+    }
+
+    @Override
+    public String toString() {
+      return "Node " + token() + " at " + index;
+    }
+  }
+}
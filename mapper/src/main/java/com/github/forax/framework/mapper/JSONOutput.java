@@ -0,0 +1,112 @@
+package com.github.forax.framework.mapper;
+
+import java.io.UncheckedIOException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The output of a {@link JSONWriter}, either a {@link CharOutput} that writes characters or
+ * a {@link ByteOutput} that writes UTF-8 encoded bytes.
+ *
+ * The I/O errors of the sink are wrapped into {@link UncheckedIOException}s.
+ */
+abstract sealed class JSONOutput permits CharOutput, ByteOutput {
+  /**
+   * A constant part of a JSON text (a key or a punctuation) stored both as a String and
+   * as UTF-8 encoded bytes, so it does not have to be encoded each time it is written.
+   */
+  record Fragment(String text, byte[] bytes) {
+    static Fragment of(String text) {
+      return new Fragment(text, text.getBytes(UTF_8));
+    }
+  }
+
+  private static final String[] ESCAPES = new String[128];
+  static {
+    for(var c = 0; c < 0x20; c++) {
+      ESCAPES[c] = "\\u00" + Character.forDigit(c >> 4, 16) + Character.forDigit(c & 0xF, 16);
+    }
+    ESCAPES['"'] = "\\\"";
+    ESCAPES['\\'] = "\\\\";
+    ESCAPES['\n'] = "\\n";
+    ESCAPES['\r'] = "\\r";
+    ESCAPES['\t'] = "\\t";
+    ESCAPES['\b'] = "\\b";
+    ESCAPES['\f'] = "\\f";
+  }
+
+  /**
+   * Returns the escape sequence of a character or {@code null} if the character
+   * does not need to be escaped.
+   */
+  static String escape(char c) {
+    return c < 128 ? ESCAPES[c] : null;
+  }
+
+  /**
+   * Returns the index of the first character of the text, starting at start,
+   * that needs to be escaped or the length of the text if there is none,
+   * so the run of characters in between can be copied in bulk.
+   */
+  static int nextEscape(String text, int start) {
+    var escapes = ESCAPES;
+    var length = text.length();
+    for(var i = start; i < length; i++) {
+      var c = text.charAt(i);
+      if (c < 128 && escapes[c] != null) {
+        return i;
+      }
+    }
+    return length;
+  }
+
+  /**
+   * Appends an ASCII character.
+   */
+  abstract void append(char c);
+
+  /**
+   * Appends a text as is.
+   */
+  abstract void append(String text);
+
+  abstract void append(Fragment fragment);
+
+  /**
+   * Appends a string quoted and escaped.
+   */
+  abstract void appendString(String text);
+
+  /**
+   * Appends the first length ASCII characters of the bytes.
+   */
+  abstract void appendASCII(byte[] bytes, int length);
+
+  // the numbers are formatted in this buffer, so no String is allocated
+  private final byte[] digits = new byte[NumberFormatter.MAX_LENGTH];
+
+  void appendInt(int value) {
+    appendASCII(digits, NumberFormatter.formatInt(value, digits, 0));
+  }
+
+  void appendLong(long value) {
+    appendASCII(digits, NumberFormatter.formatLong(value, digits, 0));
+  }
+
+  void appendFloat(float value) {
+    appendASCII(digits, NumberFormatter.formatFloat(value, digits, 0));
+  }
+
+  void appendDouble(double value) {
+    appendASCII(digits, NumberFormatter.formatDouble(value, digits, 0));
+  }
+
+  void appendBoolean(boolean value) {
+    append(value ? "true" : "false");
+  }
+
+  /**
+   * Writes the content of the buffer(s) to the sink.
+   */
+  abstract void flush();
+}
@@ -0,0 +1,17 @@
+package com.github.forax.framework.mapper;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.RECORD_COMPONENT;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * The JSON Pointer (RFC 6901) of the value of a record component
+ * when a JSON text is decoded by {@link JSONReader#parseProjection(String, Class)}.
+ */
+@Retention(RUNTIME)
+@Target(RECORD_COMPONENT)
+public @interface JSONPointer {
+  String value();
+}
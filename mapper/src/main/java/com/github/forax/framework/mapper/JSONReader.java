@@ -1,7 +1,1202 @@
 package com.github.forax.framework.mapper;
 
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor;
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor.Token;
+import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+
+import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.stream.Collectors.toMap;
+
 public class JSONReader {
-  public Object parseJSON(String text, Class<?> beanClass) {
-    throw new UnsupportedOperationException("TODO");
+  /**
+   * Describes how to decode an object or an array.
+   *
+   * @param qualifier returns the type of the value of a key, or {@code null} if the key is unknown.
+   * @param supplier creates the builder.
+   * @param populater inserts the values in the builder.
+   * @param finisher creates the value from the builder.
+   * @param keys the keys known by the qualifier, they are added to the symbol table of the reader
+   *             so the keys read from the input are the same strings and are found by identity.
+   * @param <B> the type of the builder.
+   */
+  public record Collector<B>(Function<? super String, ? extends Type> qualifier,
+                             Supplier<? extends B> supplier, Populater<B> populater, Function<? super B, ?> finisher,
+                             List<String> keys) {
+    public interface Populater<B> {
+      void populate(B builder, String key, Object value);
+
+      /**
+       * Inserts an int value, by default the value is boxed.
+       */
+      default void populateInt(B builder, String key, int value) {
+        populate(builder, key, value);
+      }
+
+      /**
+       * Inserts a long value, by default the value is boxed.
+       */
+      default void populateLong(B builder, String key, long value) {
+        populate(builder, key, value);
+      }
+
+      /**
+       * Inserts a double value, by default the value is boxed.
+       */
+      default void populateDouble(B builder, String key, double value) {
+        populate(builder, key, value);
+      }
+
+      /**
+       * Inserts a boolean value, by default the value is boxed.
+       */
+      default void populateBoolean(B builder, String key, boolean value) {
+        populate(builder, key, value);
+      }
+    }
+
+    public Collector {
+      Objects.requireNonNull(qualifier);
+      Objects.requireNonNull(supplier);
+      Objects.requireNonNull(populater);
+      Objects.requireNonNull(finisher);
+      keys = List.copyOf(keys);
+    }
+
+    /**
+     * Creates a collector with no key known in advance.
+     */
+    public Collector(Function<? super String, ? extends Type> qualifier,
+                     Supplier<? extends B> supplier, Populater<B> populater, Function<? super B, ?> finisher) {
+      this(qualifier, supplier, populater, finisher, List.of());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collector<Object> raw() {
+      return (Collector<Object>) (Collector<?>) this;
+    }
+
+    /**
+     * A property of a bean, the setter, its parameter type and if the property is a primitive,
+     * method handles that call the setter without boxing the value,
+     * with {@code null} if the JSON primitive type can not be converted to the type of the property.
+     */
+    private record BeanProperty(Method setter, Type type, MethodHandle intSetter, MethodHandle longSetter,
+                                MethodHandle doubleSetter, MethodHandle booleanSetter) {
+      private static BeanProperty of(Method setter) {
+        var type = setter.getParameterTypes()[0];
+        var genericType = setter.getGenericParameterTypes()[0];
+        if (!type.isPrimitive() && type != Float.class) {
+          return new BeanProperty(setter, genericType, null, null, null, null);
+        }
+        var handle = Utils.unreflect(MethodHandles.lookup(), setter);
+        if (type == Float.class) {  // a JSON number is never decoded as a Float, so box a float
+          type = float.class;
+          handle = handle.asType(methodType(void.class, Object.class, float.class));
+        }
+        return new BeanProperty(setter, genericType,
+            primitiveSetter(handle, type, int.class, int.class, long.class, float.class, double.class),
+            primitiveSetter(handle, type, long.class, long.class, float.class, double.class),
+            primitiveSetter(handle, type, double.class, float.class, double.class),
+            primitiveSetter(handle, type, boolean.class, boolean.class));
+      }
+
+      private static MethodHandle primitiveSetter(MethodHandle handle, Class<?> type, Class<?> valueType, Class<?>... compatibleTypes) {
+        if (!List.of(compatibleTypes).contains(type)) {
+          return null;
+        }
+        // explicitCastArguments and not asType, so a double value can be narrowed to a float
+        return MethodHandles.explicitCastArguments(handle, methodType(void.class, Object.class, valueType));
+      }
+    }
+
+    public static Collector<Object> bean(Class<?> beanClass) {
+      Objects.requireNonNull(beanClass);
+      var beanInfo = Utils.beanInfo(beanClass);
+      var propertyMap = Arrays.stream(beanInfo.getPropertyDescriptors())
+          .filter(property -> property.getWriteMethod() != null)
+          .collect(toMap(PropertyDescriptor::getName, property -> BeanProperty.of(property.getWriteMethod())));
+      var constructor = Utils.defaultConstructor(beanClass);
+      return new Collector<>(
+          key -> {
+            var property = propertyMap.get(key);
+            return property == null ? null : property.type;
+          },
+          () -> Utils.newInstance(constructor),
+          new Populater<>() {
+            @Override
+            public void populate(Object bean, String key, Object value) {
+              Utils.invokeMethod(bean, findProperty(propertyMap, key, beanClass).setter, value);
+            }
+
+            @Override
+            public void populateInt(Object bean, String key, int value) {
+              var setter = findProperty(propertyMap, key, beanClass).intSetter;
+              if (setter == null) {
+                populate(bean, key, value);
+                return;
+              }
+              try {
+                setter.invokeExact(bean, value);
+              } catch (Throwable t) {
+                throw Utils.rethrow(t);
+              }
+            }
+
+            @Override
+            public void populateLong(Object bean, String key, long value) {
+              var setter = findProperty(propertyMap, key, beanClass).longSetter;
+              if (setter == null) {
+                populate(bean, key, value);
+                return;
+              }
+              try {
+                setter.invokeExact(bean, value);
+              } catch (Throwable t) {
+                throw Utils.rethrow(t);
+              }
+            }
+
+            @Override
+            public void populateDouble(Object bean, String key, double value) {
+              var setter = findProperty(propertyMap, key, beanClass).doubleSetter;
+              if (setter == null) {
+                populate(bean, key, value);
+                return;
+              }
+              try {
+                setter.invokeExact(bean, value);
+              } catch (Throwable t) {
+                throw Utils.rethrow(t);
+              }
+            }
+
+            @Override
+            public void populateBoolean(Object bean, String key, boolean value) {
+              var setter = findProperty(propertyMap, key, beanClass).booleanSetter;
+              if (setter == null) {
+                populate(bean, key, value);
+                return;
+              }
+              try {
+                setter.invokeExact(bean, value);
+              } catch (Throwable t) {
+                throw Utils.rethrow(t);
+              }
+            }
+          },
+          Function.identity(),
+          List.copyOf(propertyMap.keySet()));
+    }
+
+    private static BeanProperty findProperty(Map<String, BeanProperty> propertyMap, String key, Class<?> beanClass) {
+      var property = propertyMap.get(key);
+      if (property == null) {
+        throw new IllegalStateException("unknown key " + key + " for bean " + beanClass.getName());
+      }
+      return property;
+    }
+
+    public static Collector<List<Object>> list(Type elementType) {
+      Objects.requireNonNull(elementType);
+      return new Collector<>(key -> elementType, ArrayList::new, (list, key, value) -> list.add(value), List::copyOf);
+    }
+
+    /**
+     * The values of the components of a record while the record is decoded,
+     * the primitive values are stored in a long (the floating point values as their raw bits)
+     * so they are not boxed, the other values are stored in an array of objects.
+     */
+    private record RecordSlots(long[] primitives, Object[] references) {
+      private void clear() {
+        Arrays.fill(primitives, 0);
+        Arrays.fill(references, null);
+      }
+    }
+
+    /**
+     * A component of a record, its type and the index of its slot in
+     * {@link RecordSlots#primitives()} or {@link RecordSlots#references()}.
+     */
+    private record RecordSlot(RecordComponent component, Class<?> type, Type genericType, int index) {
+      private boolean isFloatingPoint() {
+        return type == double.class || type == float.class;
+      }
+
+      private IllegalStateException invalidValue(Object value) {
+        return new IllegalStateException("invalid value " + value + " for component " + component);
+      }
+
+      private void storeInt(RecordSlots slots, int value) {
+        if (type == int.class || type == long.class) {
+          slots.primitives[index] = value;
+        } else if (isFloatingPoint()) {
+          slots.primitives[index] = Double.doubleToRawLongBits(value);
+        } else if (!type.isPrimitive()) {
+          storeReference(slots, value);
+        } else {
+          throw invalidValue(value);
+        }
+      }
+
+      private void storeLong(RecordSlots slots, long value) {
+        if (type == long.class) {
+          slots.primitives[index] = value;
+        } else if (isFloatingPoint()) {
+          slots.primitives[index] = Double.doubleToRawLongBits(value);
+        } else if (!type.isPrimitive()) {
+          storeReference(slots, value);
+        } else {
+          throw invalidValue(value);
+        }
+      }
+
+      private void storeDouble(RecordSlots slots, double value) {
+        if (isFloatingPoint()) {
+          slots.primitives[index] = Double.doubleToRawLongBits(value);
+        } else if (!type.isPrimitive()) {
+          storeReference(slots, value);
+        } else {
+          throw invalidValue(value);
+        }
+      }
+
+      private void storeBoolean(RecordSlots slots, boolean value) {
+        if (type == boolean.class) {
+          slots.primitives[index] = value ? 1 : 0;
+        } else if (!type.isPrimitive()) {
+          storeReference(slots, value);
+        } else {
+          throw invalidValue(value);
+        }
+      }
+
+      /**
+       * Stores a value in a slot of a reference type, the type is checked here so a wrong value
+       * is reported while parsing and not when the canonical constructor is called.
+       */
+      private void storeReference(RecordSlots slots, Object value) {
+        if (value != null && !type.isInstance(value)) {
+          throw invalidValue(value);
+        }
+        slots.references[index] = value;
+      }
+
+      private void store(RecordSlots slots, Object value) {
+        if (!type.isPrimitive()) {
+          storeReference(slots, value);
+        } else if (value instanceof Integer integer) {
+          storeInt(slots, integer);
+        } else if (value instanceof Long longValue) {
+          storeLong(slots, longValue);
+        } else if (value instanceof Double doubleValue) {
+          storeDouble(slots, doubleValue);
+        } else if (value instanceof Boolean booleanValue) {
+          storeBoolean(slots, booleanValue);
+        } else {
+          throw invalidValue(value);
+        }
+      }
+
+      /**
+       * Returns a method handle that reads the value of the slot typed {@code (RecordSlots)type}.
+       */
+      private MethodHandle getter() {
+        if (!type.isPrimitive()) {
+          var getter = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(Object[].class), 1, index);
+          return MethodHandles.filterReturnValue(REFERENCES, MethodHandles.explicitCastArguments(getter, methodType(type, Object[].class)));
+        }
+        var getter = MethodHandles.insertArguments(MethodHandles.arrayElementGetter(long[].class), 1, index);
+        if (isFloatingPoint()) {
+          getter = MethodHandles.filterReturnValue(getter, LONG_BITS_TO_DOUBLE);
+        }
+        return MethodHandles.filterReturnValue(PRIMITIVES, MethodHandles.explicitCastArguments(getter, methodType(type, long[].class)));
+      }
+
+      private static final MethodHandle PRIMITIVES, REFERENCES, LONG_BITS_TO_DOUBLE;
+      static {
+        var lookup = MethodHandles.lookup();
+        try {
+          PRIMITIVES = lookup.findVirtual(RecordSlots.class, "primitives", methodType(long[].class));
+          REFERENCES = lookup.findVirtual(RecordSlots.class, "references", methodType(Object[].class));
+          LONG_BITS_TO_DOUBLE = lookup.findStatic(Double.class, "longBitsToDouble", methodType(double.class, long.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+          throw new AssertionError(e);
+        }
+      }
+    }
+
+    /**
+     * Returns a collector that creates a record using its canonical constructor.
+     *
+     * The values of the components are stored in slots indexed by the component index
+     * (the primitive values are not boxed), and the canonical constructor is called through
+     * a method handle that takes the slots and spreads them as arguments of the constructor.
+     * The slots are reused from one record instance to the next.
+     */
+    public static Collector<Object> record(Class<?> recordClass) {
+      Objects.requireNonNull(recordClass);
+      var components = recordClass.getRecordComponents();
+      var slots = new RecordSlot[components.length];
+      var primitiveCount = 0;
+      var referenceCount = 0;
+      for(var i = 0; i < components.length; i++) {
+        var type = components[i].getType();
+        slots[i] = new RecordSlot(components[i], type, components[i].getGenericType(), type.isPrimitive() ? primitiveCount++ : referenceCount++);
+      }
+      var slotMap = Arrays.stream(slots)
+          .collect(toMap(slot -> slot.component.getName(), slot -> slot));
+      var constructor = Utils.unreflectConstructor(MethodHandles.lookup(), Utils.canonicalConstructor(recordClass, components));
+      var creator = MethodHandles.permuteArguments(
+          MethodHandles.filterArguments(constructor, 0, Arrays.stream(slots).map(RecordSlot::getter).toArray(MethodHandle[]::new)),
+          methodType(recordClass, RecordSlots.class),
+          new int[components.length])
+          .asType(methodType(Object.class, RecordSlots.class));
+      var primitiveLength = primitiveCount;
+      var referenceLength = referenceCount;
+      var spare = new AtomicReference<RecordSlots>();
+      return new Collector<>(
+          key -> {
+            var slot = slotMap.get(key);
+            return slot == null ? null : slot.genericType;
+          },
+          () -> {
+            var recordSlots = spare.getAndSet(null);
+            return recordSlots != null ? recordSlots : new RecordSlots(new long[primitiveLength], new Object[referenceLength]);
+          },
+          new Populater<>() {
+            @Override
+            public void populate(Object recordSlots, String key, Object value) {
+              findSlot(slotMap, key, recordClass).store((RecordSlots) recordSlots, value);
+            }
+
+            @Override
+            public void populateInt(Object recordSlots, String key, int value) {
+              findSlot(slotMap, key, recordClass).storeInt((RecordSlots) recordSlots, value);
+            }
+
+            @Override
+            public void populateLong(Object recordSlots, String key, long value) {
+              findSlot(slotMap, key, recordClass).storeLong((RecordSlots) recordSlots, value);
+            }
+
+            @Override
+            public void populateDouble(Object recordSlots, String key, double value) {
+              findSlot(slotMap, key, recordClass).storeDouble((RecordSlots) recordSlots, value);
+            }
+
+            @Override
+            public void populateBoolean(Object recordSlots, String key, boolean value) {
+              findSlot(slotMap, key, recordClass).storeBoolean((RecordSlots) recordSlots, value);
+            }
+          },
+          recordSlots -> {
+            var slotsOfRecord = (RecordSlots) recordSlots;
+            try {
+              return creator.invokeExact(slotsOfRecord);
+            } catch (Throwable t) {
+              throw Utils.rethrow(t);
+            } finally {
+              slotsOfRecord.clear();
+              spare.set(slotsOfRecord);
+            }
+          },
+          List.copyOf(slotMap.keySet()));
+    }
+
+    private static RecordSlot findSlot(Map<String, RecordSlot> slotMap, String key, Class<?> recordClass) {
+      var slot = slotMap.get(key);
+      if (slot == null) {
+        throw new IllegalStateException("unknown key " + key + " for record " + recordClass.getName());
+      }
+      return slot;
+    }
+  }
+
+  @FunctionalInterface
+  public interface TypeMatcher {
+    Optional<Collector<?>> match(Type type);
+  }
+
+  /**
+   * The type matchers and the collectors already resolved with them, each type is resolved once.
+   * Both are published together in one volatile write each time a type matcher is added,
+   * so a collector is always cached with the type matchers used to resolve it.
+   *
+   * @param typeMatchers the type matchers in the order they were added, an unmodifiable list.
+   * @param collectorMap the collectors already resolved.
+   */
+  private record Resolution(List<TypeMatcher> typeMatchers, ConcurrentHashMap<Type, Collector<?>> collectorMap) {}
+
+  private volatile Resolution resolution = new Resolution(List.of(), new ConcurrentHashMap<>());
+  private final SymbolTable symbols = new SymbolTable();
+  private boolean ignoreUnknownKeys;
+  private boolean structuralIndex;
+
+  public synchronized void addTypeMatcher(TypeMatcher typeMatcher) {
+    Objects.requireNonNull(typeMatcher);
+    var typeMatchers = new ArrayList<>(resolution.typeMatchers);
+    typeMatchers.add(typeMatcher);
+    resolution = new Resolution(List.copyOf(typeMatchers), new ConcurrentHashMap<>());
+  }
+
+  /**
+   * Ignores the keys unknown to the collectors (the keys for which the qualifier returns {@code null})
+   * instead of reporting an error. The values of the unknown keys are skipped by the parser
+   * without being decoded, only their brackets, curly braces and quotes are scanned.
+   */
+  public void ignoreUnknownKeys() {
+    ignoreUnknownKeys = true;
+  }
+
+  /**
+   * Indexes the structural characters of the JSON texts stored in byte buffers, memory mapped files
+   * and JSON Lines files before parsing them, so the parser jumps from one structural character
+   * to the next instead of scanning the bytes one by one.
+   * The index is computed using the Vector API (module {@code jdk.incubator.vector}),
+   * if the module is not available or the Java version is less than 18, this method has no effect
+   * and the texts are parsed by the scalar lexer.
+   *
+   * @see StructuralIndex
+   */
+  public void enableStructuralIndex() {
+    structuralIndex = true;
+  }
+
+  private boolean indexed() {
+    return structuralIndex && StructuralIndex.isVectorized();
+  }
+
+  Collector<?> findCollector(Type type) {
+    var resolution = this.resolution;
+    var collectorMap = resolution.collectorMap;
+    var collector = collectorMap.get(type);
+    if (collector != null) {
+      return collector;
+    }
+    // not computeIfAbsent(), a type matcher may resolve the collectors of other types
+    collector = resolveCollector(resolution.typeMatchers, type);
+    var result = collectorMap.putIfAbsent(type, collector);
+    if (result != null) {
+      return result;
+    }
+    // the keys read from the input are the strings of the collector, so its qualifier finds them by identity
+    for(var key: collector.keys()) {
+      symbols.seed(key);
+    }
+    return collector;
+  }
+
+  private static Collector<?> resolveCollector(List<TypeMatcher> typeMatchers, Type type) {
+    return Utils.reverseList(typeMatchers).stream()
+        .flatMap(typeMatcher -> typeMatcher.match(type).stream())
+        .findFirst()
+        .orElseGet(() -> {
+          var codec = JSONCodecs.codec(Utils.erase(type));
+          return codec != null ? codecCollector(codec) : Collector.bean(Utils.erase(type));
+        });
+  }
+
+  /**
+   * Returns a collector that decodes a class using its codec generated at compile time.
+   */
+  private static Collector<Object> codecCollector(JSONCodec<Object> codec) {
+    return new Collector<>(codec::keyType, codec::newBuilder, codec::populate, codec::build, codec.keys());
+  }
+
+  private record Context(Collector<Object> collector, Object data) {
+    private void populate(String key, Object value) {
+      collector.populater.populate(data, key, value);
+    }
+
+    private void populateInt(String key, int value) {
+      collector.populater.populateInt(data, key, value);
+    }
+
+    private void populateLong(String key, long value) {
+      collector.populater.populateLong(data, key, value);
+    }
+
+    private void populateDouble(String key, double value) {
+      collector.populater.populateDouble(data, key, value);
+    }
+
+    private void populateBoolean(String key, boolean value) {
+      collector.populater.populateBoolean(data, key, value);
+    }
+
+    private Object finish() {
+      return collector.finisher.apply(data);
+    }
+
+    private static Context createContext(Collector<?> collector) {
+      var raw = collector.raw();
+      return new Context(raw, raw.supplier.get());
+    }
+  }
+
+  private final class CollectorVisitor implements JSONVisitor {
+    private final Type expectedType;
+    private final ArrayDeque<Context> stack = new ArrayDeque<>();
+    private Object result;
+
+    private CollectorVisitor(Type expectedType) {
+      this.expectedType = expectedType;
+    }
+
+    @Override
+    public void value(String key, Object value) {
+      var context = stack.peek();
+      if (context == null) {  // an element of a streamed array
+        result = value;
+        return;
+      }
+      context.populate(key, value);
+    }
+
+    @Override
+    public void valueInt(String key, int value) {
+      var context = stack.peek();
+      if (context == null) {  // an element of a streamed array
+        result = value;
+        return;
+      }
+      context.populateInt(key, value);
+    }
+
+    @Override
+    public void valueLong(String key, long value) {
+      var context = stack.peek();
+      if (context == null) {  // an element of a streamed array
+        result = value;
+        return;
+      }
+      context.populateLong(key, value);
+    }
+
+    @Override
+    public void valueDouble(String key, double value) {
+      var context = stack.peek();
+      if (context == null) {  // an element of a streamed array
+        result = value;
+        return;
+      }
+      context.populateDouble(key, value);
+    }
+
+    @Override
+    public void valueBoolean(String key, boolean value) {
+      var context = stack.peek();
+      if (context == null) {  // an element of a streamed array
+        result = value;
+        return;
+      }
+      context.populateBoolean(key, value);
+    }
+
+    @Override
+    public void startObject(String key) {
+      start(key);
+    }
+
+    @Override
+    public void endObject(String key) {
+      end(key);
+    }
+
+    @Override
+    public void startArray(String key) {
+      start(key);
+    }
+
+    @Override
+    public void endArray(String key) {
+      end(key);
+    }
+
+    /**
+     * Returns the decoded value and forget it, so the visitor can decode another value.
+     */
+    private Object takeResult() {
+      var result = this.result;
+      this.result = null;
+      return result;
+    }
+
+    @Override
+    public boolean skipValue(String key) {
+      return ignoreUnknownKeys && stack.peek().collector.qualifier.apply(key) == null;
+    }
+
+    private void start(String key) {
+      var currentContext = stack.peek();
+      var type = currentContext == null ? expectedType : currentContext.collector.qualifier.apply(key);
+      if (type == null) {
+        throw new IllegalStateException("unknown key " + key);
+      }
+      stack.push(Context.createContext(findCollector(type)));
+    }
+
+    private void end(String key) {
+      var instance = stack.pop().finish();
+      if (stack.isEmpty()) {
+        result = instance;
+        return;
+      }
+      stack.peek().populate(key, instance);
+    }
+  }
+
+  public <T> T parseJSON(String text, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(text, (Type) expectedClass));
+  }
+
+  public Object parseJSON(String text, Type expectedType) {
+    Objects.requireNonNull(text);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    ToyJSONParser.parse(text, visitor, symbols);
+    return visitor.result;
+  }
+
+  /**
+   * Decodes a JSON text read from a reader.
+   * The text is never fully loaded in memory, only the objects being decoded are.
+   * The reader is not closed by this method.
+   *
+   * @see ToyJSONParser#parse(Reader, JSONVisitor)
+   */
+  public <T> T parseJSON(Reader reader, Class<T> expectedClass) throws IOException {
+    return expectedClass.cast(parseJSON(reader, (Type) expectedClass));
+  }
+
+  public Object parseJSON(Reader reader, Type expectedType) throws IOException {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    ToyJSONParser.parse(reader, visitor, symbols);
+    return visitor.result;
+  }
+
+  /**
+   * Decodes a JSON text encoded in UTF-8 read from an input stream.
+   * The input stream is not closed by this method.
+   *
+   * @see ToyJSONParser#parse(InputStream, JSONVisitor)
+   */
+  public <T> T parseJSON(InputStream input, Class<T> expectedClass) throws IOException {
+    return expectedClass.cast(parseJSON(input, (Type) expectedClass));
+  }
+
+  public Object parseJSON(InputStream input, Type expectedType) throws IOException {
+    Objects.requireNonNull(input);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    ToyJSONParser.parse(input, visitor, symbols);
+    return visitor.result;
+  }
+
+  /**
+   * Decodes a JSON text encoded in UTF-8 read from a channel.
+   * The channel is not closed by this method.
+   *
+   * @see ToyJSONParser#parse(ReadableByteChannel, JSONVisitor)
+   */
+  public <T> T parseJSON(ReadableByteChannel channel, Class<T> expectedClass) throws IOException {
+    return expectedClass.cast(parseJSON(channel, (Type) expectedClass));
+  }
+
+  public Object parseJSON(ReadableByteChannel channel, Type expectedType) throws IOException {
+    Objects.requireNonNull(channel);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    ToyJSONParser.parse(channel, visitor, symbols);
+    return visitor.result;
+  }
+
+  /**
+   * Decodes a JSON text encoded in UTF-8 stored in a byte buffer between its position and its limit.
+   * The bytes are not decoded to characters, only the strings are decoded.
+   *
+   * @see ToyJSONParser#parse(ByteBuffer, JSONVisitor)
+   */
+  public <T> T parseJSON(ByteBuffer input, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(input, (Type) expectedClass));
+  }
+
+  public Object parseJSON(ByteBuffer input, Type expectedType) {
+    Objects.requireNonNull(input);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    ToyJSONParser.parse(input, visitor, symbols, indexed());
+    return visitor.result;
+  }
+
+  /**
+   * Decodes a file containing a JSON text encoded in UTF-8.
+   * The file is mapped in memory and its bytes are parsed directly,
+   * files bigger than 2G are read as a stream.
+   *
+   * @see #parseJSON(ByteBuffer, Type)
+   */
+  public <T> T parseJSON(Path path, Class<T> expectedClass) throws IOException {
+    return expectedClass.cast(parseJSON(path, (Type) expectedClass));
+  }
+
+  public Object parseJSON(Path path, Type expectedType) throws IOException {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(expectedType);
+    try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var size = channel.size();
+      if (size > Integer.MAX_VALUE) {
+        return parseJSON((ReadableByteChannel) channel, expectedType);
+      }
+      return parseJSON(channel.map(MapMode.READ_ONLY, 0, size), expectedType);
+    }
+  }
+
+  /**
+   * Decodes an object encoded in CBOR (RFC 8949), for example by {@link JSONWriter#toCBOR(Object)}.
+   * The items are decoded by the same collectors as a JSON text, so the encoded object
+   * can be decoded as any type that can be decoded from JSON.
+   *
+   * @see #parseCBOR(ByteBuffer, Type)
+   */
+  public <T> T parseCBOR(byte[] input, Class<T> expectedClass) {
+    return expectedClass.cast(parseCBOR(input, (Type) expectedClass));
+  }
+
+  public Object parseCBOR(byte[] input, Type expectedType) {
+    Objects.requireNonNull(input);
+    return parseCBOR(ByteBuffer.wrap(input), expectedType);
+  }
+
+  /**
+   * Decodes an object encoded in CBOR stored in a byte buffer between its position and its limit,
+   * the position of the buffer is not changed.
+   * The top level item must be a map or an array, the byte strings are not supported
+   * and the tags are ignored.
+   *
+   * @throws IllegalStateException if the encoded item is not valid or not supported.
+   */
+  public <T> T parseCBOR(ByteBuffer input, Class<T> expectedClass) {
+    return expectedClass.cast(parseCBOR(input, (Type) expectedClass));
+  }
+
+  public Object parseCBOR(ByteBuffer input, Type expectedType) {
+    Objects.requireNonNull(input);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    CBORParser.parse(input, visitor, symbols);
+    return visitor.result;
+  }
+
+  /**
+   * Decodes a file in the JSON Lines format, each line of the file is a JSON text
+   * (the blank lines are skipped).
+   *
+   * The file is memory mapped, and the returned stream can be {@link Stream#parallel() parallel},
+   * in that case, the file is split into chunks of lines decoded by different threads,
+   * each thread reusing its own parser. The values are in the order of the lines,
+   * use {@link Stream#unordered()} if the order does not matter.
+   *
+   * The stream should be closed to close the file.
+   * An I/O error that occurs while the stream is traversed is wrapped into an {@link UncheckedIOException}.
+   *
+   * @param path the path of the file
+   * @param expectedClass the class of the values of the lines
+   * @return a stream of the decoded values
+   * @throws IOException if the file can not be opened
+   */
+  public <T> Stream<T> readLines(Path path, Class<T> expectedClass) throws IOException {
+    return readLines(path, (Type) expectedClass).map(expectedClass::cast);
+  }
+
+  public Stream<Object> readLines(Path path, Type expectedType) throws IOException {
+    Objects.requireNonNull(path);
+    Objects.requireNonNull(expectedType);
+    var channel = FileChannel.open(path, StandardOpenOption.READ);
+    try {
+      var spliterator = new LineSpliterator(channel, 0, channel.size(), LineSpliterator.WINDOW_SIZE, () -> {
+        var parser = new ToyJSONParser.BufferParser(symbols, indexed());
+        var visitor = new CollectorVisitor(expectedType);
+        return (buffer, start, end) -> {
+          parser.parse(buffer, start, end, visitor);
+          return visitor.takeResult();
+        };
+      });
+      return StreamSupport.stream(spliterator, false)
+          .onClose(() -> {
+            try {
+              channel.close();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (IOException | RuntimeException | Error e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Decodes lazily the elements of a JSON text which is an array read from a reader.
+   * An element is decoded only when the stream asks for it and only the element being decoded
+   * is kept in memory, so the memory used does not depend on the number of elements.
+   * The reader is not closed by this method.
+   * An I/O error that occurs while the stream is traversed is wrapped into an {@link UncheckedIOException}.
+   *
+   * @param reader the reader of the JSON text
+   * @param elementClass the class of the elements
+   * @return a stream of the decoded elements, use {@link Stream#iterator()} to get an iterator
+   */
+  public <T> Stream<T> streamArray(Reader reader, Class<T> elementClass) {
+    return streamArray(reader, (Type) elementClass).map(elementClass::cast);
+  }
+
+  public Stream<Object> streamArray(Reader reader, Type elementType) {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(elementType);
+    var parser = new ToyJSONParser.ArrayParser(reader, symbols);
+    var visitor = new CollectorVisitor(elementType);
+    var iterator = new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return parser.hasNext();
+      }
+
+      @Override
+      public Object next() {
+        if (!parser.hasNext()) {
+          throw new NoSuchElementException();
+        }
+        parser.parseNext(visitor);
+        return visitor.takeResult();
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+  }
+
+  /**
+   * Decodes the value starting at the current token of a cursor.
+   * If {@link JSONCursor#nextToken()} was never called, the cursor is first moved to the first token.
+   * The value is decoded by recursive descent pulling the tokens from the cursor, when this method returns,
+   * the current token is the last token of the value, so the cursor can be used to continue the parsing.
+   *
+   * @param cursor a cursor on a JSON text
+   * @param expectedClass the class of the value
+   * @return the decoded value
+   */
+  public <T> T parseJSON(JSONCursor cursor, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(cursor, (Type) expectedClass));
+  }
+
+  public Object parseJSON(JSONCursor cursor, Type expectedType) {
+    Objects.requireNonNull(cursor);
+    Objects.requireNonNull(expectedType);
+    var token = cursor.currentToken();
+    if (token == null) {
+      token = cursor.nextToken();
+      if (token == null) {
+        throw new IllegalStateException("no value, the end of the JSON text is reached");
+      }
+    }
+    return decode(cursor, token, expectedType);
+  }
+
+  /**
+   * Decodes a node of a {@link JSONDocument}. The node is replayed from the tape of the document
+   * to the same collectors as a JSON text, the text is not lexed again, only the keys and the values
+   * of the node are decoded. A node can be decoded several times, as different types.
+   *
+   * @param node a node of a document
+   * @param expectedClass the class of the node
+   * @return the decoded node
+   */
+  public <T> T parseJSON(JSONDocument.Node node, Class<T> expectedClass) {
+    return expectedClass.cast(parseJSON(node, (Type) expectedClass));
+  }
+
+  public Object parseJSON(JSONDocument.Node node, Type expectedType) {
+    Objects.requireNonNull(node);
+    Objects.requireNonNull(expectedType);
+    var visitor = new CollectorVisitor(expectedType);
+    node.accept(visitor, symbols);
+    return visitor.result;
+  }
+
+  private Object decode(JSONCursor cursor, Token token, Type type) {
+    return switch(token) {
+      case NULL -> null;
+      case TRUE -> true;
+      case FALSE -> false;
+      case INTEGER -> {
+        var value = cursor.longValue();
+        yield value == (int) value ? (Object) (int) value : (Object) value;
+      }
+      case DOUBLE -> cursor.doubleValue();
+      case STRING -> cursor.stringValue();
+      case START_OBJECT -> decodeContent(cursor, Token.END_OBJECT, type);
+      case START_ARRAY -> decodeContent(cursor, Token.END_ARRAY, type);
+      case END_OBJECT, END_ARRAY -> throw new IllegalStateException("no value starts with " + token);
+    };
+  }
+
+  private Object decodeContent(JSONCursor cursor, Token endToken, Type type) {
+    var collector = findCollector(type).raw();
+    var populater = collector.populater;
+    var data = collector.supplier.get();
+    Token token;
+    while((token = cursor.nextToken()) != endToken) {
+      var key = cursor.currentKey();
+      if (ignoreUnknownKeys && key != null && collector.qualifier.apply(key) == null) {
+        cursor.skipChildren();
+        continue;
+      }
+      if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+        populater.populate(data, key, decode(cursor, token, valueType(collector, key)));
+      } else {
+        populateScalar(cursor, token, populater, data, key);
+      }
+    }
+    return collector.finisher.apply(data);
+  }
+
+  private static Type valueType(Collector<Object> collector, String key) {
+    var valueType = collector.qualifier.apply(key);
+    if (valueType == null) {
+      throw new IllegalStateException("unknown key " + key);
+    }
+    return valueType;
+  }
+
+  private static void populateScalar(JSONCursor cursor, Token token, Collector.Populater<Object> populater, Object data, String key) {
+    switch(token) {
+      case INTEGER -> {
+        var value = cursor.longValue();
+        if (value == (int) value) {
+          populater.populateInt(data, key, (int) value);
+        } else {
+          populater.populateLong(data, key, value);
+        }
+      }
+      case DOUBLE -> populater.populateDouble(data, key, cursor.doubleValue());
+      case TRUE, FALSE -> populater.populateBoolean(data, key, cursor.booleanValue());
+      case NULL -> populater.populate(data, key, null);
+      case STRING -> populater.populate(data, key, cursor.stringValue());
+      default -> throw new IllegalStateException("no value starts with " + token);
+    }
+  }
+
+  /**
+   * Decodes only the values of a JSON text selected by a set of JSON Pointers (RFC 6901).
+   * The objects and arrays on the path of a pointer are created using the collectors
+   * but only populated with the values on the paths, the other values are skipped without being decoded.
+   * The elements of a JSON array that are not selected are not inserted, so the indexes of
+   * the selected elements may differ from their indexes in the JSON text.
+   * The parsing stops as soon as all the values are found, so the end of the JSON text
+   * is neither decoded nor checked.
+   *
+   * @param text a JSON text
+   * @param expectedClass the class of the JSON text
+   * @param jsonPointers the JSON Pointers of the values to decode,
+   *                     the empty string selects the whole JSON text
+   * @return the decoded JSON text containing only the selected values
+   * @throws IllegalArgumentException if a JSON Pointer is not valid
+   */
+  public <T> T parseJSON(String text, Class<T> expectedClass, Set<String> jsonPointers) {
+    return expectedClass.cast(parseJSON(text, (Type) expectedClass, jsonPointers));
+  }
+
+  public Object parseJSON(String text, Type expectedType, Set<String> jsonPointers) {
+    Objects.requireNonNull(text);
+    Objects.requireNonNull(expectedType);
+    Objects.requireNonNull(jsonPointers);
+    var trie = new PointerTrie<String>();
+    for(var jsonPointer: jsonPointers) {
+      trie.add(jsonPointer, jsonPointer);
+    }
+    var projection = new Projection(ToyJSONParser.cursor(text, symbols), trie.leafCount());
+    return projection.project(projection.firstToken(), expectedType, trie);
+  }
+
+  /**
+   * Decodes the record components annotated with {@link JSONPointer} from the values of a JSON text
+   * selected by their JSON Pointer, the JSON Pointer of a component without annotation
+   * is "/" followed by the name of the component.
+   * The values that are not selected are skipped without being decoded and the parsing stops
+   * as soon as all the values are found. The components with no value in the JSON text
+   * are initialized with their default value.
+   *
+   * @param text a JSON text
+   * @param recordClass the class of the record
+   * @return a record with the selected values
+   * @throws IllegalArgumentException if a JSON Pointer is not valid
+   * @throws IllegalStateException if two components have the same JSON Pointer
+   */
+  public <T extends Record> T parseProjection(String text, Class<T> recordClass) {
+    Objects.requireNonNull(text);
+    Objects.requireNonNull(recordClass);
+    var trie = new PointerTrie<RecordComponent>();
+    for(var component: recordClass.getRecordComponents()) {
+      var annotation = component.getAnnotation(JSONPointer.class);
+      var jsonPointer = annotation == null ? "/" + component.getName() : annotation.value();
+      if (!trie.add(jsonPointer, component)) {
+        throw new IllegalStateException("the JSON pointer " + jsonPointer + " of " + component + " overlaps another pointer");
+      }
+    }
+    var collector = PROJECTION_COLLECTORS.get(recordClass).raw();
+    var data = collector.supplier.get();
+    var projection = new Projection(ToyJSONParser.cursor(text, symbols), trie.leafCount());
+    projection.collect(projection.firstToken(), trie, (component, value) -> collector.populater.populate(data, component.getName(), value));
+    return recordClass.cast(collector.finisher.apply(data));
+  }
+
+  /**
+   * The collectors of the records decoded by {@link #parseProjection(String, Class)},
+   * the class is always a record so no type matcher is needed.
+   */
+  private static final ClassValue<Collector<?>> PROJECTION_COLLECTORS = new ClassValue<>() {
+    @Override
+    protected Collector<?> computeValue(Class<?> type) {
+      var codec = JSONCodecs.codec(type);
+      return codec != null ? codecCollector(codec) : Collector.record(type);
+    }
+  };
+
+  /**
+   * Walks the values of a JSON text selected by a trie of JSON Pointers,
+   * skipping the values that are not on a path of the trie.
+   */
+  private final class Projection {
+    private final JSONCursor cursor;
+    private int remaining;  // number of values not found yet
+
+    private Projection(JSONCursor cursor, int remaining) {
+      this.cursor = cursor;
+      this.remaining = remaining;
+    }
+
+    private Token firstToken() {
+      var token = cursor.nextToken();
+      if (token == null) {
+        throw new IllegalStateException("no value, the end of the JSON text is reached");
+      }
+      return token;
+    }
+
+    private static <V> PointerTrie<V> child(PointerTrie<V> trie, String key, int index) {
+      return key != null ? trie.child(key) : trie.element(index);
+    }
+
+    private Object project(Token token, Type type, PointerTrie<String> trie) {
+      if (trie.isLeaf()) {
+        remaining--;
+        return decode(cursor, token, type);
+      }
+      if (token != Token.START_OBJECT && token != Token.START_ARRAY) {  // the path does not exist
+        return decode(cursor, token, type);
+      }
+      var endToken = token == Token.START_OBJECT ? Token.END_OBJECT : Token.END_ARRAY;
+      var collector = findCollector(type).raw();
+      var populater = collector.populater;
+      var data = collector.supplier.get();
+      var index = 0;
+      while(remaining != 0 && (token = cursor.nextToken()) != endToken) {
+        var key = cursor.currentKey();
+        var child = child(trie, key, index++);
+        if (child == null) {
+          cursor.skipChildren();
+          continue;
+        }
+        if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+          populater.populate(data, key, project(token, valueType(collector, key), child));
+          continue;
+        }
+        if (child.isLeaf()) {
+          remaining--;
+          populateScalar(cursor, token, populater, data, key);
+        }
+      }
+      return collector.finisher.apply(data);
+    }
+
+    private void collect(Token token, PointerTrie<RecordComponent> trie, BiConsumer<? super RecordComponent, Object> consumer) {
+      if (trie.isLeaf()) {
+        remaining--;
+        var component = trie.value();
+        consumer.accept(component, decode(cursor, token, component.getGenericType()));
+        return;
+      }
+      if (token != Token.START_OBJECT && token != Token.START_ARRAY) {  // the path does not exist
+        return;
+      }
+      var endToken = token == Token.START_OBJECT ? Token.END_OBJECT : Token.END_ARRAY;
+      var index = 0;
+      while(remaining != 0 && (token = cursor.nextToken()) != endToken) {
+        var child = child(trie, cursor.currentKey(), index++);
+        if (child == null) {
+          cursor.skipChildren();
+          continue;
+        }
+        collect(token, child, consumer);
+      }
+    }
+  }
+
+  public interface TypeReference<T> {}
+
+  private static Type findDeclaredType(TypeReference<?> typeReference) {
+    var typeReferenceType = Arrays.stream(typeReference.getClass().getGenericInterfaces())
+        .filter(ParameterizedType.class::isInstance)
+        .map(ParameterizedType.class::cast)
+        .filter(type -> type.getRawType() == TypeReference.class)
+        .findFirst()
+        .orElseThrow(() -> new IllegalArgumentException("invalid type reference " + typeReference.getClass().getName()));
+    return typeReferenceType.getActualTypeArguments()[0];
+  }
+
+  public <T> T parseJSON(String text, TypeReference<T> typeReference) {
+    Objects.requireNonNull(text);
+    Objects.requireNonNull(typeReference);
+    @SuppressWarnings("unchecked")
+    var result = (T) parseJSON(text, findDeclaredType(typeReference));
+    return result;
   }
 }
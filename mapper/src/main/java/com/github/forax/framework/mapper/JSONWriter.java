@@ -1,7 +1,612 @@
 package com.github.forax.framework.mapper;
 
+import com.github.forax.framework.mapper.JSONOutput.Fragment;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+import static java.lang.invoke.MethodType.methodType;
+
 public final class JSONWriter {
+  /**
+   * Generates the JSON text of a value.
+   */
+  @FunctionalInterface
+  interface Generator {
+    void generate(JSONWriter writer, Object value, JSONOutput output);
+  }
+
+  /**
+   * Encodes a value in CBOR.
+   */
+  @FunctionalInterface
+  interface Encoder {
+    void encode(JSONWriter writer, Object value, CBOROutput output);
+  }
+
+  /**
+   * A property of a bean or a record, its name, the key is already escaped, quoted and encoded
+   * and the getter is typed {@code (Object)Object}.
+   */
+  record Property(String name, Fragment key, Method method, MethodHandle getter, Class<?> type) {}
+
+  private static final Fragment SEPARATOR = Fragment.of(", ");
+  private static final Fragment NULL = Fragment.of("null");
+
+  private static final ClassValue<List<Property>> PROPERTIES_CLASS_VALUE = new ClassValue<>() {
+    @Override
+    protected List<Property> computeValue(Class<?> type) {
+      return type.isRecord() ? recordProperties(type) : beanProperties(type);
+    }
+  };
+
+  private static List<Property> beanProperties(Class<?> type) {
+    return Arrays.stream(Utils.beanInfo(type).getPropertyDescriptors())
+        .filter(property -> !property.getName().equals("class"))
+        .filter(property -> property.getReadMethod() != null)
+        .map(property -> property(property.getName(), property.getReadMethod()))
+        .toList();
+  }
+
+  private static List<Property> recordProperties(Class<?> type) {
+    return Arrays.stream(type.getRecordComponents())
+        .map(component -> property(component.getName(), component.getAccessor()))
+        .toList();
+  }
+
+  private static Property property(String name, Method getter) {
+    var annotation = getter.getAnnotation(JSONProperty.class);
+    var jsonName = annotation == null ? name : annotation.value();
+    var key = Fragment.of(quote(jsonName) + ": ");
+    var handle = Utils.unreflect(MethodHandles.lookup(), getter)
+        .asType(methodType(Object.class, Object.class));
+    return new Property(jsonName, key, getter, handle, getter.getReturnType());
+  }
+
+  private static String quote(String text) {
+    var output = new CharOutput(null);
+    output.appendString(text);
+    return output.toString();
+  }
+
+  private static final Generator STRING_GENERATOR = (writer, value, output) -> output.appendString(value.toString());
+  private static final Generator INT_GENERATOR = (writer, value, output) -> output.appendInt(((Number) value).intValue());
+  private static final Generator LONG_GENERATOR = (writer, value, output) -> output.appendLong((Long) value);
+  private static final Generator FLOAT_GENERATOR = (writer, value, output) -> output.appendFloat((Float) value);
+  private static final Generator DOUBLE_GENERATOR = (writer, value, output) -> output.appendDouble((Double) value);
+  private static final Generator BOOLEAN_GENERATOR = (writer, value, output) -> output.appendBoolean((Boolean) value);
+  private static final Generator ITERABLE_GENERATOR = (writer, value, output) -> {
+    output.append('[');
+    var separator = false;
+    for(var element: (Iterable<?>) value) {
+      if (separator) {
+        output.append(SEPARATOR);
+      }
+      separator = true;
+      writer.generate(element, output);
+    }
+    output.append(']');
+  };
+
+  private static final Encoder STRING_ENCODER = (writer, value, output) -> output.writeString(value.toString());
+  private static final Encoder INTEGER_ENCODER = (writer, value, output) -> output.writeLong(((Number) value).longValue());
+  private static final Encoder FLOAT_ENCODER = (writer, value, output) -> output.writeFloat((Float) value);
+  private static final Encoder DOUBLE_ENCODER = (writer, value, output) -> output.writeDouble((Double) value);
+  private static final Encoder BOOLEAN_ENCODER = (writer, value, output) -> output.writeBoolean((Boolean) value);
+  private static final Encoder ITERABLE_ENCODER = (writer, value, output) -> {
+    if (value instanceof Collection<?> collection) {
+      output.writeHead(CBOROutput.ARRAY, collection.size());
+      var count = 0;
+      for(var element: collection) {
+        writer.encode(element, output);
+        count++;
+      }
+      if (count != collection.size()) {
+        throw new IllegalStateException("the size of the collection has changed");
+      }
+      return;
+    }
+    output.write(CBOROutput.INDEFINITE_ARRAY);
+    for(var element: (Iterable<?>) value) {
+      writer.encode(element, output);
+    }
+    output.write(CBOROutput.BREAK);
+  };
+
+  private final HashMap<Class<?>, Generator> configurationMap = new HashMap<>();
+  private boolean generateSerializers;
+
+  /**
+   * The generators specialized for this writer, computed once per class.
+   * Replaced each time the configuration changes.
+   */
+  private ClassValue<Generator> generators = newGenerators();
+
+  private ClassValue<Generator> newGenerators() {
+    return new ClassValue<>() {
+      @Override
+      protected Generator computeValue(Class<?> type) {
+        return findGenerator(type);
+      }
+    };
+  }
+
+  /**
+   * The CBOR encoders specialized for this writer, computed once per class.
+   * Replaced each time the configuration changes.
+   */
+  private ClassValue<Encoder> encoders = newEncoders();
+
+  private ClassValue<Encoder> newEncoders() {
+    return new ClassValue<>() {
+      @Override
+      protected Encoder computeValue(Class<?> type) {
+        return findEncoder(type);
+      }
+    };
+  }
+
+  private Generator findGenerator(Class<?> type) {
+    var generator = valueGenerator(type);
+    if (generator != null) {
+      return generator;
+    }
+    if (Iterable.class.isAssignableFrom(type)) {
+      return ITERABLE_GENERATOR;
+    }
+    var codec = JSONCodecs.codec(type);
+    if (codec != null) {
+      return codecGenerator(codec);
+    }
+    return objectGenerator(type);
+  }
+
+  /**
+   * Returns the generator of a configured type, a primitive type or a string type,
+   * {@code null} otherwise.
+   * The value of a primitive property is boxed, so its configuration is the one of the wrapper class,
+   * like for a value encoded in CBOR.
+   */
+  private Generator valueGenerator(Class<?> type) {
+    var generator = configurationMap.get(Utils.wrap(type));
+    if (generator != null) {
+      return generator;
+    }
+    if (type == String.class || type == Character.class || type == char.class) {
+      return STRING_GENERATOR;
+    }
+    if (type == int.class || type == Integer.class || type == short.class || type == Short.class
+        || type == byte.class || type == Byte.class) {
+      return INT_GENERATOR;
+    }
+    if (type == long.class || type == Long.class) {
+      return LONG_GENERATOR;
+    }
+    if (type == float.class || type == Float.class) {
+      return FLOAT_GENERATOR;
+    }
+    if (type == double.class || type == Double.class) {
+      return DOUBLE_GENERATOR;
+    }
+    if (type == boolean.class || type == Boolean.class) {
+      return BOOLEAN_GENERATOR;
+    }
+    return null;
+  }
+
+  /**
+   * Creates the generator of a bean or a record, the generators of the properties are resolved upfront
+   * if the type of the property is final and is a configured type, a primitive type or a string type.
+   */
+  private Generator objectGenerator(Class<?> type) {
+    var properties = PROPERTIES_CLASS_VALUE.get(type);
+    var length = properties.size();
+    var keys = new Fragment[length];
+    var getters = new MethodHandle[length];
+    var valueGenerators = new Generator[length];
+    for(var i = 0; i < length; i++) {
+      var property = properties.get(i);
+      keys[i] = property.key;
+      getters[i] = property.getter;
+      if (Modifier.isFinal(property.type.getModifiers())) {
+        valueGenerators[i] = valueGenerator(property.type);
+      }
+    }
+    if (generateSerializers) {
+      var generator = SerializerGenerator.generate(MethodHandles.lookup(), type, properties, valueGenerators,
+          Set.copyOf(configurationMap.keySet()));
+      if (generator != null) {
+        return generator;
+      }
+    }
+    return (writer, bean, output) -> {
+      output.append('{');
+      for(var i = 0; i < length; i++) {
+        if (i != 0) {
+          output.append(SEPARATOR);
+        }
+        output.append(keys[i]);
+        Object value;
+        try {
+          value = getters[i].invokeExact(bean);
+        } catch (Throwable t) {
+          throw Utils.rethrow(t);
+        }
+        var valueGenerator = valueGenerators[i];
+        if (value == null) {
+          output.append(NULL);
+        } else if (valueGenerator != null) {
+          valueGenerator.generate(writer, value, output);
+        } else {
+          writer.generate(value, output);
+        }
+      }
+      output.append('}');
+    };
+  }
+
+  /**
+   * Creates the generator of a class that has a codec generated at compile time,
+   * the separator is part of the keys.
+   */
+  private static Generator codecGenerator(JSONCodec<Object> codec) {
+    var keyNames = codec.keys();
+    var keys = new Fragment[keyNames.size()];
+    for(var i = 0; i < keys.length; i++) {
+      keys[i] = Fragment.of((i == 0 ? "" : ", ") + quote(keyNames.get(i)) + ": ");
+    }
+    return (writer, value, output) -> {
+      output.append('{');
+      codec.write(value, writer.new CodecOutput(keys, output));
+      output.append('}');
+    };
+  }
+
+  /**
+   * The output of a generated codec, the primitive values are written directly,
+   * the strings too unless {@code String} is configured.
+   */
+  private final class CodecOutput implements JSONCodec.Output {
+    private final Fragment[] keys;
+    private final JSONOutput output;
+
+    private CodecOutput(Fragment[] keys, JSONOutput output) {
+      this.keys = keys;
+      this.output = output;
+    }
+
+    @Override
+    public void property(int index, String value) {
+      output.append(keys[index]);
+      if (configurationMap.containsKey(String.class)) {
+        generate(value, output);
+        return;
+      }
+      generateString(value, output);
+    }
+
+    @Override
+    public void property(int index, int value) {
+      output.append(keys[index]);
+      output.appendInt(value);
+    }
+
+    @Override
+    public void property(int index, long value) {
+      output.append(keys[index]);
+      output.appendLong(value);
+    }
+
+    @Override
+    public void property(int index, float value) {
+      output.append(keys[index]);
+      output.appendFloat(value);
+    }
+
+    @Override
+    public void property(int index, double value) {
+      output.append(keys[index]);
+      output.appendDouble(value);
+    }
+
+    @Override
+    public void property(int index, boolean value) {
+      output.append(keys[index]);
+      output.appendBoolean(value);
+    }
+
+    @Override
+    public void property(int index, Object value) {
+      output.append(keys[index]);
+      generate(value, output);
+    }
+  }
+
+  /**
+   * Finds the CBOR encoder of a class, using the same metadata as the generators,
+   * the value of a configured type is encoded from its JSON text.
+   */
+  private Encoder findEncoder(Class<?> type) {
+    var generator = configurationMap.get(type);
+    if (generator != null) {
+      return (writer, value, output) -> {
+        var text = new CharOutput(null);
+        generator.generate(writer, value, text);
+        output.writeJSON(text.toString());
+      };
+    }
+    if (type == String.class || type == Character.class) {
+      return STRING_ENCODER;
+    }
+    if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+      return INTEGER_ENCODER;
+    }
+    if (type == Double.class) {
+      return DOUBLE_ENCODER;
+    }
+    if (type == Float.class) {
+      return FLOAT_ENCODER;
+    }
+    if (type == Boolean.class) {
+      return BOOLEAN_ENCODER;
+    }
+    if (Iterable.class.isAssignableFrom(type)) {
+      return ITERABLE_ENCODER;
+    }
+    var codec = JSONCodecs.codec(type);
+    if (codec != null) {
+      var keys = codec.keys().stream().map(CBOROutput::encodeString).toArray(byte[][]::new);
+      return (writer, value, output) -> {
+        output.writeHead(CBOROutput.MAP, keys.length);
+        codec.write(value, new CBORCodecOutput(writer, keys, output));
+      };
+    }
+    var properties = PROPERTIES_CLASS_VALUE.get(type);
+    var keys = properties.stream().map(property -> CBOROutput.encodeString(property.name)).toArray(byte[][]::new);
+    var getters = properties.stream().map(Property::getter).toArray(MethodHandle[]::new);
+    return (writer, bean, output) -> {
+      output.writeHead(CBOROutput.MAP, keys.length);
+      for(var i = 0; i < keys.length; i++) {
+        output.write(keys[i]);
+        Object value;
+        try {
+          value = getters[i].invokeExact(bean);
+        } catch (Throwable t) {
+          throw Utils.rethrow(t);
+        }
+        writer.encode(value, output);
+      }
+    };
+  }
+
+  /**
+   * The output of a generated codec when encoding in CBOR.
+   */
+  private record CBORCodecOutput(JSONWriter writer, byte[][] keys, CBOROutput output) implements JSONCodec.Output {
+    @Override
+    public void property(int index, String value) {
+      output.write(keys[index]);
+      writer.encode(value, output);
+    }
+
+    @Override
+    public void property(int index, int value) {
+      output.write(keys[index]);
+      output.writeLong(value);
+    }
+
+    @Override
+    public void property(int index, long value) {
+      output.write(keys[index]);
+      output.writeLong(value);
+    }
+
+    @Override
+    public void property(int index, float value) {
+      output.write(keys[index]);
+      output.writeFloat(value);
+    }
+
+    @Override
+    public void property(int index, double value) {
+      output.write(keys[index]);
+      output.writeDouble(value);
+    }
+
+    @Override
+    public void property(int index, boolean value) {
+      output.write(keys[index]);
+      output.writeBoolean(value);
+    }
+
+    @Override
+    public void property(int index, Object value) {
+      output.write(keys[index]);
+      writer.encode(value, output);
+    }
+  }
+
+  private void encode(Object value, CBOROutput output) {
+    if (value == null) {
+      output.write(CBOROutput.NULL);
+      return;
+    }
+    encoders.get(value.getClass()).encode(this, value, output);
+  }
+
+  // called by the generated serializers
+  static void generateString(String value, JSONOutput output) {
+    if (value == null) {
+      output.append(NULL);
+      return;
+    }
+    output.appendString(value);
+  }
+
+  // called by the generated serializers
+  static void generateValue(Generator generator, JSONWriter writer, Object value, JSONOutput output) {
+    if (value == null) {
+      output.append(NULL);
+      return;
+    }
+    if (generator != null) {
+      generator.generate(writer, value, output);
+      return;
+    }
+    writer.generate(value, output);
+  }
+
+  private void generate(Object value, JSONOutput output) {
+    if (value == null) {
+      output.append(NULL);
+      return;
+    }
+    generators.get(value.getClass()).generate(this, value, output);
+  }
+
+  public <T> void configure(Class<T> type, Function<? super T, String> function) {
+    Objects.requireNonNull(type);
+    Objects.requireNonNull(function);
+    var result = configurationMap.putIfAbsent(type, (writer, value, output) -> output.append(function.apply(type.cast(value))));
+    if (result != null) {
+      throw new IllegalStateException("configuration for " + type.getName() + " already exists");
+    }
+    generators = newGenerators();
+    encoders = newEncoders();
+  }
+
+  /**
+   * Enables the generation of a dedicated serializer class for each bean or record type.
+   * Instead of looping over the properties, a generated serializer calls each getter directly,
+   * so the JIT can inline the getters and the writing of the values of each type separately.
+   * The serializers are defined as hidden classes, so they are unloaded with this writer.
+   *
+   * If a type or the type of one of its properties can not be accessed from this package,
+   * the reflective serializer is used for that type.
+   */
+  public void enableGeneratedSerializers() {
+    generateSerializers = true;
+    generators = newGenerators();
+    encoders = newEncoders();
+  }
+
   public String toJSON(Object o) {
-    throw new UnsupportedOperationException("TODO");
+    var output = new CharOutput(null);
+    generate(o, output);
+    return output.toString();
+  }
+
+  /**
+   * Writes the JSON text of an object to an appendable.
+   * The text is written by fragments while the object graph is traversed, so the memory used
+   * does not depend on the size of the JSON text.
+   * The appendable is not flushed nor closed by this method.
+   *
+   * @param o the object to write as JSON
+   * @param appendable the appendable to write to
+   * @throws IOException if an I/O error occurs while writing
+   */
+  public void toJSON(Object o, Appendable appendable) throws IOException {
+    Objects.requireNonNull(appendable);
+    var output = new CharOutput(appendable);
+    try {
+      generate(o, output);
+      output.flush();
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Writes the JSON text of an object encoded in UTF-8 to an output stream.
+   * The output stream is flushed but not closed by this method.
+   *
+   * @param o the object to write as JSON
+   * @param outputStream the output stream to write to
+   * @throws IOException if an I/O error occurs while writing
+   *
+   * @see #toJSON(Object, Appendable)
+   */
+  public void toJSON(Object o, OutputStream outputStream) throws IOException {
+    Objects.requireNonNull(outputStream);
+    toJSON(o, Channels.newChannel(outputStream));
+    outputStream.flush();
+  }
+
+  /**
+   * Writes the JSON text of an object encoded in UTF-8 to a channel.
+   * The text is encoded directly into pooled byte buffers which are written to the channel
+   * using gathering writes when there are enough of them.
+   * The channel is not closed by this method.
+   *
+   * @param o the object to write as JSON
+   * @param channel the channel to write to
+   * @throws IOException if an I/O error occurs while writing
+   */
+  public void toJSON(Object o, WritableByteChannel channel) throws IOException {
+    Objects.requireNonNull(channel);
+    var output = new ByteOutput(channel);
+    try {
+      generate(o, output);
+      output.flush();
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      output.release();  // also when a generator or the channel throws
+    }
+  }
+
+  /**
+   * Encodes an object in CBOR (RFC 8949), a binary format with the same data model as JSON
+   * but where the numbers are not formatted and the strings are not quoted nor escaped.
+   * The properties of the beans and the records are the ones written by {@link #toJSON(Object)},
+   * the value of a configured type is encoded from its JSON text.
+   *
+   * @param o the object to encode
+   * @return the encoded bytes
+   *
+   * @see JSONReader#parseCBOR(byte[], Type)
+   */
+  public byte[] toCBOR(Object o) {
+    var output = new CBOROutput(null);
+    encode(o, output);
+    return output.toByteArray();
+  }
+
+  /**
+   * Encodes an object in CBOR to an output stream.
+   * The output stream is flushed but not closed by this method.
+   *
+   * @param o the object to encode
+   * @param outputStream the output stream to write to
+   * @throws IOException if an I/O error occurs while writing
+   *
+   * @see #toCBOR(Object)
+   */
+  public void toCBOR(Object o, OutputStream outputStream) throws IOException {
+    Objects.requireNonNull(outputStream);
+    var output = new CBOROutput(outputStream);
+    try {
+      encode(o, output);
+      output.flush();
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+    outputStream.flush();
   }
 }
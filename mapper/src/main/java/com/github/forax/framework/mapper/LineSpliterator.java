@@ -0,0 +1,181 @@
+package com.github.forax.framework.mapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * A spliterator on the lines of a file, each line being decoded by a {@link LineDecoder}.
+ *
+ * The file is split into ranges of bytes that start and end on a line boundary,
+ * a range is memory mapped when it is traversed, by windows of at most
+ * {@code windowSize} bytes that always end on a line boundary.
+ * Each spliterator creates its own decoder when the traversal starts, so when the stream
+ * is parallel, each worker reuses the state of its decoder from one line to the next.
+ * The blank lines are skipped.
+ */
+final class LineSpliterator implements Spliterator<Object> {
+  /**
+   * Decodes the bytes of a line, a decoder is only used by one thread.
+   */
+  @FunctionalInterface
+  interface LineDecoder {
+    Object decode(ByteBuffer buffer, int start, int end);
+  }
+
+  static final int WINDOW_SIZE = 1 << 30;
+  private static final long MIN_SPLIT_SIZE = 1 << 16;
+
+  private final FileChannel channel;
+  private long start;
+  private final long end;
+  private final int windowSize;
+  private final Supplier<? extends LineDecoder> decoderFactory;
+
+  private LineDecoder decoder;
+  private MappedByteBuffer window;
+  private long windowOffset;
+  private int windowPosition;
+  private int windowLimit;  // after the last line of the window
+
+  /**
+   * Creates a spliterator on the lines between start and end,
+   * start and end must be at the beginning of a line or at the end of the file.
+   */
+  LineSpliterator(FileChannel channel, long start, long end, int windowSize, Supplier<? extends LineDecoder> decoderFactory) {
+    this.channel = Objects.requireNonNull(channel);
+    this.start = start;
+    this.end = end;
+    this.windowSize = windowSize;
+    this.decoderFactory = Objects.requireNonNull(decoderFactory);
+  }
+
+  private static boolean isBlank(ByteBuffer buffer, int start, int end) {
+    for(var i = start; i < end; i++) {
+      var b = buffer.get(i);
+      if (b != ' ' && b != '\t' && b != '\r') {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean nextWindow() {
+    var offset = window == null ? start : windowOffset + windowLimit;
+    if (offset >= end) {
+      return false;
+    }
+    var size = (int) Math.min(end - offset, windowSize);
+    MappedByteBuffer buffer;
+    try {
+      buffer = channel.map(MapMode.READ_ONLY, offset, size);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var limit = size;
+    if (offset + size < end) {  // the last line may be truncated
+      while(limit > 0 && buffer.get(limit - 1) != '\n') {
+        limit--;
+      }
+      if (limit == 0) {
+        throw new IllegalStateException("line longer than " + windowSize + " bytes at offset " + offset);
+      }
+    }
+    window = buffer;
+    windowOffset = offset;
+    windowPosition = 0;
+    windowLimit = limit;
+    return true;
+  }
+
+  @Override
+  public boolean tryAdvance(Consumer<? super Object> action) {
+    for(;;) {
+      if (window == null || windowPosition == windowLimit) {
+        if (!nextWindow()) {
+          return false;
+        }
+      }
+      var window = this.window;
+      var lineStart = windowPosition;
+      var lineEnd = lineStart;
+      while(lineEnd < windowLimit && window.get(lineEnd) != '\n') {
+        lineEnd++;
+      }
+      windowPosition = lineEnd == windowLimit ? lineEnd : lineEnd + 1;
+      if (isBlank(window, lineStart, lineEnd)) {
+        continue;
+      }
+      action.accept(decode(window, lineStart, lineEnd));
+      return true;
+    }
+  }
+
+  private Object decode(ByteBuffer window, int lineStart, int lineEnd) {
+    var decoder = this.decoder;
+    if (decoder == null) {
+      decoder = this.decoder = decoderFactory.get();
+    }
+    try {
+      return decoder.decode(window, lineStart, lineEnd);
+    } catch (IllegalStateException e) {
+      throw new IllegalStateException(e.getMessage() + "\n while parsing the line at offset " + (windowOffset + lineStart), e);
+    }
+  }
+
+  /**
+   * Returns the offset after the first newline found between offset and end or -1.
+   */
+  private long nextLine(long offset) {
+    var buffer = ByteBuffer.allocate(8_192);
+    try {
+      while(offset < end) {
+        buffer.clear().limit((int) Math.min(buffer.capacity(), end - offset));
+        var read = channel.read(buffer, offset);
+        if (read == -1) {
+          return -1;
+        }
+        for(var i = 0; i < read; i++) {
+          if (buffer.get(i) == '\n') {
+            return offset + i + 1;
+          }
+        }
+        offset += read;
+      }
+      return -1;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public Spliterator<Object> trySplit() {
+    if (window != null || end - start < 2 * MIN_SPLIT_SIZE) {  // already started or too small
+      return null;
+    }
+    var middle = nextLine(start + (end - start) / 2);
+    if (middle == -1 || middle >= end) {
+      return null;
+    }
+    var prefix = new LineSpliterator(channel, start, middle, windowSize, decoderFactory);
+    start = middle;
+    return prefix;
+  }
+
+  @Override
+  public long estimateSize() {
+    return end - (window == null ? start : windowOffset + windowPosition);  // in bytes, not in lines
+  }
+
+  @Override
+  public int characteristics() {
+    return ORDERED | NONNULL;
+  }
+}
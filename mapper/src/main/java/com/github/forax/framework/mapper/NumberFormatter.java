@@ -0,0 +1,432 @@
+package com.github.forax.framework.mapper;
+
+import java.math.BigInteger;
+
+import static java.lang.Math.multiplyHigh;
+
+/**
+ * Formats the numbers as ASCII characters into a byte array, without allocating.
+ *
+ * The integers are formatted two digits at a time from the end.
+ * The doubles and the floats are formatted with the shortest decimal that rounds to the same value,
+ * using the Schubfach algorithm of Raffaello Giulietti, with the same format as {@link Double#toString(double)}
+ * and {@link Float#toString(float)}, which use the same algorithm since Java 19.
+ *
+ * The byte array must have at least {@link #MAX_LENGTH} bytes after the offset.
+ */
+final class NumberFormatter {
+  private NumberFormatter() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The maximum number of characters of a formatted number, {@code -2.2250738585072014E-308}
+   * or {@link Long#MIN_VALUE} are shorter.
+   */
+  static final int MAX_LENGTH = 32;
+
+  private static final byte[] DIGIT_PAIRS = new byte[200];
+  static {
+    for(var i = 0; i < 100; i++) {
+      DIGIT_PAIRS[i << 1] = (byte) ('0' + i / 10);
+      DIGIT_PAIRS[(i << 1) + 1] = (byte) ('0' + i % 10);
+    }
+  }
+
+  private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+
+  /**
+   * Formats an int, returns the offset after the last character.
+   */
+  static int formatInt(int value, byte[] buffer, int offset) {
+    return formatLong(value, buffer, offset);
+  }
+
+  /**
+   * Formats a long, returns the offset after the last character.
+   */
+  static int formatLong(long value, byte[] buffer, int offset) {
+    if (value < 0) {
+      if (value == Long.MIN_VALUE) {
+        System.arraycopy(MIN_LONG, 0, buffer, offset, MIN_LONG.length);
+        return offset + MIN_LONG.length;
+      }
+      buffer[offset++] = '-';
+      value = -value;
+    }
+    var end = offset + digitCount(value);
+    var index = end;
+    while(value >= 100) {
+      var quotient = value / 100;
+      var pair = (int) (value - quotient * 100) << 1;
+      buffer[--index] = DIGIT_PAIRS[pair + 1];
+      buffer[--index] = DIGIT_PAIRS[pair];
+      value = quotient;
+    }
+    if (value >= 10) {
+      var pair = (int) value << 1;
+      buffer[--index] = DIGIT_PAIRS[pair + 1];
+      buffer[--index] = DIGIT_PAIRS[pair];
+    } else {
+      buffer[--index] = (byte) ('0' + value);
+    }
+    return end;
+  }
+
+  /**
+   * Returns the number of digits of a positive long.
+   */
+  private static int digitCount(long value) {
+    var length = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(value));
+    return value >= POW10[length] ? length + 1 : Math.max(length, 1);
+  }
+
+  // the decimal representation of the doubles
+
+  private static final int DOUBLE_PRECISION = 53;
+  private static final int DOUBLE_Q_MIN = -1_074;
+  private static final long DOUBLE_C_MIN = 1L << (DOUBLE_PRECISION - 1);
+  private static final int DOUBLE_C_TINY = 3;
+
+  private static final int FLOAT_PRECISION = 24;
+  private static final int FLOAT_Q_MIN = -149;
+  private static final int FLOAT_C_MIN = 1 << (FLOAT_PRECISION - 1);
+  private static final int FLOAT_C_TINY = 8;
+
+  // number of significant digits of the decimals
+  private static final int H = 17;
+
+  private static final long MASK_63 = (1L << 63) - 1;
+  private static final long MASK_32 = (1L << 32) - 1;
+  private static final int MASK_28 = (1 << 28) - 1;
+
+  private static final long[] POW10 = new long[H + 2];
+  static {
+    POW10[0] = 1;
+    for(var i = 1; i < POW10.length; i++) {
+      POW10[i] = 10 * POW10[i - 1];
+    }
+  }
+
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  /**
+   * For each k between {@link #K_MIN} and {@link #K_MAX}, let 10^-k = β 2^r with 2^125 <= β < 2^126,
+   * the table contains g = floor(β) + 1 split into its 63 higher bits and its 63 lower bits.
+   */
+  private static final long[] G = new long[(K_MAX - K_MIN + 1) << 1];
+  static {
+    var mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+    for(var k = K_MIN; k <= K_MAX; k++) {
+      var r = flog2pow10(-k) - 125;
+      BigInteger beta;
+      if (k <= 0) {
+        var pow10 = BigInteger.TEN.pow(-k);
+        beta = r >= 0 ? pow10.shiftRight(r) : pow10.shiftLeft(-r);
+      } else {
+        beta = BigInteger.ONE.shiftLeft(-r).divide(BigInteger.TEN.pow(k));
+      }
+      var g = beta.add(BigInteger.ONE);
+      var index = (k - K_MIN) << 1;
+      G[index] = g.shiftRight(63).longValueExact();
+      G[index + 1] = g.and(mask).longValueExact();
+    }
+  }
+
+  private static int flog10pow2(int e) {
+    return (int) (e * 661_971_961_083L >> 41);
+  }
+
+  private static int flog10threeQuartersPow2(int e) {
+    return (int) (e * 661_971_961_083L + -274_743_187_321L >> 41);
+  }
+
+  private static int flog2pow10(int e) {
+    return (int) (e * 913_124_641_741L >> 38);
+  }
+
+  private static final byte[] NAN = "NaN".getBytes();
+  private static final byte[] INFINITY = "Infinity".getBytes();
+  private static final byte[] MINUS_INFINITY = "-Infinity".getBytes();
+  private static final byte[] ZERO = "0.0".getBytes();
+  private static final byte[] MINUS_ZERO = "-0.0".getBytes();
+
+  private static int copy(byte[] text, byte[] buffer, int offset) {
+    System.arraycopy(text, 0, buffer, offset, text.length);
+    return offset + text.length;
+  }
+
+  /**
+   * Formats a double like {@link Double#toString(double)}, returns the offset after the last character.
+   */
+  static int formatDouble(double value, byte[] buffer, int offset) {
+    var bits = Double.doubleToRawLongBits(value);
+    var t = bits & (DOUBLE_C_MIN - 1);
+    var bq = (int) (bits >>> (DOUBLE_PRECISION - 1)) & 0x7FF;
+    if (bq == 0x7FF) {
+      return copy(t != 0 ? NAN : bits > 0 ? INFINITY : MINUS_INFINITY, buffer, offset);
+    }
+    if (bq == 0 && t == 0) {
+      return copy(bits == 0 ? ZERO : MINUS_ZERO, buffer, offset);
+    }
+    if (bits < 0) {
+      buffer[offset++] = '-';
+    }
+    if (bq == 0) {  // subnormal
+      return t < DOUBLE_C_TINY ?
+          toDecimal(DOUBLE_Q_MIN, 10 * t, -1, buffer, offset) :
+          toDecimal(DOUBLE_Q_MIN, t, 0, buffer, offset);
+    }
+    var mq = -DOUBLE_Q_MIN + 1 - bq;
+    var c = DOUBLE_C_MIN | t;
+    if (0 < mq && mq < DOUBLE_PRECISION) {  // maybe an integer
+      var f = c >> mq;
+      if (f << mq == c) {
+        return toChars(f, 0, buffer, offset);
+      }
+    }
+    return toDecimal(-mq, c, 0, buffer, offset);
+  }
+
+  /**
+   * Finds the shortest decimal in the rounding interval of c 2^q, dk is added to its exponent.
+   */
+  private static int toDecimal(int q, long c, int dk, byte[] buffer, int offset) {
+    var out = (int) c & 1;
+    var cb = c << 2;
+    var cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != DOUBLE_C_MIN || q == DOUBLE_Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {  // the interval is not symmetric
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    var h = q + flog2pow10(-k) + 2;
+    var index = (k - K_MIN) << 1;
+    var g1 = G[index];
+    var g0 = G[index + 1];
+    var vb = roundToOdd(g1, g0, cb << h);
+    var vbl = roundToOdd(g1, g0, cbl << h);
+    var vbr = roundToOdd(g1, g0, cbr << h);
+    var s = vb >> 2;
+    if (s >= 100) {
+      var sp10 = 10 * multiplyHigh(s, 115_292_150_460_684_698L << 4);  // s / 10 * 10
+      var tp10 = sp10 + 10;
+      var upin = vbl + out <= sp10 << 2;
+      var wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(upin ? sp10 : tp10, k, buffer, offset);
+      }
+    }
+    var t = s + 1;
+    var uin = vbl + out <= s << 2;
+    var win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(uin ? s : t, k + dk, buffer, offset);
+    }
+    var cmp = vb - (s + t << 1);
+    return toChars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, buffer, offset);
+  }
+
+  private static long roundToOdd(long g1, long g0, long cp) {
+    var x1 = multiplyHigh(g0, cp);
+    var y0 = g1 * cp;
+    var y1 = multiplyHigh(g1, cp);
+    var z = (y0 >>> 1) + x1;
+    var vbp = y1 + (z >>> 63);
+    return vbp | (z & MASK_63) + MASK_63 >>> 63;
+  }
+
+  /**
+   * Formats a float like {@link Float#toString(float)}, returns the offset after the last character.
+   */
+  static int formatFloat(float value, byte[] buffer, int offset) {
+    var bits = Float.floatToRawIntBits(value);
+    var t = bits & (FLOAT_C_MIN - 1);
+    var bq = (bits >>> (FLOAT_PRECISION - 1)) & 0xFF;
+    if (bq == 0xFF) {
+      return copy(t != 0 ? NAN : bits > 0 ? INFINITY : MINUS_INFINITY, buffer, offset);
+    }
+    if (bq == 0 && t == 0) {
+      return copy(bits == 0 ? ZERO : MINUS_ZERO, buffer, offset);
+    }
+    if (bits < 0) {
+      buffer[offset++] = '-';
+    }
+    if (bq == 0) {  // subnormal
+      return t < FLOAT_C_TINY ?
+          toDecimal(FLOAT_Q_MIN, 10 * t, -1, buffer, offset) :
+          toDecimal(FLOAT_Q_MIN, t, 0, buffer, offset);
+    }
+    var mq = -FLOAT_Q_MIN + 1 - bq;
+    var c = FLOAT_C_MIN | t;
+    if (0 < mq && mq < FLOAT_PRECISION) {  // maybe an integer
+      var f = c >> mq;
+      if (f << mq == c) {
+        return toChars(f, 0, buffer, offset);
+      }
+    }
+    return toDecimal(-mq, c, 0, buffer, offset);
+  }
+
+  /**
+   * Finds the shortest decimal in the rounding interval of the float c 2^q, dk is added to its exponent.
+   */
+  private static int toDecimal(int q, int c, int dk, byte[] buffer, int offset) {
+    var out = c & 1;
+    var cb = (long) c << 2;
+    var cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != FLOAT_C_MIN || q == FLOAT_Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {  // the interval is not symmetric
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    var h = q + flog2pow10(-k) + 33;
+    var g = G[(k - K_MIN) << 1] + 1;
+    var vb = roundToOdd(g, cb << h);
+    var vbl = roundToOdd(g, cbl << h);
+    var vbr = roundToOdd(g, cbr << h);
+    var s = vb >> 2;
+    if (s >= 100) {
+      var sp10 = 10 * (int) (s * 1_717_986_919L >>> 34);  // s / 10 * 10
+      var tp10 = sp10 + 10;
+      var upin = vbl + out <= sp10 << 2;
+      var wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(upin ? sp10 : tp10, k, buffer, offset);
+      }
+    }
+    var t = s + 1;
+    var uin = vbl + out <= s << 2;
+    var win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(uin ? s : t, k + dk, buffer, offset);
+    }
+    var cmp = vb - (s + t << 1);
+    return toChars(cmp < 0 || cmp == 0 && (s & 1) == 0 ? s : t, k + dk, buffer, offset);
+  }
+
+  private static int roundToOdd(long g, long cp) {
+    var x1 = multiplyHigh(g, cp);
+    var vbp = x1 >>> 31;
+    return (int) (vbp | (x1 & MASK_32) + MASK_32 >>> 32);
+  }
+
+  /**
+   * Formats the decimal f 10^e, in plain notation if 10^-3 <= f 10^e < 10^7,
+   * in scientific notation otherwise.
+   */
+  private static int toChars(long f, int e, byte[] buffer, int offset) {
+    // scale f to H digits, so f 10^e = 0.f 10^e'
+    var length = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+    if (f >= POW10[length]) {
+      length++;
+    }
+    f *= POW10[H - length];
+    e += length;
+
+    // split the H digits into the first digit h, the next 8 digits m and the last 8 digits l
+    var hm = multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;  // f / 10^8
+    var l = (int) (f - 100_000_000 * hm);
+    var h = (int) (hm * 1_441_151_881L >>> 57);  // hm / 10^8
+    var m = (int) (hm - 100_000_000 * h);
+    if (0 < e && e <= 7) {
+      // plain notation without leading zeros
+      buffer[offset++] = (byte) ('0' + h);
+      var y = y(m);
+      var i = 1;
+      for(; i < e; i++) {
+        var digit = 10 * y;
+        buffer[offset++] = (byte) ('0' + (digit >>> 28));
+        y = digit & MASK_28;
+      }
+      buffer[offset++] = '.';
+      for(; i <= 8; i++) {
+        var digit = 10 * y;
+        buffer[offset++] = (byte) ('0' + (digit >>> 28));
+        y = digit & MASK_28;
+      }
+      return lowDigits(l, buffer, offset);
+    }
+    if (-3 < e && e <= 0) {
+      // plain notation with leading zeros
+      buffer[offset++] = '0';
+      buffer[offset++] = '.';
+      for(; e < 0; e++) {
+        buffer[offset++] = '0';
+      }
+      buffer[offset++] = (byte) ('0' + h);
+      offset = append8Digits(m, buffer, offset);
+      return lowDigits(l, buffer, offset);
+    }
+    // scientific notation
+    buffer[offset++] = (byte) ('0' + h);
+    buffer[offset++] = '.';
+    offset = append8Digits(m, buffer, offset);
+    offset = lowDigits(l, buffer, offset);
+    return exponent(e - 1, buffer, offset);
+  }
+
+  private static int lowDigits(int l, byte[] buffer, int offset) {
+    if (l != 0) {
+      offset = append8Digits(l, buffer, offset);
+    }
+    // remove the trailing zeros but the one after the dot
+    while(buffer[offset - 1] == '0') {
+      offset--;
+    }
+    if (buffer[offset - 1] == '.') {
+      offset++;
+    }
+    return offset;
+  }
+
+  /**
+   * Appends the 8 digits of m, from left to right, each digit is the integer part of a fixed point number.
+   */
+  private static int append8Digits(int m, byte[] buffer, int offset) {
+    var y = y(m);
+    for(var i = 0; i < 8; i++) {
+      var digit = 10 * y;
+      buffer[offset++] = (byte) ('0' + (digit >>> 28));
+      y = digit & MASK_28;
+    }
+    return offset;
+  }
+
+  /**
+   * Returns floor((a + 1) 2^28 / 10^8) - 1, the fixed point number of the 8 digits of a.
+   */
+  private static int y(int a) {
+    return (int) (multiplyHigh((long) (a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+  }
+
+  private static int exponent(int e, byte[] buffer, int offset) {
+    buffer[offset++] = 'E';
+    if (e < 0) {
+      buffer[offset++] = '-';
+      e = -e;
+    }
+    if (e < 10) {
+      buffer[offset++] = (byte) ('0' + e);
+      return offset;
+    }
+    if (e >= 100) {
+      var d = e * 1_311 >>> 17;  // e / 100
+      buffer[offset++] = (byte) ('0' + d);
+      e -= 100 * d;
+    }
+    var d = e * 103 >>> 10;  // e / 10
+    buffer[offset++] = (byte) ('0' + d);
+    buffer[offset++] = (byte) ('0' + e - 10 * d);
+    return offset;
+  }
+}
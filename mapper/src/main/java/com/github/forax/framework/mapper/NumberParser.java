@@ -0,0 +1,136 @@
+package com.github.forax.framework.mapper;
+
+import java.math.BigInteger;
+
+import static java.lang.Math.multiplyHigh;
+
+/**
+ * Converts a decimal significand and a decimal exponent to the nearest double, without a String.
+ *
+ * If the significand and the power of ten are both exact doubles, the result is their product
+ * or their quotient (Clinger's fast path). Otherwise, the algorithm of Eisel and Lemire multiplies
+ * the significand by a 128 bits approximation of the power of ten, and fails in the rare cases
+ * where the approximation is not precise enough to round correctly. In that case or if the significand
+ * has too many digits, the caller should use {@link Double#parseDouble(String)}.
+ */
+final class NumberParser {
+  private NumberParser() {
+    throw new AssertionError();
+  }
+
+  /**
+   * The maximum number of significant digits of a significand, so it fits in a long.
+   */
+  static final int MAX_DIGITS = 18;
+
+  private static final double[] EXACT_POW10 = new double[23];
+  static {
+    EXACT_POW10[0] = 1;
+    for(var i = 1; i < EXACT_POW10.length; i++) {
+      EXACT_POW10[i] = 10 * EXACT_POW10[i - 1];
+    }
+  }
+
+  private static final int MIN_EXPONENT = -348;
+  private static final int MAX_EXPONENT = 347;
+
+  /**
+   * For each exponent e between {@link #MIN_EXPONENT} and {@link #MAX_EXPONENT}, the 128 bits of 10^e
+   * normalized so the most significant bit is set and rounded down, the high 64 bits then the low 64 bits.
+   */
+  private static final long[] POW10_128 = new long[(MAX_EXPONENT - MIN_EXPONENT + 1) << 1];
+  static {
+    for(var e = MIN_EXPONENT; e <= MAX_EXPONENT; e++) {
+      BigInteger value;
+      if (e >= 0) {
+        var pow10 = BigInteger.TEN.pow(e);
+        var shift = pow10.bitLength() - 128;
+        value = shift >= 0 ? pow10.shiftRight(shift) : pow10.shiftLeft(-shift);
+      } else {
+        var pow10 = BigInteger.TEN.pow(-e);
+        value = BigInteger.ONE.shiftLeft(127 + pow10.bitLength()).divide(pow10);
+      }
+      var index = (e - MIN_EXPONENT) << 1;
+      POW10_128[index] = value.shiftRight(64).longValue();
+      POW10_128[index + 1] = value.longValue();
+    }
+  }
+
+  /**
+   * Returns the double nearest to significand 10^exponent or {@link Double#NaN} if it can not be
+   * computed without the text of the number.
+   *
+   * @param significand a positive significand of at most {@link #MAX_DIGITS} digits.
+   * @param exponent the decimal exponent.
+   */
+  static double toDouble(long significand, int exponent) {
+    if (significand == 0) {
+      return 0.0;
+    }
+    // Clinger's fast path, both operands are exact so the result is correctly rounded
+    if (significand <= 1L << 53 && exponent >= -22 && exponent <= 22) {
+      return exponent >= 0 ? significand * EXACT_POW10[exponent] : significand / EXACT_POW10[-exponent];
+    }
+    return eiselLemire(significand, exponent);
+  }
+
+  private static long unsignedMultiplyHigh(long x, long y) {
+    return multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+  }
+
+  private static double eiselLemire(long significand, int exponent) {
+    if (exponent < MIN_EXPONENT) {
+      return 0.0;
+    }
+    if (exponent > MAX_EXPONENT) {
+      return Double.POSITIVE_INFINITY;
+    }
+    // normalize the significand
+    var leadingZeros = Long.numberOfLeadingZeros(significand);
+    significand <<= leadingZeros;
+    var binaryExponent = (217_706 * exponent >> 16) + 64 + 1_023 - leadingZeros;
+
+    // multiply by the high 64 bits of the power of ten
+    var index = (exponent - MIN_EXPONENT) << 1;
+    var high = unsignedMultiplyHigh(significand, POW10_128[index]);
+    var low = significand * POW10_128[index];
+
+    // if the 9 bits below the mantissa are all ones, the low 64 bits of the power of ten may create a carry
+    if ((high & 0x1FF) == 0x1FF && Long.compareUnsigned(low + significand, significand) < 0) {
+      var lowHigh = unsignedMultiplyHigh(significand, POW10_128[index + 1]);
+      var lowLow = significand * POW10_128[index + 1];
+      var mergedHigh = high;
+      var mergedLow = low + lowHigh;
+      if (Long.compareUnsigned(mergedLow, low) < 0) {
+        mergedHigh++;
+      }
+      if ((mergedHigh & 0x1FF) == 0x1FF && mergedLow == -1 && Long.compareUnsigned(lowLow + significand, significand) < 0) {
+        return Double.NaN;  // the approximation is not precise enough
+      }
+      high = mergedHigh;
+      low = mergedLow;
+    }
+
+    // keep 54 bits
+    var msb = (int) (high >>> 63);
+    var mantissa = high >>> (msb + 9);
+    binaryExponent -= 1 ^ msb;
+
+    // exactly halfway between two doubles, the rounding can not be decided
+    if (low == 0 && (high & 0x1FF) == 0 && (mantissa & 3) == 1) {
+      return Double.NaN;
+    }
+
+    // round to 53 bits
+    mantissa += mantissa & 1;
+    mantissa >>>= 1;
+    if (mantissa >>> 53 != 0) {
+      mantissa >>>= 1;
+      binaryExponent++;
+    }
+    if (binaryExponent <= 0 || binaryExponent >= 0x7FF) {  // subnormal or infinite
+      return Double.NaN;
+    }
+    return Double.longBitsToDouble((long) binaryExponent << 52 | mantissa & ((1L << 52) - 1));
+  }
+}
@@ -0,0 +1,177 @@
+package com.github.forax.framework.mapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A trie of JSON Pointers (RFC 6901), each node is a reference token of a pointer,
+ * the leaves are the nodes where a pointer ends and store a value.
+ *
+ * A pointer that is a prefix of another pointer selects the whole subtree,
+ * so the longer pointer is absorbed by the shorter one.
+ * The children that are array indexes are also stored in an array,
+ * so the elements of a JSON array are matched without creating a string per element.
+ *
+ * @param <V> the type of the values stored in the leaves.
+ */
+final class PointerTrie<V> {
+  private static final int MAX_ELEMENTS = 1_024;
+
+  private final HashMap<String, PointerTrie<V>> children = new HashMap<>();
+  private PointerTrie<V>[] elements;
+  private int maxIndex = -1;
+  private V value;
+  private boolean leaf;
+
+  /**
+   * Splits a JSON Pointer into its reference tokens, "~1" is unescaped to "/" and "~0" to "~".
+   *
+   * @param pointer a JSON Pointer, the empty string selects the whole document.
+   * @return the list of unescaped reference tokens.
+   * @throws IllegalArgumentException if the pointer is not a valid JSON Pointer.
+   */
+  static List<String> parse(String pointer) {
+    Objects.requireNonNull(pointer);
+    if (pointer.isEmpty()) {
+      return List.of();
+    }
+    if (pointer.charAt(0) != '/') {
+      throw new IllegalArgumentException("invalid JSON pointer " + pointer + ", it should start with '/'");
+    }
+    var tokens = new ArrayList<String>();
+    var builder = new StringBuilder();
+    for(var i = 1; i < pointer.length(); i++) {
+      var c = pointer.charAt(i);
+      switch(c) {
+        case '/' -> {
+          tokens.add(builder.toString());
+          builder.setLength(0);
+        }
+        case '~' -> {
+          var next = i + 1 < pointer.length() ? pointer.charAt(++i) : 0;
+          builder.append(switch(next) {
+            case '0' -> '~';
+            case '1' -> '/';
+            default -> throw new IllegalArgumentException("invalid escape sequence in JSON pointer " + pointer);
+          });
+        }
+        default -> builder.append(c);
+      }
+    }
+    tokens.add(builder.toString());
+    return tokens;
+  }
+
+  /**
+   * Adds a pointer to the trie.
+   *
+   * @param pointer a JSON Pointer.
+   * @param value the value of the leaf.
+   * @return true if the pointer is added, false if the pointer or one of its prefixes is already in the trie.
+   * @throws IllegalArgumentException if the pointer is not a valid JSON Pointer.
+   */
+  boolean add(String pointer, V value) {
+    var node = this;
+    for(var token: parse(pointer)) {
+      if (node.leaf) {
+        return false;
+      }
+      node = node.children.computeIfAbsent(token, __ -> new PointerTrie<>());
+    }
+    if (node.leaf) {
+      return false;
+    }
+    node.leaf = true;
+    node.value = value;
+    node.children.clear();
+    node.elements = null;
+    return true;
+  }
+
+  /**
+   * Returns true if a pointer ends on this node.
+   */
+  boolean isLeaf() {
+    return leaf;
+  }
+
+  /**
+   * Returns the value of the pointer that ends on this node.
+   */
+  V value() {
+    return value;
+  }
+
+  /**
+   * Returns the number of leaves of the trie.
+   */
+  int leafCount() {
+    if (leaf) {
+      return 1;
+    }
+    return children.values().stream().mapToInt(PointerTrie::leafCount).sum();
+  }
+
+  /**
+   * Returns the child node of a key of a JSON object or null.
+   */
+  PointerTrie<V> child(String key) {
+    return children.get(key);
+  }
+
+  /**
+   * Returns the child node of an index of a JSON array or null.
+   */
+  PointerTrie<V> element(int index) {
+    var elements = this.elements;
+    if (elements == null) {
+      elements = this.elements = createElements();
+    }
+    if (index < elements.length) {
+      return elements[index];
+    }
+    return index > maxIndex ? null : children.get(Integer.toString(index));
+  }
+
+  @SuppressWarnings("unchecked")
+  private PointerTrie<V>[] createElements() {
+    var elements = (PointerTrie<V>[]) new PointerTrie<?>[0];
+    for(var entry: children.entrySet()) {
+      var index = arrayIndex(entry.getKey());
+      if (index == -1) {
+        continue;
+      }
+      maxIndex = Math.max(maxIndex, index);
+      if (index >= MAX_ELEMENTS) {  // found using the hash map
+        continue;
+      }
+      if (index >= elements.length) {
+        elements = Arrays.copyOf(elements, index + 1);
+      }
+      elements[index] = entry.getValue();
+    }
+    return elements;
+  }
+
+  /**
+   * Returns the index encoded by a reference token or -1 if the token is not an array index,
+   * "0" or a sequence of digits that does not start with '0'.
+   */
+  private static int arrayIndex(String token) {
+    if (token.isEmpty() || token.length() > 9 || (token.length() > 1 && token.charAt(0) == '0')) {
+      return -1;
+    }
+    var index = 0;
+    for(var i = 0; i < token.length(); i++) {
+      var c = token.charAt(i);
+      if (c < '0' || c > '9') {
+        return -1;
+      }
+      index = index * 10 + (c - '0');
+    }
+    return index;
+  }
+}
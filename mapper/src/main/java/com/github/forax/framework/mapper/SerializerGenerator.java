@@ -0,0 +1,343 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.JSONOutput.Fragment;
+import com.github.forax.framework.mapper.JSONWriter.Generator;
+import com.github.forax.framework.mapper.JSONWriter.Property;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Generates a dedicated {@link Generator} class for a bean or a record, the class is defined as
+ * a hidden class in the package of {@link JSONWriter}.
+ *
+ * The method {@code generate} of the generated class is straight-line code, for each property,
+ * it appends the key (stored in a final field so it is a constant for the JIT),
+ * calls the getter directly and appends the value with a method specific to its type,
+ * the null checks and the dynamic dispatch are done by
+ * {@link JSONWriter#generateString(String, JSONOutput)} and
+ * {@link JSONWriter#generateValue(Generator, JSONWriter, Object, JSONOutput)}.
+ * Because there is no branch, the bytecode does not need a {@code StackMapTable}
+ * which keeps the class file writer minimal.
+ */
+final class SerializerGenerator {
+  private static final String PACKAGE = JSONWriter.class.getPackageName().replace('.', '/') + '/';
+  private static final String CLASS_NAME = PACKAGE + "JSONWriter$Serializer";
+  private static final String WRITER = internalName(JSONWriter.class);
+  private static final String OUTPUT = internalName(JSONOutput.class);
+  private static final String GENERATOR = internalName(Generator.class);
+  private static final String FRAGMENT_DESC = Fragment.class.descriptorString();
+  private static final String GENERATOR_DESC = Generator.class.descriptorString();
+  private static final MethodType CONSTRUCTOR_TYPE = methodType(void.class, Fragment[].class, Generator[].class);
+
+  private SerializerGenerator() {
+    throw new AssertionError();
+  }
+
+  /**
+   * Returns a generated generator or {@code null} if the class can not be accessed from
+   * the package of {@link JSONWriter}.
+   *
+   * @param lookup a lookup on {@link JSONWriter} with full privilege.
+   * @param type the class of the bean or the record.
+   * @param properties the properties of the class.
+   * @param valueGenerators the generators of the properties or {@code null} to use a dynamic dispatch.
+   * @param configuredTypes the configured types, the values of these types (or of the primitive types
+   *                        they box) are written by their generator.
+   */
+  static Generator generate(Lookup lookup, Class<?> type, List<Property> properties, Generator[] valueGenerators,
+                            Set<Class<?>> configuredTypes) {
+    if (!isAccessible(lookup, type) || type.isInterface()) {
+      return null;
+    }
+    for(var property: properties) {
+      var getter = property.method();
+      if (!Modifier.isPublic(getter.getModifiers()) || Modifier.isStatic(getter.getModifiers())
+          || !isAccessible(lookup, property.type())) {
+        return null;
+      }
+    }
+    var keys = new Fragment[properties.size()];
+    for(var i = 0; i < keys.length; i++) {
+      var key = properties.get(i).key();
+      keys[i] = i == 0 ? key : Fragment.of(", " + key.text());  // the separator is part of the key
+    }
+    var bytes = classFile(type, properties, configuredTypes);
+    try {
+      var serializerClass = lookup.defineHiddenClass(bytes, true).lookupClass();
+      var constructor = lookup.findConstructor(serializerClass, CONSTRUCTOR_TYPE);
+      return (Generator) constructor.invoke(keys, valueGenerators);
+    } catch (IllegalAccessException | LinkageError e) {
+      return null;
+    } catch (Throwable t) {
+      throw Utils.rethrow(t);
+    }
+  }
+
+  /**
+   * A class is accessible if it is a primitive type or a public class or a class of the same package
+   * and if it is visible from the class loader of {@link JSONWriter}.
+   */
+  private static boolean isAccessible(Lookup lookup, Class<?> type) {
+    while(type.isArray()) {
+      type = type.getComponentType();
+    }
+    if (type.isPrimitive()) {
+      return true;
+    }
+    if (type.isHidden()) {
+      return false;
+    }
+    try {
+      lookup.accessClass(type);
+      return Class.forName(type.getName(), false, lookup.lookupClass().getClassLoader()) == type;
+    } catch (IllegalAccessException | ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static String internalName(Class<?> type) {
+    return type.getName().replace('.', '/');
+  }
+
+  private static byte[] classFile(Class<?> type, List<Property> properties, Set<Class<?>> configuredTypes) {
+    var pool = new ConstantPool();
+    var beanClass = internalName(type);
+    var length = properties.size();
+
+    // constructor(Fragment[] keys, Generator[] generators)
+    var init = new Bytecode();
+    init.u1(ALOAD_0);
+    init.u1(INVOKESPECIAL).u2(pool.methodRef("java/lang/Object", "<init>", "()V"));
+    for(var i = 0; i < length; i++) {
+      init.u1(ALOAD_0).u1(ALOAD_1).index(i).u1(AALOAD);
+      init.u1(PUTFIELD).u2(pool.fieldRef(CLASS_NAME, "key" + i, FRAGMENT_DESC));
+      init.u1(ALOAD_0).u1(ALOAD_2).index(i).u1(AALOAD);
+      init.u1(PUTFIELD).u2(pool.fieldRef(CLASS_NAME, "generator" + i, GENERATOR_DESC));
+    }
+    init.u1(RETURN);
+
+    // generate(JSONWriter writer, Object value, JSONOutput output)
+    var appendChar = pool.methodRef(OUTPUT, "append", "(C)V");
+    var appendFragment = pool.methodRef(OUTPUT, "append", "(" + FRAGMENT_DESC + ")V");
+    var code = new Bytecode();
+    code.u1(ALOAD_2).u1(CHECKCAST).u2(pool.classRef(beanClass)).u1(ASTORE).u1(4);
+    code.u1(ALOAD_3).u1(BIPUSH).u1('{').u1(INVOKEVIRTUAL).u2(appendChar);
+    for(var i = 0; i < length; i++) {
+      var property = properties.get(i);
+      var getter = property.method();
+      var getterRef = pool.methodRef(beanClass, getter.getName(), methodType(getter.getReturnType()).toMethodDescriptorString());
+      code.u1(ALOAD_3).u1(ALOAD_0).u1(GETFIELD).u2(pool.fieldRef(CLASS_NAME, "key" + i, FRAGMENT_DESC));
+      code.u1(INVOKEVIRTUAL).u2(appendFragment);
+      var propertyType = property.type();
+      var configured = configuredTypes.contains(Utils.wrap(propertyType));
+      if (propertyType.isPrimitive() && !configured) {
+        code.u1(ALOAD_3).u1(ALOAD).u1(4).u1(INVOKEVIRTUAL).u2(getterRef);
+        if (propertyType == char.class) {
+          code.u1(INVOKESTATIC).u2(pool.methodRef("java/lang/String", "valueOf", "(C)Ljava/lang/String;"));
+          code.u1(INVOKEVIRTUAL).u2(pool.methodRef(OUTPUT, "appendString", "(Ljava/lang/String;)V"));
+        } else {
+          code.u1(INVOKEVIRTUAL).u2(appendPrimitive(pool, propertyType));
+        }
+      } else if (propertyType == String.class && !configured) {
+        code.u1(ALOAD).u1(4).u1(INVOKEVIRTUAL).u2(getterRef).u1(ALOAD_3);
+        code.u1(INVOKESTATIC).u2(pool.methodRef(WRITER, "generateString", "(Ljava/lang/String;L" + OUTPUT + ";)V"));
+      } else {
+        code.u1(ALOAD_0).u1(GETFIELD).u2(pool.fieldRef(CLASS_NAME, "generator" + i, GENERATOR_DESC));
+        code.u1(ALOAD_1).u1(ALOAD).u1(4).u1(INVOKEVIRTUAL).u2(getterRef);
+        if (propertyType.isPrimitive()) {  // a configured primitive type is boxed
+          var wrapper = Utils.wrap(propertyType);
+          code.u1(INVOKESTATIC).u2(pool.methodRef(internalName(wrapper), "valueOf",
+              methodType(wrapper, propertyType).toMethodDescriptorString()));
+        }
+        code.u1(ALOAD_3);
+        code.u1(INVOKESTATIC).u2(pool.methodRef(WRITER, "generateValue",
+            "(" + GENERATOR_DESC + "L" + WRITER + ";Ljava/lang/Object;L" + OUTPUT + ";)V"));
+      }
+    }
+    code.u1(ALOAD_3).u1(BIPUSH).u1('}').u1(INVOKEVIRTUAL).u2(appendChar);
+    code.u1(RETURN);
+
+    var classFile = new Bytecode();
+    classFile.u4(0xCAFEBABE).u2(0).u2(61);  // Java 17
+    var thisClass = pool.classRef(CLASS_NAME);
+    var superClass = pool.classRef("java/lang/Object");
+    var generatorInterface = pool.classRef(GENERATOR);
+    var fragmentDesc = pool.utf8(FRAGMENT_DESC);
+    var generatorDesc = pool.utf8(GENERATOR_DESC);
+    var fieldNames = new int[length * 2];
+    for(var i = 0; i < length; i++) {
+      fieldNames[2 * i] = pool.utf8("key" + i);
+      fieldNames[2 * i + 1] = pool.utf8("generator" + i);
+    }
+    var initName = pool.utf8("<init>");
+    var initDesc = pool.utf8(CONSTRUCTOR_TYPE.toMethodDescriptorString());
+    var generateName = pool.utf8("generate");
+    var generateDesc = pool.utf8("(L" + WRITER + ";Ljava/lang/Object;L" + OUTPUT + ";)V");
+    var codeName = pool.utf8("Code");
+    pool.writeTo(classFile);
+    classFile.u2(ACC_FINAL | ACC_SUPER).u2(thisClass).u2(superClass);
+    classFile.u2(1).u2(generatorInterface);
+    classFile.u2(length * 2);
+    for(var i = 0; i < length * 2; i++) {
+      classFile.u2(ACC_PRIVATE | ACC_FINAL).u2(fieldNames[i]).u2(i % 2 == 0 ? fragmentDesc : generatorDesc).u2(0);
+    }
+    classFile.u2(2);
+    method(classFile, ACC_PUBLIC, initName, initDesc, codeName, 3, 3, init);
+    method(classFile, ACC_PUBLIC, generateName, generateDesc, codeName, 6, 5, code);
+    classFile.u2(0);  // no attribute
+    return classFile.toByteArray();
+  }
+
+  private static int appendPrimitive(ConstantPool pool, Class<?> type) {
+    if (type == boolean.class) {
+      return pool.methodRef(OUTPUT, "appendBoolean", "(Z)V");
+    }
+    if (type == long.class) {
+      return pool.methodRef(OUTPUT, "appendLong", "(J)V");
+    }
+    if (type == float.class) {
+      return pool.methodRef(OUTPUT, "appendFloat", "(F)V");
+    }
+    if (type == double.class) {
+      return pool.methodRef(OUTPUT, "appendDouble", "(D)V");
+    }
+    return pool.methodRef(OUTPUT, "appendInt", "(I)V");  // int, short and byte
+  }
+
+  private static void method(Bytecode classFile, int access, int name, int descriptor, int codeName,
+                             int maxStack, int maxLocals, Bytecode code) {
+    var bytes = code.toByteArray();
+    classFile.u2(access).u2(name).u2(descriptor).u2(1);
+    classFile.u2(codeName).u4(12 + bytes.length);
+    classFile.u2(maxStack).u2(maxLocals).u4(bytes.length).bytes(bytes);
+    classFile.u2(0).u2(0);  // no exception handler, no attribute
+  }
+
+  private static final int ACC_PUBLIC = 0x0001, ACC_PRIVATE = 0x0002, ACC_FINAL = 0x0010, ACC_SUPER = 0x0020;
+
+  private static final int ALOAD_0 = 0x2a, ALOAD_1 = 0x2b, ALOAD_2 = 0x2c, ALOAD_3 = 0x2d, ALOAD = 0x19,
+      ASTORE = 0x3a, AALOAD = 0x32, ICONST_0 = 0x03, BIPUSH = 0x10, SIPUSH = 0x11,
+      GETFIELD = 0xb4, PUTFIELD = 0xb5, INVOKEVIRTUAL = 0xb6, INVOKESPECIAL = 0xb7, INVOKESTATIC = 0xb8,
+      CHECKCAST = 0xc0, RETURN = 0xb1;
+
+  private static final class Bytecode {
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream output = new DataOutputStream(buffer);
+
+    Bytecode u1(int value) {
+      buffer.write(value);
+      return this;
+    }
+
+    Bytecode u2(int value) {
+      try {
+        output.writeShort(value);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this;
+    }
+
+    Bytecode u4(int value) {
+      try {
+        output.writeInt(value);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this;
+    }
+
+    Bytecode utf8(String text) {
+      try {
+        output.writeUTF(text);  // modified UTF-8 like the class file format
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this;
+    }
+
+    Bytecode bytes(byte[] bytes) {
+      buffer.writeBytes(bytes);
+      return this;
+    }
+
+    /**
+     * Pushes a small positive int constant.
+     */
+    Bytecode index(int value) {
+      if (value <= 5) {
+        return u1(ICONST_0 + value);
+      }
+      if (value <= Byte.MAX_VALUE) {
+        return u1(BIPUSH).u1(value);
+      }
+      return u1(SIPUSH).u2(value);
+    }
+
+    byte[] toByteArray() {
+      return buffer.toByteArray();
+    }
+  }
+
+  private static final class ConstantPool {
+    private static final int UTF8 = 1, CLASS = 7, FIELD_REF = 9, METHOD_REF = 10, NAME_AND_TYPE = 12;
+
+    private final Bytecode entries = new Bytecode();
+    private final HashMap<String, Integer> indexMap = new HashMap<>();
+    private int count = 1;
+
+    private int entry(String key, Runnable writer) {
+      var index = indexMap.get(key);
+      if (index != null) {
+        return index;
+      }
+      writer.run();
+      indexMap.put(key, count);
+      return count++;
+    }
+
+    int utf8(String text) {
+      return entry("U" + text, () -> entries.u1(UTF8).utf8(text));
+    }
+
+    int classRef(String internalName) {
+      var name = utf8(internalName);
+      return entry("C" + internalName, () -> entries.u1(CLASS).u2(name));
+    }
+
+    private int nameAndType(String name, String descriptor) {
+      var nameIndex = utf8(name);
+      var descriptorIndex = utf8(descriptor);
+      return entry("N" + name + ' ' + descriptor, () -> entries.u1(NAME_AND_TYPE).u2(nameIndex).u2(descriptorIndex));
+    }
+
+    int fieldRef(String owner, String name, String descriptor) {
+      return memberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    int methodRef(String owner, String name, String descriptor) {
+      return memberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    private int memberRef(int tag, String owner, String name, String descriptor) {
+      var ownerIndex = classRef(owner);
+      var nameAndType = nameAndType(name, descriptor);
+      return entry(tag + owner + '.' + name + descriptor, () -> entries.u1(tag).u2(ownerIndex).u2(nameAndType));
+    }
+
+    void writeTo(Bytecode classFile) {
+      classFile.u2(count).bytes(entries.toByteArray());
+    }
+  }
+}
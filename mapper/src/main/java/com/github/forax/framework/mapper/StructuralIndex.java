@@ -0,0 +1,250 @@
+package com.github.forax.framework.mapper;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * The structural index of a JSON text encoded in UTF-8, the positions of its structural characters
+ * in the order of the text.
+ *
+ * The structural characters are the curly braces, the brackets, the colons and the commas
+ * that are not inside a string, the quotes that open and close a string and the first byte of
+ * the other tokens (numbers, true, false and null).
+ *
+ * The text is indexed lazily by windows of {@link #WINDOW_SIZE} bytes, so the positions
+ * of a window stay in the cache while they are read by the lexer.
+ * A window is indexed by blocks of 64 bytes, for each block, an {@link Indexer} computes
+ * a bitmask of the quotes, the backslashes, the structural characters and the blanks
+ * (bit i corresponds to the byte i of the block), then {@link #addBlock(int, long, long, long, long)}
+ * finds the escaped quotes and the strings using only arithmetic on the bitmasks,
+ * without testing the bytes one by one, the state of a block is carried to the next one
+ * (the strings and the sequences of backslashes can span several blocks and several windows).
+ *
+ * If the module {@code jdk.incubator.vector} is available (and the Java version is at least 18),
+ * the bitmasks are computed using the Vector API, otherwise the bytes are tested one by one.
+ */
+final class StructuralIndex {
+  /**
+   * Computes the bitmasks of the blocks of a text and calls {@link #addBlock(int, long, long, long, long)}.
+   */
+  interface Indexer {
+    void index(ByteBuffer input, int start, int end, StructuralIndex index);
+  }
+
+  static final int BLOCK_SIZE = 64;
+  static final int WINDOW_SIZE = 16 * 1_024;  // a multiple of BLOCK_SIZE
+
+  private static final long EVEN_BITS = 0x5555_5555_5555_5555L;
+
+  private static final Indexer SCALAR_INDEXER = StructuralIndex::indexScalar;
+  private static final Indexer VECTOR_INDEXER =
+      // VectorMask.toLong() is only intrinsified since Java 18, before the scalar indexer is faster
+      Runtime.version().feature() >= 18 ? loadVectorIndexer() : null;
+
+  /**
+   * Returns the indexer that uses the Vector API or null if the module {@code jdk.incubator.vector}
+   * is not available.
+   */
+  static Indexer loadVectorIndexer() {
+    if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+      return null;
+    }
+    try {
+      // loaded by reflection, so the class is never linked if the module is not available
+      return (Indexer) Class.forName(StructuralIndex.class.getPackageName() + ".VectorStructuralIndexer")
+          .getDeclaredConstructor()
+          .newInstance();
+    } catch (ReflectiveOperationException | LinkageError e) {
+      return null;
+    }
+  }
+
+  /**
+   * Returns true if the bitmasks are computed using the Vector API,
+   * if the module {@code jdk.incubator.vector} is available and the Java version is at least 18.
+   */
+  static boolean isVectorized() {
+    return VECTOR_INDEXER != null;
+  }
+
+  /**
+   * Returns the indexer that uses the Vector API if available, the scalar indexer otherwise.
+   */
+  static Indexer indexer() {
+    return VECTOR_INDEXER != null ? VECTOR_INDEXER : SCALAR_INDEXER;
+  }
+
+  /**
+   * Returns the indexer that tests the bytes one by one.
+   */
+  static Indexer scalarIndexer() {
+    return SCALAR_INDEXER;
+  }
+
+  private final Indexer indexer;
+  private int[] positions = new int[1_024];
+  private int count;
+  private int current;
+
+  private ByteBuffer input;
+  private int windowStart;  // start of the next window
+  private int end;
+
+  // state carried from one block to the next
+  private long escapedCarry;   // 1 if the first byte of the next block is escaped
+  private long stringCarry;    // -1 if the next block starts inside a string
+  private long scalarCarry;    // 1 if the last byte of the block is part of a number or a keyword
+
+  /**
+   * Creates an index that uses an indexer to compute the bitmasks.
+   */
+  StructuralIndex(Indexer indexer) {
+    this.indexer = Objects.requireNonNull(indexer);
+  }
+
+  /**
+   * Indexes another text, the bytes between start and end,
+   * the array of the positions is kept.
+   *
+   * @param input the text encoded in UTF-8
+   * @param start the index of the first byte of the text
+   * @param end the index after the last byte of the text
+   */
+  void reset(ByteBuffer input, int start, int end) {
+    this.input = input;
+    this.windowStart = start;
+    this.end = end;
+    count = current = 0;
+    escapedCarry = 0;
+    stringCarry = 0;
+    scalarCarry = 0;
+  }
+
+  private boolean nextWindow() {
+    if (windowStart == end) {
+      return false;
+    }
+    var windowEnd = (int) Math.min(end, (long) windowStart + WINDOW_SIZE);
+    count = current = 0;
+    indexer.index(input, windowStart, windowEnd, this);
+    windowStart = windowEnd;
+    return true;
+  }
+
+  /**
+   * Returns the position of the next structural character without moving to the next one
+   * or -1 if there is no more structural character.
+   */
+  int peek() {
+    while(current == count) {  // a window may have no structural character
+      if (!nextWindow()) {
+        return -1;
+      }
+    }
+    return positions[current];
+  }
+
+  /**
+   * Returns the position of the next structural character and moves to the next one
+   * or -1 if there is no more structural character.
+   */
+  int next() {
+    var position = peek();
+    if (position != -1) {
+      current++;
+    }
+    return position;
+  }
+
+  /**
+   * Adds the structural characters of a block of 64 bytes.
+   * The bytes after the end of the text must be marked as blanks.
+   *
+   * @param base the position in the text of the first byte of the block
+   * @param quotes the bitmask of the quotes
+   * @param backslashes the bitmask of the backslashes
+   * @param operators the bitmask of the curly braces, the brackets, the colons and the commas
+   * @param blanks the bitmask of the spaces, tabs, carriage returns and line feeds
+   */
+  void addBlock(int base, long quotes, long backslashes, long operators, long blanks) {
+    var escaped = escaped(backslashes);
+    quotes &= ~escaped;
+
+    // prefix xor: the bits from an opening quote (included) to a closing quote (excluded) are set
+    var strings = quotes;
+    strings ^= strings << 1;
+    strings ^= strings << 2;
+    strings ^= strings << 4;
+    strings ^= strings << 8;
+    strings ^= strings << 16;
+    strings ^= strings << 32;
+    strings ^= stringCarry;
+    stringCarry = strings >> 63;
+
+    var scalars = ~(operators | blanks | quotes | strings);
+    var scalarStarts = scalars & ~(scalars << 1 | scalarCarry);
+    scalarCarry = scalars >>> 63;
+
+    add(base, (operators & ~strings) | quotes | scalarStarts);
+  }
+
+  /**
+   * Returns the bitmask of the escaped bytes, the bytes that follow an odd sequence of backslashes.
+   */
+  private long escaped(long backslashes) {
+    if (backslashes == 0 && escapedCarry == 0) {
+      return 0;
+    }
+    backslashes &= ~escapedCarry;  // an escaped backslash does not escape
+    var followsEscape = backslashes << 1 | escapedCarry;
+    // the sequences of backslashes that start on an odd bit are moved to start on an even bit
+    var oddStarts = backslashes & ~EVEN_BITS & ~followsEscape;
+    var sequences = oddStarts + backslashes;
+    escapedCarry = Long.compareUnsigned(sequences, backslashes) < 0 ? 1 : 0;  // overflow
+    var invertMask = sequences << 1;
+    return (EVEN_BITS ^ invertMask) & followsEscape;
+  }
+
+  private void add(int base, long bits) {
+    var bitCount = Long.bitCount(bits);
+    if (count + bitCount > positions.length) {
+      positions = Arrays.copyOf(positions, Math.max(positions.length << 1, count + bitCount));
+    }
+    var positions = this.positions;
+    var count = this.count;
+    while(bits != 0) {
+      positions[count++] = base + Long.numberOfTrailingZeros(bits);
+      bits &= bits - 1;
+    }
+    this.count = count;
+  }
+
+  private static void indexScalar(ByteBuffer input, int start, int end, StructuralIndex index) {
+    for(var base = start; base < end; base += BLOCK_SIZE) {
+      indexScalarBlock(input, base, Math.min(end, base + BLOCK_SIZE), index);
+    }
+  }
+
+  /**
+   * Computes the bitmasks of the bytes between base and end by testing the bytes one by one,
+   * the bytes after end are marked as blanks. Used by the vector indexer for the last block.
+   */
+  static void indexScalarBlock(ByteBuffer input, int base, int end, StructuralIndex index) {
+    long quotes = 0, backslashes = 0, operators = 0, blanks = 0;
+    for(var i = base; i < end; i++) {
+      var bit = 1L << (i - base);
+      switch(input.get(i)) {
+        case '"' -> quotes |= bit;
+        case '\\' -> backslashes |= bit;
+        case '{', '}', '[', ']', ':', ',' -> operators |= bit;
+        case ' ', '\t', '\n', '\r' -> blanks |= bit;
+        default -> {}
+      }
+    }
+    if (end - base < BLOCK_SIZE) {
+      blanks |= -1L << (end - base);
+    }
+    index.addBlock(base, quotes, backslashes, operators, blanks);
+  }
+}
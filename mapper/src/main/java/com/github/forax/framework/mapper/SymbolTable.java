@@ -0,0 +1,199 @@
+package com.github.forax.framework.mapper;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+
+/**
+ * A table of the keys of the JSON objects, it allows the lexers to return the same String
+ * each time the same key is recognized instead of allocating a new String.
+ *
+ * The symbols are looked up using the hash and the length of the characters (or the bytes)
+ * of the key directly in the input buffer, so a known key costs no allocation.
+ * The symbols are not {@link String#intern() interned}, the keys come from the input
+ * so they are only stored in this table, which is bounded, and not in the JVM string pool.
+ * The property names of the collectors are {@link #seed(String) seeded} in the table,
+ * so a known key is the same String as the property name and is found by identity.
+ *
+ * This class is thread safe, the lookups are not synchronized, only the insertions are.
+ * The number of symbols read from the input is bounded, if the table is full, the new keys
+ * are returned as plain strings. The seeded symbols are not counted, so they are always
+ * in the table even if the input is full of unknown keys.
+ */
+final class SymbolTable {
+  private static final int MAX_SIZE = 4_096;
+
+  private volatile String[] table = new String[64];
+  private int size;  // guarded by this
+  private int seeded;  // guarded by this
+
+  private static int hash(char[] buffer, int start, int end) {
+    var hash = 0;
+    for(var i = start; i < end; i++) {
+      hash = 31 * hash + buffer[i];
+    }
+    return hash;
+  }
+
+  private static boolean equals(String symbol, char[] buffer, int start, int end) {
+    var length = end - start;
+    if (symbol.length() != length) {
+      return false;
+    }
+    for(var i = 0; i < length; i++) {
+      if (symbol.charAt(i) != buffer[start + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean equals(String symbol, ByteBuffer buffer, int start, int end) {
+    var length = end - start;
+    if (symbol.length() != length) {
+      return false;
+    }
+    for(var i = 0; i < length; i++) {
+      if (symbol.charAt(i) != buffer.get(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns the symbol corresponding to the characters between start and end.
+   */
+  String symbol(char[] buffer, int start, int end) {
+    var hash = hash(buffer, start, end);
+    var table = this.table;
+    var mask = table.length - 1;
+    for(var index = hash & mask;; index = (index + 1) & mask) {
+      var symbol = table[index];
+      if (symbol == null) {
+        return add(new String(buffer, start, end - start), hash);
+      }
+      if (symbol.hashCode() == hash && equals(symbol, buffer, start, end)) {
+        return symbol;
+      }
+    }
+  }
+
+  /**
+   * Returns the symbol corresponding to the UTF-8 bytes between start and end
+   * or {@code null} if the bytes are not all ASCII characters.
+   */
+  String symbol(ByteBuffer buffer, int start, int end) {
+    var hash = 0;
+    for(var i = start; i < end; i++) {
+      var b = buffer.get(i);
+      if (b < 0) {  // not an ASCII character
+        return null;
+      }
+      hash = 31 * hash + b;
+    }
+    var table = this.table;
+    var mask = table.length - 1;
+    for(var index = hash & mask;; index = (index + 1) & mask) {
+      var symbol = table[index];
+      if (symbol == null) {
+        var length = end - start;
+        var bytes = new byte[length];
+        buffer.get(start, bytes, 0, length);
+        return add(new String(bytes, ISO_8859_1), hash);  // ASCII bytes are latin1 chars
+      }
+      if (symbol.hashCode() == hash && equals(symbol, buffer, start, end)) {
+        return symbol;
+      }
+    }
+  }
+
+  /**
+   * Returns the symbol equals to the text.
+   */
+  String symbol(String text) {
+    var hash = text.hashCode();
+    var table = this.table;
+    var mask = table.length - 1;
+    for(var index = hash & mask;; index = (index + 1) & mask) {
+      var symbol = table[index];
+      if (symbol == null) {
+        return add(text, hash);
+      }
+      if (symbol.hashCode() == hash && symbol.equals(text)) {
+        return symbol;
+      }
+    }
+  }
+
+  private synchronized String add(String text, int hash) {
+    var table = this.table;
+    var mask = table.length - 1;
+    for(var index = hash & mask;; index = (index + 1) & mask) {
+      var symbol = table[index];
+      if (symbol == null) {
+        break;
+      }
+      if (symbol.hashCode() == hash && symbol.equals(text)) {  // added by another thread
+        return symbol;
+      }
+    }
+    if (size - seeded == MAX_SIZE) {
+      return text;
+    }
+    insert(text);
+    return text;
+  }
+
+  /**
+   * Adds a symbol known in advance, if an equal symbol read from the input is already
+   * in the table, it is replaced so the lookups return the seeded String.
+   */
+  synchronized void seed(String symbol) {
+    var table = this.table;
+    var hash = symbol.hashCode();
+    var mask = table.length - 1;
+    for(var index = hash & mask;; index = (index + 1) & mask) {
+      var existing = table[index];
+      if (existing == null) {
+        break;
+      }
+      if (existing.hashCode() == hash && existing.equals(symbol)) {
+        table[index] = symbol;  // equal strings, a racy lookup sees either one
+        this.table = table;
+        return;
+      }
+    }
+    insert(symbol);
+    seeded++;
+  }
+
+  private void insert(String symbol) {  // guarded by this
+    var table = this.table;
+    if (size * 2 >= table.length) {
+      table = rehash(table);
+    }
+    insert(table, symbol);
+    size++;
+    this.table = table;
+  }
+
+  private static String[] rehash(String[] table) {
+    var newTable = new String[table.length << 1];
+    for(var symbol: table) {
+      if (symbol != null) {
+        insert(newTable, symbol);
+      }
+    }
+    return newTable;
+  }
+
+  private static void insert(String[] table, String symbol) {
+    var mask = table.length - 1;
+    var index = symbol.hashCode() & mask;
+    while(table[index] != null) {
+      index = (index + 1) & mask;
+    }
+    table[index] = symbol;
+  }
+}
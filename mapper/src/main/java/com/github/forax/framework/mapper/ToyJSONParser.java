@@ -1,18 +1,26 @@
 package com.github.forax.framework.mapper;
 
 import static java.lang.Double.parseDouble;
-import static java.lang.Integer.parseInt;
-import static java.util.regex.Pattern.compile;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.IntStream.rangeClosed;
 import static com.github.forax.framework.mapper.ToyJSONParser.Kind.*;
 
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
 import java.util.Arrays;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Objects;
 
 /**
- * A Toy JSON parser that do not recognize correctly, unicode characters, escaped strings
+ * A Toy JSON parser that do not recognize correctly, unicode characters
  * and i'm sure many more features.
  *
  * @see #parse(String, JSONVisitor)
@@ -22,129 +30,1998 @@ class ToyJSONParser {
     throw new AssertionError();
   }
 
+  private static final int BUFFER_SIZE = 8_192;
+
   enum Kind {
-    NULL("(null)"),
-    TRUE("(true)"),
-    FALSE("(false)"),
-    DOUBLE("([0-9]*\\.[0-9]*)"),
-    INTEGER("([0-9]+)"),
-    STRING("\"([^\\\"]*)\""),
-    LEFT_CURLY("(\\{)"),
-    RIGHT_CURLY("(\\})"),
-    LEFT_BRACKET("(\\[)"),
-    RIGHT_BRACKET("(\\])"),
-    COLON("(\\:)"),
-    COMMA("(\\,)"),
-    BLANK("([ \t]+)")
-    ;
+    NULL,
+    TRUE,
+    FALSE,
+    DOUBLE,
+    INTEGER,
+    STRING,
+    LEFT_CURLY,
+    RIGHT_CURLY,
+    LEFT_BRACKET,
+    RIGHT_BRACKET,
+    COLON,
+    COMMA
+  }
+
+  /**
+   * Skips a value by only scanning its brackets, its curly braces and its quotes,
+   * the characters are fed one by one, so a skip can be interrupted and resumed.
+   */
+  static final class Skipper {
+    static final int MORE = 0, END_BEFORE = 1, END_AFTER = 2;
+
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * Starts to skip a value.
+     *
+     * @param depth 0 to skip a whole value or the number of objects or arrays already opened.
+     */
+    void start(int depth) {
+      this.depth = depth;
+      inString = false;
+      escaped = false;
+    }
+
+    /**
+     * Feeds a character of the skipped text.
+     * @return {@link #MORE} if the value continues, {@link #END_BEFORE} if the value ends before the character
+     *         or {@link #END_AFTER} if the character is the last character of the value.
+     */
+    int skip(int c) {
+      if (inString) {
+        if (escaped) {
+          escaped = false;
+        } else if (c == '\\') {
+          escaped = true;
+        } else if (c == '"') {
+          inString = false;
+          return depth == 0 ? END_AFTER : MORE;
+        }
+        return MORE;
+      }
+      return switch(c) {
+        case '"' -> {
+          inString = true;
+          yield MORE;
+        }
+        case '{', '[' -> {
+          depth++;
+          yield MORE;
+        }
+        case '}', ']' -> {
+          if (depth == 0) {
+            yield END_BEFORE;
+          }
+          yield --depth == 0 ? END_AFTER : MORE;
+        }
+        case ',', ' ', '\t', '\n', '\r' -> depth == 0 ? END_BEFORE : MORE;
+        default -> MORE;
+      };
+    }
+  }
+
+  /**
+   * A single pass lexer, it switches on the current character and moves a cursor on the input.
+   * There is no token object, the kind of the last recognized token is stored in {@link #kind}
+   * and its text is between {@link #start} and {@link #end}, the text is only extracted
+   * if the parser asks for it.
+   */
+  private static abstract class Lexer {
+    final SymbolTable symbols;
+    Kind kind;
+    int start;
+    int end;
+
+    final Skipper skipper = new Skipper();
+
+    Lexer(SymbolTable symbols) {
+      this.symbols = symbols;
+    }
+
+    /**
+     * Skips a value or the rest of a value by only scanning the brackets, the curly braces and the quotes,
+     * no token is recognized, no value is decoded and the skipped text is not validated.
+     * After the call, the text of the current token is the skipped text.
+     *
+     * @param depth 0 to skip a whole value starting at the current position,
+     *              or the number of objects or arrays already opened.
+     */
+    abstract void skipValue(int depth);
+
+    /**
+     * Recognizes the next token.
+     * @return the kind of the token.
+     */
+    abstract Kind next();
+
+    abstract String text();
+
+    /**
+     * Returns the value of the current string token, the escape sequences are decoded.
+     */
+    final String stringValue() {
+      var text = text();
+      return text.indexOf('\\') == -1 ? text : unescape(text);
+    }
+
+    /**
+     * Returns true if the current string token contains an escape sequence.
+     */
+    final boolean hasEscape() {
+      for(var index = start; index < end; index++) {
+        if (charAt(index) == '\\') {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    /**
+     * Decodes the escape sequences of the text of a string.
+     * @throws IllegalStateException if an escape sequence is not valid.
+     */
+    static String unescape(String text) {
+      var length = text.length();
+      var builder = new StringBuilder(length);
+      for(var i = 0; i < length; i++) {
+        var c = text.charAt(i);
+        if (c != '\\') {
+          builder.append(c);
+          continue;
+        }
+        if (++i == length) {
+          throw new IllegalStateException("invalid escape sequence in " + text);
+        }
+        builder.append(switch(text.charAt(i)) {
+          case '"' -> '"';
+          case '\\' -> '\\';
+          case '/' -> '/';
+          case 'b' -> '\b';
+          case 'f' -> '\f';
+          case 'n' -> '\n';
+          case 'r' -> '\r';
+          case 't' -> '\t';
+          case 'u' -> {
+            if (i + 4 >= length) {
+              throw new IllegalStateException("invalid escape sequence in " + text);
+            }
+            var value = 0;
+            for(var j = i + 1; j <= i + 4; j++) {
+              var digit = Character.digit(text.charAt(j), 16);
+              if (digit == -1) {
+                throw new IllegalStateException("invalid escape sequence in " + text);
+              }
+              value = value << 4 | digit;
+            }
+            i += 4;
+            yield (char) value;
+          }
+          default -> throw new IllegalStateException("invalid escape sequence in " + text);
+        });
+      }
+      return builder.toString();
+    }
+
+    /**
+     * Returns the value of the current string token as a key of an object,
+     * if there is a symbol table, the key is a symbol of the table.
+     */
+    abstract String key();
+
+    /**
+     * Returns the ASCII character at an index of the input, only called for the characters of the current token.
+     */
+    abstract int charAt(int index);
+
+    static boolean isDigit(int c) {
+      return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Returns true if the character can be part of a number, the grammar is checked by {@link #numberKind()}.
+     */
+    static boolean isNumberPart(int c) {
+      return (c >= '0' && c <= '9') || c == '-' || c == '.' || c == 'e' || c == 'E' || c == '+';
+    }
+
+    private int skipDigits(int index) {
+      while(index < end && isDigit(charAt(index))) {
+        index++;
+      }
+      return index;
+    }
+
+    /**
+     * Checks that the current token is a JSON number
+     * {@code -?(0|[1-9][0-9]*)(\.[0-9]+)?([eE][+-]?[0-9]+)?} and returns its kind,
+     * an integer that does not fit in a long is a {@link Kind#DOUBLE}.
+     * @return the kind of the number or {@code null} if the token is not a valid number.
+     */
+    final Kind numberKind() {
+      var index = start;
+      if (index < end && charAt(index) == '-') {
+        index++;
+      }
+      if (index == end || !isDigit(charAt(index))) {
+        return null;
+      }
+      index = charAt(index) == '0' ? index + 1 : skipDigits(index);
+      var kind = INTEGER;
+      if (index < end && charAt(index) == '.') {
+        var digitStart = index + 1;
+        index = skipDigits(digitStart);
+        if (index == digitStart) {
+          return null;
+        }
+        kind = DOUBLE;
+      }
+      if (index < end && (charAt(index) | 0x20) == 'e') {
+        index++;
+        if (index < end && (charAt(index) == '+' || charAt(index) == '-')) {
+          index++;
+        }
+        var digitStart = index;
+        index = skipDigits(digitStart);
+        if (index == digitStart) {
+          return null;
+        }
+        kind = DOUBLE;
+      }
+      if (index != end) {
+        return null;
+      }
+      if (kind == INTEGER && end - start > NumberParser.MAX_DIGITS && !fitsLong()) {
+        return DOUBLE;
+      }
+      return kind;
+    }
+
+    /**
+     * Returns true if the current integer token has at most 9 characters, so {@link #intValue()} can not overflow.
+     */
+    final boolean fitsInt() {
+      return end - start <= 9;
+    }
+
+    private boolean fitsLong() {
+      var index = start;
+      var negative = charAt(index) == '-';
+      if (negative) {
+        index++;
+      }
+      var value = 0L;  // accumulated negatively, so Long.MIN_VALUE fits
+      for(; index < end; index++) {
+        var digit = charAt(index) - '0';
+        if (value < (Long.MIN_VALUE + digit) / 10) {
+          return false;
+        }
+        value = value * 10 - digit;
+      }
+      return negative || value != Long.MIN_VALUE;
+    }
+
+    /**
+     * Returns the value of the current integer token, the token must fit in an int.
+     * @see #fitsInt()
+     */
+    final int intValue() {
+      var index = start;
+      var negative = charAt(index) == '-';
+      if (negative) {
+        index++;
+      }
+      var value = 0;
+      for(; index < end; index++) {
+        value = value * 10 + (charAt(index) - '0');
+      }
+      return negative ? -value : value;
+    }
+
+    /**
+     * Returns the value of the current integer token, the token must fit in a long,
+     * which is checked by {@link #numberKind()}.
+     */
+    final long longValue() {
+      var index = start;
+      var negative = charAt(index) == '-';
+      if (negative) {
+        index++;
+      }
+      var value = 0L;  // accumulated negatively, so Long.MIN_VALUE fits
+      for(; index < end; index++) {
+        value = value * 10 - (charAt(index) - '0');
+      }
+      return negative ? value : -value;
+    }
+
+    /**
+     * Returns the value of the current number token. The significand and the exponent are decoded
+     * from the characters and converted by {@link NumberParser}, the text of the number is only
+     * extracted and parsed by {@link Double#parseDouble(String)} if the significand has too many digits
+     * or if the conversion is not precise enough.
+     */
+    final double doubleValue() {
+      var index = start;
+      var negative = charAt(index) == '-';
+      if (negative) {
+        index++;
+      }
+      var significand = 0L;
+      var digits = 0;
+      var exponent = 0;
+      var truncated = false;
+      int c;
+      for(; index < end && isDigit(c = charAt(index)); index++) {
+        if (digits < NumberParser.MAX_DIGITS) {
+          significand = significand * 10 + (c - '0');
+          digits += significand == 0 ? 0 : 1;
+        } else {
+          exponent++;
+          truncated |= c != '0';
+        }
+      }
+      if (index < end && charAt(index) == '.') {
+        for(index++; index < end && isDigit(c = charAt(index)); index++) {
+          if (digits < NumberParser.MAX_DIGITS) {
+            significand = significand * 10 + (c - '0');
+            digits += significand == 0 ? 0 : 1;
+            exponent--;
+          } else {
+            truncated |= c != '0';
+          }
+        }
+      }
+      if (index < end) {  // 'e' or 'E'
+        index++;
+        var exponentSign = charAt(index);
+        if (exponentSign == '+' || exponentSign == '-') {
+          index++;
+        }
+        var value = 0;
+        for(; index < end; index++) {
+          if (value < 100_000) {  // saturate, the result is either 0 or infinity
+            value = value * 10 + (charAt(index) - '0');
+          }
+        }
+        exponent += exponentSign == '-' ? -value : value;
+      }
+      if (!truncated) {
+        var value = NumberParser.toDouble(significand, exponent);
+        if (!Double.isNaN(value)) {
+          return negative ? -value : value;
+        }
+      }
+      return parseDouble(text());
+    }
+
+    abstract long location();
+
+    final boolean is(Kind kind) {
+      return this.kind == kind;
+    }
+
+    final void expect(Kind kind) {
+      if (this.kind != kind) {
+        throw error(kind);
+      }
+    }
+
+    final IllegalStateException error(Kind... expectedKinds) {
+      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + location());
+    }
+  }
+
+  /**
+   * A lexer on characters, the characters are read from a {@link Reader} into a buffer which is refilled when the cursor
+   * reaches its limit, only the text of the current token is kept when refilling,
+   * so the buffer only grows if a token is bigger than the buffer.
+   */
+  private static final class CharLexer extends Lexer {
+    private final Reader reader;
+    private char[] buffer;
+    private int limit;
+    private long offset;  // offset of buffer[0] in the input
+    private int position;
+
+    private CharLexer(Reader reader, int bufferSize, SymbolTable symbols) {
+      super(symbols);
+      this.reader = reader;
+      this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Reads more characters, the characters before {@link #start} are discarded.
+     * @return false if there is no more characters.
+     */
+    private boolean fill() {
+      var buffer = this.buffer;
+      var shift = start;
+      if (shift != 0) {
+        System.arraycopy(buffer, shift, buffer, 0, limit - shift);
+        limit -= shift;
+        position -= shift;
+        start = 0;
+        offset += shift;
+      }
+      if (limit == buffer.length) {
+        buffer = this.buffer = Arrays.copyOf(buffer, buffer.length << 1);
+      }
+      int read;
+      try {
+        read = reader.read(buffer, limit, buffer.length - limit);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      if (read == -1) {
+        return false;
+      }
+      limit += read;
+      return true;
+    }
+
+    @Override
+    Kind next() {
+      var index = start = position;
+      char c;
+      for(;;) {
+        if (index == limit) {
+          position = index;
+          if (!fill()) {
+            throw new IllegalStateException("no token recognized");
+          }
+          index = position;
+        }
+        if ((c = buffer[index]) != ' ' && c != '\t' && c != '\n' && c != '\r') {
+          break;
+        }
+        index++;
+      }
+      start = position = index;
+      return kind = switch(c) {
+        case '{' -> symbol(LEFT_CURLY);
+        case '}' -> symbol(RIGHT_CURLY);
+        case '[' -> symbol(LEFT_BRACKET);
+        case ']' -> symbol(RIGHT_BRACKET);
+        case ':' -> symbol(COLON);
+        case ',' -> symbol(COMMA);
+        case 'n' -> keyword("null", NULL);
+        case 't' -> keyword("true", TRUE);
+        case 'f' -> keyword("false", FALSE);
+        case '"' -> string();
+        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '-' -> number();
+        default -> throw new IllegalStateException("no token recognized at " + location());
+      };
+    }
+
+    private Kind symbol(Kind kind) {
+      end = position = start + 1;
+      return kind;
+    }
+
+    private Kind keyword(String keyword, Kind kind) {
+      var length = keyword.length();
+      while(limit - start < length) {
+        if (!fill()) {
+          break;
+        }
+      }
+      if (limit - start < length) {
+        throw new IllegalStateException("no token recognized at " + location());
+      }
+      for(var i = 0; i < length; i++) {
+        if (buffer[start + i] != keyword.charAt(i)) {
+          throw new IllegalStateException("no token recognized at " + location());
+        }
+      }
+      end = position = start + length;
+      return kind;
+    }
+
+    private Kind string() {
+      var index = start + 1;
+      var escaped = false;  // true if the previous character is a backslash
+      for(;;) {
+        if (index == limit) {
+          var relative = index - start;
+          if (!fill()) {
+            throw new IllegalStateException("unterminated string at " + location());
+          }
+          index = start + relative;
+        }
+        var c = buffer[index];
+        if (escaped) {
+          escaped = false;
+        } else if (c == '\\') {
+          escaped = true;
+        } else if (c == '"') {
+          break;
+        }
+        index++;
+      }
+      start++;
+      end = index;
+      position = index + 1;
+      return STRING;
+    }
+
+    private Kind number() {
+      var index = start + 1;
+      for(;;) {
+        if (index == limit) {
+          var relative = index - start;
+          if (!fill()) {
+            break;
+          }
+          index = start + relative;
+        }
+        if (!isNumberPart(buffer[index])) {
+          break;
+        }
+        index++;
+      }
+      end = position = index;
+      var kind = numberKind();
+      if (kind == null) {
+        throw new IllegalStateException("invalid number at " + location());
+      }
+      return kind;
+    }
+
+    @Override
+    void skipValue(int depth) {
+      var index = start = position;
+      char c;
+      for(;;) {
+        if (index == limit) {
+          start = position = index;
+          if (!fill()) {
+            throw new IllegalStateException("no value recognized at " + location());
+          }
+          index = position;
+        }
+        if ((c = buffer[index]) != ' ' && c != '\t' && c != '\n' && c != '\r') {
+          break;
+        }
+        index++;
+      }
+      start = index;
+      skipper.start(depth);
+      var empty = true;
+      for(;;) {
+        if (index == limit) {
+          start = position = index;  // the skipped characters are discarded
+          if (!fill()) {
+            throw new IllegalStateException("unterminated value at " + location());
+          }
+          index = position;
+        }
+        var state = skipper.skip(buffer[index]);
+        if (state == Skipper.END_BEFORE) {
+          break;
+        }
+        index++;
+        empty = false;
+        if (state == Skipper.END_AFTER) {
+          break;
+        }
+      }
+      if (empty) {
+        throw new IllegalStateException("no value recognized at " + location());
+      }
+      end = position = index;
+    }
+
+    @Override
+    long location() {
+      return offset + start;
+    }
+
+    @Override
+    String text() {
+      return new String(buffer, start, end - start);
+    }
+
+    @Override
+    String key() {
+      if (symbols == null) {
+        return stringValue();
+      }
+      if (hasEscape()) {
+        return symbols.symbol(stringValue());
+      }
+      return symbols.symbol(buffer, start, end);
+    }
+
+    @Override
+    int charAt(int index) {
+      return buffer[index];
+    }
+  }
+
+  /**
+   * A lexer on UTF-8 encoded bytes, it works directly on the bytes of a {@link ByteBuffer}
+   * using absolute indexes, so it works with heap buffers, direct buffers and mapped files.
+   * Given that in UTF-8 all the bytes of a multi-bytes character are greater than 0x7F,
+   * the tokens can be recognized without decoding, only the texts of the strings are decoded.
+   *
+   * If the lexer has a {@link StructuralIndex}, the whole input is indexed first and the lexer
+   * jumps from one structural character to the next, so the blanks and the content of the strings
+   * are never scanned again, a string ends at the next structural character which is its closing quote.
+   */
+  private static final class ByteLexer extends Lexer {
+    private ByteBuffer input;
+    private int base;
+    private int limit;
+    private int position;
+    private byte[] scratch;
+
+    private final StructuralIndex structurals;  // or null
+
+    private ByteLexer(ByteBuffer input, int start, int end, SymbolTable symbols, StructuralIndex structurals) {
+      super(symbols);
+      this.structurals = structurals;
+      reset(input, start, end);
+    }
+
+    /**
+     * Lexes the bytes of another input between start and end, the scratch buffer
+     * and the array of the structural index are kept.
+     */
+    private void reset(ByteBuffer input, int start, int end) {
+      this.input = input;
+      this.base = this.position = start;
+      this.limit = end;
+      if (structurals != null) {
+        structurals.reset(input, start, end);
+      }
+    }
+
+    /**
+     * Sets the current token to a token recognized by another parser, so its value can be decoded.
+     */
+    private void token(Kind kind, ByteBuffer input, int start, int end) {
+      reset(input, start, end);
+      this.kind = kind;
+      this.start = start;
+      this.end = end;
+    }
+
+    private static boolean isBlank(byte b) {
+      return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+
+    @Override
+    Kind next() {
+      int index;
+      if (structurals != null) {
+        index = structurals.next();
+        if (index == -1) {
+          throw new IllegalStateException("no token recognized");
+        }
+      } else {
+        var input = this.input;
+        var limit = this.limit;
+        index = position;
+        while(index < limit && isBlank(input.get(index))) {
+          index++;
+        }
+        if (index == limit) {
+          throw new IllegalStateException("no token recognized");
+        }
+      }
+      start = index;
+      return kind = switch(input.get(index)) {
+        case '{' -> symbol(LEFT_CURLY);
+        case '}' -> symbol(RIGHT_CURLY);
+        case '[' -> symbol(LEFT_BRACKET);
+        case ']' -> symbol(RIGHT_BRACKET);
+        case ':' -> symbol(COLON);
+        case ',' -> symbol(COMMA);
+        case 'n' -> keyword("null", NULL);
+        case 't' -> keyword("true", TRUE);
+        case 'f' -> keyword("false", FALSE);
+        case '"' -> string();
+        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '-' -> number();
+        default -> throw new IllegalStateException("no token recognized at " + location());
+      };
+    }
+
+    private Kind symbol(Kind kind) {
+      end = position = start + 1;
+      return kind;
+    }
+
+    private Kind keyword(String keyword, Kind kind) {
+      var length = keyword.length();
+      if (limit - start < length) {
+        throw new IllegalStateException("no token recognized at " + location());
+      }
+      for(var i = 0; i < length; i++) {
+        if (input.get(start + i) != keyword.charAt(i)) {
+          throw new IllegalStateException("no token recognized at " + location());
+        }
+      }
+      end = position = start + length;
+      checkDelimited();
+      return kind;
+    }
+
+    /**
+     * With a structural index, the bytes that follow a number or a keyword are not structural characters,
+     * so they are checked to not be silently skipped.
+     */
+    private void checkDelimited() {
+      if (structurals == null || end == limit) {
+        return;
+      }
+      var b = input.get(end);
+      if (!isBlank(b) && b != ',' && b != '}' && b != ']' && b != ':' && b != '"' && b != '{' && b != '[') {
+        throw new IllegalStateException("no token recognized at " + (end - base));
+      }
+    }
+
+    private Kind string() {
+      int index;
+      if (structurals != null) {
+        index = structurals.next();  // the closing quote
+        if (index == -1) {
+          index = limit;
+        }
+      } else {
+        var input = this.input;
+        var limit = this.limit;
+        var escaped = false;  // true if the previous byte is a backslash
+        for(index = start + 1; index < limit; index++) {
+          var b = input.get(index);
+          if (escaped) {
+            escaped = false;
+          } else if (b == '\\') {
+            escaped = true;
+          } else if (b == '"') {
+            break;
+          }
+        }
+      }
+      if (index == limit) {
+        throw new IllegalStateException("unterminated string at " + location());
+      }
+      start++;
+      end = index;
+      position = index + 1;
+      return STRING;
+    }
+
+    private Kind number() {
+      var input = this.input;
+      var limit = this.limit;
+      var index = start + 1;
+      while(index < limit && isNumberPart(input.get(index))) {
+        index++;
+      }
+      end = position = index;
+      checkDelimited();
+      var kind = numberKind();
+      if (kind == null) {
+        throw new IllegalStateException("invalid number at " + location());
+      }
+      return kind;
+    }
+
+    @Override
+    void skipValue(int depth) {
+      if (structurals != null) {
+        skipIndexedValue(depth);
+        return;
+      }
+      var input = this.input;
+      var limit = this.limit;
+      var index = position;
+      while(index < limit && isBlank(input.get(index))) {
+        index++;
+      }
+      start = index;
+      skipper.start(depth);
+      for(;; index++) {
+        if (index == limit) {
+          throw new IllegalStateException("unterminated value at " + location());
+        }
+        var state = skipper.skip(input.get(index));
+        if (state == Skipper.END_BEFORE) {
+          break;
+        }
+        if (state == Skipper.END_AFTER) {
+          index++;
+          break;
+        }
+      }
+      if (index == start) {
+        throw new IllegalStateException("no value recognized at " + location());
+      }
+      end = position = index;
+    }
+
+    /**
+     * Skips a value by only visiting the structural characters.
+     */
+    private void skipIndexedValue(int depth) {
+      var structurals = this.structurals;
+      var index = structurals.peek();
+      start = index == -1 ? limit : index;
+      loop: for(;;) {
+        if (index == -1) {
+          throw new IllegalStateException("unterminated value at " + location());
+        }
+        switch(input.get(index)) {
+          case '{', '[' -> depth++;
+          case '}', ']' -> {
+            if (depth == 0) {
+              break loop;
+            }
+            if (--depth == 0) {
+              structurals.next();
+              index++;
+              break loop;
+            }
+          }
+          case ',' -> {
+            if (depth == 0) {
+              break loop;
+            }
+          }
+          case '"' -> {
+            structurals.next();
+            var closingQuote = structurals.peek();
+            if (closingQuote == -1) {
+              throw new IllegalStateException("unterminated string at " + location());
+            }
+            if (depth == 0) {
+              structurals.next();
+              index = closingQuote + 1;
+              break loop;
+            }
+          }
+          case ':' -> {}
+          default -> {  // a number or a keyword
+            if (depth == 0) {
+              structurals.next();
+              byte b;
+              while(index < limit && !isBlank(b = input.get(index)) && b != ',' && b != '}' && b != ']') {
+                index++;
+              }
+              break loop;
+            }
+          }
+        }
+        structurals.next();
+        index = structurals.peek();
+      }
+      if (index == start) {
+        throw new IllegalStateException("no value recognized at " + location());
+      }
+      end = position = index;
+    }
+
+    @Override
+    long location() {
+      return start - base;
+    }
+
+    private String decode(Charset charset) {
+      var length = end - start;
+      if (input.hasArray()) {
+        return new String(input.array(), input.arrayOffset() + start, length, charset);
+      }
+      var scratch = this.scratch;
+      if (scratch == null || scratch.length < length) {
+        scratch = this.scratch = new byte[Math.max(length, 64)];
+      }
+      input.get(start, scratch, 0, length);
+      return new String(scratch, 0, length, charset);
+    }
+
+    @Override
+    String text() {
+      return decode(UTF_8);
+    }
+
+    @Override
+    String key() {
+      if (symbols == null) {
+        return stringValue();
+      }
+      if (!hasEscape()) {
+        var symbol = symbols.symbol(input, start, end);
+        if (symbol != null) {
+          return symbol;
+        }
+        // not ASCII
+      }
+      return symbols.symbol(stringValue());
+    }
+
+    @Override
+    int charAt(int index) {
+      return input.get(index);
+    }
+  }
+
+  /**
+   * Methods called when a JSON text is parsed.
+   * @see #parse(String, JSONVisitor)
+   */
+  public interface JSONVisitor {
+    /**
+     * Called during the parsing or the content of an object or an array.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    void value(String key, Object value);
+
+    /**
+     * Called inside an object before parsing the value of a key, if this method returns true,
+     * the value is skipped by only scanning its brackets, curly braces and quotes,
+     * no value is decoded and no other method of the visitor is called for that value.
+     * By default, returns false.
+     *
+     * @param key the key of the value.
+     * @return true if the value should be skipped.
+     */
+    default boolean skipValue(String key) {
+      return false;
+    }
+
+    /**
+     * Called during the parsing or the content of an object or an array when the value is an integer
+     * that fits in an {@code int}.
+     * By default, box the value and calls {@link #value(String, Object)}.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueInt(String key, int value) {
+      value(key, value);
+    }
+
+    /**
+     * Called during the parsing or the content of an object or an array when the value is an integer
+     * that does not fit in an {@code int}.
+     * By default, box the value and calls {@link #value(String, Object)}.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueLong(String key, long value) {
+      value(key, value);
+    }
+
+    /**
+     * Called during the parsing or the content of an object or an array when the value is a double.
+     * By default, box the value and calls {@link #value(String, Object)}.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueDouble(String key, double value) {
+      value(key, value);
+    }
+
+    /**
+     * Called during the parsing or the content of an object or an array when the value is
+     * {@code true} or {@code false}.
+     * By default, box the value and calls {@link #value(String, Object)}.
+     *
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * @param value the value
+     */
+    default void valueBoolean(String key, boolean value) {
+      value(key, value);
+    }
+
+    /**
+     * Called during the parsing at the beginning of an object.
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     *
+     * @see #endObject(String)
+     */
+    void startObject(String key);
+
+    /**
+     * Called during the parsing at the end of an object.
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     *
+     * @see #startObject(String)
+     */
+    void endObject(String key);
+
+    /**
+     * Called during the parsing at the beginning of an array.
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     *
+     * @see #endArray(String)
+     */
+    void startArray(String key);
+
+    /**
+     * Called during the parsing at the end of an array.
+     * @param key the key of the value if inside an object, {@code null} otherwise.
+     *
+     * @see #startArray(String)
+     */
+    void endArray(String key);
+  }
+
+  /**
+   * A cursor on the tokens of a JSON text, the tokens are pulled one by one using {@link #nextToken()},
+   * so unlike a {@link JSONVisitor}, the caller drives the parsing, can keep its state on the Java stack
+   * and can stop the parsing at any time.
+   *
+   * A cursor is created by {@link #cursor(String)}, {@link #cursor(Reader)} or {@link #cursor(ByteBuffer)}.
+   * The syntax errors are reported as {@link IllegalStateException}s, and if the cursor reads
+   * from a reader, the I/O errors are wrapped into {@link UncheckedIOException}s.
+   */
+  public static final class JSONCursor implements Closeable {
+    /**
+     * The tokens returned by {@link #nextToken()}.
+     */
+    public enum Token {
+      START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, NULL, TRUE, FALSE, INTEGER, DOUBLE, STRING
+    }
+
+    private final Lexer lexer;
+    private final Reader reader;
+
+    private boolean[] objects = new boolean[16];  // true if the enclosing value at a depth is an object
+    private String[] keys = new String[16];  // the key of the enclosing value at a depth
+    private int depth;
+    private boolean first;  // true if the current token starts an object or an array
+    private boolean started;
+    private Token token;
+    private String currentKey;
+
+    private JSONCursor(Lexer lexer, Reader reader) {
+      this.lexer = lexer;
+      this.reader = reader;
+    }
+
+    /**
+     * Moves to the next token.
+     *
+     * @return the next token or {@code null} if the end of the JSON text is reached.
+     * @throws IllegalStateException if the JSON text is not valid
+     */
+    public Token nextToken() {
+      var lexer = this.lexer;
+      if (depth == 0) {
+        if (started) {
+          currentKey = null;
+          return token = null;
+        }
+        started = true;
+        lexer.next();
+        if (!lexer.is(LEFT_CURLY) && !lexer.is(LEFT_BRACKET)) {
+          throw lexer.error(LEFT_CURLY, LEFT_BRACKET);
+        }
+        return token = value(null);
+      }
+      var inObject = objects[depth - 1];
+      lexer.next();
+      if (lexer.is(inObject ? RIGHT_CURLY : RIGHT_BRACKET)) {
+        depth--;
+        first = false;
+        currentKey = keys[depth];
+        return token = inObject ? Token.END_OBJECT : Token.END_ARRAY;
+      }
+      if (!first) {
+        if (!lexer.is(COMMA)) {
+          throw lexer.error(COMMA, inObject ? RIGHT_CURLY : RIGHT_BRACKET);
+        }
+        lexer.next();
+      }
+      first = false;
+      String key = null;
+      if (inObject) {
+        lexer.expect(STRING);
+        key = lexer.key();
+        lexer.next();
+        lexer.expect(COLON);
+        lexer.next();
+      }
+      return token = value(key);
+    }
+
+    private Token value(String key) {
+      currentKey = key;
+      return switch(lexer.kind) {
+        case NULL -> Token.NULL;
+        case TRUE -> Token.TRUE;
+        case FALSE -> Token.FALSE;
+        case INTEGER -> Token.INTEGER;
+        case DOUBLE -> Token.DOUBLE;
+        case STRING -> Token.STRING;
+        case LEFT_CURLY -> push(true, key, Token.START_OBJECT);
+        case LEFT_BRACKET -> push(false, key, Token.START_ARRAY);
+        default -> throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, LEFT_CURLY);
+      };
+    }
+
+    private Token push(boolean isObject, String key, Token token) {
+      if (depth == objects.length) {
+        objects = Arrays.copyOf(objects, depth << 1);
+        keys = Arrays.copyOf(keys, depth << 1);
+      }
+      objects[depth] = isObject;
+      keys[depth] = key;
+      depth++;
+      first = true;
+      return token;
+    }
+
+    /**
+     * Returns the current token or {@code null} if {@link #nextToken()} was not called
+     * or the end of the JSON text is reached.
+     */
+    public Token currentToken() {
+      return token;
+    }
+
+    /**
+     * Returns the key of the current value if it is inside an object, {@code null} otherwise.
+     * For {@link Token#END_OBJECT} and {@link Token#END_ARRAY}, returns the key of the object or the array
+     * that ends.
+     */
+    public String currentKey() {
+      return currentKey;
+    }
+
+    private IllegalStateException invalidToken(Token... expectedTokens) {
+      return new IllegalStateException("current token " + token + " is not a " + Arrays.toString(expectedTokens) + " at " + lexer.location());
+    }
+
+    /**
+     * Returns the value of the current token if it is an {@link Token#INTEGER} that fits in an {@code int}.
+     */
+    public int intValue() {
+      var value = longValue();
+      if (value != (int) value) {
+        throw new IllegalStateException("value " + value + " does not fit in an int at " + lexer.location());
+      }
+      return (int) value;
+    }
+
+    /**
+     * Returns the value of the current token if it is an {@link Token#INTEGER}.
+     */
+    public long longValue() {
+      if (token != Token.INTEGER) {
+        throw invalidToken(Token.INTEGER);
+      }
+      return lexer.fitsInt() ? lexer.intValue() : lexer.longValue();
+    }
+
+    /**
+     * Returns the value of the current token if it is a {@link Token#DOUBLE} or an {@link Token#INTEGER}.
+     */
+    public double doubleValue() {
+      if (token != Token.DOUBLE && token != Token.INTEGER) {
+        throw invalidToken(Token.DOUBLE, Token.INTEGER);
+      }
+      return lexer.doubleValue();
+    }
+
+    /**
+     * Returns the value of the current token if it is {@link Token#TRUE} or {@link Token#FALSE}.
+     */
+    public boolean booleanValue() {
+      if (token != Token.TRUE && token != Token.FALSE) {
+        throw invalidToken(Token.TRUE, Token.FALSE);
+      }
+      return token == Token.TRUE;
+    }
+
+    /**
+     * Returns the value of the current token if it is a {@link Token#STRING}.
+     */
+    public String stringValue() {
+      if (token != Token.STRING) {
+        throw invalidToken(Token.STRING);
+      }
+      return lexer.stringValue();
+    }
+
+    /**
+     * If the current token is {@link Token#START_OBJECT} or {@link Token#START_ARRAY}, skips all the tokens
+     * until the corresponding {@link Token#END_OBJECT} or {@link Token#END_ARRAY} which becomes the current token,
+     * otherwise does nothing.
+     * The skipped text is only scanned for brackets, curly braces and quotes, it is not validated.
+     */
+    public void skipChildren() {
+      if (token != Token.START_OBJECT && token != Token.START_ARRAY) {
+        return;
+      }
+      lexer.skipValue(1);
+      depth--;
+      first = false;
+      currentKey = keys[depth];
+      token = objects[depth] ? Token.END_OBJECT : Token.END_ARRAY;
+    }
+
+    /**
+     * Closes the reader of the JSON text if there is one.
+     *
+     * @throws IOException if an I/O error occurs while closing the reader
+     */
+    @Override
+    public void close() throws IOException {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+
+  /**
+   * Creates a cursor on a JSON text.
+   *
+   * @param input a JSON text
+   * @return a cursor on the tokens of the JSON text
+   */
+  public static JSONCursor cursor(String input) {
+    return cursor(input, null);
+  }
+
+  static JSONCursor cursor(String input, SymbolTable symbols) {
+    Objects.requireNonNull(input);
+    return new JSONCursor(new CharLexer(new StringReader(input), Math.max(16, Math.min(input.length(), BUFFER_SIZE)), symbols), null);
+  }
+
+  /**
+   * Creates a cursor on a JSON text read from a reader, the reader is closed when the cursor is closed.
+   *
+   * @param reader a reader of a JSON text
+   * @return a cursor on the tokens of the JSON text
+   */
+  public static JSONCursor cursor(Reader reader) {
+    return cursor(reader, null);
+  }
+
+  static JSONCursor cursor(Reader reader, SymbolTable symbols) {
+    Objects.requireNonNull(reader);
+    return new JSONCursor(new CharLexer(reader, BUFFER_SIZE, symbols), reader);
+  }
+
+  /**
+   * Creates a cursor on a JSON text encoded in UTF-8 stored in a byte buffer, between its position and its limit.
+   *
+   * @param input a byte buffer containing a JSON text
+   * @return a cursor on the tokens of the JSON text
+   */
+  public static JSONCursor cursor(ByteBuffer input) {
+    return cursor(input, null);
+  }
+
+  static JSONCursor cursor(ByteBuffer input, SymbolTable symbols) {
+    return cursor(input, symbols, false);
+  }
+
+  /**
+   * Creates a cursor on a JSON text encoded in UTF-8 stored in a byte buffer,
+   * if indexed is true, the text is indexed by a {@link StructuralIndex} before being lexed.
+   */
+  static JSONCursor cursor(ByteBuffer input, SymbolTable symbols, boolean indexed) {
+    Objects.requireNonNull(input);
+    return new JSONCursor(newByteLexer(input, input.position(), input.limit(), symbols, indexed), null);
+  }
+
+  private static ByteLexer newByteLexer(ByteBuffer input, int start, int end, SymbolTable symbols, boolean indexed) {
+    return new ByteLexer(input, start, end, symbols, indexed ? new StructuralIndex(StructuralIndex.indexer()) : null);
+  }
 
-    private final String regex;
+  /**
+   * Parse a JSON text and calls the visitor methods when an array, an object or a value is parsed.
+   *
+   * @param input a JSON text
+   * @param visitor the visitor to call when parsing the JSON text
+   */
+  public static void parse(String input, JSONVisitor visitor) {
+    parse(input, visitor, null);
+  }
 
-    Kind(String regex) {
-      this.regex = regex;
+  static void parse(String input, JSONVisitor visitor, SymbolTable symbols) {
+    var lexer = new CharLexer(new StringReader(input), Math.max(16, Math.min(input.length(), BUFFER_SIZE)), symbols);
+    try {
+      parse(lexer, visitor);
+    } catch(IllegalStateException e) {
+      throw new IllegalStateException(e.getMessage() + "\n while parsing " + input, e);
     }
+  }
 
-    private static final Kind[] VALUES = values();
+  /**
+   * Parse a JSON text read from a reader and calls the visitor methods when an array,
+   * an object or a value is parsed.
+   * The text is read by chunks, so the memory used by the parser only depends on the nesting depth
+   * and on the size of the biggest token, not on the size of the text.
+   * The reader is not closed by this method.
+   *
+   * @param reader a reader of a JSON text
+   * @param visitor the visitor to call when parsing the JSON text
+   * @throws IOException if an I/O error occurs while reading
+   */
+  public static void parse(Reader reader, JSONVisitor visitor) throws IOException {
+    parse(reader, visitor, null);
   }
 
-  private record Token(Kind kind, String text, int location) {
-    private boolean is(Kind kind) {
-      return this.kind == kind;
+  static void parse(Reader reader, JSONVisitor visitor, SymbolTable symbols) throws IOException {
+    Objects.requireNonNull(reader);
+    Objects.requireNonNull(visitor);
+    try {
+      parse(new CharLexer(reader, BUFFER_SIZE, symbols), visitor);
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
     }
+  }
 
-    private String expect(Kind kind) {
-      if (this.kind != kind) {
-        throw error(kind);
+  /**
+   * Parse a JSON text encoded in UTF-8 read from an input stream.
+   * The input stream is not closed by this method.
+   *
+   * @param input an input stream of a JSON text
+   * @param visitor the visitor to call when parsing the JSON text
+   * @throws IOException if an I/O error occurs while reading
+   *
+   * @see #parse(Reader, JSONVisitor)
+   */
+  public static void parse(InputStream input, JSONVisitor visitor) throws IOException {
+    parse(input, visitor, null);
+  }
+
+  static void parse(InputStream input, JSONVisitor visitor, SymbolTable symbols) throws IOException {
+    parse(new InputStreamReader(input, UTF_8), visitor, symbols);
+  }
+
+  /**
+   * Parse a JSON text encoded in UTF-8 read from a channel.
+   * The channel is not closed by this method.
+   *
+   * @param channel a channel of a JSON text
+   * @param visitor the visitor to call when parsing the JSON text
+   * @throws IOException if an I/O error occurs while reading
+   *
+   * @see #parse(Reader, JSONVisitor)
+   */
+  public static void parse(ReadableByteChannel channel, JSONVisitor visitor) throws IOException {
+    parse(channel, visitor, null);
+  }
+
+  static void parse(ReadableByteChannel channel, JSONVisitor visitor, SymbolTable symbols) throws IOException {
+    parse(Channels.newReader(channel, UTF_8), visitor, symbols);
+  }
+
+  /**
+   * Parse a JSON text encoded in UTF-8 stored in a byte buffer, between its position and its limit.
+   * The bytes are lexed without being decoded, only the strings are decoded to create
+   * the keys and the values sent to the visitor. The position of the buffer is not changed.
+   * The buffer can be a {@link java.nio.MappedByteBuffer memory mapped file}.
+   *
+   * @param input a byte buffer containing a JSON text
+   * @param visitor the visitor to call when parsing the JSON text
+   */
+  public static void parse(ByteBuffer input, JSONVisitor visitor) {
+    parse(input, visitor, null);
+  }
+
+  static void parse(ByteBuffer input, JSONVisitor visitor, SymbolTable symbols) {
+    parse(input, visitor, symbols, false);
+  }
+
+  /**
+   * Parse a JSON text encoded in UTF-8 stored in a byte buffer,
+   * if indexed is true, the text is indexed by a {@link StructuralIndex} before being parsed.
+   */
+  static void parse(ByteBuffer input, JSONVisitor visitor, SymbolTable symbols, boolean indexed) {
+    Objects.requireNonNull(input);
+    Objects.requireNonNull(visitor);
+    parse(newByteLexer(input, input.position(), input.limit(), symbols, indexed), visitor);
+  }
+
+  /**
+   * A parser of several JSON texts encoded in UTF-8 stored in byte buffers,
+   * the lexer and its scratch buffer are reused from one text to the next,
+   * so a parser should not be shared between threads.
+   */
+  static final class BufferParser {
+    private final SymbolTable symbols;
+    private final boolean indexed;
+    private ByteLexer lexer;
+
+    BufferParser(SymbolTable symbols) {
+      this(symbols, false);
+    }
+
+    /**
+     * Creates a parser, if indexed is true, each text is indexed by a {@link StructuralIndex} before being parsed.
+     */
+    BufferParser(SymbolTable symbols, boolean indexed) {
+      this.symbols = symbols;
+      this.indexed = indexed;
+    }
+
+    /**
+     * Parse a JSON text stored in a byte buffer between start and end.
+     * The position and the limit of the buffer are ignored.
+     */
+    void parse(ByteBuffer input, int start, int end, JSONVisitor visitor) {
+      var lexer = this.lexer;
+      if (lexer == null) {
+        lexer = this.lexer = newByteLexer(input, start, end, symbols, indexed);
+      } else {
+        lexer.reset(input, start, end);
+      }
+      ToyJSONParser.parse(lexer, visitor);
+    }
+  }
+
+  /**
+   * A parser of a JSON text which is an array, the elements are parsed one by one on demand,
+   * so the memory used does not depend on the number of elements.
+   * The visitor is called with a key {@code null} for each element, and as the elements are
+   * not enclosed in an array, {@link JSONVisitor#startArray(String)} and
+   * {@link JSONVisitor#endArray(String)} are not called for the top-level array.
+   */
+  static final class ArrayParser {
+    private final Lexer lexer;
+    private boolean started;
+
+    ArrayParser(Reader reader, SymbolTable symbols) {
+      this.lexer = new CharLexer(reader, BUFFER_SIZE, symbols);
+    }
+
+    /**
+     * Returns true if there is another element, in that case the lexer is on the first token of the element.
+     */
+    boolean hasNext() {
+      if (!started) {
+        started = true;
+        lexer.next();
+        lexer.expect(LEFT_BRACKET);
+        lexer.next();
+      }
+      return !lexer.is(RIGHT_BRACKET);
+    }
+
+    /**
+     * Parses the next element, {@link #hasNext()} must have returned true.
+     */
+    void parseNext(JSONVisitor visitor) {
+      parseValue(null, lexer, visitor);
+      lexer.next();
+      if (lexer.is(RIGHT_BRACKET)) {
+        return;
       }
-      return text;
+      lexer.expect(COMMA);
+      lexer.next();
+      if (lexer.is(RIGHT_BRACKET)) {  // no element after the comma
+        throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, LEFT_CURLY);
+      }
+    }
+  }
+
+  /**
+   * The words of the tape of a {@link JSONDocument} being recorded.
+   */
+  private static final class TapeWriter {
+    private long[] words;
+    private int size;
+
+    private TapeWriter(int capacity) {
+      words = new long[capacity];
+    }
+
+    /**
+     * Adds a word at the end of the tape.
+     * @return the index of the word.
+     */
+    private int add(long word) {
+      if (size == words.length) {
+        words = Arrays.copyOf(words, size << 1);
+      }
+      words[size] = word;
+      return size++;
+    }
+  }
+
+  /**
+   * Records a JSON text encoded in UTF-8 stored in a byte buffer, between its position and its limit,
+   * on the tape of a {@link JSONDocument}. The text is checked but the values are not decoded,
+   * only their kind and their position in the text are recorded.
+   *
+   * @return the words of the tape.
+   * @throws IllegalStateException if the text is not a valid JSON text.
+   */
+  static long[] tape(ByteBuffer input) {
+    Objects.requireNonNull(input);
+    var lexer = newByteLexer(input, input.position(), input.limit(), null, false);
+    var tape = new TapeWriter(Math.max(16, input.remaining() >> 3));
+    switch(lexer.next()) {
+      case LEFT_CURLY -> tapeObject(lexer, tape);
+      case LEFT_BRACKET -> tapeArray(lexer, tape);
+      default -> throw lexer.error(LEFT_CURLY, LEFT_BRACKET);
     }
+    return Arrays.copyOf(tape.words, tape.size);
+  }
 
-    public IllegalStateException error(Kind... expectedKinds) {
-      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + location);
+  private static void tapeValue(Lexer lexer, TapeWriter tape) {
+    switch(lexer.kind) {
+      case NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING -> tape.add(JSONDocument.scalarWord(lexer.kind, lexer.start, lexer.end));
+      case LEFT_CURLY -> tapeObject(lexer, tape);
+      case LEFT_BRACKET -> tapeArray(lexer, tape);
+      default -> throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, LEFT_CURLY);
     }
   }
 
-  private record Lexer(Matcher matcher) {
-    private Token next() {
+  private static void tapeObject(Lexer lexer, TapeWriter tape) {
+    var startIndex = tape.add(0);  // patched once the end is known
+    var count = 0;
+    lexer.next();
+    if (!lexer.is(RIGHT_CURLY)) {
       for(;;) {
-        if (!matcher.find()) {
-          throw new IllegalStateException("no token recognized");
+        lexer.expect(STRING);
+        tape.add(JSONDocument.keyWord(lexer.start, lexer.end, lexer.hasEscape()));
+        lexer.next();
+        lexer.expect(COLON);
+        lexer.next();
+        tapeValue(lexer, tape);
+        count++;
+        lexer.next();
+        if (lexer.is(RIGHT_CURLY)) {
+          break;
         }
-        var index = rangeClosed(1, matcher.groupCount()).filter(i -> matcher.group(i) != null).findFirst().orElseThrow();
-        var kind = Kind.VALUES[index - 1];
-        if (kind != Kind.BLANK) {
-          return new Token(kind, matcher.group(index), matcher.start(index));
+        lexer.expect(COMMA);
+        lexer.next();
+      }
+    }
+    var endIndex = tape.add(JSONDocument.endWord(RIGHT_CURLY, startIndex));
+    tape.words[startIndex] = JSONDocument.startWord(LEFT_CURLY, endIndex, count);
+  }
+
+  private static void tapeArray(Lexer lexer, TapeWriter tape) {
+    var startIndex = tape.add(0);  // patched once the end is known
+    var count = 0;
+    lexer.next();
+    if (!lexer.is(RIGHT_BRACKET)) {
+      for(;;) {
+        tapeValue(lexer, tape);
+        count++;
+        lexer.next();
+        if (lexer.is(RIGHT_BRACKET)) {
+          break;
         }
+        lexer.expect(COMMA);
+        lexer.next();
       }
     }
+    var endIndex = tape.add(JSONDocument.endWord(RIGHT_BRACKET, startIndex));
+    tape.words[startIndex] = JSONDocument.startWord(LEFT_BRACKET, endIndex, count);
   }
 
   /**
-   * Methods called when a JSON text is parsed.
-   * @see #parse(String, JSONVisitor)
+   * Decodes the values of the tokens of a JSON text encoded in UTF-8 recorded by {@link #tape(ByteBuffer)},
+   * the tokens are not recognized again, only the bytes of a value are read when the value is decoded.
+   * A decoder is not thread safe.
    */
-  public interface JSONVisitor {
+  static final class TokenDecoder {
+    private final ByteBuffer input;
+    private final ByteLexer lexer;
+
     /**
-     * Called during the parsing or the content of an object or an array.
-     *
-     * @param key the key of the value if inside an object, {@code null} otherwise.
-     * @param value the value
+     * Creates a decoder of the tokens of a text, if there is a symbol table, the keys are symbols of the table.
      */
-    void value(String key, Object value);
+    TokenDecoder(ByteBuffer input, SymbolTable symbols) {
+      this.input = input;
+      this.lexer = new ByteLexer(input, 0, 0, symbols, null);
+    }
+
+    private ByteLexer token(Kind kind, int start, int end) {
+      var lexer = this.lexer;
+      lexer.token(kind, input, start, end);
+      return lexer;
+    }
+
+    long longValue(int start, int end) {
+      var lexer = token(INTEGER, start, end);
+      return lexer.fitsInt() ? lexer.intValue() : lexer.longValue();
+    }
+
+    double doubleValue(int start, int end) {
+      return token(DOUBLE, start, end).doubleValue();
+    }
+
+    String text(int start, int end) {
+      return token(STRING, start, end).stringValue();
+    }
+
+    String key(int start, int end) {
+      return token(STRING, start, end).key();
+    }
 
     /**
-     * Called during the parsing at the beginning of an object.
-     * @param key the key of the value if inside an object, {@code null} otherwise.
-     *
-     * @see #endObject(String)
+     * Decodes a value which is not an object or an array and calls the visitor.
      */
-    void startObject(String key);
+    void value(Kind kind, int start, int end, String key, JSONVisitor visitor) {
+      parseValue(key, token(kind, start, end), visitor);
+    }
+  }
+
+  /**
+   * A resumable parser of a JSON text encoded in UTF-8 that arrives in chunks, by example read from
+   * a non-blocking channel. Each chunk is parsed when it is {@link #feed(ByteBuffer) fed}
+   * and the visitor is called as soon as a token is complete, the parser never waits for more bytes.
+   * The bytes of a token that spans several chunks are kept in an internal buffer, the other bytes
+   * are not copied, so a chunk can be reused by the caller once {@link #feed(ByteBuffer)} returns.
+   *
+   * A push parser is not thread safe but it can be fed by different threads one after the other.
+   *
+   * @see #pushParser(JSONVisitor)
+   */
+  public static final class PushParser {
+    private enum State { START, KEY_OR_END, KEY, COLON, VALUE, VALUE_OR_END, COMMA_OR_END, SKIP, DONE }
+
+    private enum TokenState { NONE, STRING, NUMBER, KEYWORD }
+
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final JSONVisitor visitor;
+    private final ByteLexer decoder;  // decodes the values of the complete tokens
+    private final Skipper skipper = new Skipper();
+
+    // state of the parser
+    private State state = State.START;
+    private boolean[] objects = new boolean[16];
+    private String[] keys = new String[16];
+    private int depth;
+    private String currentKey;
+    private boolean skipStarted;
+
+    // state of the token not yet complete
+    private TokenState tokenState = TokenState.NONE;
+    private Kind tokenKind;
+    private int tokenStart;
+    private long tokenLocation;
+    private String keyword;
+    private int keywordIndex;
+    private boolean escaped;
+    private byte[] pending = new byte[64];
+    private ByteBuffer pendingBuffer = ByteBuffer.wrap(pending);
+    private int pendingLength;
+
+    private long offset;      // offset of the first byte of the current chunk
+    private int chunkStart;
+    private boolean ended;
+
+    private PushParser(JSONVisitor visitor, SymbolTable symbols) {
+      this.visitor = visitor;
+      this.decoder = new ByteLexer(EMPTY, 0, 0, symbols, null);
+    }
 
     /**
-     * Called during the parsing at the end of an object.
-     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * Parses the bytes of a chunk between its position and its limit,
+     * once this method returns, the position of the chunk is its limit.
      *
-     * @see #startObject(String)
+     * @param chunk the next bytes of the JSON text.
+     * @throws IllegalStateException if the bytes are not a valid continuation of the JSON text
+     *         or if {@link #endOfInput()} was already called.
      */
-    void endObject(String key);
+    public void feed(ByteBuffer chunk) {
+      Objects.requireNonNull(chunk);
+      if (ended) {
+        throw new IllegalStateException("the end of the input is already reached");
+      }
+      var start = chunk.position();
+      var end = chunk.limit();
+      chunkStart = tokenStart = start;
+      var index = start;
+      while(index < end && state != State.DONE) {  // like parse(), the bytes after the JSON text are ignored
+        index = switch(tokenState) {
+          case NONE -> state == State.SKIP ? skip(chunk, index, end) : startToken(chunk, index, end);
+          case STRING -> string(chunk, index, end);
+          case NUMBER -> number(chunk, index, end);
+          case KEYWORD -> keyword(chunk, index, end);
+        };
+      }
+      chunk.position(end);
+      offset += end - start;
+    }
 
     /**
-     * Called during the parsing at the beginning of an array.
-     * @param key the key of the value if inside an object, {@code null} otherwise.
+     * Signals that there is no more bytes.
      *
-     * @see #endArray(String)
+     * @throws IllegalStateException if the JSON text is not complete.
      */
-    void startArray(String key);
+    public void endOfInput() {
+      ended = true;
+      if (tokenState != TokenState.NONE || state != State.DONE) {
+        throw new IllegalStateException("unexpected end of the input at " + offset);
+      }
+    }
 
     /**
-     * Called during the parsing at the end of an array.
-     * @param key the key of the value if inside an object, {@code null} otherwise.
-     *
-     * @see #startArray(String)
+     * Returns true if the JSON text is complete, only blanks are allowed after.
      */
-    void endArray(String key);
-  }
+    public boolean isComplete() {
+      return state == State.DONE;
+    }
+
+    private long location(int index) {
+      return offset + index - chunkStart;
+    }
+
+    private int startToken(ByteBuffer chunk, int index, int end) {
+      var b = chunk.get(index);
+      tokenLocation = location(index);
+      switch(b) {
+        case ' ', '\t', '\n', '\r' -> { return index + 1; }
+        case '{' -> accept(LEFT_CURLY);
+        case '}' -> accept(RIGHT_CURLY);
+        case '[' -> accept(LEFT_BRACKET);
+        case ']' -> accept(RIGHT_BRACKET);
+        case ':' -> accept(COLON);
+        case ',' -> accept(COMMA);
+        case '"' -> {
+          tokenState = TokenState.STRING;
+          tokenStart = index + 1;
+          return string(chunk, index + 1, end);
+        }
+        case 'n' -> { return startKeyword("null", NULL, chunk, index, end); }
+        case 't' -> { return startKeyword("true", TRUE, chunk, index, end); }
+        case 'f' -> { return startKeyword("false", FALSE, chunk, index, end); }
+        case '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', '-' -> {
+          tokenState = TokenState.NUMBER;
+          tokenKind = INTEGER;  // the kind is known when the whole number is read
+          tokenStart = index;
+          return number(chunk, index + 1, end);
+        }
+        default -> throw new IllegalStateException("no token recognized at " + tokenLocation);
+      }
+      return index + 1;
+    }
+
+    private int startKeyword(String keyword, Kind kind, ByteBuffer chunk, int index, int end) {
+      tokenState = TokenState.KEYWORD;
+      tokenKind = kind;
+      this.keyword = keyword;
+      keywordIndex = 1;
+      return keyword(chunk, index + 1, end);
+    }
+
+    private int keyword(ByteBuffer chunk, int index, int end) {
+      var keyword = this.keyword;
+      for(; index < end && keywordIndex < keyword.length(); index++, keywordIndex++) {
+        if (chunk.get(index) != keyword.charAt(keywordIndex)) {
+          throw new IllegalStateException("no token recognized at " + tokenLocation);
+        }
+      }
+      if (keywordIndex == keyword.length()) {
+        tokenState = TokenState.NONE;
+        decoder.token(tokenKind, EMPTY, 0, 0);
+        accept(tokenKind);
+      }
+      return index;
+    }
+
+    private int string(ByteBuffer chunk, int index, int end) {
+      var escaped = this.escaped;
+      for(; index < end; index++) {
+        var b = chunk.get(index);
+        if (escaped) {
+          escaped = false;
+        } else if (b == '\\') {
+          escaped = true;
+        } else if (b == '"') {
+          this.escaped = false;
+          complete(STRING, chunk, index);
+          return index + 1;
+        }
+      }
+      this.escaped = escaped;
+      keepPending(chunk, end);
+      return end;
+    }
+
+    private int number(ByteBuffer chunk, int index, int end) {
+      for(; index < end; index++) {
+        if (Lexer.isNumberPart(chunk.get(index))) {
+          continue;
+        }
+        complete(tokenKind, chunk, index);
+        return index;
+      }
+      keepPending(chunk, end);
+      return end;
+    }
+
+    /**
+     * Keeps the bytes of the current token between tokenStart and end.
+     */
+    private void keepPending(ByteBuffer chunk, int end) {
+      var length = end - tokenStart;
+      if (pendingLength + length > pending.length) {
+        pending = Arrays.copyOf(pending, Math.max(pending.length << 1, pendingLength + length));
+        pendingBuffer = ByteBuffer.wrap(pending);
+      }
+      chunk.get(tokenStart, pending, pendingLength, length);
+      pendingLength += length;
+    }
+
+    /**
+     * Completes the current token that ends at tokenEnd.
+     */
+    private void complete(Kind kind, ByteBuffer chunk, int tokenEnd) {
+      tokenState = TokenState.NONE;
+      if (pendingLength == 0) {
+        decoder.token(kind, chunk, tokenStart, tokenEnd);
+      } else {
+        keepPending(chunk, tokenEnd);
+        decoder.token(kind, pendingBuffer, 0, pendingLength);
+      }
+      if (kind == INTEGER) {  // a number, its kind depends on its grammar
+        kind = decoder.kind = decoder.numberKind();
+        if (kind == null) {
+          throw new IllegalStateException("invalid number at " + tokenLocation);
+        }
+      }
+      accept(kind);
+      pendingLength = 0;
+    }
+
+    private int skip(ByteBuffer chunk, int index, int end) {
+      for(; index < end; index++) {
+        var b = chunk.get(index);
+        if (!skipStarted) {
+          if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+            continue;
+          }
+          skipStarted = true;
+          tokenLocation = location(index);
+          if (skipper.skip(b) == Skipper.END_BEFORE) {
+            throw new IllegalStateException("no value recognized at " + tokenLocation);
+          }
+          continue;
+        }
+        var result = skipper.skip(b);
+        if (result == Skipper.END_BEFORE) {
+          state = State.COMMA_OR_END;
+          return index;
+        }
+        if (result == Skipper.END_AFTER) {
+          state = State.COMMA_OR_END;
+          return index + 1;
+        }
+      }
+      return end;
+    }
+
+    private IllegalStateException error(Kind kind, Kind... expectedKinds) {
+      return new IllegalStateException("expect " + Arrays.stream(expectedKinds).map(Kind::name).collect(joining(", ")) + " but recognized " + kind + " at " + tokenLocation);
+    }
+
+    private void accept(Kind kind) {
+      switch(state) {
+        case START -> {
+          if (kind != LEFT_CURLY && kind != LEFT_BRACKET) {
+            throw error(kind, LEFT_CURLY, LEFT_BRACKET);
+          }
+          start(kind, null);
+        }
+        case KEY_OR_END, KEY -> {
+          if (kind == STRING) {
+            currentKey = decoder.key();
+            state = State.COLON;
+          } else if (kind == RIGHT_CURLY && state == State.KEY_OR_END) {
+            end();
+          } else {
+            throw error(kind, STRING);
+          }
+        }
+        case COLON -> {
+          if (kind != COLON) {
+            throw error(kind, COLON);
+          }
+          if (visitor.skipValue(currentKey)) {
+            skipper.start(0);
+            skipStarted = false;
+            state = State.SKIP;
+          } else {
+            state = State.VALUE;
+          }
+        }
+        case VALUE_OR_END -> {
+          if (kind == RIGHT_BRACKET) {
+            end();
+          } else {
+            value(kind);
+          }
+        }
+        case VALUE -> value(kind);
+        case COMMA_OR_END -> {
+          var object = objects[depth - 1];
+          if (kind == COMMA) {
+            state = object ? State.KEY : State.VALUE;
+          } else if (kind == (object ? RIGHT_CURLY : RIGHT_BRACKET)) {
+            end();
+          } else {
+            throw error(kind, COMMA, object ? RIGHT_CURLY : RIGHT_BRACKET);
+          }
+        }
+        case SKIP, DONE -> throw new AssertionError();
+      }
+    }
+
+    private void value(Kind kind) {
+      var key = objects[depth - 1] ? currentKey : null;
+      switch(kind) {
+        case LEFT_CURLY, LEFT_BRACKET -> start(kind, key);
+        case NULL, TRUE, FALSE, INTEGER, DOUBLE, STRING -> {
+          parseValue(key, decoder, visitor);
+          state = State.COMMA_OR_END;
+        }
+        default -> throw error(kind, NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, LEFT_CURLY);
+      }
+    }
+
+    private void start(Kind kind, String key) {
+      if (depth == objects.length) {
+        objects = Arrays.copyOf(objects, depth << 1);
+        keys = Arrays.copyOf(keys, depth << 1);
+      }
+      var object = kind == LEFT_CURLY;
+      objects[depth] = object;
+      keys[depth] = key;
+      depth++;
+      if (object) {
+        visitor.startObject(key);
+        state = State.KEY_OR_END;
+      } else {
+        visitor.startArray(key);
+        state = State.VALUE_OR_END;
+      }
+    }
 
-  private static final Pattern PATTERN = compile(Arrays.stream(Kind.VALUES).map(k -> k.regex).collect(joining("|")));
+    private void end() {
+      depth--;
+      var key = keys[depth];
+      keys[depth] = null;
+      if (objects[depth]) {
+        visitor.endObject(key);
+      } else {
+        visitor.endArray(key);
+      }
+      state = depth == 0 ? State.DONE : State.COMMA_OR_END;
+    }
+  }
 
   /**
-   * Parse a JSON text and calls the visitor methods when an array, an object or a value is parsed.
+   * Creates a push parser that calls the visitor when parsing a JSON text encoded in UTF-8 fed by chunks.
    *
-   * @param input a JSON text
    * @param visitor the visitor to call when parsing the JSON text
+   * @return a new push parser
    */
-  public static void parse(String input, JSONVisitor visitor) {
-    var lexer = new Lexer(PATTERN.matcher(input));
-    try {
-      parse(lexer, visitor);
-    } catch(IllegalStateException e) {
-      throw new IllegalStateException(e.getMessage() + "\n while parsing " + input, e);
-    }
+  public static PushParser pushParser(JSONVisitor visitor) {
+    return pushParser(visitor, null);
+  }
+
+  static PushParser pushParser(JSONVisitor visitor, SymbolTable symbols) {
+    Objects.requireNonNull(visitor);
+    return new PushParser(visitor, symbols);
   }
 
   private static void parse(Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    switch(token.kind) {
+    switch(lexer.next()) {
       case LEFT_CURLY -> {
         visitor.startObject(null);
         parseObject(null, lexer, visitor);
@@ -153,18 +2030,29 @@ class ToyJSONParser {
         visitor.startArray(null);
         parseArray(null, lexer, visitor);
       }
-      default -> throw token.error(LEFT_CURLY, LEFT_BRACKET);
+      default -> throw lexer.error(LEFT_CURLY, LEFT_BRACKET);
     }
   }
 
-  private static void parseValue(String currentKey, Token token, Lexer lexer, JSONVisitor visitor) {
-    switch (token.kind) {
+  private static void parseValue(String currentKey, Lexer lexer, JSONVisitor visitor) {
+    switch (lexer.kind) {
       case NULL -> visitor.value(currentKey, null);
-      case FALSE -> visitor.value(currentKey, false);
-      case TRUE -> visitor.value(currentKey, true);
-      case INTEGER -> visitor.value(currentKey, parseInt(token.text));
-      case DOUBLE -> visitor.value(currentKey, parseDouble(token.text));
-      case STRING -> visitor.value(currentKey, token.text);
+      case FALSE -> visitor.valueBoolean(currentKey, false);
+      case TRUE -> visitor.valueBoolean(currentKey, true);
+      case INTEGER -> {
+        if (lexer.fitsInt()) {
+          visitor.valueInt(currentKey, lexer.intValue());
+          return;
+        }
+        var value = lexer.longValue();
+        if (value == (int) value) {
+          visitor.valueInt(currentKey, (int) value);
+        } else {
+          visitor.valueLong(currentKey, value);
+        }
+      }
+      case DOUBLE -> visitor.valueDouble(currentKey, lexer.doubleValue());
+      case STRING -> visitor.value(currentKey, lexer.stringValue());
       case LEFT_CURLY -> {
         visitor.startObject(currentKey);
         parseObject(currentKey, lexer, visitor);
@@ -173,46 +2061,52 @@ class ToyJSONParser {
         visitor.startArray(currentKey);
         parseArray(currentKey, lexer, visitor);
       }
-      default -> throw token.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, RIGHT_CURLY);
+      default -> throw lexer.error(NULL, FALSE, TRUE, INTEGER, DOUBLE, STRING, LEFT_BRACKET, RIGHT_CURLY);
     }
   }
 
   private static void parseObject(String currentKey, Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    if (token.is(RIGHT_CURLY)) {
+    lexer.next();
+    if (lexer.is(RIGHT_CURLY)) {
       visitor.endObject(currentKey);
       return;
     }
     for(;;) {
-      var key = token.expect(STRING);
-      lexer.next().expect(COLON);
-      token = lexer.next();
-      parseValue(key, token, lexer, visitor);
-      token = lexer.next();
-      if (token.is(RIGHT_CURLY)) {
+      lexer.expect(STRING);
+      var key = lexer.key();
+      lexer.next();
+      lexer.expect(COLON);
+      if (visitor.skipValue(key)) {
+        lexer.skipValue(0);
+      } else {
+        lexer.next();
+        parseValue(key, lexer, visitor);
+      }
+      lexer.next();
+      if (lexer.is(RIGHT_CURLY)) {
         visitor.endObject(currentKey);
         return;
       }
-      token.expect(COMMA);
-      token = lexer.next();
+      lexer.expect(COMMA);
+      lexer.next();
     }
   }
 
   private static void parseArray(String currentKey, Lexer lexer, JSONVisitor visitor) {
-    var token = lexer.next();
-    if (token.is(RIGHT_BRACKET)) {
+    lexer.next();
+    if (lexer.is(RIGHT_BRACKET)) {
       visitor.endArray(currentKey);
       return;
     }
     for(;;) {
-      parseValue(null, token, lexer, visitor);
-      token = lexer.next();
-      if (token.is(RIGHT_BRACKET)) {
+      parseValue(null, lexer, visitor);
+      lexer.next();
+      if (lexer.is(RIGHT_BRACKET)) {
         visitor.endArray(currentKey);
         return;
       }
-      token.expect(COMMA);
-      token = lexer.next();
+      lexer.expect(COMMA);
+      lexer.next();
     }
   }
 }
\ No newline at end of file
@@ -3,6 +3,9 @@ package com.github.forax.framework.mapper;
 import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.InvocationTargetException;
@@ -15,8 +18,11 @@ import java.lang.reflect.WildcardType;
 import java.util.AbstractList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 import java.util.RandomAccess;
 
+import static java.util.stream.Collectors.joining;
+
 final class Utils {
   private Utils() {
     throw new AssertionError();
@@ -42,8 +48,24 @@ final class Utils {
     }
   }
 
+  public static MethodHandle unreflect(Lookup lookup, Method method) {
+    try {
+      return lookup.unreflect(method);
+    } catch (IllegalAccessException e) {
+      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    }
+  }
+
+  public static MethodHandle unreflectConstructor(Lookup lookup, Constructor<?> constructor) {
+    try {
+      return lookup.unreflectConstructor(constructor);
+    } catch (IllegalAccessException e) {
+      throw (IllegalAccessError) new IllegalAccessError().initCause(e);
+    }
+  }
+
   @SuppressWarnings("unchecked")   // very wrong but works
-  private static <T extends Throwable> AssertionError rethrow(Throwable cause) throws T {
+  static <T extends Throwable> AssertionError rethrow(Throwable cause) throws T {
     throw (T) cause;
   }
 
@@ -92,6 +114,64 @@ final class Utils {
     };
   }
 
+  /**
+   * A parameterized type equal to the parameterized types returned by the reflection,
+   * the owner type of a member class is its declaring class.
+   */
+  private record ParameterizedTypeImpl(Class<?> rawType, Type[] typeArguments) implements ParameterizedType {
+    @Override
+    public Type[] getActualTypeArguments() {
+      return typeArguments.clone();
+    }
+
+    @Override
+    public Type getRawType() {
+      return rawType;
+    }
+
+    @Override
+    public Type getOwnerType() {
+      return rawType.getDeclaringClass();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof ParameterizedType type
+          && rawType.equals(type.getRawType())
+          && Objects.equals(getOwnerType(), type.getOwnerType())
+          && Arrays.equals(typeArguments, type.getActualTypeArguments());
+    }
+
+    @Override
+    public int hashCode() {
+      return Arrays.hashCode(typeArguments) ^ Objects.hashCode(getOwnerType()) ^ rawType.hashCode();
+    }
+
+    @Override
+    public String toString() {
+      return getTypeName();
+    }
+
+    @Override
+    public String getTypeName() {
+      return rawType.getTypeName() + Arrays.stream(typeArguments).map(Type::getTypeName).collect(joining(", ", "<", ">"));
+    }
+  }
+
+  public static ParameterizedType parameterizedType(Class<?> rawType, Type... typeArguments) {
+    if (rawType.getTypeParameters().length != typeArguments.length) {
+      throw new IllegalArgumentException("wrong number of type arguments for " + rawType.getName());
+    }
+    return new ParameterizedTypeImpl(rawType, typeArguments.clone());
+  }
+
+  /**
+   * Returns the wrapper class of a primitive type or the type itself.
+   */
+  public static Class<?> wrap(Class<?> type) {
+    return type.isPrimitive() ? MethodType.methodType(type).wrap().returnType() : type;
+  }
+
   public static Class<?> erase(Type type) {
     /*
     // TODO use a switch on type here
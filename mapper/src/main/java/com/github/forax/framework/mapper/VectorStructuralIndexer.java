@@ -0,0 +1,74 @@
+package com.github.forax.framework.mapper;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.ByteBuffer;
+
+import static com.github.forax.framework.mapper.StructuralIndex.BLOCK_SIZE;
+
+/**
+ * An indexer that computes the bitmasks of a block of 64 bytes using the Vector API,
+ * the block is loaded in one or several vectors (depending on the size of the vectors
+ * of the platform) and each bitmask is the result of lanewise comparisons.
+ *
+ * This class is only loaded by {@link StructuralIndex} if the module {@code jdk.incubator.vector}
+ * is available.
+ */
+final class VectorStructuralIndexer implements StructuralIndex.Indexer {
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+  private static final int CHUNK_SIZE = 4_096;
+
+  VectorStructuralIndexer() {
+    if (BLOCK_SIZE % SPECIES.length() != 0) {
+      throw new UnsupportedOperationException("unsupported vector size " + SPECIES.length());
+    }
+  }
+
+  @Override
+  public void index(ByteBuffer input, int start, int end, StructuralIndex index) {
+    var base = start;
+    if (input.hasArray()) {
+      var array = input.array();
+      var offset = input.arrayOffset();
+      for(; end - base >= BLOCK_SIZE; base += BLOCK_SIZE) {
+        indexBlock(array, offset + base, base, index);
+      }
+    } else {
+      // the bytes of a direct buffer are copied by chunks
+      var chunk = new byte[CHUNK_SIZE];
+      while(end - base >= BLOCK_SIZE) {
+        var length = Math.min(CHUNK_SIZE, (end - base) & -BLOCK_SIZE);
+        input.get(base, chunk, 0, length);
+        for(var i = 0; i < length; i += BLOCK_SIZE) {
+          indexBlock(chunk, i, base + i, index);
+        }
+        base += length;
+      }
+    }
+    if (base < end) {
+      StructuralIndex.indexScalarBlock(input, base, end, index);
+    }
+  }
+
+  private static void indexBlock(byte[] array, int offset, int base, StructuralIndex index) {
+    long quotes = 0, backslashes = 0, operators = 0, blanks = 0;
+    for(var i = 0; i < BLOCK_SIZE; i += SPECIES.length()) {
+      var vector = ByteVector.fromArray(SPECIES, array, offset + i);
+      var lowerCase = vector.or((byte) 0x20);  // '[' -> '{' and ']' -> '}'
+      quotes |= vector.eq((byte) '"').toLong() << i;
+      backslashes |= vector.eq((byte) '\\').toLong() << i;
+      operators |= lowerCase.eq((byte) '{')
+          .or(lowerCase.eq((byte) '}'))
+          .or(vector.eq((byte) ':'))
+          .or(vector.eq((byte) ','))
+          .toLong() << i;
+      blanks |= vector.eq((byte) ' ')
+          .or(vector.eq((byte) '\t'))
+          .or(vector.eq((byte) '\n'))
+          .or(vector.eq((byte) '\r'))
+          .toLong() << i;
+    }
+    index.addBlock(base, quotes, backslashes, operators, blanks);
+  }
+}
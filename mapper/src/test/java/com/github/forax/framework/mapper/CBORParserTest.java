@@ -0,0 +1,418 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CBORParserTest {
+  private static byte[] bytes(int... values) {
+    var bytes = new byte[values.length];
+    for(var i = 0; i < values.length; i++) {
+      bytes[i] = (byte) values[i];
+    }
+    return bytes;
+  }
+
+  private static Object asJava(byte[] bytes) {
+    var visitor = new JavaVisitor();
+    CBORParser.parse(ByteBuffer.wrap(bytes), visitor, null);
+    return visitor.result;
+  }
+
+  private static final class JavaVisitor implements JSONVisitor {
+    private Object result;
+    private final ArrayDeque<Object> stack = new ArrayDeque<>();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void value(String key, Object value) {
+      var data = stack.peek();
+      if (data instanceof Map<?,?> map) {
+        ((Map<String, Object>) map).put(key, value);
+        return;
+      }
+      if (data instanceof List<?> list) {
+        ((List<Object>) list).add(value);
+        return;
+      }
+      throw new AssertionError();
+    }
+
+    @Override
+    public void startObject(String key) {
+      stack.push(new LinkedHashMap<String, Object>());
+    }
+
+    @Override
+    public void endObject(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
+      }
+    }
+
+    @Override
+    public void startArray(String key) {
+      stack.push(new ArrayList<>());
+    }
+
+    @Override
+    public void endArray(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
+      }
+    }
+  }
+
+  @Nested
+  public class Encoding {
+    // examples from RFC 8949 appendix A
+    @Test
+    public void encodeIntegers() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertArrayEquals(bytes(0x00), writer.toCBOR(0)),
+          () -> assertArrayEquals(bytes(0x17), writer.toCBOR(23)),
+          () -> assertArrayEquals(bytes(0x18, 0x18), writer.toCBOR(24)),
+          () -> assertArrayEquals(bytes(0x18, 0x64), writer.toCBOR(100)),
+          () -> assertArrayEquals(bytes(0x19, 0x03, 0xe8), writer.toCBOR(1_000)),
+          () -> assertArrayEquals(bytes(0x1a, 0x00, 0x0f, 0x42, 0x40), writer.toCBOR(1_000_000)),
+          () -> assertArrayEquals(bytes(0x1b, 0x00, 0x00, 0x00, 0xe8, 0xd4, 0xa5, 0x10, 0x00), writer.toCBOR(1_000_000_000_000L)),
+          () -> assertArrayEquals(bytes(0x20), writer.toCBOR(-1)),
+          () -> assertArrayEquals(bytes(0x29), writer.toCBOR(-10)),
+          () -> assertArrayEquals(bytes(0x38, 0x63), writer.toCBOR(-100)),
+          () -> assertArrayEquals(bytes(0x39, 0x03, 0xe7), writer.toCBOR(-1_000)),
+          () -> assertArrayEquals(bytes(0x3b, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff), writer.toCBOR(Long.MIN_VALUE)),
+          () -> assertArrayEquals(bytes(0x18, 0x2a), writer.toCBOR((short) 42)),
+          () -> assertArrayEquals(bytes(0x38, 0x29), writer.toCBOR((byte) -42))
+      );
+    }
+
+    @Test
+    public void encodeFloatingPoints() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertArrayEquals(bytes(0xfa, 0x3f, 0xc0, 0x00, 0x00), writer.toCBOR(1.5)),
+          () -> assertArrayEquals(bytes(0xfa, 0x47, 0xc3, 0x50, 0x00), writer.toCBOR(100_000.0)),
+          () -> assertArrayEquals(bytes(0xfa, 0x7f, 0x80, 0x00, 0x00), writer.toCBOR(Double.POSITIVE_INFINITY)),
+          () -> assertArrayEquals(bytes(0xfa, 0x3f, 0xc0, 0x00, 0x00), writer.toCBOR(1.5f)),
+          () -> assertArrayEquals(bytes(0xfb, 0x3f, 0xf1, 0x99, 0x99, 0x99, 0x99, 0x99, 0x9a), writer.toCBOR(1.1)),
+          () -> assertArrayEquals(bytes(0xfb, 0x7e, 0x37, 0xe4, 0x3c, 0x88, 0x00, 0x75, 0x9c), writer.toCBOR(1.0e300))
+      );
+    }
+
+    @Test
+    public void encodeSimpleValuesAndStrings() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertArrayEquals(bytes(0xf4), writer.toCBOR(false)),
+          () -> assertArrayEquals(bytes(0xf5), writer.toCBOR(true)),
+          () -> assertArrayEquals(bytes(0xf6), writer.toCBOR(null)),
+          () -> assertArrayEquals(bytes(0x60), writer.toCBOR("")),
+          () -> assertArrayEquals(bytes(0x61, 0x61), writer.toCBOR("a")),
+          () -> assertArrayEquals(bytes(0x61, 0x61), writer.toCBOR('a')),
+          () -> assertArrayEquals(bytes(0x64, 0x49, 0x45, 0x54, 0x46), writer.toCBOR("IETF")),
+          () -> assertArrayEquals(bytes(0x62, 0x22, 0x5c), writer.toCBOR("\"\\")),
+          () -> assertArrayEquals(bytes(0x62, 0xc3, 0xbc), writer.toCBOR("ü")),
+          () -> assertArrayEquals(bytes(0x63, 0xe6, 0xb0, 0xb4), writer.toCBOR("水"))
+      );
+    }
+
+    @Test
+    public void encodeArrays() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertArrayEquals(bytes(0x80), writer.toCBOR(List.of())),
+          () -> assertArrayEquals(bytes(0x83, 0x01, 0x02, 0x03), writer.toCBOR(List.of(1, 2, 3))),
+          () -> assertArrayEquals(bytes(0x83, 0x01, 0x82, 0x02, 0x03, 0x82, 0x04, 0x05),
+              writer.toCBOR(List.of(1, List.of(2, 3), List.of(4, 5)))),
+          () -> assertArrayEquals(bytes(0x9f, 0x01, 0x02, 0xff),
+              writer.toCBOR((Iterable<Integer>) () -> List.of(1, 2).iterator()))
+      );
+    }
+
+    public record Point(int x, int y) { }
+
+    @Test
+    public void encodeRecord() {
+      var writer = new JSONWriter();
+      assertArrayEquals(bytes(0xa2, 0x61, 0x78, 0x01, 0x61, 0x79, 0x20), writer.toCBOR(new Point(1, -1)));
+    }
+
+    public static class Person {
+      private final String name;
+
+      public Person(String name) {
+        this.name = name;
+      }
+
+      @JSONProperty("person-name")
+      public String getName() {
+        return name;
+      }
+    }
+
+    @Test
+    public void encodeBeanWithRenamedProperty() {
+      var writer = new JSONWriter();
+      var expected = new ByteArrayOutputStream();
+      expected.writeBytes(bytes(0xa1, 0x6b));
+      expected.writeBytes("person-name".getBytes(UTF_8));
+      expected.writeBytes(bytes(0x63));
+      expected.writeBytes("Bob".getBytes(UTF_8));
+      assertArrayEquals(expected.toByteArray(), writer.toCBOR(new Person("Bob")));
+    }
+
+    @Test
+    public void encodeConfiguredType() {
+      var writer = new JSONWriter();
+      writer.configure(Point.class, point -> "{\"coordinates\": [" + point.x + ", " + point.y + "]}");
+      assertArrayEquals(
+          bytes(0x81, 0xbf, 0x6b, 'c', 'o', 'o', 'r', 'd', 'i', 'n', 'a', 't', 'e', 's', 0x9f, 0x01, 0x02, 0xff, 0xff),
+          writer.toCBOR(List.of(new Point(1, 2))));
+    }
+
+    @Test
+    public void encodeConfiguredWrapperLikeJSON() {
+      record Sample(int x, Integer y, String s) { }
+      var writer = new JSONWriter();
+      writer.configure(Integer.class, i -> "\"I" + i + "\"");
+      var sample = new Sample(1, 2, "s");
+      assertAll(
+          () -> assertEquals("{\"x\": \"I1\", \"y\": \"I2\", \"s\": \"s\"}", writer.toJSON(sample)),
+          () -> assertEquals(Map.of("x", "I1", "y", "I2", "s", "s"), asJava(writer.toCBOR(sample)))
+      );
+    }
+
+    @Test
+    public void encodeToOutputStream() throws IOException {
+      var writer = new JSONWriter();
+      var output = new ByteArrayOutputStream();
+      var list = new ArrayList<String>();
+      for(var i = 0; i < 10_000; i++) {
+        list.add("value" + i);
+      }
+      writer.toCBOR(list, output);
+      assertArrayEquals(writer.toCBOR(list), output.toByteArray());
+    }
+
+    @Test
+    public void encodeSmallerThanJSON() {
+      var writer = new JSONWriter();
+      var points = new ArrayList<Point>();
+      for(var i = 0; i < 1_000; i++) {
+        points.add(new Point(i, -i));
+      }
+      assertTrue(writer.toCBOR(points).length < writer.toJSON(points).getBytes(UTF_8).length);
+    }
+  }  // end of Encoding
+
+
+  @Nested
+  public class Decoding {
+    @Test
+    public void parseDefiniteLength() {
+      assertAll(
+          () -> assertEquals(List.of(), asJava(bytes(0x80))),
+          () -> assertEquals(Map.of(), asJava(bytes(0xa0))),
+          () -> assertEquals(List.of(1, List.of(2, 3), List.of(4, 5)),
+              asJava(bytes(0x83, 0x01, 0x82, 0x02, 0x03, 0x82, 0x04, 0x05))),
+          () -> assertEquals(Map.of("a", 1, "b", List.of(2, 3)),
+              asJava(bytes(0xa2, 0x61, 0x61, 0x01, 0x61, 0x62, 0x82, 0x02, 0x03)))
+      );
+    }
+
+    @Test
+    public void parseIndefiniteLength() {
+      assertAll(
+          () -> assertEquals(List.of(), asJava(bytes(0x9f, 0xff))),
+          () -> assertEquals(List.of(1, List.of(2, 3), List.of(4, 5)),
+              asJava(bytes(0x9f, 0x01, 0x82, 0x02, 0x03, 0x9f, 0x04, 0x05, 0xff, 0xff))),
+          () -> assertEquals(Map.of("a", 1, "b", List.of(2, 3)),
+              asJava(bytes(0xbf, 0x61, 0x61, 0x01, 0x61, 0x62, 0x9f, 0x02, 0x03, 0xff, 0xff))),
+          () -> assertEquals(List.of("streaming"),
+              asJava(bytes(0x81, 0x7f, 0x65, 's', 't', 'r', 'e', 'a', 0x64, 'm', 'i', 'n', 'g', 0xff)))
+      );
+    }
+
+    @Test
+    public void parseValues() {
+      assertAll(
+          () -> assertEquals(List.of(0, 24, -1_000, 1_000_000_000_000L, Long.MIN_VALUE),
+              asJava(bytes(0x85, 0x00, 0x18, 0x18, 0x39, 0x03, 0xe7,
+                  0x1b, 0x00, 0x00, 0x00, 0xe8, 0xd4, 0xa5, 0x10, 0x00,
+                  0x3b, 0x7f, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff))),
+          () -> assertEquals(List.of(1.5, 65504.0, 5.960464477539063e-8, -4.0, 100_000.0, 1.1),
+              asJava(bytes(0x86, 0xf9, 0x3e, 0x00, 0xf9, 0x7b, 0xff, 0xf9, 0x00, 0x01, 0xf9, 0xc4, 0x00,
+                  0xfa, 0x47, 0xc3, 0x50, 0x00,
+                  0xfb, 0x3f, 0xf1, 0x99, 0x99, 0x99, 0x99, 0x99, 0x9a))),
+          () -> assertEquals(List.of(Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY),
+              asJava(bytes(0x82, 0xf9, 0x7c, 0x00, 0xf9, 0xfc, 0x00))),
+          () -> assertEquals(List.of(false, true, "ü", "水"),
+              asJava(bytes(0x84, 0xf4, 0xf5, 0x62, 0xc3, 0xbc, 0x63, 0xe6, 0xb0, 0xb4))),
+          () -> assertEquals(Arrays.asList(null, null), asJava(bytes(0x82, 0xf6, 0xf7))),
+          () -> assertEquals(List.of(1363896240), asJava(bytes(0x81, 0xc1, 0x1a, 0x51, 0x4b, 0x67, 0xb0)))  // tag ignored
+      );
+    }
+
+    @Test
+    public void parseDirectByteBuffer() {
+      var bytes = bytes(0xa1, 0x64, 'n', 'a', 'm', 'e', 0x63, 'B', 'o', 'b');
+      var buffer = ByteBuffer.allocateDirect(bytes.length + 2).position(1);
+      buffer.put(bytes).flip().position(1);
+      var visitor = new JavaVisitor();
+      CBORParser.parse(buffer, visitor, new SymbolTable());
+      assertAll(
+          () -> assertEquals(Map.of("name", "Bob"), visitor.result),
+          () -> assertEquals(1, buffer.position())
+      );
+    }
+
+    @Test
+    public void parseInvalid() {
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes())),
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x01))),  // not a map or an array
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x82, 0x01))),  // truncated
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x81, 0x01, 0x02))),  // trailing data
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x9f, 0x01))),  // no break
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x81, 0xff))),  // unexpected break
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x81, 0x1c))),  // reserved
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x81, 0x41, 0x00))),  // byte string
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0xa1, 0x01, 0x01))),  // integer key
+          () -> assertThrows(IllegalStateException.class, () -> asJava(bytes(0x81, 0x7a, 0x7f, 0xff, 0xff, 0xff))),  // length
+          () -> assertThrows(IllegalStateException.class,
+              () -> asJava(bytes(0x81, 0x1b, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff, 0xff)))  // too large
+      );
+    }
+  }  // end of Decoding
+
+
+  @Nested
+  public class RoundTrip {
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      reader.addTypeMatcher(type -> Optional.of(type)
+          .filter(t -> t instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == List.class)
+          .map(t -> JSONReader.Collector.list(((ParameterizedType) t).getActualTypeArguments()[0])));
+      return reader;
+    }
+
+    public record Address(String street, int zipCode) { }
+    public record Values(int i, long l, float f, double d, boolean b, String s, Integer boxed, Address address) { }
+    public record Book(String title, List<String> authors, List<Address> addresses) { }
+
+    @Test
+    public void roundTripRecords() {
+      var writer = new JSONWriter();
+      var reader = newReader();
+      var values = new Values(-3, 10_000_000_000L, 1.5f, 0.1, true, "héllo \"quoted\"", null, new Address("main street", 75_000));
+      var book = new Book("title", List.of("Ana", "Bob"), List.of(new Address("a", 1), new Address("b", 2)));
+      assertAll(
+          () -> assertEquals(values, reader.parseCBOR(writer.toCBOR(values), Values.class)),
+          () -> assertEquals(book, reader.parseCBOR(writer.toCBOR(book), Book.class)),
+          () -> assertEquals(book, reader.parseCBOR(ByteBuffer.wrap(writer.toCBOR(book)), Book.class)),
+          () -> assertEquals(List.of(book, book),
+              reader.parseCBOR(writer.toCBOR(List.of(book, book)), JSONCodec.parameterized(List.class, Book.class)))
+      );
+    }
+
+    public static class Bean {
+      private String name;
+      private int age;
+      private double weight;
+      private Bean friend;
+
+      public String getName() {
+        return name;
+      }
+      public void setName(String name) {
+        this.name = name;
+      }
+      public int getAge() {
+        return age;
+      }
+      public void setAge(int age) {
+        this.age = age;
+      }
+      public double getWeight() {
+        return weight;
+      }
+      public void setWeight(double weight) {
+        this.weight = weight;
+      }
+      public Bean getFriend() {
+        return friend;
+      }
+      public void setFriend(Bean friend) {
+        this.friend = friend;
+      }
+    }
+
+    @Test
+    public void roundTripBeans() {
+      var writer = new JSONWriter();
+      var reader = new JSONReader();
+      var bean = new Bean();
+      bean.setName("Ana");
+      bean.setAge(32);
+      bean.setWeight(61.2);
+      var friend = new Bean();
+      friend.setName("Bob");
+      bean.setFriend(friend);
+      var result = reader.parseCBOR(writer.toCBOR(bean), Bean.class);
+      assertAll(
+          () -> assertEquals(writer.toJSON(bean), writer.toJSON(result)),
+          () -> assertEquals("Bob", result.getFriend().getName())
+      );
+    }
+
+    public record Summary(String s, int i) { }
+
+    @Test
+    public void roundTripIgnoreUnknownKeys() {
+      var writer = new JSONWriter();
+      var reader = newReader();
+      reader.ignoreUnknownKeys();
+      var values = new Values(1, 2, 3f, 4.0, false, "s", 5, new Address("street", 6));
+      assertEquals(new Summary("s", 1), reader.parseCBOR(writer.toCBOR(values), Summary.class));
+    }
+
+    @Test
+    public void roundTripSameAsJSON() {
+      var writer = new JSONWriter();
+      var reader = newReader();
+      var addresses = new ArrayList<Address>();
+      for(var i = 0; i < 1_000; i++) {
+        addresses.add(new Address("street " + i, i));
+      }
+      var type = JSONCodec.parameterized(List.class, Address.class);
+      assertEquals(reader.parseJSON(writer.toJSON(addresses), type), reader.parseCBOR(writer.toCBOR(addresses), type));
+    }
+  }  // end of RoundTrip
+}
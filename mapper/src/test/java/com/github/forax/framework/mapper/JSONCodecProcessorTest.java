@@ -0,0 +1,141 @@
+package com.github.forax.framework.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JSONCodecProcessorTest {
+  private record Result(boolean success, List<String> errors, List<String> warnings, Path directory) {}
+
+  /**
+   * Compiles a source with the annotation processor, the generated sources and classes are in a temporary directory.
+   */
+  private static Result compile(String className, String source) throws IOException {
+    var compiler = ToolProvider.getSystemJavaCompiler();
+    var directory = Files.createTempDirectory("codec");
+    var diagnostics = new DiagnosticCollector<JavaFileObject>();
+    var file = new SimpleJavaFileObject(URI.create("string:///" + className.replace('.', '/') + ".java"), JavaFileObject.Kind.SOURCE) {
+      @Override
+      public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+        return source;
+      }
+    };
+    // -processing because no processor claims the @Generated of the generated sources
+    var options = List.of("-classpath", System.getProperty("java.class.path"), "-d", directory.toString(),
+        "-processor", JSONCodecProcessor.class.getName(), "-Xlint:all,-processing");
+    var success = compiler.getTask(null, null, diagnostics, options, null, List.of(file)).call();
+    var errors = diagnostics.getDiagnostics().stream()
+        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.ERROR)
+        .map(diagnostic -> diagnostic.getMessage(null))
+        .toList();
+    var warnings = diagnostics.getDiagnostics().stream()
+        .filter(diagnostic -> diagnostic.getKind() == Diagnostic.Kind.WARNING || diagnostic.getKind() == Diagnostic.Kind.MANDATORY_WARNING)
+        .map(diagnostic -> diagnostic.getMessage(null))
+        .toList();
+    return new Result(success, errors, warnings, directory);
+  }
+
+  private static void delete(Path directory) throws IOException {
+    try(Stream<Path> paths = Files.walk(directory)) {
+      for(var path: paths.sorted(Comparator.reverseOrder()).toList()) {
+        Files.delete(path);
+      }
+    }
+  }
+
+  @Test
+  public void generateCodecAndServiceFile() throws IOException {
+    var result = compile("library.Book", """
+        package library;
+
+        import com.github.forax.framework.mapper.GenerateJSONCodec;
+        import java.util.List;
+        import java.util.Map;
+
+        @GenerateJSONCodec
+        public record Book(String title, int[] pages, List<Map<String, Integer>> index, Book.Cover cover) {
+          @GenerateJSONCodec
+          public static class Cover {
+            public String getColor() { return "red"; }
+            public void setColor(String color) {}
+            public boolean isHard() { return true; }
+            public void setURL(String url) {}
+          }
+        }
+        """);
+    try {
+      var services = result.directory.resolve("META-INF/services/" + JSONCodec.class.getName());
+      assertAll(
+          () -> assertTrue(result.success, result.errors::toString),
+          () -> assertEquals(List.of(), result.warnings),  // the generated codecs are -Xlint:all clean
+          () -> assertTrue(Files.exists(result.directory.resolve("library/Book_JSONCodec.class"))),
+          () -> assertTrue(Files.exists(result.directory.resolve("library/Book_Cover_JSONCodec.class"))),
+          () -> assertEquals(List.of("library.Book_JSONCodec", "library.Book_Cover_JSONCodec"), Files.readAllLines(services, UTF_8))
+      );
+    } finally {
+      delete(result.directory);
+    }
+  }
+
+  private static void assertError(String className, String source, String message) throws IOException {
+    var result = compile(className, source);
+    try {
+      assertAll(
+          () -> assertFalse(result.success),
+          () -> assertTrue(result.errors.stream().anyMatch(error -> error.contains(message)), result.errors::toString)
+      );
+    } finally {
+      delete(result.directory);
+    }
+  }
+
+  @Test
+  public void unsupportedClasses() throws IOException {
+    assertError("Box", """
+        @com.github.forax.framework.mapper.GenerateJSONCodec
+        public record Box<T>(T value) {}
+        """, "generic class");
+    assertError("Shape", """
+        @com.github.forax.framework.mapper.GenerateJSONCodec
+        public abstract class Shape {}
+        """, "abstract class");
+    assertError("Named", """
+        @com.github.forax.framework.mapper.GenerateJSONCodec
+        public interface Named {}
+        """, "only a record or a class");
+    assertError("Outer", """
+        public class Outer {
+          @com.github.forax.framework.mapper.GenerateJSONCodec
+          private record Hidden(int value) {}
+        }
+        """, "accessible");
+    assertError("Person", """
+        public class Person {
+          public Person(String name) {}
+          @com.github.forax.framework.mapper.GenerateJSONCodec
+          public static class NoDefault { public NoDefault(int value) {} }
+        }
+        """, "default constructor");
+    assertError("Bag", """
+        @com.github.forax.framework.mapper.GenerateJSONCodec
+        public record Bag(java.util.List<? extends Number> numbers) {}
+        """, "not supported");
+  }
+}
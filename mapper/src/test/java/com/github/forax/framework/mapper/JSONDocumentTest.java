@@ -0,0 +1,344 @@
+package com.github.forax.framework.mapper;
+
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor.Token;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.ParameterizedType;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JSONDocumentTest {
+  private static final String TEXT = """
+      {
+        "id": 42,
+        "name": "Ana",
+        "score": -1.5e2,
+        "active": true,
+        "manager": null,
+        "address": { "street": "main street", "zipCode": 75000 },
+        "tags": ["a", "b", ["c"], {"d": 1}],
+        "héllo": "wörld"
+      }
+      """;
+
+  @Nested
+  public class Navigation {
+    @Test
+    public void tokens() {
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertEquals(Token.START_OBJECT, root.token()),
+          () -> assertEquals(Token.INTEGER, root.get("id").orElseThrow().token()),
+          () -> assertEquals(Token.STRING, root.get("name").orElseThrow().token()),
+          () -> assertEquals(Token.DOUBLE, root.get("score").orElseThrow().token()),
+          () -> assertEquals(Token.TRUE, root.get("active").orElseThrow().token()),
+          () -> assertEquals(Token.NULL, root.get("manager").orElseThrow().token()),
+          () -> assertEquals(Token.START_OBJECT, root.get("address").orElseThrow().token()),
+          () -> assertEquals(Token.START_ARRAY, root.get("tags").orElseThrow().token())
+      );
+    }
+
+    @Test
+    public void getByKey() {
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertEquals("main street", root.get("address").orElseThrow().get("street").orElseThrow().stringValue()),
+          () -> assertEquals("wörld", root.get("héllo").orElseThrow().stringValue()),
+          () -> assertEquals(Optional.empty(), root.get("unknown")),
+          () -> assertEquals(Optional.empty(), root.get("zipCode")),  // not a key of the root
+          () -> assertEquals(Optional.empty(), root.get("nam"))
+      );
+    }
+
+    @Test
+    public void getByIndex() {
+      var tags = JSONDocument.parse(TEXT).root().get("tags").orElseThrow();
+      assertAll(
+          () -> assertEquals(4, tags.size()),
+          () -> assertEquals("a", tags.get(0).stringValue()),
+          () -> assertEquals("b", tags.get(1).stringValue()),
+          () -> assertEquals("c", tags.get(2).get(0).stringValue()),
+          () -> assertEquals(1, tags.get(3).get("d").orElseThrow().intValue()),
+          () -> assertThrows(IndexOutOfBoundsException.class, () -> tags.get(4)),
+          () -> assertThrows(IndexOutOfBoundsException.class, () -> tags.get(-1))
+      );
+    }
+
+    @Test
+    public void at() {
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertEquals(75_000, root.at("/address/zipCode").orElseThrow().intValue()),
+          () -> assertEquals("c", root.at("/tags/2/0").orElseThrow().stringValue()),
+          () -> assertEquals(1, root.at("/tags/3/d").orElseThrow().intValue()),
+          () -> assertSame(root, root.at("").orElseThrow()),
+          () -> assertEquals(Optional.empty(), root.at("/tags/4")),
+          () -> assertEquals(Optional.empty(), root.at("/tags/01")),
+          () -> assertEquals(Optional.empty(), root.at("/tags/x")),
+          () -> assertEquals(Optional.empty(), root.at("/id/0")),
+          () -> assertThrows(IllegalArgumentException.class, () -> root.at("tags"))
+      );
+    }
+
+    @Test
+    public void atEscapedKeys() {
+      var root = JSONDocument.parse("""
+          { "a/b": 1, "m~n": 2 }
+          """).root();
+      assertAll(
+          () -> assertEquals(1, root.at("/a~1b").orElseThrow().intValue()),
+          () -> assertEquals(2, root.at("/m~0n").orElseThrow().intValue())
+      );
+    }
+
+    @Test
+    public void getEscapedStrings() {
+      var root = JSONDocument.parse("""
+          { "a\\"b": "c\\\\d", "\\u00e9": "\\u20ac", "ab": 3 }
+          """).root();
+      assertAll(
+          () -> assertEquals("c\\d", root.get("a\"b").orElseThrow().stringValue()),
+          () -> assertEquals("€", root.get("é").orElseThrow().stringValue()),
+          () -> assertEquals(3, root.get("ab").orElseThrow().intValue()),
+          () -> assertEquals(Optional.empty(), root.get("a\\\"b")),
+          () -> assertEquals(List.of("a\"b", "é", "ab"), root.keys())
+      );
+    }
+
+    @Test
+    public void keysAndElements() {
+      var root = JSONDocument.parse(TEXT).root();
+      var elements = root.get("tags").orElseThrow().elements();
+      assertAll(
+          () -> assertEquals(List.of("id", "name", "score", "active", "manager", "address", "tags", "héllo"), root.keys()),
+          () -> assertEquals(8, root.size()),
+          () -> assertEquals(4, elements.size()),
+          () -> assertEquals(root.at("/tags/3").orElseThrow(), elements.get(3)),
+          () -> assertEquals(List.of(), JSONDocument.parse("{}").root().keys()),
+          () -> assertEquals(List.of(), JSONDocument.parse("[]").root().elements())
+      );
+    }
+
+    @Test
+    public void invalidNavigation() {
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> root.get(0)),
+          () -> assertThrows(IllegalStateException.class, () -> root.elements()),
+          () -> assertThrows(IllegalStateException.class, () -> root.get("tags").orElseThrow().get("a")),
+          () -> assertThrows(IllegalStateException.class, () -> root.get("id").orElseThrow().size())
+      );
+    }
+
+    @Test
+    public void parseByteBuffer() {
+      var bytes = ("xx" + TEXT).getBytes(UTF_8);
+      var input = ByteBuffer.wrap(bytes).position(2);
+      var root = JSONDocument.parse(input).root();
+      assertAll(
+          () -> assertEquals(2, input.position()),
+          () -> assertEquals("Ana", root.get("name").orElseThrow().stringValue()),
+          () -> assertEquals("wörld", root.at("/héllo").orElseThrow().stringValue())
+      );
+    }
+
+    @Test
+    public void parseDirectByteBuffer() {
+      var bytes = TEXT.getBytes(UTF_8);
+      var input = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+      var root = JSONDocument.parse(input).root();
+      assertEquals("wörld", root.get("héllo").orElseThrow().stringValue());
+    }
+
+    @Test
+    public void parseInvalid() {
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> JSONDocument.parse("")),
+          () -> assertThrows(IllegalStateException.class, () -> JSONDocument.parse("42")),
+          () -> assertThrows(IllegalStateException.class, () -> JSONDocument.parse("{ \"a\" 1 }")),
+          () -> assertThrows(IllegalStateException.class, () -> JSONDocument.parse("{ \"a\": 1, }")),
+          () -> assertThrows(IllegalStateException.class, () -> JSONDocument.parse("[1, 2")),
+          () -> assertThrows(IllegalStateException.class, () -> JSONDocument.parse("[1.]"))
+      );
+    }
+  }  // end of Navigation
+
+  @Nested
+  public class Values {
+    @Test
+    public void scalars() {
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertEquals(42, root.get("id").orElseThrow().intValue()),
+          () -> assertEquals(42L, root.get("id").orElseThrow().longValue()),
+          () -> assertEquals(42.0, root.get("id").orElseThrow().doubleValue()),
+          () -> assertEquals(-150.0, root.get("score").orElseThrow().doubleValue()),
+          () -> assertTrue(root.get("active").orElseThrow().booleanValue()),
+          () -> assertEquals("Ana", root.get("name").orElseThrow().stringValue())
+      );
+    }
+
+    @Test
+    public void numbers() {
+      var root = JSONDocument.parse("""
+          [0, -7, 2147483648, -9223372036854775808, 9223372036854775808, 0.1, 1e-7, 123456789012345678901234567890.5]
+          """).root();
+      assertAll(
+          () -> assertEquals(0, root.get(0).intValue()),
+          () -> assertEquals(-7, root.get(1).intValue()),
+          () -> assertEquals(2_147_483_648L, root.get(2).longValue()),
+          () -> assertThrows(IllegalStateException.class, () -> root.get(2).intValue()),
+          () -> assertEquals(Long.MIN_VALUE, root.get(3).longValue()),
+          () -> assertEquals(Token.DOUBLE, root.get(4).token()),
+          () -> assertEquals(9.223372036854775808e18, root.get(4).doubleValue()),
+          () -> assertEquals(0.1, root.get(5).doubleValue()),
+          () -> assertEquals(1e-7, root.get(6).doubleValue()),
+          () -> assertEquals(1.234567890123456789e29, root.get(7).doubleValue())
+      );
+    }
+
+    @Test
+    public void invalidValues() {
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> root.get("name").orElseThrow().intValue()),
+          () -> assertThrows(IllegalStateException.class, () -> root.get("score").orElseThrow().longValue()),
+          () -> assertThrows(IllegalStateException.class, () -> root.get("id").orElseThrow().stringValue()),
+          () -> assertThrows(IllegalStateException.class, () -> root.get("manager").orElseThrow().booleanValue()),
+          () -> assertThrows(IllegalStateException.class, () -> root.get("address").orElseThrow().doubleValue())
+      );
+    }
+
+    @Test
+    public void decodedSeveralTimes() {
+      var root = JSONDocument.parse(TEXT).root();
+      var name = root.get("name").orElseThrow();
+      assertAll(
+          () -> assertEquals("Ana", name.stringValue()),
+          () -> assertEquals("Ana", name.stringValue()),
+          () -> assertEquals(name, root.get("name").orElseThrow()),
+          () -> assertEquals(name, root.at("/name").orElseThrow())
+      );
+    }
+
+    @Test
+    public void manyValues() {
+      var builder = new StringBuilder("[");
+      for(var i = 0; i < 10_000; i++) {
+        builder.append(i == 0 ? "" : ",").append("{\"value\": ").append(i).append('}');
+      }
+      var root = JSONDocument.parse(builder.append(']').toString()).root();
+      assertAll(
+          () -> assertEquals(10_000, root.size()),
+          () -> assertEquals(9_999, root.get(9_999).get("value").orElseThrow().intValue()),
+          () -> assertEquals(1_234, root.at("/1234/value").orElseThrow().intValue())
+      );
+    }
+  }  // end of Values
+
+  @Nested
+  public class Binding {
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      reader.addTypeMatcher(type -> Optional.of(type)
+          .filter(t -> t instanceof ParameterizedType parameterizedType && parameterizedType.getRawType() == List.class)
+          .map(t -> JSONReader.Collector.list(((ParameterizedType) t).getActualTypeArguments()[0])));
+      return reader;
+    }
+
+    public record Address(String street, int zipCode) { }
+    public record Person(int id, String name, double score, boolean active, Address manager, Address address) { }
+
+    public static class AddressBean {
+      private String street;
+      private int zipCode;
+
+      public String getStreet() {
+        return street;
+      }
+      public void setStreet(String street) {
+        this.street = street;
+      }
+      public int getZipCode() {
+        return zipCode;
+      }
+      public void setZipCode(int zipCode) {
+        this.zipCode = zipCode;
+      }
+    }
+
+    @Test
+    public void bindSubNodes() {
+      var reader = newReader();
+      var root = JSONDocument.parse(TEXT).root();
+      var address = root.get("address").orElseThrow();
+      var bean = reader.parseJSON(address, AddressBean.class);
+      assertAll(
+          () -> assertEquals(new Address("main street", 75_000), reader.parseJSON(address, Address.class)),
+          () -> assertEquals("main street", bean.getStreet()),
+          () -> assertEquals(75_000, bean.getZipCode()),
+          () -> assertEquals(List.of("a", "b"),
+              reader.parseJSON(JSONDocument.parse("[\"a\", \"b\"]").root(), JSONCodec.parameterized(List.class, String.class)))
+      );
+    }
+
+    @Test
+    public void bindScalarNodes() {
+      var reader = newReader();
+      var root = JSONDocument.parse(TEXT).root();
+      assertAll(
+          () -> assertEquals(Integer.valueOf(42), reader.parseJSON(root.get("id").orElseThrow(), Integer.class)),
+          () -> assertEquals("Ana", reader.parseJSON(root.get("name").orElseThrow(), String.class)),
+          () -> assertNull(reader.parseJSON(root.get("manager").orElseThrow(), Address.class))
+      );
+    }
+
+    @Test
+    public void bindIgnoreUnknownKeys() {
+      var reader = newReader();
+      reader.ignoreUnknownKeys();
+      var root = JSONDocument.parse(TEXT).root();
+      assertEquals(new Person(42, "Ana", -150.0, true, null, new Address("main street", 75_000)),
+          reader.parseJSON(root, Person.class));
+    }
+
+    @Test
+    public void bindUnknownKeys() {
+      var reader = newReader();
+      var root = JSONDocument.parse(TEXT).root();
+      assertThrows(IllegalStateException.class, () -> reader.parseJSON(root, Person.class));
+    }
+
+    @Test
+    public void bindLikeParseJSON() {
+      var reader = newReader();
+      reader.ignoreUnknownKeys();
+      assertEquals(reader.parseJSON(TEXT, Person.class), reader.parseJSON(JSONDocument.parse(TEXT).root(), Person.class));
+    }
+
+    @Test
+    public void navigateThenBind() {
+      var reader = newReader();
+      var document = JSONDocument.parse("""
+          { "type": "address", "payload": { "street": "main street", "zipCode": 75000 } }
+          """);
+      var root = document.root();
+      assertEquals("address", root.get("type").orElseThrow().stringValue());
+      var payload = root.get("payload").orElseThrow();
+      assertFalse(payload.get("zipCode").isEmpty());
+      assertEquals(new Address("main street", 75_000), reader.parseJSON(payload, Address.class));
+    }
+  }  // end of Binding
+}
@@ -1,28 +1,49 @@
 package com.github.forax.framework.mapper;
 
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor.Token;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
 
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class JSONReaderTest {
-  /*
   @Nested
   public class Q1 {
 
@@ -152,7 +173,7 @@ public class JSONReaderTest {
     public void parseJSONClassPrecondition() {
       var reader = new JSONReader();
       assertAll(
-          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(null, String.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((String) null, String.class)),
           () -> assertThrows(NullPointerException.class, () -> reader.parseJSON("", (Class<?>) null))
       );
     }
@@ -247,7 +268,7 @@ public class JSONReaderTest {
     public void parseJSONTypePrecondition() {
       var reader = new JSONReader();
       assertAll(
-          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(null, (Type) String.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((String) null, (Type) String.class)),
           () -> assertThrows(NullPointerException.class, () -> reader.parseJSON("", (Type) null))
       );
     }
@@ -538,5 +559,1063 @@ public class JSONReaderTest {
     }
 
   }  // end of Q7
- */
-}
\ No newline at end of file
+
+
+  @Nested
+  public class Primitives {
+    @SuppressWarnings("unused")
+    public static class Measure {
+      private int count;
+      private long total;
+      private double average;
+      private float ratio;
+      private boolean valid;
+      private Integer boxed;
+      private Float boxedRatio;
+
+      public void setCount(int count) {
+        this.count = count;
+      }
+      public void setTotal(long total) {
+        this.total = total;
+      }
+      public void setAverage(double average) {
+        this.average = average;
+      }
+      public void setRatio(float ratio) {
+        this.ratio = ratio;
+      }
+      public void setValid(boolean valid) {
+        this.valid = valid;
+      }
+      public void setBoxed(Integer boxed) {
+        this.boxed = boxed;
+      }
+      public void setBoxedRatio(Float boxedRatio) {
+        this.boxedRatio = boxedRatio;
+      }
+    }
+
+    @Test
+    public void parseJSONPrimitiveProperties() {
+      var reader = new JSONReader();
+      var measure = reader.parseJSON("""
+        {
+          "count": 3,
+          "total": 12345678901,
+          "average": 4.5,
+          "ratio": 2,
+          "valid": true,
+          "boxed": 7
+        }
+        """, Measure.class);
+      assertAll(
+          () -> assertEquals(3, measure.count),
+          () -> assertEquals(12_345_678_901L, measure.total),
+          () -> assertEquals(4.5, measure.average),
+          () -> assertEquals(2f, measure.ratio),
+          () -> assertTrue(measure.valid),
+          () -> assertEquals(Integer.valueOf(7), measure.boxed)
+      );
+    }
+
+    @Test
+    public void parseJSONIntWidenedToLongAndDouble() {
+      var reader = new JSONReader();
+      var measure = reader.parseJSON("""
+        { "total": 42, "average": 3 }
+        """, Measure.class);
+      assertAll(
+          () -> assertEquals(42L, measure.total),
+          () -> assertEquals(3.0, measure.average)
+      );
+    }
+
+    @Test
+    public void parseJSONDoubleNarrowedToFloat() {
+      var reader = new JSONReader();
+      var measure = reader.parseJSON("""
+        { "ratio": 0.1, "boxedRatio": 2.5 }
+        """, Measure.class);
+      var measure2 = reader.parseJSON("""
+        { "boxedRatio": 3 }
+        """, Measure.class);
+      assertAll(
+          () -> assertEquals(0.1f, measure.ratio),
+          () -> assertEquals(Float.valueOf(2.5f), measure.boxedRatio),
+          () -> assertEquals(Float.valueOf(3f), measure2.boxedRatio)
+      );
+    }
+
+    @Test
+    public void collectorBeanPrimitivePopulater() {
+      var collector = JSONReader.Collector.bean(Measure.class);
+      var bean = collector.supplier().get();
+      collector.populater().populateInt(bean, "count", 3);
+      collector.populater().populateLong(bean, "total", 4L);
+      collector.populater().populateDouble(bean, "average", 5.5);
+      collector.populater().populateDouble(bean, "ratio", 1.5);
+      collector.populater().populateDouble(bean, "boxedRatio", 0.5);
+      collector.populater().populateBoolean(bean, "valid", true);
+      collector.populater().populateInt(bean, "boxed", 6);
+      var measure = (Measure) collector.finisher().apply(bean);
+      assertAll(
+          () -> assertEquals(3, measure.count),
+          () -> assertEquals(4L, measure.total),
+          () -> assertEquals(5.5, measure.average),
+          () -> assertEquals(1.5f, measure.ratio),
+          () -> assertEquals(Float.valueOf(0.5f), measure.boxedRatio),
+          () -> assertTrue(measure.valid),
+          () -> assertEquals(Integer.valueOf(6), measure.boxed)
+      );
+    }
+  }  // end of Primitives
+
+
+  @Nested
+  public class Symbols {
+    public record Point(int x, int y) { }
+
+    private static <B> JSONReader.Collector<B> spy(JSONReader.Collector<B> collector, List<String> keys) {
+      return new JSONReader.Collector<>(
+          key -> {
+            keys.add(key);
+            return collector.qualifier().apply(key);
+          },
+          collector.supplier(), collector.populater(), collector.finisher(), collector.keys());
+    }
+
+    @Test
+    public void parsedKeysAreThePropertyNames() {
+      var bean = JSONReader.Collector.bean(Q3.Person.class);
+      var record = JSONReader.Collector.record(Point.class);
+      var beanKeys = new ArrayList<String>();
+      var recordKeys = new ArrayList<String>();
+      var reader = new JSONReader();
+      reader.ignoreUnknownKeys();  // so the qualifier sees all the keys
+      reader.addTypeMatcher(type -> type == Q3.Person.class ? Optional.of(spy(bean, beanKeys)) : Optional.empty());
+      reader.addTypeMatcher(type -> type == Point.class ? Optional.of(spy(record, recordKeys)) : Optional.empty());
+      reader.parseJSON("{ \"name\": \"Bob\", \"age\": 29 }", Q3.Person.class);
+      reader.parseJSON(ByteBuffer.wrap("{ \"x\": 1, \"y\": 2 }".getBytes(UTF_8)), Point.class);
+      var name = bean.keys().stream().filter("name"::equals).findFirst().orElseThrow();
+      var y = record.keys().stream().filter("y"::equals).findFirst().orElseThrow();
+      assertAll(
+          () -> assertEquals(List.of("name", "age"), beanKeys),
+          () -> assertSame(name, beanKeys.get(0)),
+          () -> assertEquals(List.of("x", "y"), recordKeys),
+          () -> assertSame(y, recordKeys.get(1))
+      );
+    }
+
+    @Test
+    public void collectorKeys() {
+      assertAll(
+          () -> assertEquals(Set.of("name", "age"), Set.copyOf(JSONReader.Collector.bean(Q3.Person.class).keys())),
+          () -> assertEquals(Set.of("x", "y"), Set.copyOf(JSONReader.Collector.record(Point.class).keys())),
+          () -> assertEquals(List.of(), JSONReader.Collector.list(String.class).keys())
+      );
+    }
+  }  // end of Symbols
+
+
+  @Nested
+  public class Streaming {
+    public record Point(int x, int y) { }
+    public record Polygon(String name, List<Point> points) { }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(type)
+          .flatMap(t -> t instanceof ParameterizedType parameterizedType? Optional.of(parameterizedType): Optional.empty())
+          .filter(t -> t.getRawType() == List.class)
+          .map(t -> JSONReader.Collector.list(t.getActualTypeArguments()[0])));
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      return reader;
+    }
+
+    private static String polygonText(int count) {
+      return IntStream.range(0, count)
+          .mapToObj(i -> "{ \"x\": " + i + ", \"y\": " + (i * 2) + " }")
+          .collect(joining(",\n", "{ \"name\": \"big\", \"points\": [\n", "\n] }"));
+    }
+
+    @Test
+    public void parseJSONReader() throws IOException {
+      var polygon = newReader().parseJSON(new StringReader(polygonText(10_000)), Polygon.class);
+      assertAll(
+          () -> assertEquals("big", polygon.name),
+          () -> assertEquals(10_000, polygon.points.size()),
+          () -> assertEquals(new Point(9_999, 19_998), polygon.points.get(9_999))
+      );
+    }
+
+    @Test
+    public void parseJSONInputStream() throws IOException {
+      var text = polygonText(3);
+      var polygon = newReader().parseJSON(new ByteArrayInputStream(text.getBytes(UTF_8)), Polygon.class);
+      assertEquals(new Polygon("big", List.of(new Point(0, 0), new Point(1, 2), new Point(2, 4))), polygon);
+    }
+
+    @Test
+    public void parseJSONChannel() throws IOException {
+      var text = polygonText(3);
+      var channel = Channels.newChannel(new ByteArrayInputStream(text.getBytes(UTF_8)));
+      var polygon = newReader().parseJSON(channel, Polygon.class);
+      assertEquals(new Polygon("big", List.of(new Point(0, 0), new Point(1, 2), new Point(2, 4))), polygon);
+    }
+
+    @Test
+    public void parseJSONStreamingPreconditions() {
+      var reader = new JSONReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((Reader) null, Polygon.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((InputStream) null, Polygon.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((ReadableByteChannel) null, Polygon.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(new StringReader(""), (Type) null))
+      );
+    }
+
+    @Test
+    public void parseJSONPath() throws IOException {
+      var path = Files.createTempFile("polygon", ".json");
+      try {
+        Files.writeString(path, polygonText(1_000));
+        var polygon = newReader().parseJSON(path, Polygon.class);
+        assertAll(
+            () -> assertEquals("big", polygon.name),
+            () -> assertEquals(1_000, polygon.points.size()),
+            () -> assertEquals(new Point(999, 1_998), polygon.points.get(999))
+        );
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void parseJSONByteBuffer() {
+      var buffer = ByteBuffer.wrap(polygonText(2).getBytes(UTF_8));
+      var polygon = newReader().parseJSON(buffer, Polygon.class);
+      assertEquals(new Polygon("big", List.of(new Point(0, 0), new Point(1, 2))), polygon);
+    }
+  }  // end of Streaming
+
+
+  @Nested
+  public class Collectors {
+    public record Point(int x, int y) { }
+
+    @Test
+    public void findCollectorIsResolvedOncePerType() {
+      var reader = new JSONReader();
+      var types = new ArrayList<Type>();
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      reader.addTypeMatcher(type -> {
+        types.add(type);
+        return Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record);
+      });
+      var text = IntStream.range(0, 100)
+          .mapToObj(i -> "{ \"x\": " + i + ", \"y\": " + i + " }")
+          .collect(joining(", ", "[", "]"));
+      var points = reader.parseJSON(text, new JSONReader.TypeReference<List<Point>>() {});
+      assertAll(
+          () -> assertEquals(100, points.size()),
+          () -> assertEquals(new Point(99, 99), points.get(99)),
+          () -> assertEquals(2, types.size())
+      );
+    }
+
+    @Test
+    public void findCollectorSameCollector() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      assertSame(reader.findCollector(Point.class), reader.findCollector(Point.class));
+    }
+
+    @Test
+    public void findCollectorInvalidatedByAddTypeMatcher() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      var collector = reader.findCollector(Point.class);
+      var matched = new boolean[1];
+      reader.addTypeMatcher(type -> {
+        matched[0] = true;
+        return Optional.empty();
+      });
+      var newCollector = reader.findCollector(Point.class);
+      assertAll(
+          () -> assertTrue(matched[0]),
+          () -> assertNotSame(collector, newCollector),
+          () -> assertEquals(new Point(1, 2), reader.parseJSON("{ \"x\": 1, \"y\": 2 }", Point.class))
+      );
+    }
+
+    @Test
+    public void findCollectorConcurrently() throws InterruptedException {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      var errors = new ConcurrentLinkedQueue<Throwable>();
+      var threads = IntStream.range(0, 4)
+          .mapToObj(i -> new Thread(() -> {
+            try {
+              for(var j = 0; j < 1_000; j++) {
+                assertEquals(new Point(i, j), reader.parseJSON("{ \"x\": " + i + ", \"y\": " + j + " }", Point.class));
+              }
+            } catch (Throwable t) {
+              errors.add(t);
+            }
+          }))
+          .toList();
+      threads.forEach(Thread::start);
+      for(var thread: threads) {
+        thread.join();
+      }
+      assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void addTypeMatcherWhileParsing() throws InterruptedException {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      var errors = new ConcurrentLinkedQueue<Throwable>();
+      var done = new AtomicBoolean();
+      var adder = new Thread(() -> {
+        for(var i = 0; i < 5_000 && !done.get(); i++) {
+          reader.addTypeMatcher(type -> Optional.empty());
+        }
+      });
+      var parsers = IntStream.range(0, 4)
+          .mapToObj(i -> new Thread(() -> {
+            try {
+              for(var j = 0; j < 500; j++) {
+                assertEquals(new Point(i, j), reader.parseJSON("{ \"x\": " + i + ", \"y\": " + j + " }", Point.class));
+              }
+            } catch (Throwable t) {
+              errors.add(t);
+            }
+          }))
+          .toList();
+      adder.start();
+      parsers.forEach(Thread::start);
+      for(var thread: parsers) {
+        thread.join();
+      }
+      done.set(true);
+      adder.join();
+      assertTrue(errors.isEmpty(), errors::toString);
+    }
+  }  // end of Collectors
+
+
+  @Nested
+  public class Records {
+    public record Values(int i, long l, float f, double d, boolean b, String s, Integer boxed) { }
+    public record Node(String name, Node left, Node right) { }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      return reader;
+    }
+
+    @Test
+    public void parseJSONPrimitiveComponents() {
+      var values = newReader().parseJSON("""
+          { "i": 1, "l": 5000000000, "f": 2, "d": 3.5, "b": true, "s": "foo", "boxed": 4 }
+          """, Values.class);
+      assertEquals(new Values(1, 5_000_000_000L, 2f, 3.5, true, "foo", 4), values);
+    }
+
+    @Test
+    public void parseJSONWidening() {
+      var values = newReader().parseJSON("""
+          { "l": 7, "f": 5000000000, "d": 8 }
+          """, Values.class);
+      assertEquals(new Values(0, 7L, 5_000_000_000f, 8.0, false, null, null), values);
+    }
+
+    @Test
+    public void parseJSONSlotsAreReset() {
+      var values = newReader().parseJSON("""
+          [ { "i": 1, "d": 1.5, "b": true, "s": "foo", "boxed": 1 }, { "l": 2 }, { "i": 3 } ]
+          """, new JSONReader.TypeReference<List<Values>>() {});
+      assertEquals(List.of(
+          new Values(1, 0, 0, 1.5, true, "foo", 1),
+          new Values(0, 2, 0, 0, false, null, null),
+          new Values(3, 0, 0, 0, false, null, null)), values);
+    }
+
+    @Test
+    public void parseJSONRecursiveRecord() {
+      var node = newReader().parseJSON("""
+          { "name": "root", "left": { "name": "a", "left": { "name": "b" } }, "right": { "name": "c" } }
+          """, Node.class);
+      assertEquals(new Node("root", new Node("a", new Node("b", null, null), null), new Node("c", null, null)), node);
+    }
+
+    @Test
+    public void parseJSONInvalidComponentValue() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"i\": 2.5 }", Values.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"i\": 5000000000 }", Values.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"b\": 1 }", Values.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"d\": \"foo\" }", Values.class))
+      );
+    }
+
+    @Test
+    public void parseJSONInvalidReferenceComponentValue() {
+      var reader = newReader();
+      var exception = assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"s\": 3 }", Values.class));
+      assertAll(
+          () -> assertTrue(exception.getMessage().contains("java.lang.String s"), exception::getMessage),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"s\": true }", Values.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"boxed\": 2.5 }", Values.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"boxed\": 5000000000 }", Values.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"left\": \"a\" }", Node.class)),
+          () -> {
+            var collector = JSONReader.Collector.record(Values.class);
+            var slots = collector.supplier().get();
+            assertThrows(IllegalStateException.class, () -> collector.populater().populate(slots, "s", 3));
+          },
+          () -> assertEquals(new Values(0, 0, 0, 0, false, null, null), reader.parseJSON("{ \"s\": null }", Values.class))
+      );
+    }
+
+    @Test
+    public void collectorRecordWithBoxedValues() {
+      var collector = JSONReader.Collector.record(Values.class);
+      var slots = collector.supplier().get();
+      collector.populater().populate(slots, "i", 1);
+      collector.populater().populate(slots, "l", 2L);
+      collector.populater().populate(slots, "d", 3.0);
+      collector.populater().populate(slots, "b", true);
+      collector.populater().populate(slots, "s", "foo");
+      assertEquals(new Values(1, 2L, 0f, 3.0, true, "foo", null), collector.finisher().apply(slots));
+    }
+  }  // end of Records
+
+
+  @Nested
+  public class Lines {
+    public record Point(int x, int y) { }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      return reader;
+    }
+
+    private static Path createLines(int count) throws IOException {
+      var path = Files.createTempFile("points", ".jsonl");
+      Files.writeString(path, IntStream.range(0, count)
+          .mapToObj(i -> "{ \"x\": " + i + ", \"y\": " + (i * 2) + " }\n")
+          .collect(joining()));
+      return path;
+    }
+
+    @Test
+    public void readLines() throws IOException {
+      var path = createLines(3);
+      try(var stream = newReader().readLines(path, Point.class)) {
+        assertEquals(List.of(new Point(0, 0), new Point(1, 2), new Point(2, 4)), stream.toList());
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void readLinesParallelOrdered() throws IOException {
+      var path = createLines(100_000);
+      try(var stream = newReader().readLines(path, Point.class)) {
+        var points = stream.parallel().toList();
+        assertAll(
+            () -> assertEquals(100_000, points.size()),
+            () -> assertTrue(IntStream.range(0, 100_000).allMatch(i -> points.get(i).equals(new Point(i, i * 2))))
+        );
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void readLinesParallelUnordered() throws IOException {
+      var path = createLines(100_000);
+      try(var stream = newReader().readLines(path, Point.class)) {
+        var sum = stream.parallel().unordered().mapToLong(Point::x).sum();
+        assertEquals(100_000L * 99_999 / 2, sum);
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void readLinesBlankLinesAndCRLF() throws IOException {
+      var path = Files.createTempFile("points", ".jsonl");
+      try {
+        Files.writeString(path, "\n{ \"x\": 1, \"y\": 2 }\r\n  \r\n\n{ \"x\": 3, \"y\": 4 }");
+        try(var stream = newReader().readLines(path, Point.class)) {
+          assertEquals(List.of(new Point(1, 2), new Point(3, 4)), stream.toList());
+        }
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void readLinesEmptyFile() throws IOException {
+      var path = Files.createTempFile("points", ".jsonl");
+      try(var stream = newReader().readLines(path, Point.class)) {
+        assertEquals(0, stream.count());
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void readLinesInvalidLine() throws IOException {
+      var path = Files.createTempFile("points", ".jsonl");
+      try {
+        Files.writeString(path, "{ \"x\": 1, \"y\": 2 }\n{ \"x\": }\n");
+        try(var stream = newReader().readLines(path, Point.class)) {
+          var e = assertThrows(IllegalStateException.class, stream::toList);
+          assertTrue(e.getMessage().contains("line at offset 19"));
+        }
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void readLinesPreconditions() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.readLines(null, Point.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.readLines(Path.of("points.jsonl"), (Type) null))
+      );
+    }
+  }  // end of Lines
+
+
+  @Nested
+  public class StreamArray {
+    public record Point(int x, int y) { }
+    public record Polygon(List<Integer> xs) { }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      return reader;
+    }
+
+    /**
+     * A reader that generates the text of a big JSON array and counts the characters read.
+     */
+    private static final class PointsReader extends Reader {
+      private final int count;
+      private int index;
+      private String pending = "[";
+      private int pendingIndex;
+      private long read;
+
+      private PointsReader(int count) {
+        this.count = count;
+      }
+
+      @Override
+      public int read(char[] buffer, int offset, int length) {
+        if (pendingIndex == pending.length()) {
+          if (index > count) {
+            return -1;
+          }
+          pending = index == count ? "]" : (index == 0 ? "" : ",\n") + "{ \"x\": " + index + ", \"y\": " + index + " }";
+          pendingIndex = 0;
+          index++;
+        }
+        var n = Math.min(length, pending.length() - pendingIndex);
+        pending.getChars(pendingIndex, pendingIndex + n, buffer, offset);
+        pendingIndex += n;
+        read += n;
+        return n;
+      }
+
+      @Override
+      public void close() {}
+    }
+
+    @Test
+    public void streamArray() {
+      var stream = newReader().streamArray(new StringReader("""
+          [ { "x": 1, "y": 2 }, { "x": 3, "y": 4 } ]
+          """), Point.class);
+      assertEquals(List.of(new Point(1, 2), new Point(3, 4)), stream.toList());
+    }
+
+    @Test
+    public void streamArrayEmpty() {
+      assertEquals(0, newReader().streamArray(new StringReader("[]"), Point.class).count());
+    }
+
+    @Test
+    public void streamArrayOfValues() {
+      var reader = newReader();
+      assertAll(
+          () -> assertEquals(Arrays.asList(1, 5_000_000_000L, 2.5, true, "foo", null),
+              reader.streamArray(new StringReader("[1, 5000000000, 2.5, true, \"foo\", null]"), Object.class).toList()),
+          () -> assertEquals(List.of(List.of(1, 2), List.of(), List.of(3)),
+              reader.streamArray(new StringReader("[[1, 2], [], [3]]"), Polygon.class.getRecordComponents()[0].getGenericType()).toList())
+      );
+    }
+
+    @Test
+    public void streamArrayIsLazy() {
+      var pointsReader = new PointsReader(1_000_000);
+      var iterator = newReader().streamArray(pointsReader, Point.class).iterator();
+      assertAll(
+          () -> assertEquals(new Point(0, 0), iterator.next()),
+          () -> assertEquals(new Point(1, 1), iterator.next()),
+          () -> assertTrue(pointsReader.read < 100_000)
+      );
+    }
+
+    @Test
+    public void streamArrayBig() {
+      var pointsReader = new PointsReader(1_000_000);
+      var sum = newReader().streamArray(pointsReader, Point.class).mapToLong(Point::x).sum();
+      assertEquals(1_000_000L * 999_999 / 2, sum);
+    }
+
+    @Test
+    public void streamArrayIterator() {
+      var iterator = newReader().streamArray(new StringReader("[{ \"x\": 1, \"y\": 2 }]"), Point.class).iterator();
+      assertAll(
+          () -> assertTrue(iterator.hasNext()),
+          () -> assertTrue(iterator.hasNext()),
+          () -> assertEquals(new Point(1, 2), iterator.next()),
+          () -> assertFalse(iterator.hasNext()),
+          () -> assertThrows(NoSuchElementException.class, iterator::next)
+      );
+    }
+
+    @Test
+    public void streamArrayInvalid() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.streamArray(new StringReader("{}"), Point.class).toList()),
+          () -> assertThrows(IllegalStateException.class, () -> reader.streamArray(new StringReader("[1,]"), Object.class).toList()),
+          () -> assertThrows(IllegalStateException.class, () -> reader.streamArray(new StringReader("[1 2]"), Object.class).toList())
+      );
+    }
+
+    @Test
+    public void streamArrayPreconditions() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.streamArray(null, Point.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.streamArray(new StringReader("[]"), (Type) null))
+      );
+    }
+  }  // end of StreamArray
+
+
+  @Nested
+  public class Cursor {
+    public record Point(int x, int y) { }
+    public record Polygon(String name, List<Point> points) { }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      return reader;
+    }
+
+    @Test
+    public void parseJSONCursor() {
+      var reader = newReader();
+      var polygon = reader.parseJSON(ToyJSONParser.cursor("""
+          { "name": "square", "points": [ { "x": 0, "y": 0 }, { "x": 1, "y": 2 } ] }
+          """), Polygon.class);
+      assertAll(
+          () -> assertEquals(new Polygon("square", List.of(new Point(0, 0), new Point(1, 2))), polygon),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON(ToyJSONParser.cursor("""
+              { "x": 1, "y": 5000000000 }
+              """), Point.class))
+      );
+    }
+
+    @Test
+    public void parseJSONCursorSubValue() {
+      var cursor = ToyJSONParser.cursor("""
+          { "header": { "version": 2 }, "points": [ { "x": 1, "y": 2 }, { "x": 3, "y": 4 } ], "trailer": 5 }
+          """);
+      var reader = newReader();
+      cursor.nextToken();
+      while(cursor.nextToken() != Token.START_ARRAY || !"points".equals(cursor.currentKey())) {
+        cursor.skipChildren();
+      }
+      var points = new ArrayList<Point>();
+      while(cursor.nextToken() == Token.START_OBJECT) {
+        points.add(reader.parseJSON(cursor, Point.class));
+      }
+      assertAll(
+          () -> assertEquals(List.of(new Point(1, 2), new Point(3, 4)), points),
+          () -> assertEquals(Token.END_ARRAY, cursor.currentToken()),
+          () -> assertEquals(Token.INTEGER, cursor.nextToken()),
+          () -> assertEquals("trailer", cursor.currentKey())
+      );
+    }
+
+    @Test
+    public void parseJSONCursorSameAsVisitor() {
+      var text = """
+          { "name": "big", "points": [ { "x": 1, "y": 2 }, { "x": 3, "y": 4 } ] }
+          """;
+      var reader = newReader();
+      assertEquals(reader.parseJSON(text, Polygon.class), reader.parseJSON(ToyJSONParser.cursor(text), Polygon.class));
+    }
+
+    @Test
+    public void parseJSONCursorPreconditions() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON((ToyJSONParser.JSONCursor) null, Point.class)),
+          () -> assertThrows(NullPointerException.class, () -> reader.parseJSON(ToyJSONParser.cursor("{}"), (Type) null))
+      );
+    }
+  }  // end of Cursor
+
+
+  @Nested
+  public class UnknownKeys {
+    public record Point(int x, int y) { }
+
+    public static class Person {
+      private String name;
+
+      public void setName(String name) {
+        this.name = name;
+      }
+    }
+
+    private static final String TEXT = """
+        { "x": 1, "extra": { "nested": [1, 2, { "deep": "]}" }] }, "tags": ["a", "b"], "y": 2, "z": 3.5 }
+        """;
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      return reader;
+    }
+
+    @Test
+    public void unknownKeyIsAnErrorByDefault() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON(TEXT, Point.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"x\": 1, \"z\": 3 }", Point.class)),
+          () -> assertThrows(IllegalStateException.class, () -> reader.parseJSON(ToyJSONParser.cursor(TEXT), Point.class))
+      );
+    }
+
+    @Test
+    public void ignoreUnknownKeys() throws IOException {
+      var reader = newReader();
+      reader.ignoreUnknownKeys();
+      assertAll(
+          () -> assertEquals(new Point(1, 2), reader.parseJSON(TEXT, Point.class)),
+          () -> assertEquals(new Point(1, 2), reader.parseJSON(new StringReader(TEXT), Point.class)),
+          () -> assertEquals(new Point(1, 2), reader.parseJSON(ByteBuffer.wrap(TEXT.getBytes(UTF_8)), Point.class)),
+          () -> assertEquals(new Point(1, 2), reader.parseJSON(ToyJSONParser.cursor(TEXT), Point.class))
+      );
+    }
+
+    @Test
+    public void ignoreUnknownKeysBean() {
+      var reader = new JSONReader();
+      reader.ignoreUnknownKeys();
+      var person = reader.parseJSON("""
+          { "id": 12, "name": "Ana", "address": { "street": "Elm" } }
+          """, Person.class);
+      assertEquals("Ana", person.name);
+    }
+
+    @Test
+    public void ignoreUnknownKeysDoesNotCallTheCollector() {
+      var reader = new JSONReader();
+      reader.ignoreUnknownKeys();
+      var types = new ArrayList<Type>();
+      reader.addTypeMatcher(type -> {
+        types.add(type);
+        return Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record);
+      });
+      reader.parseJSON(TEXT, Point.class);
+      assertEquals(List.of(Point.class), types);
+    }
+  }  // end of UnknownKeys
+
+  @Nested
+  public class Projection {
+    public record Customer(String name, String city) { }
+    public record Item(String name, int price) { }
+    public record Order(String id, Customer customer, List<Item> items) { }
+
+    public record Summary(@JSONPointer("/customer/name") String customerName,
+                          @JSONPointer("/items/1/price") int secondPrice,
+                          @JSONPointer("/a~1b/~0c") boolean escaped,
+                          String id,
+                          @JSONPointer("/missing") String missing) { }
+
+    private static final String TEXT = """
+        {
+          "id": "A1",
+          "date": { "year": 2022, "month": 11 },
+          "tags": [1, 2, 3],
+          "customer": { "name": "Ana", "city": "Paris" },
+          "items": [ { "name": "pen", "price": 2 }, { "name": "book", "price": 12 } ],
+          "a/b": { "~c": true }
+        }
+        """;
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      return reader;
+    }
+
+    @Test
+    public void projection() {
+      var reader = newReader();
+      var order = reader.parseJSON(TEXT, Order.class, Set.of("/id", "/customer/name", "/items/1"));
+      assertEquals(new Order("A1", new Customer("Ana", null), List.of(new Item("book", 12))), order);
+    }
+
+    @Test
+    public void projectionOfAPrefix() {
+      var reader = newReader();
+      var order = reader.parseJSON(TEXT, Order.class, Set.of("/customer", "/customer/city"));
+      assertEquals(new Order(null, new Customer("Ana", "Paris"), null), order);
+    }
+
+    @Test
+    public void projectionOfTheWholeText() {
+      var reader = newReader();
+      reader.ignoreUnknownKeys();
+      assertEquals(reader.parseJSON(TEXT, Order.class), reader.parseJSON(TEXT, Order.class, Set.of("")));
+    }
+
+    @Test
+    public void projectionStopsWhenAllValuesAreFound() {
+      var reader = newReader();
+      var text = """
+          { "id": "A2", "customer": { "name": "Bob" }, this is not JSON
+          """;
+      var order = reader.parseJSON(text, Order.class, Set.of("/id", "/customer/name"));
+      assertEquals(new Order("A2", new Customer("Bob", null), null), order);
+    }
+
+    @Test
+    public void projectionOfARecord() {
+      var reader = newReader();
+      var summary = reader.parseProjection(TEXT, Summary.class);
+      assertEquals(new Summary("Ana", 12, true, "A1", null), summary);
+    }
+
+    @Test
+    public void projectionOfARecordWithoutTypeMatcher() {
+      var reader = new JSONReader();
+      var summary = reader.parseProjection(TEXT, Summary.class);
+      assertEquals(new Summary("Ana", 12, true, "A1", null), summary);
+    }
+
+    public record IdAndName(String id, @JSONPointer("/customer/name") String name) { }
+
+    @Test
+    public void projectionOfARecordStopsWhenAllValuesAreFound() {
+      var reader = newReader();
+      var text = """
+          { "id": "A2", "customer": { "name": "Bob", "city": ]]]
+          """;
+      assertEquals(new IdAndName("A2", "Bob"), reader.parseProjection(text, IdAndName.class));
+    }
+
+    @Test
+    public void projectionOfARecordOverlappingPointers() {
+      record Overlap(@JSONPointer("/customer") Customer customer, @JSONPointer("/customer/name") String name) { }
+      var reader = newReader();
+      assertThrows(IllegalStateException.class, () -> reader.parseProjection(TEXT, Overlap.class));
+    }
+
+    @Test
+    public void invalidPointers() {
+      var reader = newReader();
+      assertAll(
+          () -> assertThrows(IllegalArgumentException.class, () -> reader.parseJSON(TEXT, Order.class, Set.of("id"))),
+          () -> assertThrows(IllegalArgumentException.class, () -> reader.parseJSON(TEXT, Order.class, Set.of("/a~2"))),
+          () -> assertThrows(IllegalArgumentException.class, () -> reader.parseJSON(TEXT, Order.class, Set.of("/a~")))
+      );
+    }
+
+    @Test
+    public void pointerTokens() {
+      assertAll(
+          () -> assertEquals(List.of(), PointerTrie.parse("")),
+          () -> assertEquals(List.of(""), PointerTrie.parse("/")),
+          () -> assertEquals(List.of("a", "0", "b"), PointerTrie.parse("/a/0/b")),
+          () -> assertEquals(List.of("a/b", "~c"), PointerTrie.parse("/a~1b/~0c")),
+          () -> assertEquals(List.of("~1"), PointerTrie.parse("/~01"))
+      );
+    }
+
+    @Test
+    public void pointerTrieElements() {
+      var trie = new PointerTrie<String>();
+      trie.add("/0", "zero");
+      trie.add("/01", "not an index");
+      trie.add("/5000", "large");
+      assertAll(
+          () -> assertEquals("zero", trie.element(0).value()),
+          () -> assertNull(trie.element(1)),
+          () -> assertEquals("large", trie.element(5000).value()),
+          () -> assertNull(trie.element(5001)),
+          () -> assertEquals("not an index", trie.child("01").value())
+      );
+    }
+  }  // end of Projection
+
+  @Nested
+  public class Indexed {
+    public record Point(int x, int y) { }
+    public record Polygon(String name, List<Point> points) { }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(type -> Optional.of(Utils.erase(type)).filter(Class::isRecord).map(JSONReader.Collector::record));
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      return reader;
+    }
+
+    @Test
+    public void parseWithStructuralIndex() throws IOException {
+      var text = IntStream.range(0, 1_000)
+          .mapToObj(i -> "{ \"x\": " + i + ", \"y\": " + (i * 2) + " }")
+          .collect(joining(", ", "{ \"name\": \"a name with {[:,]} \", \"points\": [", "] }"));
+      var expected = newReader().parseJSON(text, Polygon.class);
+      var reader = newReader();
+      reader.enableStructuralIndex();
+      var path = Files.createTempFile("polygon", ".json");
+      try {
+        Files.writeString(path, text);
+        assertAll(
+            () -> assertEquals(expected, reader.parseJSON(ByteBuffer.wrap(text.getBytes(UTF_8)), Polygon.class)),
+            () -> assertEquals(expected, reader.parseJSON(path, Polygon.class))
+        );
+      } finally {
+        Files.delete(path);
+      }
+    }
+  }  // end of Indexed
+
+
+  @Nested
+  public class GeneratedCodecs {
+    @GenerateJSONCodec
+    public record Point(int x, int y) { }
+
+    @GenerateJSONCodec
+    public record Polygon(String name, List<Point> points, double scale, boolean closed, long id) { }
+
+    @GenerateJSONCodec
+    public static class Label {
+      private String text;
+      private float size;
+
+      public String getText() {
+        return text;
+      }
+      public void setText(String text) {
+        this.text = text;
+      }
+      public float getSize() {
+        return size;
+      }
+      public void setSize(float size) {
+        this.size = size;
+      }
+    }
+
+    private static JSONReader newReader() {
+      var reader = new JSONReader();
+      reader.addTypeMatcher(Q5.listTypeMatcher());
+      return reader;
+    }
+
+    @Test
+    public void parseRecordsWithoutTypeMatcher() {
+      var reader = newReader();
+      assertEquals(
+          new Polygon("square", List.of(new Point(0, 0), new Point(0, 1)), 2, true, 12345678901L),
+          reader.parseJSON("""
+              { "name": "square", "points": [{ "x": 0, "y": 0 }, { "x": 0, "y": 1 }],
+                "scale": 2, "closed": true, "id": 12345678901 }
+              """, Polygon.class));
+    }
+
+    @Test
+    public void parseRecordAbsentKeys() {
+      assertEquals(new Polygon(null, null, 0, false, 0), newReader().parseJSON("{}", Polygon.class));
+    }
+
+    @Test
+    public void parseBean() {
+      var label = newReader().parseJSON("""
+          { "text": "hello", "size": 12.5 }
+          """, Label.class);
+      assertAll(
+          () -> assertEquals("hello", label.getText()),
+          () -> assertEquals(12.5f, label.getSize())
+      );
+    }
+
+    @Test
+    public void parseKeyType() {
+      var codec = JSONCodecs.codec(Polygon.class);
+      assertAll(
+          () -> assertEquals(Polygon.class.getRecordComponents()[1].getGenericType(), codec.keyType("points")),
+          () -> assertEquals(codec.keyType("points"), Polygon.class.getRecordComponents()[1].getGenericType()),
+          () -> assertEquals(Polygon.class.getRecordComponents()[1].getGenericType().hashCode(), codec.keyType("points").hashCode()),
+          () -> assertEquals(double.class, codec.keyType("scale")),
+          () -> assertNull(codec.keyType("unknown"))
+      );
+    }
+
+    @Test
+    public void parseUnknownKeys() {
+      var reader = newReader();
+      assertThrows(IllegalStateException.class, () -> reader.parseJSON("{ \"x\": 1, \"z\": 3 }", Point.class));
+      reader.ignoreUnknownKeys();
+      assertEquals(new Point(1, 0), reader.parseJSON("{ \"x\": 1, \"z\": [3] }", Point.class));
+    }
+
+    @Test
+    public void parseInvalidValue() {
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> newReader().parseJSON("{ \"x\": true }", Point.class)),
+          () -> assertThrows(IllegalStateException.class, () -> newReader().parseJSON("{ \"x\": 1.5 }", Point.class))
+      );
+    }
+
+    @Test
+    public void parseTypeMatcherBeforeCodec() {
+      var reader = newReader();
+      reader.addTypeMatcher(type -> Optional.of(type)
+          .filter(t -> t == Point.class)
+          .map(__ -> new JSONReader.Collector<>(key -> int.class, () -> new int[2],
+              (array, key, value) -> array[key.equals("x") ? 0 : 1] = (Integer) value * 10, array -> new Point(array[0], array[1]))));
+      assertEquals(new Point(10, 20), reader.parseJSON("{ \"x\": 1, \"y\": 2 }", Point.class));
+    }
+  }  // end of GeneratedCodecs
+}
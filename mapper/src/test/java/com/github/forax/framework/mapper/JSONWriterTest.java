@@ -4,20 +4,39 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.sql.Timestamp;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.MonthDay;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SuppressWarnings({"unused", "static-method"})
 public class JSONWriterTest {
-/*
   @Nested
   public class Q1 {
     @Test @Tag("Q1")
@@ -252,5 +271,462 @@ public class JSONWriterTest {
     }
 
   }  // end of Q7
- */
+
+
+  public record Escaped(@JSONProperty("a \"quoted\" key") String value) { }
+
+  public record Address(String street) { }
+
+  public record Measure(int count, long total, double average, float ratio, char unit, Object any) { }
+
+  @Nested
+  public class Serializers {
+    @Test
+    public void toJSONEscapeStrings() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("\"a \\\"b\\\" \\\\ c\\n\\t\\u0001\"", writer.toJSON("a \"b\" \\ c\n\t\u0001")),
+          () -> assertEquals("""
+              {"a \\"quoted\\" key": "new\\nline"}\
+              """, writer.toJSON(new Escaped("new\nline")))
+      );
+    }
+
+    @Test
+    public void toJSONPrimitiveProperties() {
+      var writer = new JSONWriter();
+      assertEquals("""
+          {"count": 1, "total": 2, "average": 3.5, "ratio": 4.0, "unit": "m", "any": null}\
+          """, writer.toJSON(new Measure(1, 2L, 3.5, 4f, 'm', null)));
+    }
+
+    @Test
+    public void toJSONDynamicPropertyType() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("""
+              {"count": 0, "total": 0, "average": 0.0, "ratio": 0.0, "unit": "x", "any": "text"}\
+              """, writer.toJSON(new Measure(0, 0, 0, 0, 'x', "text"))),
+          () -> assertEquals("""
+              {"count": 0, "total": 0, "average": 0.0, "ratio": 0.0, "unit": "x", "any": {"street": "Elm"}}\
+              """, writer.toJSON(new Measure(0, 0, 0, 0, 'x', new Address("Elm"))))
+      );
+    }
+
+    @Test
+    public void toJSONConfigureAfterFirstUse() {
+      record Event(LocalTime time) { }
+      var writer = new JSONWriter();
+      var event = new Event(LocalTime.of(10, 30));
+      assertTrue(writer.toJSON(event).startsWith("{\"time\": {"));
+      writer.configure(LocalTime.class, time -> time.toString());
+      assertEquals("""
+          {"time": 10:30}\
+          """, writer.toJSON(event));
+    }
+  }  // end of Serializers
+
+
+  public record Polygon(String name, List<Address> points) { }
+
+  @Nested
+  public class Streaming {
+    private static Polygon polygon(int count) {
+      return new Polygon("big", IntStream.range(0, count).mapToObj(i -> new Address("street " + i)).toList());
+    }
+
+    @Test
+    public void toJSONList() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertEquals("[]", writer.toJSON(List.of())),
+          () -> assertEquals("[1, \"two\", null]", writer.toJSON(Arrays.asList(1, "two", null))),
+          () -> assertEquals("""
+              {"name": "p", "points": [{"street": "a"}, {"street": "b"}]}\
+              """, writer.toJSON(new Polygon("p", List.of(new Address("a"), new Address("b")))))
+      );
+    }
+
+    @Test
+    public void toJSONAppendable() throws IOException {
+      var writer = new JSONWriter();
+      var polygon = polygon(10_000);
+      var stringWriter = new StringWriter();
+      writer.toJSON(polygon, stringWriter);
+      var builder = new StringBuilder();
+      writer.toJSON(polygon, builder);
+      assertAll(
+          () -> assertEquals(writer.toJSON(polygon), stringWriter.toString()),
+          () -> assertEquals(writer.toJSON(polygon), builder.toString())
+      );
+    }
+
+    @Test
+    public void toJSONAppendableWritesByChunks() throws IOException {
+      var writer = new JSONWriter();
+      var chunks = new ArrayList<Integer>();
+      var appendable = new Appendable() {
+        @Override
+        public Appendable append(CharSequence text) {
+          chunks.add(text.length());
+          return this;
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) {
+          return append(text.subSequence(start, end));
+        }
+
+        @Override
+        public Appendable append(char c) {
+          return append(String.valueOf(c));
+        }
+      };
+      writer.toJSON(polygon(10_000), appendable);
+      assertAll(
+          () -> assertTrue(chunks.size() > 1),
+          () -> assertTrue(chunks.stream().allMatch(length -> length <= 8_192)),
+          () -> assertEquals(writer.toJSON(polygon(10_000)).length(), chunks.stream().mapToInt(Integer::intValue).sum())
+      );
+    }
+
+    @Test
+    public void toJSONOutputStream() throws IOException {
+      var writer = new JSONWriter();
+      var output = new ByteArrayOutputStream();
+      writer.toJSON(new Address("rue de l'Église"), output);
+      assertEquals("""
+          {"street": "rue de l'Église"}\
+          """, output.toString(UTF_8));
+    }
+
+    @Test
+    public void toJSONIOException() {
+      var writer = new JSONWriter();
+      var output = new OutputStream() {
+        @Override
+        public void write(int b) throws IOException {
+          throw new IOException("oops");
+        }
+      };
+      assertThrows(IOException.class, () -> writer.toJSON(new Address("street"), output));
+    }
+
+    @Test
+    public void toJSONStreamingPreconditions() {
+      var writer = new JSONWriter();
+      assertAll(
+          () -> assertThrows(NullPointerException.class, () -> writer.toJSON(new Address("street"), (Appendable) null)),
+          () -> assertThrows(NullPointerException.class, () -> writer.toJSON(new Address("street"), (OutputStream) null))
+      );
+    }
+
+    @Test
+    public void toJSONChannel() throws IOException {
+      var writer = new JSONWriter();
+      var polygon = polygon(100_000);
+      var output = new ByteArrayOutputStream();
+      writer.toJSON(polygon, Channels.newChannel(output));
+      assertEquals(writer.toJSON(polygon), output.toString(UTF_8));
+    }
+
+    @Test
+    public void toJSONGatheringChannel() throws IOException {
+      var writer = new JSONWriter();
+      var polygon = polygon(100_000);
+      var path = Files.createTempFile("polygon", ".json");
+      try {
+        try(var channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+          writer.toJSON(polygon, channel);
+        }
+        assertEquals(writer.toJSON(polygon), Files.readString(path));
+      } finally {
+        Files.delete(path);
+      }
+    }
+
+    @Test
+    public void toJSONChannelUTF8() throws IOException {
+      var writer = new JSONWriter();
+      var text = "é€\uD83D\uDE00\"\n\u0007z";
+      var output = new ByteArrayOutputStream();
+      writer.toJSON(new Address(text), Channels.newChannel(output));
+      assertAll(
+          () -> assertEquals("{\"street\": \"é€\uD83D\uDE00\\\"\\n\\u0007z\"}", output.toString(UTF_8)),
+          () -> assertArrayEquals(writer.toJSON(new Address(text)).getBytes(UTF_8), output.toByteArray())
+      );
+    }
+
+    @Test
+    public void toJSONLongStringsWithEscapes() throws IOException {
+      var writer = new JSONWriter();
+      var text = new StringBuilder();
+      var expected = new StringBuilder("\"");
+      for(var i = 0; i < 5_000; i++) {
+        var run = "x".repeat(i % 37) + (i % 3 == 0 ? "é" : "");
+        var c = "\"\\\n\u0001".charAt(i % 4);
+        text.append(run).append(c);
+        expected.append(run).append(c == '"' ? "\\\"" : c == '\\' ? "\\\\" : c == '\n' ? "\\n" : "\\u0001");
+      }
+      expected.append('"');
+      var builder = new StringBuilder();
+      writer.toJSON(text.toString(), builder);
+      var output = new ByteArrayOutputStream();
+      writer.toJSON(text.toString(), Channels.newChannel(output));
+      assertAll(
+          () -> assertEquals(expected.toString(), writer.toJSON(text.toString())),
+          () -> assertEquals(expected.toString(), builder.toString()),
+          () -> assertEquals(expected.toString(), output.toString(UTF_8))
+      );
+    }
+
+    @Test
+    public void toJSONChannelReleasesBuffersWhenAGeneratorThrows() throws IOException {
+      var writer = new JSONWriter();
+      writer.configure(LocalTime.class, __ -> { throw new IllegalStateException("boom"); });
+      var text = "x".repeat(40_000);  // several buffers
+      writer.toJSON(List.of(text), Channels.newChannel(new ByteArrayOutputStream()));  // fill the pool
+      var pooled = ByteOutput.pooledBuffers();
+      assertThrows(IllegalStateException.class,
+          () -> writer.toJSON(List.of(text, LocalTime.NOON), Channels.newChannel(new ByteArrayOutputStream())));
+      assertEquals(pooled, ByteOutput.pooledBuffers());
+      var output = new ByteArrayOutputStream();
+      writer.toJSON(List.of(text), Channels.newChannel(output));
+      assertAll(
+          () -> assertEquals(pooled, ByteOutput.pooledBuffers()),
+          () -> assertEquals(writer.toJSON(List.of(text)), output.toString(UTF_8))
+      );
+    }
+
+    @Test
+    public void toJSONChannelReleasesBuffersWhenTheChannelThrows() throws IOException {
+      var writer = new JSONWriter();
+      var text = "x".repeat(40_000);  // several buffers
+      writer.toJSON(List.of(text), Channels.newChannel(new ByteArrayOutputStream()));  // fill the pool
+      var pooled = ByteOutput.pooledBuffers();
+      var channel = new WritableByteChannel() {
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+          throw new IOException("boom");
+        }
+        @Override
+        public boolean isOpen() {
+          return true;
+        }
+        @Override
+        public void close() {}
+      };
+      assertThrows(IOException.class, () -> writer.toJSON(List.of(text), channel));
+      assertEquals(pooled, ByteOutput.pooledBuffers());
+    }
+  }  // end of Streaming
+
+
+  @Nested
+  public class GeneratedSerializers {
+    private static boolean isCalledFromGeneratedSerializer() {
+      return StackWalker.getInstance(StackWalker.Option.SHOW_HIDDEN_FRAMES)
+          .walk(frames -> frames.anyMatch(frame -> frame.getClassName().startsWith(JSONWriter.class.getName() + "$Serializer")));
+    }
+
+    @Test
+    public void toJSONSameAsReflection() {
+      var reflectiveWriter = new JSONWriter();
+      var writer = new JSONWriter();
+      writer.enableGeneratedSerializers();
+      for(var w: List.of(reflectiveWriter, writer)) {
+        w.configure(MonthDay.class, monthDay -> w.toJSON(monthDay.getMonth() + "-" + monthDay.getDayOfMonth()));
+      }
+      var values = List.of(
+          new Person("Bob", "Hunky"),
+          new Person(null, "Hunky"),
+          new Escaped("new\nline"),
+          new Measure(-1, Long.MAX_VALUE, 3.5, 0.1f, 'm', null),
+          new Measure(0, 0, 0, 0, '"', new Address("Elm")),
+          new Polygon("square", List.of(new Address("a"), new Address("b"))),
+          new Polygon("empty", null),
+          new PersonInfo(MonthDay.of(4, 12), new AddressInfo()));
+      for(var value: values) {
+        assertEquals(reflectiveWriter.toJSON(value), writer.toJSON(value));
+      }
+    }
+
+    @Test
+    public void toJSONConfiguredStringSameAsReflection() {
+      var reflectiveWriter = new JSONWriter();
+      var writer = new JSONWriter();
+      writer.enableGeneratedSerializers();
+      for(var w: List.of(reflectiveWriter, writer)) {
+        w.configure(String.class, s -> "\"<" + s + ">\"");
+      }
+      var person = new Person("Bob", null);
+      assertAll(
+          () -> assertEquals("{\"first-name\": \"<Bob>\", \"last-name\": null}", reflectiveWriter.toJSON(person)),
+          () -> assertEquals(reflectiveWriter.toJSON(person), writer.toJSON(person)),
+          () -> assertEquals(reflectiveWriter.toJSON(new Escaped("a")), writer.toJSON(new Escaped("a")))
+      );
+    }
+
+    @Test
+    public void toJSONConfiguredWrapperSameAsReflection() {
+      record Sample(int i, Integer boxed, double d, long l, String s) { }
+      var reflectiveWriter = new JSONWriter();
+      var writer = new JSONWriter();
+      writer.enableGeneratedSerializers();
+      var generated = new boolean[1];
+      for(var w: List.of(reflectiveWriter, writer)) {
+        w.configure(Integer.class, i -> "\"I" + i + "\"");
+        w.configure(Double.class, d -> {
+          generated[0] |= isCalledFromGeneratedSerializer();
+          return "\"D" + d + "\"";
+        });
+      }
+      var sample = new Sample(1, 2, 3.5, 4L, "s");
+      assertAll(
+          () -> assertEquals("""
+              {"i": "I1", "boxed": "I2", "d": "D3.5", "l": 4, "s": "s"}\
+              """, reflectiveWriter.toJSON(sample)),
+          () -> assertEquals(reflectiveWriter.toJSON(sample), writer.toJSON(sample)),
+          () -> assertTrue(generated[0]),
+          () -> assertEquals("[\"I1\", \"I2\"]", writer.toJSON(List.of(1, 2)))
+      );
+    }
+
+    @Test
+    public void toJSONPrimitiveProperties() {
+      record Primitives(boolean b, byte by, short s, char c, int i, long l, float f, double d) { }
+      var writer = new JSONWriter();
+      writer.enableGeneratedSerializers();
+      assertEquals("""
+          {"b": true, "by": 1, "s": 2, "c": "c", "i": 3, "l": 4, "f": 5.5, "d": 6.25}\
+          """, writer.toJSON(new Primitives(true, (byte) 1, (short) 2, 'c', 3, 4L, 5.5f, 6.25)));
+    }
+
+    @Test
+    public void toJSONEmptyRecord() {
+      record Empty() { }
+      var writer = new JSONWriter();
+      writer.enableGeneratedSerializers();
+      assertEquals("{}", writer.toJSON(new Empty()));
+    }
+
+    @Test
+    public void toJSONUsesGeneratedSerializer() {
+      record Event(LocalTime time) { }
+      var writer = new JSONWriter();
+      var generated = new boolean[1];
+      writer.configure(LocalTime.class, time -> {
+        generated[0] = isCalledFromGeneratedSerializer();
+        return time.toString();
+      });
+      var event = new Event(LocalTime.of(10, 30));
+      assertEquals("{\"time\": 10:30}", writer.toJSON(event));
+      assertFalse(generated[0]);
+      writer.enableGeneratedSerializers();
+      assertEquals("{\"time\": 10:30}", writer.toJSON(event));
+      assertTrue(generated[0]);
+    }
+
+    @Test
+    public void toJSONFallbackToReflectionForInvisibleClass() throws ReflectiveOperationException, IOException {
+      byte[] bytes;
+      try(var input = Address.class.getResourceAsStream("JSONWriterTest$Address.class")) {
+        bytes = input.readAllBytes();
+      }
+      var loader = new ClassLoader(JSONWriterTest.class.getClassLoader()) {
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+          if (name.equals(Address.class.getName())) {
+            synchronized (getClassLoadingLock(name)) {
+              var type = findLoadedClass(name);
+              return type != null ? type : defineClass(name, bytes, 0, bytes.length);
+            }
+          }
+          return super.loadClass(name, resolve);
+        }
+      };
+      var addressClass = loader.loadClass(Address.class.getName());
+      assertNotSame(Address.class, addressClass);
+      var address = addressClass.getConstructor(String.class).newInstance("Elm");
+      var writer = new JSONWriter();
+      writer.enableGeneratedSerializers();
+      assertEquals("{\"street\": \"Elm\"}", writer.toJSON(address));
+    }
+  }  // end of GeneratedSerializers
+
+
+  @Nested
+  public class GeneratedCodecs {
+    @GenerateJSONCodec
+    public record Book(@JSONProperty("book-title") String title, int pages, double price, char format,
+                       List<String> authors, MonthDay date) { }
+
+    @GenerateJSONCodec
+    public static class Shelf {
+      private String label = "fiction";
+      private boolean full;
+
+      public String getLabel() {
+        return label;
+      }
+      public void setLabel(String label) {
+        this.label = label;
+      }
+      public boolean isFull() {
+        return full;
+      }
+      public void setFull(boolean full) {
+        this.full = full;
+      }
+    }
+
+    @Test
+    public void codecsAreRegistered() {
+      assertAll(
+          () -> assertEquals(Book.class, JSONCodecs.codec(Book.class).type()),
+          () -> assertEquals(Shelf.class, JSONCodecs.codec(Shelf.class).type()),
+          () -> assertNull(JSONCodecs.codec(Address.class))
+      );
+    }
+
+    @Test
+    public void toJSONRecord() {
+      var writer = new JSONWriter();
+      writer.configure(MonthDay.class, monthDay -> writer.toJSON(monthDay.getMonth() + "-" + monthDay.getDayOfMonth()));
+      assertAll(
+          () -> assertEquals("""
+              {"book-title": "Dune", "pages": 412, "price": 9.5, "format": "p", "authors": ["Frank", "Brian"], "date": "APRIL-12"}\
+              """, writer.toJSON(new Book("Dune", 412, 9.5, 'p', List.of("Frank", "Brian"), MonthDay.of(4, 12)))),
+          () -> assertEquals("""
+              {"book-title": null, "pages": 0, "price": 0.0, "format": "\\"", "authors": null, "date": null}\
+              """, writer.toJSON(new Book(null, 0, 0, '"', null, null)))
+      );
+    }
+
+    @Test
+    public void toJSONBean() {
+      var writer = new JSONWriter();
+      assertEquals("""
+          {"full": false, "label": "fiction"}\
+          """, writer.toJSON(new Shelf()));
+    }
+
+    @Test
+    public void toJSONConfiguredString() {
+      var writer = new JSONWriter();
+      writer.configure(String.class, text -> "\"" + text.toUpperCase(Locale.ROOT) + "\"");
+      assertEquals("""
+          {"book-title": "DUNE", "pages": 412, "price": 9.5, "format": "p", "authors": [], "date": null}\
+          """, writer.toJSON(new Book("Dune", 412, 9.5, 'p', List.of(), null)));
+    }
+
+    @Test
+    public void toJSONStreaming() throws IOException {
+      var writer = new JSONWriter();
+      var books = List.of(new Book("Dune", 412, 9.5, 'p', List.of("Frank"), null), new Shelf());
+      var output = new ByteArrayOutputStream();
+      writer.toJSON(books, output);
+      assertEquals(writer.toJSON(books), output.toString(UTF_8));
+    }
+  }  // end of GeneratedCodecs
 }
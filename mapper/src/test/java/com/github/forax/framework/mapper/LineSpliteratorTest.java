@@ -0,0 +1,102 @@
+package com.github.forax.framework.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.stream.Collectors.joining;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LineSpliteratorTest {
+  private static final LineSpliterator.LineDecoder TEXT_DECODER = (buffer, start, end) -> {
+    var bytes = new byte[end - start];
+    buffer.get(start, bytes);
+    return new String(bytes, UTF_8);
+  };
+
+  private static List<String> lines(int count) {
+    return IntStream.range(0, count).mapToObj(i -> "line " + i).toList();
+  }
+
+  private static Path createFile(String text) throws IOException {
+    var path = Files.createTempFile("lines", ".txt");
+    Files.writeString(path, text);
+    return path;
+  }
+
+  @Test
+  public void smallWindows() throws IOException {
+    var lines = lines(1_000);
+    var path = createFile(String.join("\n", lines));
+    try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var spliterator = new LineSpliterator(channel, 0, channel.size(), 32, () -> TEXT_DECODER);
+      assertEquals(lines, StreamSupport.stream(spliterator, false).toList());
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void lineLongerThanWindow() throws IOException {
+    var path = createFile("a".repeat(100) + "\nb\n");
+    try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var spliterator = new LineSpliterator(channel, 0, channel.size(), 32, () -> TEXT_DECODER);
+      assertThrows(IllegalStateException.class, () -> spliterator.tryAdvance(line -> {}));
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void splitOnLineBoundaries() throws IOException {
+    var lines = lines(100_000);
+    var path = createFile(lines.stream().collect(joining("\n", "", "\n")));
+    try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var spliterator = new LineSpliterator(channel, 0, channel.size(), LineSpliterator.WINDOW_SIZE, () -> TEXT_DECODER);
+      var prefix = spliterator.trySplit();
+      assertNotNull(prefix);
+      var result = new ArrayList<Object>();
+      prefix.forEachRemaining(result::add);
+      var prefixSize = result.size();
+      spliterator.forEachRemaining(result::add);
+      assertAll(
+          () -> assertTrue(prefixSize > 0 && prefixSize < lines.size()),
+          () -> assertEquals(lines, result)
+      );
+    } finally {
+      Files.delete(path);
+    }
+  }
+
+  @Test
+  public void decoderPerSpliterator() throws IOException {
+    var path = createFile(lines(100_000).stream().collect(joining("\n")));
+    try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      var decoders = new ArrayList<LineSpliterator.LineDecoder>();
+      var spliterator = new LineSpliterator(channel, 0, channel.size(), LineSpliterator.WINDOW_SIZE, () -> {
+        LineSpliterator.LineDecoder decoder = TEXT_DECODER::decode;
+        decoders.add(decoder);
+        return decoder;
+      });
+      var prefix = spliterator.trySplit();
+      prefix.forEachRemaining(line -> {});
+      spliterator.forEachRemaining(line -> {});
+      assertEquals(2, decoders.size());
+    } finally {
+      Files.delete(path);
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.github.forax.framework.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NumberFormatterTest {
+  private static String formatLong(long value) {
+    var buffer = new byte[NumberFormatter.MAX_LENGTH];
+    return new String(buffer, 0, NumberFormatter.formatLong(value, buffer, 0), ISO_8859_1);
+  }
+
+  private static String formatDouble(double value) {
+    var buffer = new byte[NumberFormatter.MAX_LENGTH];
+    return new String(buffer, 0, NumberFormatter.formatDouble(value, buffer, 0), ISO_8859_1);
+  }
+
+  private static String formatFloat(float value) {
+    var buffer = new byte[NumberFormatter.MAX_LENGTH];
+    return new String(buffer, 0, NumberFormatter.formatFloat(value, buffer, 0), ISO_8859_1);
+  }
+
+  @Test
+  public void formatIntegers() {
+    assertAll(
+        () -> assertEquals("0", formatLong(0)),
+        () -> assertEquals("7", formatLong(7)),
+        () -> assertEquals("10", formatLong(10)),
+        () -> assertEquals("-99", formatLong(-99)),
+        () -> assertEquals("100", formatLong(100)),
+        () -> assertEquals("-2147483648", formatLong(Integer.MIN_VALUE)),
+        () -> assertEquals("9223372036854775807", formatLong(Long.MAX_VALUE)),
+        () -> assertEquals("-9223372036854775808", formatLong(Long.MIN_VALUE))
+    );
+  }
+
+  @Test
+  public void formatIntegersAtAnOffset() {
+    var buffer = "xx".repeat(NumberFormatter.MAX_LENGTH).getBytes(ISO_8859_1);
+    var end = NumberFormatter.formatInt(-1234, buffer, 3);
+    assertAll(
+        () -> assertEquals(8, end),
+        () -> assertEquals("xxx-1234xx", new String(buffer, 0, 10, ISO_8859_1))
+    );
+  }
+
+  @Test
+  public void formatRandomIntegers() {
+    var random = new Random(0);
+    for(var i = 0; i < 100_000; i++) {
+      var value = random.nextLong() >> random.nextInt(64);
+      assertEquals(Long.toString(value), formatLong(value));
+    }
+  }
+
+  @Test
+  public void formatDoubles() {
+    assertAll(
+        () -> assertEquals("0.0", formatDouble(0.0)),
+        () -> assertEquals("-0.0", formatDouble(-0.0)),
+        () -> assertEquals("1.0", formatDouble(1.0)),
+        () -> assertEquals("-3.5", formatDouble(-3.5)),
+        () -> assertEquals("100.0", formatDouble(100.0)),
+        () -> assertEquals("9999999.0", formatDouble(9_999_999.0)),
+        () -> assertEquals("1.0E7", formatDouble(10_000_000.0)),
+        () -> assertEquals("0.001", formatDouble(0.001)),
+        () -> assertEquals("1.0E-4", formatDouble(0.0001)),
+        () -> assertEquals("0.1", formatDouble(0.1)),
+        () -> assertEquals("0.30000000000000004", formatDouble(0.1 + 0.2)),
+        () -> assertEquals("1234.5678", formatDouble(1234.5678)),
+        () -> assertEquals("1.0E23", formatDouble(1e23)),
+        () -> assertEquals("0.002", formatDouble(2e-3)),
+        () -> assertEquals("4.9E-324", formatDouble(Double.MIN_VALUE)),
+        () -> assertEquals("2.0E-323", formatDouble(2e-323)),
+        () -> assertEquals("2.2250738585072014E-308", formatDouble(Double.MIN_NORMAL)),
+        () -> assertEquals("1.7976931348623157E308", formatDouble(Double.MAX_VALUE)),
+        () -> assertEquals("NaN", formatDouble(Double.NaN)),
+        () -> assertEquals("Infinity", formatDouble(Double.POSITIVE_INFINITY)),
+        () -> assertEquals("-Infinity", formatDouble(Double.NEGATIVE_INFINITY))
+    );
+  }
+
+  @Test
+  public void formatFloats() {
+    assertAll(
+        () -> assertEquals("0.0", formatFloat(0f)),
+        () -> assertEquals("-0.0", formatFloat(-0f)),
+        () -> assertEquals("1.5", formatFloat(1.5f)),
+        () -> assertEquals("0.1", formatFloat(0.1f)),
+        () -> assertEquals("3.4028235E38", formatFloat(Float.MAX_VALUE)),
+        () -> assertEquals("1.4E-45", formatFloat(Float.MIN_VALUE)),
+        () -> assertEquals("1.1754944E-38", formatFloat(Float.MIN_NORMAL)),
+        () -> assertEquals("1.0E10", formatFloat(1e10f)),
+        () -> assertEquals("NaN", formatFloat(Float.NaN)),
+        () -> assertEquals("-Infinity", formatFloat(Float.NEGATIVE_INFINITY))
+    );
+  }
+
+  @Test
+  public void formatRandomDoublesRoundTrip() {
+    var random = new Random(0);
+    for(var i = 0; i < 100_000; i++) {
+      var value = Double.longBitsToDouble(random.nextLong());
+      if (Double.isNaN(value)) {
+        continue;
+      }
+      var text = formatDouble(value);
+      assertEquals(value, Double.parseDouble(text), text);
+      // Double.toString is the shortest decimal since Java 19, it may be longer before
+      assertTrue(text.length() <= Double.toString(value).length(), text);
+    }
+  }
+
+  @Test
+  public void formatRandomFloatsRoundTrip() {
+    var random = new Random(0);
+    for(var i = 0; i < 100_000; i++) {
+      var value = Float.intBitsToFloat(random.nextInt());
+      if (Float.isNaN(value)) {
+        continue;
+      }
+      var text = formatFloat(value);
+      assertEquals(value, Float.parseFloat(text), text);
+      assertTrue(text.length() <= Float.toString(value).length(), text);
+    }
+  }
+
+  @Test
+  public void formatDecimalsLikeDoubleToString() {
+    // decimals with few digits, Double.toString is already the shortest before Java 19
+    var random = new Random(0);
+    for(var i = 0; i < 100_000; i++) {
+      var value = random.nextInt(100_000_000) / Math.pow(10, random.nextInt(12));
+      assertEquals(Double.toString(value), formatDouble(value));
+    }
+  }
+}
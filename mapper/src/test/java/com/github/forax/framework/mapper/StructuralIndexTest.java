@@ -0,0 +1,167 @@
+package com.github.forax.framework.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class StructuralIndexTest {
+  /**
+   * Computes the structural characters by testing the bytes one by one.
+   */
+  private static List<Integer> expectedPositions(byte[] text) {
+    var positions = new ArrayList<Integer>();
+    var inString = false;
+    var escaped = false;
+    var inScalar = false;
+    for(var i = 0; i < text.length; i++) {
+      var b = text[i];
+      if (inString) {
+        if (escaped) {
+          escaped = false;
+        } else if (b == '\\') {
+          escaped = true;
+        } else if (b == '"') {
+          inString = false;
+          positions.add(i);
+        }
+        continue;
+      }
+      switch(b) {
+        case '"' -> {
+          inString = true;
+          inScalar = false;
+          positions.add(i);
+        }
+        case '{', '}', '[', ']', ':', ',' -> {
+          inScalar = false;
+          positions.add(i);
+        }
+        case ' ', '\t', '\n', '\r' -> inScalar = false;
+        default -> {
+          if (!inScalar) {
+            positions.add(i);
+          }
+          inScalar = true;
+        }
+      }
+    }
+    return positions;
+  }
+
+  private static List<Integer> positions(StructuralIndex.Indexer indexer, ByteBuffer buffer, int start) {
+    var index = new StructuralIndex(indexer);
+    index.reset(buffer, start, buffer.limit());
+    var positions = new ArrayList<Integer>();
+    int position;
+    while((position = index.next()) != -1) {
+      positions.add(position);
+    }
+    return positions;
+  }
+
+  private static void checkIndex(String text) {
+    var bytes = text.getBytes(UTF_8);
+    var direct = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+    var expected = expectedPositions(bytes);
+    var prefixed = ("###" + text).getBytes(UTF_8);
+    var expectedPrefixed = expected.stream().map(position -> position + 3).toList();
+    var vectorIndexer = StructuralIndex.loadVectorIndexer();
+    if (vectorIndexer != null) {
+      assertAll(
+          () -> assertEquals(expected, positions(vectorIndexer, ByteBuffer.wrap(bytes), 0), text),
+          () -> assertEquals(expected, positions(vectorIndexer, direct, 0), text)
+      );
+    }
+    assertAll(
+        () -> assertEquals(expected, positions(StructuralIndex.scalarIndexer(), ByteBuffer.wrap(bytes), 0), text),
+        () -> assertEquals(expected, positions(StructuralIndex.indexer(), ByteBuffer.wrap(bytes), 0), text),
+        () -> assertEquals(expected, positions(StructuralIndex.indexer(), direct, 0), text),
+        () -> assertEquals(expectedPrefixed, positions(StructuralIndex.indexer(), ByteBuffer.wrap(prefixed), 3), text)
+    );
+  }
+
+  @Test
+  public void smallTexts() {
+    assertAll(
+        () -> checkIndex(""),
+        () -> checkIndex("{}"),
+        () -> checkIndex("  [ 1, 2.5, true, null ]  "),
+        () -> checkIndex("{ \"a\": \"{[:,]}\", \"b\": [\"c\"] }"),
+        () -> checkIndex("[\"\\\"\", \"\\\\\", \"\\\\\\\"\", 1]"),
+        () -> checkIndex("{\"é\": \"ü€\"}")
+    );
+  }
+
+  @Test
+  public void acrossBlocks() {
+    for(var i = 0; i < 140; i++) {
+      var padding = " ".repeat(i);
+      checkIndex(padding + "[\"" + "\\".repeat(i % 7) + "\\\\" + "x".repeat(i) + "\", " + i + "]");
+      checkIndex(padding + "{\"" + "\\\\".repeat(i % 70) + "\": \"" + "\\\"".repeat(i % 40) + "\"}");
+    }
+  }
+
+  /**
+   * Generates a random text, the backslashes only appear inside the strings.
+   */
+  private static String randomText(Random random, int length) {
+    var outside = "{}[]:, \nab12.-é\"";
+    var inside = "{}[]:, ab\\é\"";
+    var builder = new StringBuilder();
+    var inString = false;
+    for(var i = 0; i < length; i++) {
+      var alphabet = inString ? inside : outside;
+      var c = alphabet.charAt(random.nextInt(alphabet.length()));
+      builder.append(c);
+      if (c == '"') {
+        inString = !inString;
+      } else if (c == '\\') {
+        builder.append(inside.charAt(random.nextInt(inside.length())));
+      }
+    }
+    return builder.toString();
+  }
+
+  @Test
+  public void acrossWindows() {
+    var random = new Random(0);
+    var windowSize = StructuralIndex.WINDOW_SIZE;
+    assertAll(
+        () -> checkIndex(randomText(random, 3 * windowSize)),
+        () -> checkIndex(" ".repeat(windowSize - 2) + "[\"" + "\\\"\\\\".repeat(windowSize / 2) + "\", 1234]"),
+        () -> checkIndex(" ".repeat(windowSize - 1) + "\"" + "\\".repeat(windowSize - 1) + "\\\"\"")
+    );
+  }
+
+  @Test
+  public void peekAndNext() {
+    var index = new StructuralIndex(StructuralIndex.indexer());
+    index.reset(ByteBuffer.wrap("[1, 2]".getBytes(UTF_8)), 0, 6);
+    assertAll(
+        () -> assertEquals(0, index.peek()),
+        () -> assertEquals(0, index.next()),
+        () -> assertEquals(1, index.next()),
+        () -> assertEquals(2, index.peek()),
+        () -> assertEquals(2, index.next()),
+        () -> assertEquals(4, index.next()),
+        () -> assertEquals(5, index.next()),
+        () -> assertEquals(-1, index.peek()),
+        () -> assertEquals(-1, index.next())
+    );
+  }
+
+  @Test
+  public void randomTexts() {
+    var random = new Random(0);
+    for(var i = 0; i < 1_000; i++) {
+      checkIndex(randomText(random, random.nextInt(300)));
+    }
+  }
+}
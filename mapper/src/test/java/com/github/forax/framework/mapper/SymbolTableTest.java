@@ -0,0 +1,101 @@
+package com.github.forax.framework.mapper;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.stream.IntStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class SymbolTableTest {
+  @Test
+  public void symbolChars() {
+    var table = new SymbolTable();
+    var buffer = "xxnamexxname".toCharArray();
+    var symbol1 = table.symbol(buffer, 2, 6);
+    var symbol2 = table.symbol(buffer, 8, 12);
+    assertAll(
+        () -> assertEquals("name", symbol1),
+        () -> assertSame(symbol1, symbol2),
+        () -> assertNotSame("name", symbol1)  // not interned
+    );
+  }
+
+  @Test
+  public void symbolBytes() {
+    var table = new SymbolTable();
+    var buffer = ByteBuffer.wrap("[\"age\"]".getBytes(UTF_8));
+    var symbol = table.symbol(buffer, 2, 5);
+    assertAll(
+        () -> assertEquals("age", symbol),
+        () -> assertSame(symbol, table.symbol("age".toCharArray(), 0, 3)),
+        () -> assertSame(symbol, table.symbol(new String("age")))
+    );
+  }
+
+  @Test
+  public void symbolBytesNotASCII() {
+    var table = new SymbolTable();
+    var buffer = ByteBuffer.wrap("café".getBytes(UTF_8));
+    assertNull(table.symbol(buffer, 0, buffer.limit()));
+  }
+
+  @Test
+  public void symbolMany() {
+    var table = new SymbolTable();
+    var keys = IntStream.range(0, 10_000).mapToObj(i -> "key" + i).toList();
+    var symbols = keys.stream().map(key -> table.symbol(key.toCharArray(), 0, key.length())).toList();
+    assertEquals(keys, symbols);
+  }
+
+  @Test
+  public void seed() {
+    var table = new SymbolTable();
+    var name = new String("name");
+    table.seed(name);
+    var buffer = ByteBuffer.wrap("\"name\"".getBytes(UTF_8));
+    assertAll(
+        () -> assertSame(name, table.symbol("name".toCharArray(), 0, 4)),
+        () -> assertSame(name, table.symbol(buffer, 1, 5)),
+        () -> assertSame(name, table.symbol("name"))
+    );
+  }
+
+  @Test
+  public void seedReplacesAKeyFromTheInput() {
+    var table = new SymbolTable();
+    var fromInput = table.symbol("age".toCharArray(), 0, 3);
+    var age = new String("age");
+    table.seed(age);
+    assertAll(
+        () -> assertNotSame(fromInput, age),
+        () -> assertSame(age, table.symbol("age".toCharArray(), 0, 3))
+    );
+  }
+
+  @Test
+  public void seedWhenTheTableIsFull() {
+    var table = new SymbolTable();
+    IntStream.range(0, 10_000).forEach(i -> table.symbol("junk" + i));  // unknown keys fill the table
+    var name = new String("name");
+    table.seed(name);
+    assertSame(name, table.symbol("name".toCharArray(), 0, 4));
+  }
+
+  @Test
+  public void symbolTableFull() {
+    var table = new SymbolTable();
+    var keys = IntStream.range(0, 10_000).mapToObj(i -> "key" + i).toList();
+    var symbols = keys.stream().map(table::symbol).toList();
+    assertAll(
+        () -> assertSame(symbols.get(0), table.symbol("key0".toCharArray(), 0, 4)),
+        () -> assertEquals("key9999", table.symbol("key9999".toCharArray(), 0, 7)),
+        () -> assertNotSame(symbols.get(9_999), table.symbol("key9999".toCharArray(), 0, 7))  // not stored
+    );
+  }
+}
@@ -1,71 +1,93 @@
 package com.github.forax.framework.mapper;
 
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor;
+import com.github.forax.framework.mapper.ToyJSONParser.JSONCursor.Token;
 import com.github.forax.framework.mapper.ToyJSONParser.JSONVisitor;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.jupiter.api.Assertions.assertAll;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class ToyJSONParserTest {
   private static Object asJava(String text) {
-    var visitor = new JSONVisitor() {
-      private Object result;
-      private final ArrayDeque<Object> stack = new ArrayDeque<>();
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(text, visitor);
+    return visitor.result;
+  }
 
-      @Override
-      @SuppressWarnings("unchecked")
-      public void value(String key, Object value) {
-        var data = stack.peek();
-        if (data instanceof Map<?,?> map) {
-          ((Map<String, Object>) map).put(key, value);
-          return;
-        }
-        if (data instanceof List<?> list) {
-          ((List<Object>) list).add(value);
-          return;
-        }
-        throw new AssertionError();
-      }
+  private static Object asJava(Reader reader) throws IOException {
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(reader, visitor);
+    return visitor.result;
+  }
 
-      @Override
-      public void startObject(String key) {
-        stack.push(new HashMap<String, Object>());
-      }
+  private static final class JavaVisitor implements JSONVisitor {
+    private Object result;
+    private final ArrayDeque<Object> stack = new ArrayDeque<>();
 
-      @Override
-      public void endObject(String key) {
-        var data = stack.pop();
-        if (stack.isEmpty()) {
-          result = data;
-        } else {
-          value(key, data);
-        }
+    @Override
+    @SuppressWarnings("unchecked")
+    public void value(String key, Object value) {
+      var data = stack.peek();
+      if (data instanceof Map<?,?> map) {
+        ((Map<String, Object>) map).put(key, value);
+        return;
       }
+      if (data instanceof List<?> list) {
+        ((List<Object>) list).add(value);
+        return;
+      }
+      throw new AssertionError();
+    }
 
-      @Override
-      public void startArray(String key) {
-        stack.push(new ArrayList<>());
+    @Override
+    public void startObject(String key) {
+      stack.push(new HashMap<String, Object>());
+    }
+
+    @Override
+    public void endObject(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
       }
+    }
 
-      @Override
-      public void endArray(String key) {
-        var data = stack.pop();
-        if (stack.isEmpty()) {
-          result = data;
-        } else {
-          value(key, data);
-        }
+    @Override
+    public void startArray(String key) {
+      stack.push(new ArrayList<>());
+    }
+
+    @Override
+    public void endArray(String key) {
+      var data = stack.pop();
+      if (stack.isEmpty()) {
+        result = data;
+      } else {
+        value(key, data);
       }
-    };
-    ToyJSONParser.parse(text, visitor);
-    return visitor.result;
+    }
   }
 
   @Test
@@ -143,4 +165,677 @@ class ToyJSONParserTest {
         [ 13.4, null ]
         """));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void parseNested() {
+    assertEquals(
+        Map.of("a", List.of(1, Map.of("b", List.of()), 2.5), "c", Map.of("d", "e")),
+        asJava("""
+            {"a":[1,{"b":[]},2.5],\r\n"c":{"d":"e"}}
+            """));
+  }
+
+  @Test
+  public void parseInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> asJava("")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("3")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("{ \"foo\" 3 }")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ nul ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ \"foo ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ 1 2 ]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[ 1, ?2 ]"))
+    );
+  }
+
+  /** A reader that returns one character at a time to force the parser to refill its buffer. */
+  private static Reader oneCharReader(String text) {
+    return new StringReader(text) {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        return super.read(buffer, offset, Math.min(length, 1));
+      }
+    };
+  }
+
+  @Test
+  public void parseReader() throws IOException {
+    var longString = "x".repeat(100_000);
+    assertAll(
+        () -> assertEquals(Map.of("foo", List.of(12, 3.5, true, false), "bar", Map.of()),
+            asJava(oneCharReader("""
+                { "foo": [12, 3.5, true, false], "bar": { } }
+                """))),
+        () -> assertEquals(Arrays.asList(null, longString, 42), asJava(oneCharReader("[null, \"" + longString + "\", 42]"))),
+        () -> assertEquals(List.of(longString), asJava(new StringReader("[\"" + longString + "\"]")))
+    );
+  }
+
+  @Test
+  public void parseInputStreamAndChannel() throws IOException {
+    var text = """
+        { "name": "éléonore", "age": 7 }
+        """;
+    var visitor1 = new JavaVisitor();
+    ToyJSONParser.parse(new ByteArrayInputStream(text.getBytes(UTF_8)), visitor1);
+    var visitor2 = new JavaVisitor();
+    ToyJSONParser.parse(Channels.newChannel(new ByteArrayInputStream(text.getBytes(UTF_8))), visitor2);
+    assertAll(
+        () -> assertEquals(Map.of("name", "éléonore", "age", 7), visitor1.result),
+        () -> assertEquals(Map.of("name", "éléonore", "age", 7), visitor2.result)
+    );
+  }
+
+  @Test
+  public void parseReaderIOException() {
+    var reader = new Reader() {
+      @Override
+      public int read(char[] buffer, int offset, int length) throws IOException {
+        throw new IOException("oops");
+      }
+
+      @Override
+      public void close() {}
+    };
+    assertThrows(IOException.class, () -> ToyJSONParser.parse(reader, new JavaVisitor()));
+  }
+
+  @Test
+  public void parseByteBuffer() {
+    var text = """
+        { "name": "éléonore", "scores": [12, 3.5, true, null], "pet": { "kind": "cat" } }
+        """;
+    var bytes = text.getBytes(UTF_8);
+    var heapVisitor = new JavaVisitor();
+    ToyJSONParser.parse(ByteBuffer.wrap(bytes), heapVisitor);
+    var direct = ByteBuffer.allocateDirect(bytes.length + 4).put("xxxx".getBytes(UTF_8)).put(bytes).position(4);
+    var directVisitor = new JavaVisitor();
+    ToyJSONParser.parse(direct, directVisitor);
+    var expected = Map.of("name", "éléonore", "scores", Arrays.asList(12, 3.5, true, null), "pet", Map.of("kind", "cat"));
+    assertAll(
+        () -> assertEquals(expected, heapVisitor.result),
+        () -> assertEquals(expected, directVisitor.result),
+        () -> assertEquals(4, direct.position())
+    );
+  }
+
+  @Test
+  public void parseByteBufferInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> ToyJSONParser.parse(ByteBuffer.wrap("[ \"foo ]".getBytes(UTF_8)), new JavaVisitor())),
+        () -> assertThrows(IllegalStateException.class, () -> ToyJSONParser.parse(ByteBuffer.wrap("[ tru ]".getBytes(UTF_8)), new JavaVisitor())),
+        () -> assertThrows(IllegalStateException.class, () -> ToyJSONParser.parse(ByteBuffer.wrap("{ 3: 4 }".getBytes(UTF_8)), new JavaVisitor()))
+    );
+  }
+
+  @Test
+  public void parsePrimitiveCallbacks() {
+    var events = new ArrayList<String>();
+    ToyJSONParser.parse("""
+        [ 1, 123456789012, 2.5, true, false, "text", null ]
+        """, new JSONVisitor() {
+      @Override
+      public void value(String key, Object value) {
+        events.add("value " + value);
+      }
+
+      @Override
+      public void valueInt(String key, int value) {
+        events.add("int " + value);
+      }
+
+      @Override
+      public void valueLong(String key, long value) {
+        events.add("long " + value);
+      }
+
+      @Override
+      public void valueDouble(String key, double value) {
+        events.add("double " + value);
+      }
+
+      @Override
+      public void valueBoolean(String key, boolean value) {
+        events.add("boolean " + value);
+      }
+
+      @Override
+      public void startObject(String key) {}
+      @Override
+      public void endObject(String key) {}
+      @Override
+      public void startArray(String key) {}
+      @Override
+      public void endArray(String key) {}
+    });
+    assertEquals(
+        List.of("int 1", "long 123456789012", "double 2.5", "boolean true", "boolean false", "value text", "value null"),
+        events);
+  }
+
+  @Test
+  public void parsePrimitiveCallbacksDefaultToValue() {
+    assertEquals(
+        List.of(1, 123456789012L, 2.5, true, 2147483647),
+        asJava("[ 1, 123456789012, 2.5, true, 2147483647 ]"));
+  }
+
+  @Test
+  public void parseNumbers() {
+    var text = """
+        [ 0, -0, -1, 42, -2147483648, 2147483648, -9223372036854775808, 9223372036854775807,
+          9223372036854775808, 123456789012345678901234567890, -0.5, 1e3, 1E+3, 2.5e-3, -1.25E2, 0.1e1,
+          1e400, -1e400, 1e-400, 4.9e-324, 1.7976931348623157e308, 0.30000000000000004,
+          3.141592653589793238462643383279 ]
+        """;
+    var expected = List.of(0, 0, -1, 42, Integer.MIN_VALUE, 2147483648L, Long.MIN_VALUE, Long.MAX_VALUE,
+        9.223372036854775808e18, 1.2345678901234568e29, -0.5, 1000.0, 1000.0, 0.0025, -125.0, 1.0,
+        Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 0.0, Double.MIN_VALUE, Double.MAX_VALUE, 0.1 + 0.2,
+        Math.PI);
+    assertAll(
+        () -> assertEquals(expected, asJava(text)),
+        () -> assertEquals(expected, asJava(oneCharReader(text))),
+        () -> assertEquals(expected, asJavaIndexed(text)),
+        () -> assertEquals(expected, pushAsJava(text, 3))
+    );
+  }
+
+  @Test
+  public void parseNumbersInvalid() {
+    for(var number: List.of("01", "-", "--1", "+1", ".5", "1.", "1.e3", "1e", "1e+", "1e-", "0x10", "1-2", "1.2.3", "1e2e3", "-.5")) {
+      var text = "[" + number + "]";
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> asJava(text), number),
+          () -> assertThrows(IllegalStateException.class, () -> asJava(oneCharReader(text)), number),
+          () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed(text), number),
+          () -> assertThrows(IllegalStateException.class, () -> pushAsJava(text, 2), number)
+      );
+    }
+  }
+
+  @Test
+  public void parseDoublesLikeParseDouble() {
+    var random = new Random(0);
+    for(var i = 0; i < 10_000; i++) {
+      var value = i % 2 == 0 ?
+          Double.longBitsToDouble(random.nextLong() & Long.MAX_VALUE) :
+          random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+      if (Double.isNaN(value) || Double.isInfinite(value)) {
+        continue;
+      }
+      var text = Double.toString(value);
+      var plain = random.nextInt(1_000_000) + "." + random.nextInt(1_000_000) + "e" + (random.nextInt(60) - 30);
+      assertEquals(List.of(value, Double.parseDouble(plain)), asJava("[" + text + ", " + plain + "]"), text + " " + plain);
+    }
+  }
+
+  private static List<String> tokens(JSONCursor cursor) {
+    var tokens = new ArrayList<String>();
+    Token token;
+    while((token = cursor.nextToken()) != null) {
+      var key = cursor.currentKey();
+      tokens.add((key == null ? "" : key + ":") + token);
+    }
+    return tokens;
+  }
+
+  @Test
+  public void cursorTokens() {
+    var cursor = ToyJSONParser.cursor("""
+        { "a": [1, 2.5, "s"], "b": { "c": null, "d": true }, "e": false, "f": [] }
+        """);
+    assertEquals(List.of("START_OBJECT",
+        "a:START_ARRAY", "INTEGER", "DOUBLE", "STRING", "a:END_ARRAY",
+        "b:START_OBJECT", "c:NULL", "d:TRUE", "b:END_OBJECT",
+        "e:FALSE", "f:START_ARRAY", "f:END_ARRAY",
+        "END_OBJECT"), tokens(cursor));
+  }
+
+  @Test
+  public void cursorByteBufferTokens() {
+    var cursor = ToyJSONParser.cursor(ByteBuffer.wrap("[{}, [], {\"é\": 1}]".getBytes(UTF_8)));
+    assertEquals(List.of("START_ARRAY", "START_OBJECT", "END_OBJECT", "START_ARRAY", "END_ARRAY",
+        "START_OBJECT", "é:INTEGER", "END_OBJECT", "END_ARRAY"), tokens(cursor));
+  }
+
+  @Test
+  public void cursorValues() {
+    var cursor = ToyJSONParser.cursor("[ 42, 123456789012, 2.5, true, \"text\" ]");
+    assertAll(
+        () -> assertEquals(Token.START_ARRAY, cursor.nextToken()),
+        () -> assertEquals(Token.INTEGER, cursor.nextToken()),
+        () -> assertEquals(42, cursor.intValue()),
+        () -> assertEquals(42.0, cursor.doubleValue()),
+        () -> assertEquals(Token.INTEGER, cursor.nextToken()),
+        () -> assertEquals(123456789012L, cursor.longValue()),
+        () -> assertThrows(IllegalStateException.class, cursor::intValue),
+        () -> assertEquals(Token.DOUBLE, cursor.nextToken()),
+        () -> assertEquals(2.5, cursor.doubleValue()),
+        () -> assertThrows(IllegalStateException.class, cursor::intValue),
+        () -> assertEquals(Token.TRUE, cursor.nextToken()),
+        () -> assertTrue(cursor.booleanValue()),
+        () -> assertEquals(Token.STRING, cursor.nextToken()),
+        () -> assertEquals("text", cursor.stringValue()),
+        () -> assertThrows(IllegalStateException.class, cursor::booleanValue),
+        () -> assertEquals(Token.END_ARRAY, cursor.nextToken()),
+        () -> assertNull(cursor.nextToken()),
+        () -> assertNull(cursor.nextToken())
+    );
+  }
+
+  @Test
+  public void cursorSkipChildren() {
+    var cursor = ToyJSONParser.cursor("""
+        { "skipped": { "a": [1, [2, { "b": 3 }]], "c": {} }, "found": 4 }
+        """);
+    assertAll(
+        () -> assertEquals(Token.START_OBJECT, cursor.nextToken()),
+        () -> assertEquals(Token.START_OBJECT, cursor.nextToken()),
+        () -> cursor.skipChildren(),
+        () -> assertEquals(Token.END_OBJECT, cursor.currentToken()),
+        () -> assertEquals("skipped", cursor.currentKey()),
+        () -> assertEquals(Token.INTEGER, cursor.nextToken()),
+        () -> assertEquals("found", cursor.currentKey()),
+        () -> assertEquals(4, cursor.intValue())
+    );
+  }
+
+  @Test
+  public void cursorStopEarly() throws IOException {
+    var closed = new boolean[1];
+    var reader = new StringReader("{ \"id\": 7, \"rest\": [ 1, 2, 3 ] }") {
+      @Override
+      public void close() {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    int id;
+    try(var cursor = ToyJSONParser.cursor(reader)) {
+      cursor.nextToken();
+      while(!"id".equals(cursor.currentKey())) {
+        cursor.nextToken();
+      }
+      id = cursor.intValue();
+    }
+    assertAll(
+        () -> assertEquals(7, id),
+        () -> assertTrue(closed[0])
+    );
+  }
+
+  @Test
+  public void cursorInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> tokens(ToyJSONParser.cursor("3"))),
+        () -> assertThrows(IllegalStateException.class, () -> tokens(ToyJSONParser.cursor("[1 2]"))),
+        () -> assertThrows(IllegalStateException.class, () -> tokens(ToyJSONParser.cursor("[1,]"))),
+        () -> assertThrows(IllegalStateException.class, () -> tokens(ToyJSONParser.cursor("{,}"))),
+        () -> assertThrows(IllegalStateException.class, () -> tokens(ToyJSONParser.cursor("{\"a\" 1}"))),
+        () -> assertThrows(IllegalStateException.class, () -> tokens(ToyJSONParser.cursor("[1, 2")))
+    );
+  }
+
+  @Test
+  public void cursorPreconditions() {
+    assertAll(
+        () -> assertThrows(NullPointerException.class, () -> ToyJSONParser.cursor((String) null)),
+        () -> assertThrows(NullPointerException.class, () -> ToyJSONParser.cursor((Reader) null)),
+        () -> assertThrows(NullPointerException.class, () -> ToyJSONParser.cursor((ByteBuffer) null))
+    );
+  }
+
+  /**
+   * A visitor that skips the values of the keys starting with "skip" and records the other events.
+   */
+  private static final class SkippingVisitor implements JSONVisitor {
+    private final ArrayList<String> events = new ArrayList<>();
+
+    @Override
+    public boolean skipValue(String key) {
+      return key.startsWith("skip");
+    }
+
+    @Override
+    public void value(String key, Object value) {
+      events.add(key + "=" + value);
+    }
+
+    @Override
+    public void startObject(String key) {
+      events.add("{" + key);
+    }
+
+    @Override
+    public void endObject(String key) {
+      events.add("}" + key);
+    }
+
+    @Override
+    public void startArray(String key) {
+      events.add("[" + key);
+    }
+
+    @Override
+    public void endArray(String key) {
+      events.add("]" + key);
+    }
+  }
+
+  private static final String SKIPPED_TEXT = """
+      { "skip1": { "a": [1, { "b": "}]" }], "c": "\\\\" }, "x": 1,
+        "skip2": [ [], {}, "[", "\\"]" ], "skip3": "text",
+        "skip4": 123.5, "skip5": null, "y": [2], "skip6": true }
+      """;
+
+  @Test
+  public void parseSkipValues() throws IOException {
+    var expected = List.of("{null", "x=1", "[y", "null=2", "]y", "}null");
+    var visitor1 = new SkippingVisitor();
+    ToyJSONParser.parse(SKIPPED_TEXT, visitor1);
+    var visitor2 = new SkippingVisitor();
+    ToyJSONParser.parse(oneCharReader(SKIPPED_TEXT), visitor2);
+    var visitor3 = new SkippingVisitor();
+    ToyJSONParser.parse(ByteBuffer.wrap(SKIPPED_TEXT.getBytes(UTF_8)), visitor3);
+    assertAll(
+        () -> assertEquals(expected, visitor1.events),
+        () -> assertEquals(expected, visitor2.events),
+        () -> assertEquals(expected, visitor3.events)
+    );
+  }
+
+  @Test
+  public void parseSkipValueInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> ToyJSONParser.parse("{ \"skip\": }", new SkippingVisitor())),
+        () -> assertThrows(IllegalStateException.class, () -> ToyJSONParser.parse("{ \"skip\": [1, 2 }", new SkippingVisitor())),
+        () -> assertThrows(IllegalStateException.class,
+            () -> ToyJSONParser.parse(ByteBuffer.wrap("{ \"skip\": \"foo".getBytes(UTF_8)), new SkippingVisitor()))
+    );
+  }
+
+  @Test
+  public void cursorSkipChildrenWithStrings() {
+    var cursor = ToyJSONParser.cursor(oneCharReader("""
+        [ { "a": "}", "b": ["]", "\\"}"] }, 42 ]
+        """));
+    assertAll(
+        () -> assertEquals(Token.START_ARRAY, cursor.nextToken()),
+        () -> assertEquals(Token.START_OBJECT, cursor.nextToken()),
+        () -> cursor.skipChildren(),
+        () -> assertEquals(Token.END_OBJECT, cursor.currentToken()),
+        () -> assertEquals(Token.INTEGER, cursor.nextToken()),
+        () -> assertEquals(42, cursor.intValue()),
+        () -> assertEquals(Token.END_ARRAY, cursor.nextToken())
+    );
+  }
+
+  private static Object asJavaBytes(String text) {
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(ByteBuffer.wrap(text.getBytes(UTF_8)), visitor, null, false);
+    return visitor.result;
+  }
+
+  private static Object asJavaIndexed(String text) {
+    var visitor = new JavaVisitor();
+    ToyJSONParser.parse(ByteBuffer.wrap(text.getBytes(UTF_8)), visitor, null, true);
+    return visitor.result;
+  }
+
+  @Test
+  public void parseIndexed() {
+    var text = """
+        {
+          "key1": [ 1, 2.5, true, false, null, "string", [], {} ],
+          "key2": { "nested": { "text": "a long text with { [ : , ] } inside" } },
+          "key3":123456789012,"key4":"é","key5"  :  [[[1]]]
+        }
+        """;
+    assertAll(
+        () -> assertEquals(asJava(text), asJavaIndexed(text)),
+        () -> assertEquals(List.of(42), asJavaIndexed("[42]")),
+        () -> assertEquals(List.of(List.of()), asJavaIndexed("  [ [ ] ]  "))
+    );
+  }
+
+  @Test
+  public void parseEscapedQuotesIndexedOrNot() {
+    var text = """
+        { "a\\"b": ["c\\"", "\\\\", "\\\\\\"d", "e\\\\"], "f": "g\\"}" }
+        """;
+    var expected = Map.of("a\"b", List.of("c\"", "\\", "\\\"d", "e\\"), "f", "g\"}");
+    assertAll(
+        () -> assertEquals(expected, asJava(text)),
+        () -> assertEquals(expected, asJava(oneCharReader(text))),
+        () -> assertEquals(expected, asJavaIndexed(text)),
+        () -> assertEquals(expected, asJavaBytes(text)),
+        () -> assertThrows(IllegalStateException.class, () -> asJava("[\"a\\\"]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed("[\"a\\\"]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaBytes("[\"a\\\"]"))
+    );
+  }
+
+  @Test
+  public void parseIndexedInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed("[nullx]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed("[12a]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed("[1 2]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed("[\"text]")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed("[1, 2")),
+        () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed(""))
+    );
+  }
+
+  @Test
+  public void parseIndexedSkipValues() {
+    var visitor = new SkippingVisitor();
+    ToyJSONParser.parse(ByteBuffer.wrap(SKIPPED_TEXT.getBytes(UTF_8)), visitor, null, true);
+    assertEquals(List.of("{null", "x=1", "[y", "null=2", "]y", "}null"), visitor.events);
+  }
+
+  @Test
+  public void parseIndexedSkipValueInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class,
+            () -> ToyJSONParser.parse(ByteBuffer.wrap("{ \"skip\": }".getBytes(UTF_8)), new SkippingVisitor(), null, true)),
+        () -> assertThrows(IllegalStateException.class,
+            () -> ToyJSONParser.parse(ByteBuffer.wrap("{ \"skip\": [1, 2 }".getBytes(UTF_8)), new SkippingVisitor(), null, true)),
+        () -> assertThrows(IllegalStateException.class,
+            () -> ToyJSONParser.parse(ByteBuffer.wrap("{ \"skip\": \"foo".getBytes(UTF_8)), new SkippingVisitor(), null, true))
+    );
+  }
+
+  @Test
+  public void cursorIndexedSkipChildren() {
+    var text = """
+        [ { "a": "}", "b": ["]", "\\"}"] }, 42 ]
+        """;
+    var cursor = ToyJSONParser.cursor(ByteBuffer.wrap(text.getBytes(UTF_8)), null, true);
+    assertAll(
+        () -> assertEquals(Token.START_ARRAY, cursor.nextToken()),
+        () -> assertEquals(Token.START_OBJECT, cursor.nextToken()),
+        () -> cursor.skipChildren(),
+        () -> assertEquals(Token.END_OBJECT, cursor.currentToken()),
+        () -> assertEquals(Token.INTEGER, cursor.nextToken()),
+        () -> assertEquals(42, cursor.intValue()),
+        () -> assertEquals(Token.END_ARRAY, cursor.nextToken()),
+        () -> assertNull(cursor.nextToken())
+    );
+  }
+
+  /**
+   * Feeds a push parser with the text cut in chunks of chunkSize bytes, the same buffer is reused for all the chunks.
+   */
+  private static void push(String text, int chunkSize, JSONVisitor visitor) {
+    var bytes = text.getBytes(UTF_8);
+    var parser = ToyJSONParser.pushParser(visitor);
+    var chunk = ByteBuffer.allocateDirect(chunkSize);
+    for(var i = 0; i < bytes.length; i += chunkSize) {
+      chunk.clear().put(bytes, i, Math.min(chunkSize, bytes.length - i)).flip();
+      parser.feed(chunk);
+      assertEquals(chunk.limit(), chunk.position());
+    }
+    parser.endOfInput();
+  }
+
+  private static Object pushAsJava(String text, int chunkSize) {
+    var visitor = new JavaVisitor();
+    push(text, chunkSize, visitor);
+    return visitor.result;
+  }
+
+  @Test
+  public void pushParse() {
+    var text = """
+        { "name": "éléonore", "scores": [12, 3.5, true, false, null, 12345678901],
+          "pet": { "kind": "cat", "toys": [[], {}] } }
+        """;
+    var expected = asJava(text);
+    for(var chunkSize = 1; chunkSize <= text.length(); chunkSize++) {
+      assertEquals(expected, pushAsJava(text, chunkSize), "chunk size " + chunkSize);
+    }
+  }
+
+  @Test
+  public void pushParseEscapedQuotes() {
+    // the strings are unescaped, like with parse()
+    var text = "[\"a\\\"b\", \"c\\\\\"]";
+    for(var chunkSize = 1; chunkSize <= text.length(); chunkSize++) {
+      assertEquals(List.of("a\"b", "c\\"), pushAsJava(text, chunkSize), "chunk size " + chunkSize);
+    }
+  }
+
+  @Test
+  public void pushParseRandomChunks() {
+    var text = "[" + "{ \"id\": 1234, \"value\": 3.25, \"name\": \"a long name\", \"ok\": true }, ".repeat(20) + "null ]";
+    var expected = asJava(text);
+    var bytes = text.getBytes(UTF_8);
+    var random = new Random(0);
+    for(var i = 0; i < 100; i++) {
+      var visitor = new JavaVisitor();
+      var parser = ToyJSONParser.pushParser(visitor);
+      for(var start = 0; start < bytes.length;) {
+        var length = Math.min(random.nextInt(20), bytes.length - start);
+        parser.feed(ByteBuffer.wrap(bytes, start, length));
+        start += length;
+      }
+      parser.endOfInput();
+      assertEquals(expected, visitor.result);
+    }
+  }
+
+  @Test
+  public void pushParseEventsAsSoonAsTokensAreComplete() {
+    var visitor = new SkippingVisitor();
+    var parser = ToyJSONParser.pushParser(visitor);
+    parser.feed(ByteBuffer.wrap("{ \"x\": 1".getBytes(UTF_8)));
+    assertEquals(List.of("{null"), visitor.events);
+    parser.feed(ByteBuffer.wrap(", \"y\": [".getBytes(UTF_8)));
+    assertEquals(List.of("{null", "x=1", "[y"), visitor.events);
+    assertFalse(parser.isComplete());
+    parser.feed(ByteBuffer.wrap("] }  ".getBytes(UTF_8)));
+    assertTrue(parser.isComplete());
+    parser.endOfInput();
+    assertEquals(List.of("{null", "x=1", "[y", "]y", "}null"), visitor.events);
+  }
+
+  @Test
+  public void pushParseSkipValues() {
+    var expected = new SkippingVisitor();
+    ToyJSONParser.parse(SKIPPED_TEXT, expected);
+    for(var chunkSize = 1; chunkSize < 10; chunkSize++) {
+      var visitor = new SkippingVisitor();
+      push(SKIPPED_TEXT, chunkSize, visitor);
+      assertEquals(expected.events, visitor.events, "chunk size " + chunkSize);
+    }
+  }
+
+  @Test
+  public void pushParseInvalid() {
+    assertAll(
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("", 1)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("3", 1)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("{ \"foo\" 3 }", 1)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("[ nul ]", 2)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("[ \"foo ]", 3)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("[ 1 2 ]", 1)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("[ 1, ?2 ]", 4)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("[ 1 }", 4)),
+        () -> assertThrows(IllegalStateException.class, () -> pushAsJava("{ \"a\": [1, ", 2)),
+        () -> assertThrows(IllegalStateException.class, () -> push("{ \"skip\": }", 3, new SkippingVisitor()))
+    );
+  }
+
+  @Test
+  public void pushParseFeedAfterEndOfInput() {
+    var parser = ToyJSONParser.pushParser(new JavaVisitor());
+    parser.feed(ByteBuffer.wrap("[]".getBytes(UTF_8)));
+    parser.endOfInput();
+    assertThrows(IllegalStateException.class, () -> parser.feed(ByteBuffer.wrap(" ".getBytes(UTF_8))));
+  }
+
+  private static Object cursorAsJava(String text) {
+    var cursor = ToyJSONParser.cursor(text);
+    return cursorValue(cursor, cursor.nextToken());
+  }
+
+  private static Object cursorValue(JSONCursor cursor, Token token) {
+    return switch(token) {
+      case START_OBJECT -> {
+        var map = new HashMap<String, Object>();
+        for(Token next; (next = cursor.nextToken()) != Token.END_OBJECT;) {
+          var key = cursor.currentKey();
+          map.put(key, cursorValue(cursor, next));
+        }
+        yield map;
+      }
+      case START_ARRAY -> {
+        var list = new ArrayList<>();
+        for(Token next; (next = cursor.nextToken()) != Token.END_ARRAY;) {
+          list.add(cursorValue(cursor, next));
+        }
+        yield list;
+      }
+      case NULL -> null;
+      case TRUE, FALSE -> cursor.booleanValue();
+      case INTEGER -> cursor.intValue();
+      case DOUBLE -> cursor.doubleValue();
+      case STRING -> cursor.stringValue();
+      case END_OBJECT, END_ARRAY -> throw new AssertionError();
+    };
+  }
+
+  @Test
+  public void sameGrammarForParseCursorAndPushParser() {
+    var texts = Map.of(
+        "[\"a\\\"b\", \"c\\\\\", \"\\/\\b\\f\\n\\r\\t\", \"\\u00e9\\u20AC\"]",
+        List.of("a\"b", "c\\", "/\b\f\n\r\t", "é€"),
+        "{ \"k\\\"ey\": { \"\\u0041\": 1 } }",
+        Map.of("k\"ey", Map.of("A", 1)),
+        "[1] [2]",
+        List.of(1),
+        "{ \"a\": true } trailing text",
+        Map.of("a", true));
+    texts.forEach((text, expected) -> assertAll(
+        () -> assertEquals(expected, asJava(text), text),
+        () -> assertEquals(expected, asJavaBytes(text), text),
+        () -> assertEquals(expected, asJavaIndexed(text), text),
+        () -> assertEquals(expected, cursorAsJava(text), text),
+        () -> assertEquals(expected, pushAsJava(text, 1), text),
+        () -> assertEquals(expected, pushAsJava(text, text.length()), text)
+    ));
+  }
+
+  @Test
+  public void sameInvalidEscapesForParseCursorAndPushParser() {
+    for(var text : List.of("[\"\\x\"]", "[\"\\u12\"]", "[\"\\u12G4\"]")) {
+      assertAll(
+          () -> assertThrows(IllegalStateException.class, () -> asJava(text), text),
+          () -> assertThrows(IllegalStateException.class, () -> asJavaIndexed(text), text),
+          () -> assertThrows(IllegalStateException.class, () -> cursorAsJava(text), text),
+          () -> assertThrows(IllegalStateException.class, () -> pushAsJava(text, 1), text)
+      );
+    }
+  }
+}